@@ -22,12 +22,13 @@ package com.seibel.distanthorizons.api.enums.config;
 /**
  * UNCOMPRESSED <br>
  * LZ4 <br>
- * XZ <br><br>
+ * XZ <br>
+ * ZSTD <br><br>
  * 
  * Note: speed and compression ratios are examples
  * and should only be used for estimated comparisons.
  * 
- * @version 2024-3-16
+ * @version 2026-10-18
  * @since API 2.0.0
  */
 public enum EDhApiDataCompressionMode
@@ -72,7 +73,21 @@ public enum EDhApiDataCompressionMode
 	 * Write Speed: 490.07 MS / DTO <br>
 	 * Compression ratio: 0.1242 <br>
 	 */
-	LZMA2(3);
+	LZMA2(3),
+	
+	/** 
+	 * Fast reading and good compression, 
+	 * the compression level can be changed via the config. <br>
+	 * May use a dictionary trained from the level's existing data. <br><br>
+	 * 
+	 * Uses a different value than the removed {@code Z_STD(2)} 
+	 * so data written by the nightly builds is still treated as corrupt. <br>
+	 * Data compressed with this mode is only sent to clients using network protocol 11 or newer,
+	 * since older clients can't decompress it. <br>
+	 * 
+	 * @since API 4.1.0
+	 */
+	ZSTD(4);
 	
 	
 	
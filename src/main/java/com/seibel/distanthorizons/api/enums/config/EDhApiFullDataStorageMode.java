@@ -0,0 +1,50 @@
+/*
+ *    This file is part of the Distant Horizons mod
+ *    licensed under the GNU LGPL v3 License.
+ *
+ *    Copyright (C) 2020 James Seibel
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, version 3.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public License
+ *    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.seibel.distanthorizons.api.enums.config;
+
+/**
+ * Determines where full LOD data is stored on disk. <br><br>
+ * 
+ * SQLITE, <br>
+ * REGION_FILES, <br>
+ *
+ * @since API 4.1.0
+ * @version 2026-10-18
+ */
+public enum EDhApiFullDataStorageMode
+{
+	// Reminder:
+	// when adding items up the API minor version
+	// when removing items up the API major version
+	
+	/** 
+	 * All LOD data is stored in the level's SQLite database. <br>
+	 * Default and most tested.
+	 */
+	SQLITE,
+	/** 
+	 * LOD data is stored in memory mapped region files next to the database,
+	 * one folder per detail level. <br>
+	 * Faster to read for very large worlds, but existing data must be
+	 * converted using the standalone jar before it can be used.
+	 */
+	REGION_FILES;
+	
+}
@@ -27,6 +27,7 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 
 import com.seibel.distanthorizons.core.wrapperInterfaces.world.ILevelWrapper;
+import net.minecraft.init.Biomes;
 import net.minecraft.world.biome.Biome;
 import net.minecraftforge.fml.common.registry.ForgeRegistries;
 import org.apache.logging.log4j.LogManager;
@@ -45,6 +46,11 @@ public class BiomeWrapper implements IBiomeWrapper
     public static final ConcurrentMap<Biome, BiomeWrapper> WRAPPER_BY_BIOME = new ConcurrentHashMap<>();
 
     public static final ConcurrentHashMap<String, BiomeWrapper> WRAPPER_BY_RESOURCE_LOCATION = new ConcurrentHashMap<>();
+    /** 
+     * Indexed by biome ID, entries are null until first requested. <br>
+     * 1.12 stores biome IDs as a byte, so 256 entries covers every possible ID.
+     */
+    private static final IBiomeWrapper[] WRAPPER_BY_BIOME_ID = new IBiomeWrapper[256];
 
     public static final String EMPTY_BIOME_STRING = "EMPTY";
     public static final BiomeWrapper EMPTY_WRAPPER = new BiomeWrapper(null, null);
@@ -96,6 +102,21 @@ public class BiomeWrapper implements IBiomeWrapper
             return newWrapper;
         }
     }
+    /** 
+     * Faster than {@link BiomeWrapper#getBiomeWrapper(Biome, ILevelWrapper)} since it's a flat array lookup. <br>
+     * Unknown IDs are treated as plains, the same as {@link Biome#getBiome(int, Biome)}.
+     */
+    static public IBiomeWrapper getBiomeWrapper(int biomeId, ILevelWrapper levelWrapper)
+    {
+        IBiomeWrapper wrapper = WRAPPER_BY_BIOME_ID[biomeId];
+        if (wrapper == null)
+        {
+            // multiple threads may get here at once, but they'll all get the same wrapper from WRAPPER_BY_BIOME
+            wrapper = getBiomeWrapper(Biome.getBiome(biomeId, Biomes.PLAINS), levelWrapper);
+            WRAPPER_BY_BIOME_ID[biomeId] = wrapper;
+        }
+        return wrapper;
+    }
     private BiomeWrapper(Biome biome, ILevelWrapper levelWrapper)
     {
         this.biome = biome;
@@ -20,11 +20,13 @@
 package com.seibel.distanthorizons.common.wrappers.block;
 
 import com.seibel.distanthorizons.api.enums.rendering.EDhApiBlockMaterial;
+import com.seibel.distanthorizons.common.wrappers.chunk.ChunkBlockSnapshot;
 import com.seibel.distanthorizons.core.config.Config;
 import com.seibel.distanthorizons.core.config.types.ConfigEntry;
 import com.seibel.distanthorizons.core.logging.DhLoggerBuilder;
 import com.seibel.distanthorizons.core.util.ColorUtil;
 import com.seibel.distanthorizons.core.util.LodUtil;
+import com.seibel.distanthorizons.core.wrapperInterfaces.block.BlockStatePropertyTable;
 import com.seibel.distanthorizons.core.wrapperInterfaces.block.IBlockStateWrapper;
 
 import com.seibel.distanthorizons.core.wrapperInterfaces.world.ILevelWrapper;
@@ -47,6 +49,7 @@ import java.io.IOException;
 import java.util.*;
 import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.jetbrains.annotations.Nullable;
 
@@ -60,9 +63,15 @@ public class BlockStateWrapper implements IBlockStateWrapper
 	
 	// must be defined before AIR, otherwise a null pointer will be thrown
 	private static final Logger LOGGER = DhLoggerBuilder.getLogger();
+	private static final AtomicInteger NEXT_DENSE_ID = new AtomicInteger(0);
 	
 	public static final ConcurrentHashMap<IBlockState, BlockStateWrapper> WRAPPER_BY_BLOCK_STATE = new ConcurrentHashMap<>();
 	public static final ConcurrentHashMap<String, BlockStateWrapper> WRAPPER_BY_RESOURCE_LOCATION = new ConcurrentHashMap<>();
+	/**
+	 * Indexed by MC state ID (see {@link Block#getStateId(IBlockState)}), entries are null until first requested. <br>
+	 * Only grows, so the array can be read without locking.
+	 */
+	private static volatile BlockStateWrapper[] wrapperByStateId = new BlockStateWrapper[0];
 	
 	public static final String AIR_STRING = "AIR";
 	public static final BlockStateWrapper AIR = new BlockStateWrapper(null, null);
@@ -86,6 +95,7 @@ public class BlockStateWrapper implements IBlockStateWrapper
 	/** technically final, but since it requires a method call to generate it can't be marked as such */
 	private String serialString;
 	private final int hashCode;
+	private final int denseId = NEXT_DENSE_ID.getAndIncrement();
 	/**
 	 * Cached opacity value, -1 if not populated. <br>
 	 * Should be between {@link LodUtil#BLOCK_FULLY_OPAQUE} and {@link LodUtil#BLOCK_FULLY_OPAQUE}
@@ -146,6 +156,39 @@ public class BlockStateWrapper implements IBlockStateWrapper
 		}
 	}
 	
+	/**
+	 * Faster than {@link BlockStateWrapper#fromBlockState(IBlockState, ILevelWrapper)}
+	 * since it's a flat array lookup instead of a hash map lookup.
+	 * Used when reading a {@link ChunkBlockSnapshot}.
+	 */
+	public static BlockStateWrapper fromStateId(int stateId, ILevelWrapper levelWrapper)
+	{
+		BlockStateWrapper[] wrappers = wrapperByStateId;
+		if (stateId < wrappers.length)
+		{
+			BlockStateWrapper wrapper = wrappers[stateId];
+			if (wrapper != null)
+			{
+				return wrapper;
+			}
+		}
+		
+		return cacheStateId(stateId, levelWrapper);
+	}
+	private static synchronized BlockStateWrapper cacheStateId(int stateId, ILevelWrapper levelWrapper)
+	{
+		BlockStateWrapper[] wrappers = wrapperByStateId;
+		if (stateId >= wrappers.length)
+		{
+			wrappers = Arrays.copyOf(wrappers, Math.max(stateId + 1, wrappers.length * 2));
+		}
+		
+		BlockStateWrapper wrapper = fromBlockState(Block.getStateById(stateId), levelWrapper);
+		wrappers[stateId] = wrapper;
+		wrapperByStateId = wrappers;
+		return wrapper;
+	}
+	
 	private BlockStateWrapper(IBlockState blockState, ILevelWrapper levelWrapper)
 	{
 		this.blockState = blockState;
@@ -299,9 +342,21 @@ public class BlockStateWrapper implements IBlockStateWrapper
 		}
 	}
 	
-	public static void clearRendererIgnoredBlocks() { rendererIgnoredBlocks = null; }
-	public static void clearRendererIgnoredCaveBlocks() { rendererIgnoredCaveBlocks = null; }
-	public static void clearBlockResourceLocationsColorBelow() { blockResourceLocationsColorBelow = null; }
+	public static void clearRendererIgnoredBlocks()
+	{
+		rendererIgnoredBlocks = null;
+		BlockStatePropertyTable.clear();
+	}
+	public static void clearRendererIgnoredCaveBlocks()
+	{
+		rendererIgnoredCaveBlocks = null;
+		BlockStatePropertyTable.clear();
+	}
+	public static void clearBlockResourceLocationsColorBelow()
+	{
+		blockResourceLocationsColorBelow = null;
+		BlockStatePropertyTable.clear();
+	}
 	
 	// lod builder helpers //
 	
@@ -477,6 +532,9 @@ public class BlockStateWrapper implements IBlockStateWrapper
 	@Override
 	public String getSerialString() { return this.serialString; }
 	
+	@Override
+	public int getDenseId() { return this.denseId; }
+	
 	@Override
 	public boolean equals(Object obj)
 	{
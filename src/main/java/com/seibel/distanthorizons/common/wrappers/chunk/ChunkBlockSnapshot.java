@@ -0,0 +1,220 @@
+/*
+ *    This file is part of the Distant Horizons mod
+ *    licensed under the GNU LGPL v3 License.
+ *
+ *    Copyright (C) 2020 James Seibel
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, version 3.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public License
+ *    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.seibel.distanthorizons.common.wrappers.chunk;
+
+import net.jpountz.xxhash.XXHash32;
+import net.jpountz.xxhash.XXHashFactory;
+import net.minecraft.block.Block;
+import net.minecraft.block.state.IBlockState;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.World;
+import net.minecraft.world.biome.Biome;
+import net.minecraft.world.chunk.BlockStateContainer;
+import net.minecraft.world.chunk.Chunk;
+import net.minecraft.world.chunk.storage.ExtendedBlockStorage;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Copy of a {@link Chunk}'s block states and biomes,
+ * taken when the {@link ChunkWrapper} is created. <br><br>
+ *
+ * LOD building and lighting run on DH's worker threads,
+ * reading the live chunk from there isn't thread safe and can cause MC to throw errors
+ * if the chunk is modified at the same time. <br>
+ * Block states are stored as MC state IDs (see {@link Block#getStateId(IBlockState)})
+ * so they can be converted back into wrappers using a flat array lookup. <br><br>
+ *
+ * Each section's state ID array is hashed with xxHash as it's copied,
+ * the resulting chunk hash is used to skip rebuilding LODs for unchanged chunks.
+ */
+public class ChunkBlockSnapshot
+{
+	private static final int SECTION_HEIGHT = 16;
+	private static final int SECTION_VOLUME = 16 * 16 * SECTION_HEIGHT;
+	/** MC's value for biomes that haven't been generated yet */
+	private static final int UNSET_BIOME_ID = 0xFF;
+	
+	private static final XXHash32 XX_HASH = XXHashFactory.fastestInstance().hash32();
+	private static final int HASH_SEED = 0x9747B28C;
+	/** large enough for a section of int state IDs */
+	private static final ThreadLocal<ByteBuffer> HASH_BUFFER_REF = ThreadLocal.withInitial(() -> ByteBuffer.allocate(SECTION_VOLUME * Integer.BYTES));
+	
+	/** indexed by section, null if the section is empty */
+	private final char[][] stateIdsBySection;
+	/**
+	 * Only used for sections that contain state IDs that don't fit in a char (IE when using extended block ID mods),
+	 * null otherwise.
+	 */
+	private final int[][] wideStateIdsBySection;
+	/** indexed the same as {@link Chunk#getBiomeArray()}, IE {@code (z << 4) | x} */
+	private final byte[] biomeIds = new byte[16 * 16];
+	
+	/** indexed by section, 0 if the section is empty */
+	private final int[] sectionHashes;
+	private final int chunkHash;
+	
+	
+	
+	//=============//
+	// constructor //
+	//=============//
+	
+	/** should be called on the thread that owns the chunk */
+	public ChunkBlockSnapshot(Chunk chunk, World world)
+	{
+		ExtendedBlockStorage[] storageArray = chunk.getBlockStorageArray();
+		this.stateIdsBySection = new char[storageArray.length][];
+		this.wideStateIdsBySection = new int[storageArray.length][];
+		this.sectionHashes = new int[storageArray.length];
+		
+		for (int sectionIndex = 0; sectionIndex < storageArray.length; sectionIndex++)
+		{
+			ExtendedBlockStorage storage = storageArray[sectionIndex];
+			if (storage == null || storage.isEmpty())
+			{
+				continue;
+			}
+			
+			this.copySection(sectionIndex, storage.getData());
+		}
+		
+		
+		byte[] chunkBiomeIds = chunk.getBiomeArray();
+		BlockPos.MutableBlockPos blockPos = new BlockPos.MutableBlockPos();
+		for (int i = 0; i < this.biomeIds.length; i++)
+		{
+			if ((chunkBiomeIds[i] & 0xFF) != UNSET_BIOME_ID)
+			{
+				this.biomeIds[i] = chunkBiomeIds[i];
+			}
+			else
+			{
+				// getBiome() will generate and store the missing biome
+				blockPos.setPos(i & 15, 0, i >> 4);
+				Biome biome = chunk.getBiome(blockPos, world.provider.getBiomeProvider());
+				this.biomeIds[i] = (byte) Biome.getIdForBiome(biome);
+			}
+		}
+		
+		this.chunkHash = this.hashChunk();
+	}
+	
+	private void copySection(int sectionIndex, BlockStateContainer container)
+	{
+		char[] stateIds = new char[SECTION_VOLUME];
+		IBlockState previousBlockState = null;
+		int previousStateId = 0;
+		
+		for (int i = 0; i < SECTION_VOLUME; i++)
+		{
+			// neighboring blocks are usually the same, so this skips most of the state ID lookups
+			IBlockState blockState = container.get(i & 15, i >> 8, (i >> 4) & 15);
+			if (blockState != previousBlockState)
+			{
+				previousBlockState = blockState;
+				previousStateId = Block.getStateId(blockState);
+				
+				if (previousStateId > Character.MAX_VALUE)
+				{
+					this.copyWideSection(sectionIndex, container);
+					return;
+				}
+			}
+			
+			stateIds[i] = (char) previousStateId;
+		}
+		
+		this.stateIdsBySection[sectionIndex] = stateIds;
+		
+		ByteBuffer hashBuffer = HASH_BUFFER_REF.get();
+		hashBuffer.clear();
+		hashBuffer.asCharBuffer().put(stateIds);
+		this.sectionHashes[sectionIndex] = XX_HASH.hash(hashBuffer, 0, SECTION_VOLUME * Character.BYTES, HASH_SEED);
+	}
+	private void copyWideSection(int sectionIndex, BlockStateContainer container)
+	{
+		int[] stateIds = new int[SECTION_VOLUME];
+		for (int i = 0; i < SECTION_VOLUME; i++)
+		{
+			stateIds[i] = Block.getStateId(container.get(i & 15, i >> 8, (i >> 4) & 15));
+		}
+		
+		this.wideStateIdsBySection[sectionIndex] = stateIds;
+		
+		ByteBuffer hashBuffer = HASH_BUFFER_REF.get();
+		hashBuffer.clear();
+		hashBuffer.asIntBuffer().put(stateIds);
+		this.sectionHashes[sectionIndex] = XX_HASH.hash(hashBuffer, 0, SECTION_VOLUME * Integer.BYTES, HASH_SEED);
+	}
+	
+	/** combines the section hashes and biomes, the section hashes must be populated first */
+	private int hashChunk()
+	{
+		ByteBuffer hashBuffer = HASH_BUFFER_REF.get();
+		hashBuffer.clear();
+		for (int sectionHash : this.sectionHashes)
+		{
+			hashBuffer.putInt(sectionHash);
+		}
+		hashBuffer.put(this.biomeIds);
+		
+		return XX_HASH.hash(hashBuffer, 0, hashBuffer.position(), HASH_SEED);
+	}
+	
+	
+	
+	//=========//
+	// getters //
+	//=========//
+	
+	/** @return 0 (air) if the position is in an empty section or outside the chunk's height */
+	public int getStateId(int relX, int y, int relZ)
+	{
+		int sectionIndex = y >> 4;
+		if (sectionIndex < 0 || sectionIndex >= this.stateIdsBySection.length)
+		{
+			return 0;
+		}
+		
+		int index = ((y & 15) << 8) | (relZ << 4) | relX;
+		
+		char[] stateIds = this.stateIdsBySection[sectionIndex];
+		if (stateIds != null)
+		{
+			return stateIds[index];
+		}
+		
+		int[] wideStateIds = this.wideStateIdsBySection[sectionIndex];
+		return (wideStateIds != null) ? wideStateIds[index] : 0;
+	}
+	
+	public int getBiomeId(int relX, int relZ) { return this.biomeIds[(relZ << 4) | relX] & 0xFF; }
+	
+	/** 
+	 * Covers every block state and biome in the chunk. <br>
+	 * Heightmaps and light sources are derived from the block states, so they don't need to be hashed separately.
+	 */
+	public int getChunkHash() { return this.chunkHash; }
+	
+	public int getSectionCount() { return this.stateIdsBySection.length; }
+	public boolean isSectionEmpty(int sectionIndex) { return this.stateIdsBySection[sectionIndex] == null && this.wideStateIdsBySection[sectionIndex] == null; }
+	
+}
@@ -35,13 +35,10 @@ import com.seibel.distanthorizons.core.wrapperInterfaces.world.IBiomeWrapper;
 
 import com.seibel.distanthorizons.core.wrapperInterfaces.world.ILevelWrapper;
 
-import net.minecraft.block.state.IBlockState;
 import net.minecraft.client.multiplayer.WorldClient;
-import net.minecraft.util.math.BlockPos;
 import net.minecraft.block.Block;
 import net.minecraft.world.World;
 import net.minecraft.world.chunk.Chunk;
-import net.minecraft.world.chunk.storage.ExtendedBlockStorage;
 import org.apache.logging.log4j.Logger;
 
 import java.util.*;
@@ -50,14 +47,19 @@ public class ChunkWrapper implements IChunkWrapper
 {
 	private static final Logger LOGGER = DhLoggerBuilder.getLogger();
 	
-	/** can be used for interactions with the underlying chunk where creating new BlockPos objects could cause issues for the garbage collector. */
-	private static final ThreadLocal<BlockPos.MutableBlockPos> MUTABLE_BLOCK_POS_REF = ThreadLocal.withInitial(() -> new BlockPos.MutableBlockPos());
 	private static final ThreadLocal<MutableBlockPosWrapper> MUTABLE_BLOCK_POS_WRAPPER_REF = ThreadLocal.withInitial(() -> new MutableBlockPosWrapper());
 	
 	
 	private final Chunk chunk;
 	private final DhChunkPos chunkPos;
 	private final ILevelWrapper wrappedLevel;
+	/** all block and biome reads go through this so LOD building doesn't touch the live chunk */
+	private final ChunkBlockSnapshot snapshot;
+	/** 
+	 * 1.12 biomes are 2D, so each column only needs to be looked up once. <br>
+	 * Indexed by {@code (relZ << 4) | relX}.
+	 */
+	private final IBiomeWrapper[] biomeByColumn = new IBiomeWrapper[LodUtil.CHUNK_WIDTH * LodUtil.CHUNK_WIDTH];
 	
 	private boolean isDhBlockLightCorrect = false;
 	private boolean isDhSkyLightCorrect = false;
@@ -86,6 +88,15 @@ public class ChunkWrapper implements IChunkWrapper
 		this.chunk = chunk;
 		this.wrappedLevel = wrappedLevel;
 		this.chunkPos = new DhChunkPos(chunk.getPos().x, chunk.getPos().z);
+		this.snapshot = new ChunkBlockSnapshot(chunk, (World) wrappedLevel.getWrappedMcObject());
+		
+		for (int relX = 0; relX < LodUtil.CHUNK_WIDTH; relX++)
+		{
+			for (int relZ = 0; relZ < LodUtil.CHUNK_WIDTH; relZ++)
+			{
+				this.biomeByColumn[(relZ << 4) | relX] = BiomeWrapper.getBiomeWrapper(this.snapshot.getBiomeId(relX, relZ), wrappedLevel);
+			}
+		}
 		
 		// use DH heightmaps if requested
 		if (Config.Common.LodBuilding.recalculateChunkHeightmaps.get())
@@ -140,13 +151,10 @@ public class ChunkWrapper implements IChunkWrapper
 		// Default to 0 if every section is empty or null
 		this.minNonEmptyHeight = 0;
 		
-		ExtendedBlockStorage[] storageArray = this.chunk.getBlockStorageArray();
-		
 		// Each section is 16 blocks high
-		for (int i = 0; i < storageArray.length; i++)
+		for (int i = 0; i < this.snapshot.getSectionCount(); i++)
 		{
-			ExtendedBlockStorage section = storageArray[i];
-			if (section != null && !section.isEmpty())
+			if (!this.snapshot.isSectionEmpty(i))
 			{
 				this.minNonEmptyHeight = i * 16;
 				break;
@@ -169,13 +177,10 @@ public class ChunkWrapper implements IChunkWrapper
 		
 		this.maxNonEmptyHeight = 0;
 		
-		ExtendedBlockStorage[] sections = this.chunk.getBlockStorageArray();
-		
 		// Loop from top to bottom to find the highest non-empty section
-		for (int i = sections.length - 1; i >= 0; i--)
+		for (int i = this.snapshot.getSectionCount() - 1; i >= 0; i--)
 		{
-			ExtendedBlockStorage section = sections[i];
-			if (section != null && !section.isEmpty())
+			if (!this.snapshot.isSectionEmpty(i))
 			{
 				this.maxNonEmptyHeight = (i + 1) * 16; // top Y of the section
 				break;
@@ -271,34 +276,21 @@ public class ChunkWrapper implements IChunkWrapper
 	
 	
 	@Override
-	public IBiomeWrapper getBiome(int relX, int relY, int relZ)
-	{
-		World world = (World) wrappedLevel.getWrappedMcObject();
-		
-		return BiomeWrapper.getBiomeWrapper(this.chunk.getBiome(new BlockPos(relX,relY,relZ),world.provider.getBiomeProvider()),wrappedLevel);
-	}
+	public IBiomeWrapper getBiome(int relX, int relY, int relZ) { return this.biomeByColumn[(relZ << 4) | relX]; }
 	
 	@Override
 	public IBlockStateWrapper getBlockState(int relX, int relY, int relZ)
 	{
 		this.throwIndexOutOfBoundsIfRelativePosOutsideChunkBounds(relX, relY, relZ);
-		
-		BlockPos.MutableBlockPos blockPos = MUTABLE_BLOCK_POS_REF.get();
-		blockPos.setPos(relX,relY,relZ);
-		
-		// TODO copy into pooled array, this isn't thread safe and can cause MC to throw errors if the chunk is loaded
-		return BlockStateWrapper.fromBlockState(this.chunk.getBlockState(blockPos), this.wrappedLevel);
+		return BlockStateWrapper.fromStateId(this.snapshot.getStateId(relX, relY, relZ), this.wrappedLevel);
 	}
 	
+	/** the snapshot lookup is already cheaper than comparing against the guess, so both extra parameters are ignored */
 	@Override
 	public IBlockStateWrapper getBlockState(int relX, int relY, int relZ, IMutableBlockPosWrapper mcBlockPos, IBlockStateWrapper guess)
 	{
 		this.throwIndexOutOfBoundsIfRelativePosOutsideChunkBounds(relX, relY, relZ);
-		
-		BlockPos.MutableBlockPos pos = (BlockPos.MutableBlockPos)mcBlockPos.getWrappedMcObject();
-		pos.setPos(relX,relY,relZ);
-		
-		return BlockStateWrapper.fromBlockState(this.chunk.getBlockState(pos), this.wrappedLevel, guess);
+		return BlockStateWrapper.fromStateId(this.snapshot.getStateId(relX, relY, relZ), this.wrappedLevel);
 	}
 	
 	/**
@@ -383,6 +375,10 @@ public class ChunkWrapper implements IChunkWrapper
 	
 	
 	
+	/** uses the hash computed when the chunk was snapshotted instead of re-reading the sampled blocks */
+	@Override
+	public int getBlockBiomeHashCode() { return this.snapshot.getChunkHash(); }
+	
 	@Override
 	public IMutableBlockPosWrapper getMutableBlockPosWrapper() { return MUTABLE_BLOCK_POS_WRAPPER_REF.get(); }
 	
@@ -441,6 +437,20 @@ public class ChunkWrapper implements IChunkWrapper
 	public void setBlockLightStorage(ChunkLightStorage lightStorage) { this.blockLightStorage = lightStorage; }
 	@Override
 	public void clearDhBlockLighting() { this.getBlockLightStorage().clear(); }
+	@Override
+	public void setAllDhBlockLights(byte[] lightArray, int startIndex, int xStride, int yStride, int zStride)
+	{
+		ChunkLightStorage lightStorage = this.getBlockLightStorage();
+		if (lightStorage.minY == this.getInclusiveMinBuildHeight() && lightStorage.maxY == this.getExclusiveMaxBuildHeight())
+		{
+			lightStorage.setAll(lightArray, startIndex, xStride, yStride, zStride);
+		}
+		else
+		{
+			// storages loaded from MC may cover a different height range
+			IChunkWrapper.super.setAllDhBlockLights(lightArray, startIndex, xStride, yStride, zStride);
+		}
+	}
 	
 	
 	@Override
@@ -457,6 +467,20 @@ public class ChunkWrapper implements IChunkWrapper
 	}
 	@Override
 	public void clearDhSkyLighting() { this.getSkyLightStorage().clear(); }
+	@Override
+	public void setAllDhSkyLights(byte[] lightArray, int startIndex, int xStride, int yStride, int zStride)
+	{
+		ChunkLightStorage lightStorage = this.getSkyLightStorage();
+		if (lightStorage.minY == this.getInclusiveMinBuildHeight() && lightStorage.maxY == this.getExclusiveMaxBuildHeight())
+		{
+			lightStorage.setAll(lightArray, startIndex, xStride, yStride, zStride);
+		}
+		else
+		{
+			// storages loaded from MC may cover a different height range
+			IChunkWrapper.super.setAllDhSkyLights(lightArray, startIndex, xStride, yStride, zStride);
+		}
+	}
 	
 	private ChunkLightStorage getSkyLightStorage()
 	{
@@ -484,13 +508,14 @@ public class ChunkWrapper implements IChunkWrapper
 			int baseX = chunk.getPos().x << 4;
 			int baseZ = chunk.getPos().z << 4;
 			
+			int minY = this.getMinNonEmptyHeight();
+			int maxY = this.getMaxNonEmptyHeight();
 			for (int x = 0; x < 16; x++) {
 				for (int z = 0; z < 16; z++) {
-					for (int y = 0; y < 256; y++) {
-						BlockPos pos = new BlockPos(baseX + x, y, baseZ + z);
-						IBlockState block = chunk.getBlockState(pos);
-						if (block.getLightValue() > 0) {
-							this.blockLightPosList.add(new DhBlockPos(pos.getX(), pos.getY(), pos.getZ()));
+					for (int y = minY; y < maxY; y++) {
+						IBlockStateWrapper block = this.getBlockState(x, y, z);
+						if (block.getLightEmission() > 0) {
+							this.blockLightPosList.add(new DhBlockPos(baseX + x, y, baseZ + z));
 						}
 					}
 				}
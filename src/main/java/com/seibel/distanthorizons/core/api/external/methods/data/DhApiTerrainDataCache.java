@@ -1,7 +1,7 @@
 package com.seibel.distanthorizons.core.api.external.methods.data;
 
 import com.seibel.distanthorizons.api.interfaces.data.IDhApiTerrainDataCache;
-import com.seibel.distanthorizons.core.dataObjects.fullData.sources.FullDataSourceV2;
+import com.seibel.distanthorizons.core.dataObjects.fullData.sources.LazyFullDataSourceV2;
 import it.unimi.dsi.fastutil.longs.Long2ReferenceOpenHashMap;
 import it.unimi.dsi.fastutil.longs.LongSet;
 import org.apache.logging.log4j.LogManager;
@@ -13,7 +13,7 @@ import java.lang.ref.SoftReference;
 public class DhApiTerrainDataCache implements IDhApiTerrainDataCache
 {
 	private final Object modificationLock = new Object();
-	private Long2ReferenceOpenHashMap<SoftReference<FullDataSourceV2>> posToFullDataRef = new Long2ReferenceOpenHashMap<>();
+	private Long2ReferenceOpenHashMap<SoftReference<LazyFullDataSourceV2>> posToFullDataRef = new Long2ReferenceOpenHashMap<>();
 	
 	private static final Logger LOGGER = LogManager.getLogger(DhApiTerrainDataCache.class.getSimpleName());
 	
@@ -23,7 +23,7 @@ public class DhApiTerrainDataCache implements IDhApiTerrainDataCache
 	// internal methods //
 	//==================//
 	
-	public void add(long pos, FullDataSourceV2 dataSource)
+	public void add(long pos, LazyFullDataSourceV2 dataSource)
 	{
 		synchronized (this.modificationLock)
 		{
@@ -32,11 +32,11 @@ public class DhApiTerrainDataCache implements IDhApiTerrainDataCache
 	}
 	
 	@Nullable
-	public FullDataSourceV2 get(long pos)
+	public LazyFullDataSourceV2 get(long pos)
 	{
 		synchronized (this.modificationLock)
 		{
-			SoftReference<FullDataSourceV2> ref = this.posToFullDataRef.get(pos);
+			SoftReference<LazyFullDataSourceV2> ref = this.posToFullDataRef.get(pos);
 			if (ref != null)
 			{
 				return ref.get();
@@ -62,10 +62,10 @@ public class DhApiTerrainDataCache implements IDhApiTerrainDataCache
 			LongSet keySet = this.posToFullDataRef.keySet();
 			for (long pos : keySet)
 			{
-				SoftReference<FullDataSourceV2> dataRef = this.posToFullDataRef.remove(pos);
+				SoftReference<LazyFullDataSourceV2> dataRef = this.posToFullDataRef.remove(pos);
 				if (dataRef != null)
 				{
-					FullDataSourceV2 dataSource = dataRef.get();
+					LazyFullDataSourceV2 dataSource = dataRef.get();
 					if (dataSource != null)
 					{
 						try
@@ -28,7 +28,7 @@ import com.seibel.distanthorizons.api.objects.data.DhApiTerrainDataPoint;
 import com.seibel.distanthorizons.api.objects.math.DhApiVec3i;
 import com.seibel.distanthorizons.core.api.internal.SharedApi;
 import com.seibel.distanthorizons.core.dataObjects.fullData.FullDataPointIdMap;
-import com.seibel.distanthorizons.core.dataObjects.fullData.sources.FullDataSourceV2;
+import com.seibel.distanthorizons.core.dataObjects.fullData.sources.LazyFullDataSourceV2;
 import com.seibel.distanthorizons.core.dependencyInjection.SingletonInjector;
 import com.seibel.distanthorizons.core.level.IDhLevel;
 import com.seibel.distanthorizons.core.pos.DhLodPos;
@@ -197,7 +197,7 @@ public class DhApiTerrainDataRepo implements IDhApiTerrainDataRepo
 		ILevelWrapper coreLevelWrapper = (ILevelWrapper) levelWrapper;
 		
 		
-		if (!(apiDataCache instanceof DhApiTerrainDataCache))
+		if (apiDataCache != null && !(apiDataCache instanceof DhApiTerrainDataCache))
 		{
 			// custom level wrappers aren't supported,
 			// the API user must get a level wrapper from our code somewhere
@@ -228,7 +228,7 @@ public class DhApiTerrainDataRepo implements IDhApiTerrainDataRepo
 		
 		try
 		{
-			FullDataSourceV2 dataSource = null;
+			LazyFullDataSourceV2 dataSource = null;
 			
 			// try using the cached data if possible
 			if (dataCache != null)
@@ -238,13 +238,18 @@ public class DhApiTerrainDataRepo implements IDhApiTerrainDataRepo
 			
 			if (dataSource == null)
 			{
-				// attempt to get/generate the data source for this section
-				dataSource = level.getFullDataProvider().getAsync(sectionPos).get();
+				// only the requested column is decoded,
+				// so there's no need to create a full data source
+				dataSource = level.getFullDataProvider().getLazyAsync(sectionPos).get();
 				if (dataSource == null)
 				{
 					return DhApiResult.createFail("Unable to find/generate any data at the " + DhSectionPos.class.getSimpleName() + " [" + DhSectionPos.toString(sectionPos) + "].");
 				}
-				dataCache.add(sectionPos, dataSource);
+				
+				if (dataCache != null)
+				{
+					dataCache.add(sectionPos, dataSource);
+				}
 			}
 			
 			
@@ -253,9 +258,26 @@ public class DhApiTerrainDataRepo implements IDhApiTerrainDataRepo
 			// get LOD data from data source //
 			//===============================//
 			
-			FullDataPointIdMap mapping = dataSource.mapping;
-			LongArrayList dataColumn = dataSource.get(relativePos.x, relativePos.z);
-			if (dataColumn != null)
+			LongArrayList dataColumn = new LongArrayList();
+			FullDataPointIdMap mapping = null;
+			try
+			{
+				dataSource.getColumn(relativePos.x, relativePos.z, dataColumn);
+				if (!dataColumn.isEmpty())
+				{
+					mapping = dataSource.getMapping(coreLevelWrapper);
+				}
+			}
+			finally
+			{
+				if (dataCache == null)
+				{
+					// nothing else will use this data source
+					dataSource.close();
+				}
+			}
+			
+			if (!dataColumn.isEmpty())
 			{
 				int dataColumnIndexCount = dataColumn.size();
 				DhApiTerrainDataPoint[] returnArray = new DhApiTerrainDataPoint[dataColumnIndexCount];
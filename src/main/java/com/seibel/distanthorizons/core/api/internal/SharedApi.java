@@ -34,6 +34,7 @@ import com.seibel.distanthorizons.core.pos.blockPos.DhBlockPos2D;
 import com.seibel.distanthorizons.core.render.renderer.DebugRenderer;
 import com.seibel.distanthorizons.core.sql.repo.AbstractDhRepo;
 import com.seibel.distanthorizons.core.util.LodUtil;
+import com.seibel.distanthorizons.core.util.TimerUtil;
 import com.seibel.distanthorizons.core.util.objects.Pair;
 import com.seibel.distanthorizons.core.util.threading.PriorityTaskPicker;
 import com.seibel.distanthorizons.core.util.threading.ThreadPoolUtil;
@@ -50,10 +51,14 @@ import org.jetbrains.annotations.Nullable;
 
 import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.PriorityQueue;
+import java.util.Timer;
 import java.util.concurrent.AbstractExecutorService;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.PriorityBlockingQueue;
 import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
 
 /** Contains code and variables used by both {@link ClientApi} and {@link ServerApi} */
 public class SharedApi
@@ -79,6 +84,18 @@ public class SharedApi
 	/** how many milliseconds must pass before an overloaded message can be sent in chat or the log */
 	private static final int MIN_MS_BETWEEN_OVERLOADED_LOG_MESSAGE = 30_000;
 	
+	/** 
+	 * Block changes (and the light updates they cause) wait this long before being processed,
+	 * any further changes to the same chunk during that time are merged into the queued update. <br>
+	 * This prevents TNT, farms, redstone, etc. from re-building the same chunks over and over.
+	 */
+	private static final int CHUNK_UPDATE_DEBOUNCE_MS = 500;
+	/** prevents chunks that are constantly changing from never being updated */
+	private static final int MAX_CHUNK_UPDATE_DEBOUNCE_MS = 2_000;
+	/** how often debounced updates are checked to see if they're ready */
+	private static final int DEBOUNCE_CHECK_INTERVAL_MS = 100;
+	private static final Timer DEBOUNCE_TIMER = TimerUtil.CreateTimer("Chunk Update Debouncer");
+	
 	
 	private static AbstractDhWorld currentWorld;
 	private static int lastWorldGenTickDelta = 0;
@@ -90,7 +107,16 @@ public class SharedApi
 	// constructor //
 	//=============//
 	
-	private SharedApi() { }
+	private SharedApi() 
+	{
+		DEBOUNCE_TIMER.scheduleAtFixedRate(TimerUtil.createTimerTask(() ->
+		{
+			if (UPDATE_POS_MANAGER.promoteDebouncedItems(System.currentTimeMillis()) > 0)
+			{
+				startChunkUpdateTasks();
+			}
+		}), DEBOUNCE_CHECK_INTERVAL_MS, DEBOUNCE_CHECK_INTERVAL_MS);
+	}
 	public static void init() { Initializer.init(); }
 	
 	
@@ -180,7 +206,7 @@ public class SharedApi
 	 */
 	public void clearQueuedChunkUpdates() { UPDATE_POS_MANAGER.clear(); }
 	
-	public int getQueuedChunkUpdateCount() { return UPDATE_POS_MANAGER.closestQueue.size(); }
+	public int getQueuedChunkUpdateCount() { return UPDATE_POS_MANAGER.size(); }
 	
 	
 	
@@ -243,13 +269,6 @@ public class SharedApi
 			}
 		}
 		
-		// shoudln't normally happen, but just in case
-		if (UPDATE_POS_MANAGER.contains(chunkWrapper.getChunkPos()))
-		{
-			// TODO this will prevent some LODs from updating across dimensions if multiple levels are loaded
-			return;
-		}
-		
 		
 		
 		//===============================//
@@ -260,13 +279,13 @@ public class SharedApi
 		{
 			// only update the center chunk
 			
-			queueChunkUpdate(chunkWrapper, null, dhLevel);
+			queueChunkUpdate(chunkWrapper, null, dhLevel, false, false);
 		}
 		else
 		{
 			// update the center with any existing neighbour chunks. 
 			// this is done so lighting changes are propagated correctly
-			queueChunkUpdate(chunkWrapper, getNeighbourChunkListForChunk(chunkWrapper,dhLevel), dhLevel);
+			queueChunkUpdate(chunkWrapper, getNeighbourChunkListForChunk(chunkWrapper,dhLevel), dhLevel, false, true);
 		}
 	}
 	private static ArrayList<IChunkWrapper> getNeighbourChunkListForChunk(IChunkWrapper chunkWrapper, IDhLevel dhLevel)
@@ -297,9 +316,8 @@ public class SharedApi
 		return neighbourChunkList;
 	}
 	
-	private static void queueChunkUpdate(IChunkWrapper chunkWrapper, @Nullable ArrayList<IChunkWrapper> neighbourChunkList, IDhLevel dhLevel) 
-	{ queueChunkUpdate(chunkWrapper, neighbourChunkList, dhLevel,false); }
-	private static void queueChunkUpdate(IChunkWrapper chunkWrapper, @Nullable ArrayList<IChunkWrapper> neighbourChunkList, IDhLevel dhLevel, boolean lightUpdateOnly)
+	/** @param debounce if true the update will wait for {@link SharedApi#CHUNK_UPDATE_DEBOUNCE_MS} so repeated changes can be merged */
+	private static void queueChunkUpdate(IChunkWrapper chunkWrapper, @Nullable ArrayList<IChunkWrapper> neighbourChunkList, IDhLevel dhLevel, boolean lightUpdateOnly, boolean debounce)
 	{
 		int maxUpdateSizeMultiplier;
 		if (MC_CLIENT != null && MC_CLIENT.playerExists())
@@ -319,46 +337,26 @@ public class SharedApi
 				* Config.Common.MultiThreading.numberOfThreads.get()
 				* maxUpdateSizeMultiplier;
 		
-		UpdateChunkData updateData = new UpdateChunkData(chunkWrapper, neighbourChunkList, dhLevel, lightUpdateOnly);
-		if(lightUpdateOnly)
+		long nowMs = System.currentTimeMillis();
+		UpdateChunkData updateData = new UpdateChunkData(chunkWrapper, neighbourChunkList, dhLevel, lightUpdateOnly, debounce, nowMs);
+		boolean added = UPDATE_POS_MANAGER.addOrMergeItem(new UpdateChunkKey(dhLevel, chunkWrapper.getChunkPos()), updateData, nowMs);
+		if (!added)
 		{
-			UPDATE_POS_MANAGER.removeItem(chunkWrapper.getChunkPos());
+			logQueueOverloadedIfNeeded();
 		}
-		int remainingCapacity = UPDATE_POS_MANAGER.addItem(chunkWrapper.getChunkPos(), updateData);
-		if (remainingCapacity <= 0)
+		
+		if (!debounce)
 		{
-			// limit how often an overloaded message can be sent
-			long msBetweenLastLog = System.currentTimeMillis() - lastOverloadedLogMessageMsTime;
-			if (msBetweenLastLog >= MIN_MS_BETWEEN_OVERLOADED_LOG_MESSAGE)
-			{
-				lastOverloadedLogMessageMsTime = System.currentTimeMillis();
-				
-				String message = "\u00A76" + "Distant Horizons overloaded, too many chunks queued for LOD processing. " + "\u00A7r" +
-						"\nThis may result in holes in your LODs. " +
-						"\nFix: move through the world slower, decrease your vanilla render distance, slow down your world pre-generator (IE Chunky), or increase the Distant Horizons' CPU thread counts. " +
-						"\nMax queue count ["+UPDATE_POS_MANAGER.maxSize+"] (["+ MAX_UPDATING_CHUNK_COUNT_PER_THREAD_AND_PLAYER +"] per thread+players).";
-				
-				boolean showWarningInChat = Config.Common.Logging.Warning.showUpdateQueueOverloadedChatWarning.get();
-				if (showWarningInChat)
-				{
-					ClientApi.INSTANCE.showChatMessageNextFrame(message);
-				}
-				
-				// Don't log warnings in singleplayer or in hosted LAN since it usually isn't a problem (and if it is it's easy to notice).
-				// Servers should always log since being overloaded is harder to notice. 
-				EWorldEnvironment environment = SharedApi.getEnvironment();
-				if (showWarningInChat || environment == EWorldEnvironment.SERVER_ONLY)
-				{
-					LOGGER.warn(message);
-				}
-			}
+			startChunkUpdateTasks();
 		}
-		
-		
-		
-		// queue updates up to the number of CPU cores allocated for the job
-		// (this prevents doing extra work queuing tasks that may not be necessary)
-		// and makes sure the chunks closest to the player are updated first
+	}
+	/** 
+	 * Queues update tasks up to the number of CPU cores allocated for the job.
+	 * This prevents doing extra work queuing tasks that may not be necessary
+	 * and makes sure the chunks closest to the player are updated first.
+	 */
+	private static void startChunkUpdateTasks()
+	{
 		PriorityTaskPicker.Executor executor = ThreadPoolUtil.getChunkToLodBuilderExecutor();
 		if (executor != null && executor.getQueueSize() < executor.getPoolSize())
 		{
@@ -372,6 +370,32 @@ public class SharedApi
 			}
 		}
 	}
+	private static void logQueueOverloadedIfNeeded()
+	{
+		// limit how often an overloaded message can be sent
+		long msBetweenLastLog = System.currentTimeMillis() - lastOverloadedLogMessageMsTime;
+		if (msBetweenLastLog < MIN_MS_BETWEEN_OVERLOADED_LOG_MESSAGE)
+		{
+			return;
+		}
+		lastOverloadedLogMessageMsTime = System.currentTimeMillis();
+		
+		String message = "Distant Horizons chunk update queue is full, " + UPDATE_POS_MANAGER.getBackPressureString() + ".";
+		
+		boolean showWarningInChat = Config.Common.Logging.Warning.showUpdateQueueOverloadedChatWarning.get();
+		if (showWarningInChat)
+		{
+			ClientApi.INSTANCE.showChatMessageNextFrame("\u00A76" + message + "\u00A7r");
+		}
+		
+		// Don't log warnings in singleplayer or in hosted LAN since it usually isn't a problem (and if it is it's easy to notice).
+		// Servers should always log since being overloaded is harder to notice. 
+		EWorldEnvironment environment = SharedApi.getEnvironment();
+		if (showWarningInChat || environment == EWorldEnvironment.SERVER_ONLY)
+		{
+			LOGGER.warn(message);
+		}
+	}
 	private static void processQueuedChunkUpdate()
 	{
 		//LOGGER.trace(chunkWrapper.getChunkPos() + " " + executor.getActiveCount() + " / " + executor.getQueue().size() + " - " + executor.getCompletedTaskCount());
@@ -382,9 +406,11 @@ public class SharedApi
 			return;
 		}
 		
+		IDhLevel dhLevel = updateData.dhLevel;
+		// merged updates keep the newest wrapper captured by the thread that fired the event,
+		// so there's no need to get the chunk again here
 		IChunkWrapper chunkWrapper = updateData.chunkWrapper;
 		@Nullable ArrayList<IChunkWrapper> neighbourChunkList = updateData.neighbourChunkList;
-		IDhLevel dhLevel = updateData.dhLevel;
 		
 		
 		try
@@ -429,7 +455,7 @@ public class SharedApi
 					IChunkWrapper newCenterChunk = dhLevel.getLevelWrapper().tryGetChunk(adjacentChunk.getChunkPos());
 					if (newCenterChunk != null)
 					{
-						queueChunkUpdate(newCenterChunk, getNeighbourChunkListForChunk(newCenterChunk, dhLevel), dhLevel, true);
+						queueChunkUpdate(newCenterChunk, getNeighbourChunkListForChunk(newCenterChunk, dhLevel), dhLevel, true, updateData.debounced);
 					}
 				}
 			}
@@ -448,7 +474,7 @@ public class SharedApi
 		{
 			// queue the next position if there are still positions to process
 			AbstractExecutorService executor = ThreadPoolUtil.getChunkToLodBuilderExecutor();
-			if (executor != null && !UPDATE_POS_MANAGER.updateDataByChunkPos.isEmpty())
+			if (executor != null && UPDATE_POS_MANAGER.hasReadyItems())
 			{
 				try
 				{
@@ -470,9 +496,9 @@ public class SharedApi
 	
 	public String getDebugMenuString()
 	{
-		String updatingCountStr = F3Screen.NUMBER_FORMAT.format(UPDATE_POS_MANAGER.closestQueue.size());
+		String updatingCountStr = F3Screen.NUMBER_FORMAT.format(UPDATE_POS_MANAGER.size());
 		String maxUpdateCountStr = F3Screen.NUMBER_FORMAT.format(UPDATE_POS_MANAGER.maxSize);
-		return "Queued chunk updates: "+updatingCountStr+" / "+maxUpdateCountStr;
+		return "Queued chunk updates: "+updatingCountStr+" / "+maxUpdateCountStr+", "+UPDATE_POS_MANAGER.getBackPressureString();
 	}
 	
 	
@@ -490,27 +516,88 @@ public class SharedApi
 		public IDhLevel dhLevel;
 		/** adjacent chunks will only update their light */
 		public boolean lightUpdateOnly;
+		/** if true the update waited so repeated changes could be merged into it */
+		public final boolean debounced;
+		
+		public final long firstQueuedMsTime;
+		/** the update won't be processed before this time */
+		public long readyMsTime;
 		
-		public UpdateChunkData(IChunkWrapper chunkWrapper, @Nullable ArrayList<IChunkWrapper> neighbourChunkList, IDhLevel dhLevel, boolean lightUpdateOnly)
+		public UpdateChunkData(IChunkWrapper chunkWrapper, @Nullable ArrayList<IChunkWrapper> neighbourChunkList, IDhLevel dhLevel, boolean lightUpdateOnly, boolean debounced, long nowMs)
 		{
 			this.chunkWrapper = chunkWrapper;
 			this.neighbourChunkList = neighbourChunkList;
 			this.dhLevel = dhLevel;
 			this.lightUpdateOnly = lightUpdateOnly;
+			this.debounced = debounced;
+			
+			this.firstQueuedMsTime = nowMs;
+			this.readyMsTime = debounced ? nowMs + CHUNK_UPDATE_DEBOUNCE_MS : nowMs;
 		}
 	}
 	
-	/** keeps track of which chunks need to be updated */
+	/** 
+	 * Identifies a queued update, 
+	 * the same position can be queued separately for each loaded level.
+	 */
+	private static final class UpdateChunkKey
+	{
+		public final IDhLevel dhLevel;
+		public final DhChunkPos pos;
+		
+		public UpdateChunkKey(IDhLevel dhLevel, DhChunkPos pos)
+		{
+			this.dhLevel = dhLevel;
+			this.pos = pos;
+		}
+		
+		@Override
+		public boolean equals(Object obj)
+		{
+			if (!(obj instanceof UpdateChunkKey))
+			{
+				return false;
+			}
+			
+			UpdateChunkKey other = (UpdateChunkKey) obj;
+			return this.dhLevel == other.dhLevel && this.pos.equals(other.pos);
+		}
+		
+		@Override
+		public int hashCode() { return (31 * System.identityHashCode(this.dhLevel)) + this.pos.hashCode(); }
+		
+	}
+	
+	/** 
+	 * Keeps track of which chunks need to be updated. <br>
+	 * Debounced updates are held separately until they're ready,
+	 * then they're processed closest to the center first.
+	 */
 	private static class UpdateChunkPosManager
 	{
-		private final PriorityBlockingQueue<DhChunkPos> closestQueue;
-		private final PriorityBlockingQueue<DhChunkPos> furthestQueue;
-		private final ConcurrentHashMap<DhChunkPos, UpdateChunkData> updateDataByChunkPos;
+		/** only contains keys that are ready to be processed */
+		private final PriorityQueue<UpdateChunkKey> closestQueue;
+		/** only contains keys that are ready to be processed */
+		private final PriorityQueue<UpdateChunkKey> furthestQueue;
+		/** keys still inside their debounce window */
+		private final HashSet<UpdateChunkKey> debouncingKeySet = new HashSet<>();
+		/** contains both ready and debouncing keys */
+		private final HashMap<UpdateChunkKey, UpdateChunkData> updateDataByKey = new HashMap<>();
+		/** how many levels have an update queued for each position, used by {@link UpdateChunkPosManager#contains} */
+		private final HashMap<DhChunkPos, Integer> queuedLevelCountByPos = new HashMap<>();
 		
 		private DhChunkPos center;
 		private int maxSize = 500;
 		
 		
+		// back pressure metrics //
+		
+		/** events that were merged into an already queued update instead of being queued separately */
+		private final AtomicLong mergedUpdateCount = new AtomicLong(0);
+		/** updates that were removed or never added because the queue was full */
+		private final AtomicLong droppedUpdateCount = new AtomicLong(0);
+		
+		
 		
 		//=============//
 		// constructor //
@@ -518,9 +605,8 @@ public class SharedApi
 		
 		public UpdateChunkPosManager()
 		{
-			this.closestQueue = new PriorityBlockingQueue<>(500, Comparator.comparingDouble(pos -> pos.squaredDistance(this.center)));
-			this.furthestQueue = new PriorityBlockingQueue<>(500, Comparator.comparingDouble(pos -> ((DhChunkPos)pos).squaredDistance(this.center)).reversed());
-			this.updateDataByChunkPos = new ConcurrentHashMap<>();
+			this.closestQueue = new PriorityQueue<>(500, Comparator.comparingDouble(key -> key.pos.squaredDistance(this.center)));
+			this.furthestQueue = new PriorityQueue<>(500, Comparator.comparingDouble(key -> ((UpdateChunkKey)key).pos.squaredDistance(this.center)).reversed());
 			// defaulting to 0,0 is fine since it'll be updated once we start adding items 
 			this.center = new DhChunkPos(0, 0);
 		}
@@ -531,53 +617,123 @@ public class SharedApi
 		// list/set methods //
 		//==================//
 		
-		public boolean contains(DhChunkPos pos) { return this.updateDataByChunkPos.containsKey(pos); }
+		/** @return true if the position is queued for any level */
+		public synchronized boolean contains(DhChunkPos pos) { return this.queuedLevelCountByPos.containsKey(pos); }
+		public synchronized int size() { return this.updateDataByKey.size(); }
+		public synchronized boolean hasReadyItems() { return !this.closestQueue.isEmpty(); }
 		
-		public void clear()
+		public synchronized void clear()
 		{
-			this.updateDataByChunkPos.clear();
+			this.updateDataByKey.clear();
+			this.queuedLevelCountByPos.clear();
+			this.debouncingKeySet.clear();
 			this.closestQueue.clear();
 			this.furthestQueue.clear();
 		}
 		
-		public void removeItem(DhChunkPos pos)
-		{
-			this.updateDataByChunkPos.remove(pos);
-			this.closestQueue.remove(pos);
-			this.furthestQueue.remove(pos);
-		}
-		
 		/**
 		 * Adds an item to the queue of chunks that need to be updated.
-		 * If there are no more slots, replaces the item furthest from the center.
+		 * If the position is already queued for the same level the new update is merged into the existing one.
+		 * If there are no more slots, replaces the ready item furthest from the center.
 		 *
-		 * @return The number of remaining slots available in the queue.
+		 * @return false if the queue was full
 		 */
-		public int addItem(DhChunkPos pos, UpdateChunkData updateData)
+		public synchronized boolean addOrMergeItem(UpdateChunkKey key, UpdateChunkData updateData, long nowMs)
 		{
-			int remainingSlots = this.maxSize - this.updateDataByChunkPos.size();
-			if (this.updateDataByChunkPos.containsKey(pos))
+			UpdateChunkData existingData = this.updateDataByKey.get(key);
+			if (existingData != null)
 			{
-				// Chunk is already present in queue, no need to insert
-				return remainingSlots;
+				this.mergeInto(key, existingData, updateData);
+				this.mergedUpdateCount.incrementAndGet();
+				return true;
 			}
 			
-			// If no slots are left, get one by removing the item furthest from the center
-			if (remainingSlots <= 0)
+			
+			boolean queueFull = (this.updateDataByKey.size() >= this.maxSize);
+			if (queueFull)
 			{
-				DhChunkPos furthest = this.furthestQueue.poll();
-				if (furthest != null)
+				// make room by removing the item furthest from the center
+				UpdateChunkKey furthest = this.furthestQueue.poll();
+				if (furthest == null)
 				{
-					this.closestQueue.remove(furthest);
-					this.updateDataByChunkPos.remove(furthest);
+					// everything is still debouncing, there's nothing that can be replaced 
+					this.droppedUpdateCount.incrementAndGet();
+					return false;
 				}
+				
+				this.closestQueue.remove(furthest);
+				this.removeData(furthest);
+				this.droppedUpdateCount.incrementAndGet();
 			}
 			
-			this.updateDataByChunkPos.put(pos, updateData);
-			this.closestQueue.add(pos);
-			this.furthestQueue.add(pos);
+			this.updateDataByKey.put(key, updateData);
+			this.queuedLevelCountByPos.merge(key.pos, 1, Integer::sum);
+			if (updateData.readyMsTime > nowMs)
+			{
+				this.debouncingKeySet.add(key);
+			}
+			else
+			{
+				this.closestQueue.add(key);
+				this.furthestQueue.add(key);
+			}
 			
-			return remainingSlots;
+			return !queueFull;
+		}
+		/** doesn't touch the ready queues */
+		@Nullable
+		private UpdateChunkData removeData(UpdateChunkKey key)
+		{
+			UpdateChunkData updateData = this.updateDataByKey.remove(key);
+			if (updateData != null)
+			{
+				this.queuedLevelCountByPos.computeIfPresent(key.pos, (pos, count) -> (count > 1) ? count - 1 : null);
+			}
+			return updateData;
+		}
+		private void mergeInto(UpdateChunkKey key, UpdateChunkData existingData, UpdateChunkData newData)
+		{
+			// the newest wrapper has the most up-to-date blocks
+			existingData.chunkWrapper = newData.chunkWrapper;
+			if (newData.neighbourChunkList != null)
+			{
+				existingData.neighbourChunkList = newData.neighbourChunkList;
+			}
+			// neighbour light updates should only happen if every merged update was light only
+			existingData.lightUpdateOnly &= newData.lightUpdateOnly;
+			
+			// each change restarts the debounce window, up to the max 
+			if (this.debouncingKeySet.contains(key))
+			{
+				existingData.readyMsTime = Math.min(
+						Math.max(existingData.readyMsTime, newData.readyMsTime),
+						existingData.firstQueuedMsTime + MAX_CHUNK_UPDATE_DEBOUNCE_MS);
+			}
+		}
+		
+		/** @return how many items were moved into the ready queues */
+		public synchronized int promoteDebouncedItems(long nowMs)
+		{
+			int promotedCount = 0;
+			Iterator<UpdateChunkKey> iterator = this.debouncingKeySet.iterator();
+			while (iterator.hasNext())
+			{
+				UpdateChunkKey key = iterator.next();
+				UpdateChunkData updateData = this.updateDataByKey.get(key);
+				if (updateData == null)
+				{
+					// shouldn't happen, but just in case
+					iterator.remove();
+				}
+				else if (updateData.readyMsTime <= nowMs)
+				{
+					iterator.remove();
+					this.closestQueue.add(key);
+					this.furthestQueue.add(key);
+					promotedCount++;
+				}
+			}
+			return promotedCount;
 		}
 		
 		
@@ -586,7 +742,7 @@ public class SharedApi
 		// position methods //
 		//==================//
 		
-		public void setCenter(DhChunkPos newCenter)
+		public synchronized void setCenter(DhChunkPos newCenter)
 		{
 			// if the rebuild time takes too long 
 			// (in James' testing a queue of 500 items only took around 0.1 milliseconds)
@@ -601,28 +757,40 @@ public class SharedApi
 			// rebuild the priority queues to match the new center
 			this.closestQueue.clear();
 			this.furthestQueue.clear();
-			for (DhChunkPos pos : this.updateDataByChunkPos.keySet())
+			for (UpdateChunkKey key : this.updateDataByKey.keySet())
 			{
-				this.closestQueue.add(pos);
-				this.furthestQueue.add(pos);
+				if (!this.debouncingKeySet.contains(key))
+				{
+					this.closestQueue.add(key);
+					this.furthestQueue.add(key);
+				}
 			}
 		}
 		
-		public UpdateChunkData popClosest()
+		@Nullable
+		public synchronized UpdateChunkData popClosest()
 		{
-			if (this.closestQueue.isEmpty())
-			{
-				return null;
-			}
-			
-			DhChunkPos closest = this.closestQueue.poll();
+			UpdateChunkKey closest = this.closestQueue.poll();
 			if (closest == null)
 			{
 				return null;
 			}
 			
 			this.furthestQueue.remove(closest);
-			return this.updateDataByChunkPos.remove(closest);
+			return this.removeData(closest);
+		}
+		
+		
+		
+		//=========//
+		// metrics //
+		//=========//
+		
+		public synchronized String getBackPressureString()
+		{
+			return "debouncing: " + F3Screen.NUMBER_FORMAT.format(this.debouncingKeySet.size())
+					+ ", merged: " + F3Screen.NUMBER_FORMAT.format(this.mergedUpdateCount.get())
+					+ ", dropped: " + F3Screen.NUMBER_FORMAT.format(this.droppedUpdateCount.get());
 		}
 		
 	}
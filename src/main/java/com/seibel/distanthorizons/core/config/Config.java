@@ -1371,6 +1371,32 @@ public class Config
 							+ "Expected Compression Ratio: 0.14\n"
 							+ "Estimated average DTO read speed: 11.89 ms\n"
 							+ "Estimated average DTO write speed: 192.01 ms\n"
+							+ "\n"
+							+ EDhApiDataCompressionMode.ZSTD + " \n"
+							+ "Fast reading and good compression, \n"
+							+ "see [zstdCompressionLevel] and [zstdUseTrainedDictionary]. \n"
+							+ "")
+					.build();
+			
+			public static ConfigEntry<Integer> zstdCompressionLevel = new ConfigEntry.Builder<Integer>()
+					.setMinDefaultMax(1, 6, 19)
+					.comment(""
+							+ "What compression level should be used when [dataCompression] is [" + EDhApiDataCompressionMode.ZSTD + "]? \n"
+							+ "Higher levels compress better but take longer to write, \n"
+							+ "read speed is roughly the same for every level. \n"
+							+ "")
+					.build();
+			
+			public static ConfigEntry<Boolean> zstdUseTrainedDictionary = new ConfigEntry.Builder<Boolean>()
+					.set(true)
+					.comment(""
+							+ "If true and [dataCompression] is [" + EDhApiDataCompressionMode.ZSTD + "] \n"
+							+ "a compression dictionary will be trained from a sample of \n"
+							+ "the level's existing LOD data and used when writing new data. \n"
+							+ "This noticeably improves compression for small LODs. \n"
+							+ "\n"
+							+ "Dictionaries are stored in the level's database, \n"
+							+ "data sent to other players never uses a dictionary. \n"
 							+ "")
 					.build();
 			
@@ -1460,6 +1486,64 @@ public class Config
 								+ "")
 						.build();
 				
+				public static ConfigEntry<EDhApiFullDataStorageMode> fullDataStorageMode = new ConfigEntry.Builder<EDhApiFullDataStorageMode>()
+						.set(EDhApiFullDataStorageMode.SQLITE)
+						.comment(""
+								+ "Where should LOD data be stored? \n"
+								+ "This setting is only read when a level is loaded. \n"
+								+ "\n"
+								+ EDhApiFullDataStorageMode.SQLITE + " \n"
+								+ "LOD data is stored in the level's database. \n"
+								+ "\n"
+								+ EDhApiFullDataStorageMode.REGION_FILES + " \n"
+								+ "LOD data is stored in memory mapped region files, \n"
+								+ "which can load faster for very large pre-generated worlds. \n"
+								+ "\n"
+								+ "Note: data isn't automatically moved between storage modes, \n"
+								+ "existing data can be converted with the standalone jar's \n"
+								+ "[--convert-storage] command. \n"
+								+ "")
+						.build();
+				
+				public static ConfigEntry<Integer> decodedDataSourceCacheSizeInMb = new ConfigEntry.Builder<Integer>()
+						.setMinDefaultMax(0, 64, 4096)
+						.comment(""
+								+ "How much memory in MB can be used to keep recently updated \n"
+								+ "LOD data decompressed in memory? \n"
+								+ "This speeds up propagating LOD updates to lower detail levels, \n"
+								+ "since the same low detail LODs are updated many times in a row. \n"
+								+ "\n"
+								+ "0 disables the cache. \n"
+								+ "")
+						.build();
+				
+				public static ConfigEntry<Integer> offHeapArenaSizeInMb = new ConfigEntry.Builder<Integer>()
+						.setMinDefaultMax(0, 0, 16384)
+						.comment(""
+								+ "How much memory in MB can be allocated outside of Java's heap \n"
+								+ "to store the decompressed LOD data cache? \n"
+								+ "Moving this data off heap reduces garbage collector pauses \n"
+								+ "when using large render distances. \n"
+								+ "\n"
+								+ "This memory is in addition to Java's max heap size (-Xmx). \n"
+								+ "If the limit is reached the cache will use the heap instead. \n"
+								+ "0 disables off heap storage. \n"
+								+ "")
+						.build();
+				
+				public static ConfigEntry<Integer> snapshotCacheSizeInMb = new ConfigEntry.Builder<Integer>()
+						.setMinDefaultMax(0, 32, 4096)
+						.comment(""
+								+ "How much memory in MB can be used to keep a read-only copy \n"
+								+ "of recently updated LOD data? \n"
+								+ "This lets rendering and multiplayer read LODs that are \n"
+								+ "actively being updated without loading them again. \n"
+								+ "\n"
+								+ "Changes take effect after re-joining the world. \n"
+								+ "0 disables the snapshots. \n"
+								+ "")
+						.build();
+				
 			}
 			
 		}
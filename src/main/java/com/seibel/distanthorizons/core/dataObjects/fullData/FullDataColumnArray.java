@@ -0,0 +1,217 @@
+/*
+ *    This file is part of the Distant Horizons mod
+ *    licensed under the GNU LGPL v3 License.
+ *
+ *    Copyright (C) 2020 James Seibel
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, version 3.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public License
+ *    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.seibel.distanthorizons.core.dataObjects.fullData;
+
+import com.seibel.distanthorizons.core.dataObjects.fullData.sources.FullDataSourceV2;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+
+import java.util.Arrays;
+
+/**
+ * Stores every data point in a {@link FullDataSourceV2} in a single contiguous array. <br>
+ * Column {@code i} is stored in {@code data[columnOffsets[i]]} (inclusive)
+ * to {@code data[columnOffsets[i + 1]]} (exclusive),
+ * and each column uses the same top to bottom order as {@link FullDataSourceV2#dataPoints}. <br><br>
+ *
+ * Used when encoding and decoding data sources so each pass over the data points
+ * walks a single array instead of jumping between 4,096 separate lists,
+ * and so columns can be copied to/from the data source's lists with a single array copy. <br><br>
+ *
+ * Not thread safe.
+ *
+ * @see FullDataSourceV2#dataPoints
+ */
+public class FullDataColumnArray
+{
+	public static final int COLUMN_COUNT = FullDataSourceV2.WIDTH * FullDataSourceV2.WIDTH;
+	
+	private long[] data;
+	/** has one extra entry so the last column's end can be found the same way as every other column */
+	private final int[] columnOffsets = new int[COLUMN_COUNT + 1];
+	
+	
+	
+	//=============//
+	// constructor //
+	//=============//
+	
+	public FullDataColumnArray() { this(0); }
+	public FullDataColumnArray(int initialDataPointCapacity) { this.data = new long[initialDataPointCapacity]; }
+	
+	
+	
+	//=========//
+	// getters //
+	//=========//
+	
+	public int getColumnStart(int index) { return this.columnOffsets[index]; }
+	public int getColumnLength(int index) { return this.columnOffsets[index + 1] - this.columnOffsets[index]; }
+	public int getDataPointCount() { return this.columnOffsets[COLUMN_COUNT]; }
+	
+	public long get(int index, int y) { return this.data[this.columnOffsets[index] + y]; }
+	
+	/** 
+	 * Returns the backing array, which may be longer than {@link #getDataPointCount()}. <br>
+	 * Should only be used for bulk reads/writes, the array will be replaced if the column lengths grow.
+	 */
+	public long[] getData() { return this.data; }
+	
+	public long getEstimatedMemoryUseInBytes() { return (this.data.length * (long) Long.BYTES) + (this.columnOffsets.length * (long) Integer.BYTES); }
+	
+	
+	
+	//=========//
+	// setters //
+	//=========//
+	
+	public void set(int index, int y, long dataPoint) { this.data[this.columnOffsets[index] + y] = dataPoint; }
+	
+	/** removes every data point */
+	public void clear() { Arrays.fill(this.columnOffsets, 0); }
+	
+	/** 
+	 * Replaces every column's length, the data point values are undefined afterward
+	 * and should be populated with {@link #set(int, int, long)} or {@link #getData()}.
+	 * 
+	 * @throws IllegalArgumentException if a length is negative
+	 */
+	public void setColumnLengths(int[] columnLengths) throws IllegalArgumentException
+	{
+		if (columnLengths.length != COLUMN_COUNT)
+		{
+			throw new IllegalArgumentException("Expected ["+COLUMN_COUNT+"] column lengths, received ["+columnLengths.length+"].");
+		}
+		
+		int offset = 0;
+		for (int i = 0; i < COLUMN_COUNT; i++)
+		{
+			if (columnLengths[i] < 0)
+			{
+				throw new IllegalArgumentException("Column ["+i+"] length ["+columnLengths[i]+"] can't be negative.");
+			}
+			
+			this.columnOffsets[i] = offset;
+			offset += columnLengths[i];
+		}
+		this.columnOffsets[COLUMN_COUNT] = offset;
+		
+		this.ensureCapacity(offset);
+	}
+	
+	/** 
+	 * Replaces a single column, shifting every column after it if the length changed. <br>
+	 * Replacing many columns this way is slower than building the whole array with {@link #copyFrom(LongArrayList[])}.
+	 */
+	public void setColumn(int index, long[] columnData, int columnDataOffset, int columnLength)
+	{
+		int start = this.columnOffsets[index];
+		int oldEnd = this.columnOffsets[index + 1];
+		int lengthChange = columnLength - (oldEnd - start);
+		if (lengthChange != 0)
+		{
+			int dataPointCount = this.getDataPointCount();
+			this.ensureCapacity(dataPointCount + lengthChange);
+			System.arraycopy(this.data, oldEnd, this.data, oldEnd + lengthChange, dataPointCount - oldEnd);
+			
+			for (int i = index + 1; i <= COLUMN_COUNT; i++)
+			{
+				this.columnOffsets[i] += lengthChange;
+			}
+		}
+		
+		System.arraycopy(columnData, columnDataOffset, this.data, start, columnLength);
+	}
+	
+	
+	
+	//==============//
+	// list copying //
+	//==============//
+	
+	/** 
+	 * Replaces this array's contents with the given columns. <br>
+	 * Null columns are treated as empty.
+	 */
+	public void copyFrom(LongArrayList[] columns)
+	{
+		if (columns.length != COLUMN_COUNT)
+		{
+			throw new IllegalArgumentException("Expected ["+COLUMN_COUNT+"] columns, received ["+columns.length+"].");
+		}
+		
+		int offset = 0;
+		for (int i = 0; i < COLUMN_COUNT; i++)
+		{
+			this.columnOffsets[i] = offset;
+			offset += (columns[i] != null) ? columns[i].size() : 0;
+		}
+		this.columnOffsets[COLUMN_COUNT] = offset;
+		
+		this.ensureCapacity(offset);
+		for (int i = 0; i < COLUMN_COUNT; i++)
+		{
+			LongArrayList column = columns[i];
+			if (column != null)
+			{
+				System.arraycopy(column.elements(), 0, this.data, this.columnOffsets[i], column.size());
+			}
+		}
+	}
+	
+	/** Replaces the contents of each of the given columns, null columns are skipped. */
+	public void copyTo(LongArrayList[] columns)
+	{
+		if (columns.length != COLUMN_COUNT)
+		{
+			throw new IllegalArgumentException("Expected ["+COLUMN_COUNT+"] columns, received ["+columns.length+"].");
+		}
+		
+		for (int i = 0; i < COLUMN_COUNT; i++)
+		{
+			if (columns[i] != null)
+			{
+				this.copyColumnTo(i, columns[i]);
+			}
+		}
+	}
+	
+	/** Replaces the contents of the given list with the given column. */
+	public void copyColumnTo(int index, LongArrayList column)
+	{
+		column.clear();
+		column.addElements(0, this.data, this.columnOffsets[index], this.getColumnLength(index));
+	}
+	
+	
+	
+	//================//
+	// helper methods //
+	//================//
+	
+	private void ensureCapacity(int dataPointCount)
+	{
+		if (this.data.length < dataPointCount)
+		{
+			// grow a bit more than necessary so slightly larger data sources don't require another copy 
+			this.data = Arrays.copyOf(this.data, Math.max(dataPointCount, this.data.length + (this.data.length >> 1)));
+		}
+	}
+	
+}
@@ -21,6 +21,7 @@ package com.seibel.distanthorizons.core.dataObjects.fullData;
 
 import com.seibel.distanthorizons.core.dependencyInjection.SingletonInjector;
 import com.seibel.distanthorizons.core.pos.DhSectionPos;
+import com.seibel.distanthorizons.core.sql.FullDataMappingDictionaryCache;
 import com.seibel.distanthorizons.core.util.LodUtil;
 import com.seibel.distanthorizons.core.util.objects.DataCorruptedException;
 import com.seibel.distanthorizons.core.util.objects.dataStreams.DhDataInputStream;
@@ -29,26 +30,26 @@ import com.seibel.distanthorizons.core.wrapperInterfaces.IWrapperFactory;
 import com.seibel.distanthorizons.core.wrapperInterfaces.block.IBlockStateWrapper;
 import com.seibel.distanthorizons.core.wrapperInterfaces.world.IBiomeWrapper;
 import com.seibel.distanthorizons.core.wrapperInterfaces.world.ILevelWrapper;
-import it.unimi.dsi.fastutil.ints.Int2ReferenceOpenHashMap;
+import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.jetbrains.annotations.Nullable;
 
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * WARNING: This is not THREAD-SAFE! <br><br>
  * 
  * Used to map a numerical IDs to a Biome/BlockState pair. <br><br>
  * 
- * TODO the serializing of this map might be really big
- *  since it stringifies every block and biome name, which is quite bulky.
- *  It might be worth while to have a biome and block ID that then both get mapped
- *  to the data point ID to reduce file size.
- *  And/or it would be good to dynamically remove IDs that aren't currently in use.  
+ * When saved to a database this map is serialized using the IDs from that database's
+ * {@link FullDataMappingDictionaryCache} instead of stringifying every block and biome name. <br><br>
+ * 
+ * TODO it would be good to dynamically remove IDs that aren't currently in use.  
  * 
  * @author Leetom
  */
@@ -70,7 +71,11 @@ public class FullDataPointIdMap
 	
 	/** The index should be the same as the Entry's ID */
 	private final ArrayList<Entry> entryList = new ArrayList<>();
-	private final ConcurrentHashMap<Entry, Integer> idMap = new ConcurrentHashMap<>();
+	/** 
+	 * {@link Entry#paletteId} -> this map's ID <br>
+	 * Keyed by the palette ID so lookups don't need to hash or compare the Entry itself.
+	 */
+	private final Int2IntOpenHashMap idByPaletteId = createIdByPaletteIdMap();
 	
 	private int cachedHashCode = 0;
 	
@@ -82,6 +87,13 @@ public class FullDataPointIdMap
 	
 	public FullDataPointIdMap(long pos) { this.pos = pos; }
 	
+	private static Int2IntOpenHashMap createIdByPaletteIdMap()
+	{
+		Int2IntOpenHashMap map = new Int2IntOpenHashMap();
+		map.defaultReturnValue(-1);
+		return map;
+	}
+	
 	
 	
 	//=========//
@@ -92,6 +104,8 @@ public class FullDataPointIdMap
 	public IBiomeWrapper getBiomeWrapper(int id) throws IndexOutOfBoundsException { return this.getEntry(id).biome; }
 	/** @see FullDataPointIdMap#getEntry(int) */
 	public IBlockStateWrapper getBlockStateWrapper(int id) throws IndexOutOfBoundsException { return this.getEntry(id).blockState; }
+	/** @see FullDataPointIdMap#getEntry(int) */
+	public String getSerialString(int id) throws IndexOutOfBoundsException { return this.getEntry(id).serialize(); }
 	/** @throws IndexOutOfBoundsException if the given ID isn't in the {@link FullDataPointIdMap#entryList} */
 	private Entry getEntry(int id) throws IndexOutOfBoundsException
 	{
@@ -131,31 +145,22 @@ public class FullDataPointIdMap
 	private int addIfNotPresentAndGetId(Entry biomeBlockStateEntry)
 	{
 		// try getting the existing ID
-		Integer nullableId = this.idMap.get(biomeBlockStateEntry);
-		if (nullableId != null)
+		int id = this.idByPaletteId.get(biomeBlockStateEntry.paletteId);
+		if (id != -1)
 		{
-			return nullableId;
+			return id;
 		}
 		
 		
-		// create the new ID
-		return this.idMap.compute(biomeBlockStateEntry, (Entry newBiomeBlockStateEntry, Integer currentId) -> 
-		{
-			if (currentId != null)
-			{
-				return currentId;
-			}
-			
-			
-			// Add the new ID
-			currentId = this.entryList.size();
-			this.entryList.add(biomeBlockStateEntry);
-			
-			// invalidate the cached hash code
-			this.cachedHashCode = 0;
-			
-			return currentId;
-		});
+		// Add the new ID
+		id = this.entryList.size();
+		this.entryList.add(biomeBlockStateEntry);
+		this.idByPaletteId.put(biomeBlockStateEntry.paletteId, id);
+		
+		// invalidate the cached hash code
+		this.cachedHashCode = 0;
+		
+		return id;
 	}
 	
 	/**
@@ -181,7 +186,7 @@ public class FullDataPointIdMap
 	{
 		int id = this.entryList.size();
 		this.entryList.add(biomeBlockStateEntry);
-		this.idMap.put(biomeBlockStateEntry, id);
+		this.idByPaletteId.put(biomeBlockStateEntry.paletteId, id);
 		
 		// invalidate the cached hash code
 		this.cachedHashCode = 0;
@@ -194,20 +199,25 @@ public class FullDataPointIdMap
 	 * same data source multiple times.
 	 * Doing so may cause indexOutOfBounds issues.
 	 *
-	 * @return an array of each added entry's ID in this map in order
+	 * @return an array of each added entry's ID in this map in order,
+	 *          or null if every entry kept the same ID, in which case nothing needs to be remapped
+	 *          (IE when merging into an empty map, or into a map that started as a copy of the input)
 	 */
+	@Nullable
 	public int[] mergeAndReturnRemappedEntityIds(FullDataPointIdMap inputMap)
 	{
 		ArrayList<Entry> entriesToMerge = inputMap.entryList;
 		int[] remappedEntryIds = new int[entriesToMerge.size()];
+		boolean idsChanged = false;
 		for (int i = 0; i < entriesToMerge.size(); i++)
 		{
 			Entry entity = entriesToMerge.get(i);
 			int id = this.addIfNotPresentAndGetId(entity);
 			remappedEntryIds[i] = id;
+			idsChanged |= (id != i);
 		}
 		
-		return remappedEntryIds;
+		return idsChanged ? remappedEntryIds : null;
 	}
 	
 	/** Should only be used if this map is going to be reused, otherwise bad things will happen. */
@@ -215,7 +225,7 @@ public class FullDataPointIdMap
 	{
 		this.pos = pos;
 		this.entryList.clear();
-		this.idMap.clear();
+		this.idByPaletteId.clear();
 		this.cachedHashCode = 0;
 	}
 	
@@ -253,6 +263,40 @@ public class FullDataPointIdMap
 		}
 	}
 	
+	/**
+	 * Serializes each entry as its ID in the given dictionary,
+	 * any entries missing from the dictionary are added first. <br>
+	 * Nothing is written if the dictionary IDs couldn't be created.
+	 * 
+	 * @return false if the dictionary IDs couldn't be created
+	 */
+	public boolean serialize(DhDataOutputStream outputStream, FullDataMappingDictionaryCache dictionary) throws IOException
+	{
+		String[] serialStrings = new String[this.entryList.size()];
+		for (int i = 0; i < serialStrings.length; i++)
+		{
+			serialStrings[i] = this.entryList.get(i).serialize();
+		}
+		
+		int[] ids = dictionary.getOrCreateIds(serialStrings);
+		if (ids == null)
+		{
+			return false;
+		}
+		
+		writeDictionaryIds(outputStream, ids);
+		return true;
+	}
+	/** The IDs are written as varints since most levels only have a few thousand entries. */
+	public static void writeDictionaryIds(DhDataOutputStream outputStream, int[] ids) throws IOException
+	{
+		outputStream.writeVarInt(ids.length);
+		for (int id : ids)
+		{
+			outputStream.writeVarInt(id);
+		}
+	}
+	
 	/** Creates a new IdBiomeBlockStateMap from the given UTF formatted stream */
 	public static FullDataPointIdMap deserialize(DhDataInputStream inputStream, long pos, ILevelWrapper levelWrapper) throws IOException, InterruptedException, DataCorruptedException
 	{
@@ -303,6 +347,51 @@ public class FullDataPointIdMap
 		return newMap;
 	}
 	
+	/** Creates a new IdBiomeBlockStateMap from a stream written by {@link FullDataPointIdMap#serialize(DhDataOutputStream, FullDataMappingDictionaryCache)} */
+	public static FullDataPointIdMap deserialize(DhDataInputStream inputStream, long pos, ILevelWrapper levelWrapper, FullDataMappingDictionaryCache dictionary) throws IOException, InterruptedException, DataCorruptedException
+	{
+		int entityCount = inputStream.readVarInt();
+		if (entityCount < 0)
+		{
+			throw new DataCorruptedException("FullDataPointIdMap deserialize entry count should have a number greater than or equal to 0, returned value ["+entityCount+"].");
+		}
+		
+		// necessary to prevent issues with deserializing objects after the level has been closed
+		if (Thread.interrupted())
+		{
+			throw new InterruptedException(FullDataPointIdMap.class.getSimpleName() + " task interrupted.");
+		}
+		
+		FullDataPointIdMap newMap = new FullDataPointIdMap(pos);
+		for (int i = 0; i < entityCount; i++)
+		{
+			newMap.entryList.add(dictionary.getEntry(inputStream.readVarInt(), levelWrapper));
+		}
+		
+		return newMap;
+	}
+	
+	/** 
+	 * Reads a stream written by {@link FullDataPointIdMap#serialize(DhDataOutputStream)} 
+	 * without resolving any of the entries. <br>
+	 * Used to convert existing data to use a {@link FullDataMappingDictionaryCache}.
+	 */
+	public static String[] deserializeSerialStrings(DhDataInputStream inputStream) throws IOException, DataCorruptedException
+	{
+		int entityCount = inputStream.readInt();
+		if (entityCount < 0)
+		{
+			throw new DataCorruptedException("FullDataPointIdMap deserialize entry count should have a number greater than or equal to 0, returned value ["+entityCount+"].");
+		}
+		
+		String[] serialStrings = new String[entityCount];
+		for (int i = 0; i < entityCount; i++)
+		{
+			serialStrings[i] = inputStream.readUTF();
+		}
+		return serialStrings;
+	}
+	
 	
 	
 	//===========//
@@ -349,16 +438,23 @@ public class FullDataPointIdMap
 	// helper class //
 	//==============//
 	
-	private static final class Entry
+	/** A single Biome/BlockState pair, instances are pooled so each pair only exists once. */
+	public static final class Entry
 	{
 		private static final IWrapperFactory WRAPPER_FACTORY = SingletonInjector.INSTANCE.get(IWrapperFactory.class);
 		
+		/** lock free for existing entries, new entries are only created once per pair */
 		private static final ConcurrentHashMap<Integer, Entry> ENTRY_BY_HASH = new ConcurrentHashMap<>();
-		/** lock is necessary since {@link Int2ReferenceOpenHashMap} isn't concurrent and concurrent threads can cause infinite loops */
-		private static final ReentrantReadWriteLock ENTRY_POOL_LOCK = new ReentrantReadWriteLock();
+		private static final AtomicInteger NEXT_PALETTE_ID = new AtomicInteger(0);
 		
 		public final IBiomeWrapper biome;
 		public final IBlockStateWrapper blockState;
+		/** 
+		 * Assigned once when the pair is first seen and never reused,
+		 * this allows {@link FullDataPointIdMap}'s to look up entries by int instead of hashing the Entry. <br>
+		 * Only valid while the game is running, this should never be saved.
+		 */
+		public final int paletteId;
 		
 		private Integer hashCode = null;
 		private String serialString = null;
@@ -395,6 +491,7 @@ public class FullDataPointIdMap
 		{
 			this.biome = biome;
 			this.blockState = blockState;
+			this.paletteId = NEXT_PALETTE_ID.getAndIncrement();
 		}
 		
 		
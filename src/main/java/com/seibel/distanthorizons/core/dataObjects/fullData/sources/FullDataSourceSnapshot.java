@@ -0,0 +1,171 @@
+/*
+ *    This file is part of the Distant Horizons mod
+ *    licensed under the GNU LGPL v3 License.
+ *
+ *    Copyright (C) 2020 James Seibel
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, version 3.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public License
+ *    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.seibel.distanthorizons.core.dataObjects.fullData.sources;
+
+import com.seibel.distanthorizons.core.dataObjects.fullData.FullDataPointIdMap;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.BitSet;
+
+/**
+ * An immutable copy of a {@link FullDataSourceV2} as it was when it was last saved. <br>
+ * Snapshots can be shared between any number of threads without locking,
+ * when the data source changes a new snapshot is published instead of modifying this one. <br><br>
+ * 
+ * Columns that didn't change between versions are shared with the previous snapshot,
+ * so publishing a new version only has to copy the changed columns. <br>
+ * The applyToParent/applyToChildren flags aren't included since they can change without a new version,
+ * data sources created from a snapshot leave them null so the stored flags won't be overwritten.
+ * 
+ * @see FullDataSourceV2
+ */
+public class FullDataSourceSnapshot
+{
+	private static final int COLUMN_COUNT = FullDataSourceV2.WIDTH * FullDataSourceV2.WIDTH;
+	private static final long[] EMPTY_COLUMN = new long[0];
+	
+	private final long pos;
+	/** the {@link FullDataSourceV2#lastModifiedUnixDateTime} this snapshot was created with */
+	public final long version;
+	
+	/** never modified after being created, may be shared with other snapshots */
+	private final FullDataPointIdMap mapping;
+	/** each column may be shared with other snapshots, so they must never be modified */
+	private final long[][] columns;
+	private final byte[] columnGenerationSteps;
+	private final byte[] columnWorldCompressionMode;
+	
+	private final boolean isEmpty;
+	private final long createdUnixDateTime;
+	private final int levelMinY;
+	
+	private final long sizeInBytes;
+	
+	
+	
+	//=============//
+	// constructor //
+	//=============//
+	
+	/**
+	 * @param previousSnapshot must match the data source's state before its last update, otherwise it should be null
+	 * @param changedColumns the columns that changed since the previous snapshot, ignored if there isn't a previous snapshot
+	 */
+	public static FullDataSourceSnapshot create(FullDataSourceV2 dataSource, @Nullable FullDataSourceSnapshot previousSnapshot, @Nullable BitSet changedColumns)
+	{
+		if (previousSnapshot != null && previousSnapshot.pos != dataSource.getPos())
+		{
+			throw new IllegalArgumentException("Snapshot position mismatch, expected ["+dataSource.getPos()+"], received ["+previousSnapshot.pos+"].");
+		}
+		
+		boolean canShareColumns = (previousSnapshot != null && changedColumns != null);
+		
+		long[][] columns = new long[COLUMN_COUNT][];
+		long sizeInBytes = 0;
+		for (int i = 0; i < COLUMN_COUNT; i++)
+		{
+			if (canShareColumns && !changedColumns.get(i))
+			{
+				columns[i] = previousSnapshot.columns[i];
+			}
+			else
+			{
+				LongArrayList column = dataSource.dataPoints[i];
+				columns[i] = column.isEmpty() ? EMPTY_COLUMN : column.toLongArray();
+			}
+			sizeInBytes += columns[i].length * (long) Long.BYTES;
+		}
+		
+		// mappings only ever have entries appended,
+		// so the previous mapping is still valid if nothing was added
+		FullDataPointIdMap mapping;
+		if (previousSnapshot != null && previousSnapshot.mapping.size() == dataSource.mapping.size())
+		{
+			mapping = previousSnapshot.mapping;
+		}
+		else
+		{
+			mapping = new FullDataPointIdMap(dataSource.getPos());
+			mapping.addAll(dataSource.mapping);
+		}
+		
+		return new FullDataSourceSnapshot(dataSource, mapping, columns, sizeInBytes);
+	}
+	private FullDataSourceSnapshot(FullDataSourceV2 dataSource, FullDataPointIdMap mapping, long[][] columns, long columnSizeInBytes)
+	{
+		this.pos = dataSource.getPos();
+		this.version = dataSource.lastModifiedUnixDateTime;
+		this.mapping = mapping;
+		this.columns = columns;
+		
+		this.columnGenerationSteps = dataSource.columnGenerationSteps.toByteArray();
+		this.columnWorldCompressionMode = dataSource.columnWorldCompressionMode.toByteArray();
+		
+		this.isEmpty = dataSource.isEmpty;
+		this.createdUnixDateTime = dataSource.createdUnixDateTime;
+		this.levelMinY = dataSource.levelMinY;
+		
+		this.sizeInBytes = columnSizeInBytes 
+				+ this.columnGenerationSteps.length 
+				+ this.columnWorldCompressionMode.length;
+	}
+	
+	
+	
+	//=========//
+	// getters //
+	//=========//
+	
+	public long getPos() { return this.pos; }
+	
+	/** includes columns that may be shared with other snapshots */
+	public long getSizeInBytes() { return this.sizeInBytes; }
+	
+	/** 
+	 * Creates a new data source with this snapshot's data,
+	 * the caller is responsible for closing the returned data source.
+	 */
+	public FullDataSourceV2 createDataSource()
+	{
+		FullDataSourceV2 dataSource = FullDataSourceV2.createEmpty(this.pos);
+		
+		dataSource.mapping.addAll(this.mapping);
+		
+		for (int i = 0; i < COLUMN_COUNT; i++)
+		{
+			long[] column = this.columns[i];
+			dataSource.dataPoints[i].addElements(0, column, 0, column.length);
+		}
+		
+		dataSource.columnGenerationSteps.clear();
+		dataSource.columnGenerationSteps.addElements(0, this.columnGenerationSteps);
+		dataSource.columnWorldCompressionMode.clear();
+		dataSource.columnWorldCompressionMode.addElements(0, this.columnWorldCompressionMode);
+		
+		dataSource.isEmpty = this.isEmpty;
+		dataSource.lastModifiedUnixDateTime = this.version;
+		dataSource.createdUnixDateTime = this.createdUnixDateTime;
+		dataSource.levelMinY = this.levelMinY;
+		
+		return dataSource;
+	}
+	
+}
@@ -32,6 +32,7 @@ import com.seibel.distanthorizons.core.logging.DhLoggerBuilder;
 import com.seibel.distanthorizons.core.pooling.PhantomArrayListParent;
 import com.seibel.distanthorizons.core.pooling.PhantomArrayListPool;
 import com.seibel.distanthorizons.core.pos.DhSectionPos;
+import com.seibel.distanthorizons.core.sql.dto.FullDataSourceV2DTO;
 import com.seibel.distanthorizons.core.util.*;
 import com.seibel.distanthorizons.core.util.objects.DataCorruptedException;
 import com.seibel.distanthorizons.core.wrapperInterfaces.chunk.IChunkWrapper;
@@ -44,7 +45,9 @@ import org.jetbrains.annotations.NotNull;
 import javax.annotation.Nullable;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * This data source contains every datapoint over its given {@link DhSectionPos}. <br><br>
@@ -65,13 +68,32 @@ public class FullDataSourceV2
 	 * and/or certain detail level LODs may not appear at all. 
 	 */
 	private static final boolean RUN_DATA_ORDER_VALIDATION = ModInfo.IS_DEV_BUILD;
+	/** 
+	 * If enabled every 2x2 merge is also run with the original per-block logic
+	 * and an assertion is thrown if the results don't match. <br>
+	 * Very slow, should only be used when changing {@link TwoByTwoColumnMerger}. <br><br>
+	 * 
+	 * This stands in for a differential test since this project doesn't have any test sources yet,
+	 * if tests are added this comparison should be moved there.
+	 */
+	private static final boolean RUN_DOWNSAMPLE_VALIDATION = false;
 	
 	/** measured in data columns */
 	public static final int WIDTH = 64;
 	/** how many chunks wide this datasource is at detail level 0. */
 	public static final int NUMB_OF_CHUNKS_WIDE = WIDTH / LodUtil.CHUNK_WIDTH;
 	
-	public static final byte DATA_FORMAT_VERSION = 1;
+	/** 
+	 * The format new data is written with. <br>
+	 * 1 - each column is a short length followed by the packed data points <br>
+	 * 2 - each data point field is stored in a separate stream (see {@link FullDataSourceV2DTO}) <br><br>
+	 * 
+	 * DTOs are sent to clients in this format,
+	 * so {@link ModInfo#PROTOCOL_VERSION} needs to be incremented whenever this changes.
+	 */
+	public static final byte DATA_FORMAT_VERSION = 2;
+	/** still supported for reading */
+	public static final byte DATA_FORMAT_VERSION_PACKED_COLUMNS = 1;
 	
 	public static final PhantomArrayListPool ARRAY_LIST_POOL = new PhantomArrayListPool("FullDataV2");
 	
@@ -126,6 +148,20 @@ public class FullDataSourceV2
 	/** should only be used by methods exposed via the DH API */
 	private boolean runApiChunkValidation = false;
 	
+	/** 
+	 * Indexed the same as {@link FullDataSourceV2#dataPoints}. <br>
+	 * Marks every column whose data or generation step was changed
+	 * since {@link FullDataSourceV2#clearChangedColumns()} was last called,
+	 * this way update propagation and rendering can skip columns that didn't change.
+	 */
+	private final BitSet changedColumns = new BitSet(WIDTH * WIDTH);
+	
+	/** 
+	 * Starts at 1 for the creator, the pooled arrays are only returned 
+	 * once every {@link FullDataSourceV2#retain()} has been matched by a {@link FullDataSourceV2#close()}.
+	 */
+	private final AtomicInteger referenceCount = new AtomicInteger(1);
+	
 	
 	
 	//==============//
@@ -284,9 +320,23 @@ public class FullDataSourceV2
 	
 	public LongArrayList get(int relX, int relZ) throws IndexOutOfBoundsException { return this.dataPoints[relativePosToIndex(relX, relZ)]; }
 	
+	/** 
+	 * The returned set is live and will be modified by future updates,
+	 * it should be copied if it needs to be kept.
+	 * 
+	 * @see FullDataSourceV2#changedColumns
+	 */
+	public BitSet getChangedColumns() { return this.changedColumns; }
+	public void clearChangedColumns() { this.changedColumns.clear(); }
+	
 	@Override
 	public boolean update(@NotNull FullDataSourceV2 inputDataSource, @Nullable IDhLevel level) { return this.update(inputDataSource); }
-	public boolean update(@NotNull FullDataSourceV2 inputDataSource)
+	public boolean update(@NotNull FullDataSourceV2 inputDataSource) { return this.update(inputDataSource, null); }
+	/** 
+	 * @param inputColumnsToApply if not null only the input columns marked in this set will be applied,
+	 *                            currently only used when the input is one detail level below this data source.
+	 */
+	public boolean update(@NotNull FullDataSourceV2 inputDataSource, @Nullable BitSet inputColumnsToApply)
 	{
 		// don't try updating if the input is empty
 		if (inputDataSource.mapping.isEmpty())
@@ -299,7 +349,8 @@ public class FullDataSourceV2
 		byte inputDetailLevel = DhSectionPos.getDetailLevel(inputDataSource.pos);
 		
 		
-		// determine the mapping changes necessary for the input to map onto this datasource
+		// determine the mapping changes necessary for the input to map onto this datasource,
+		// null if the input's IDs are already the same as this data source's
 		int[] remappedIds = this.mapping.mergeAndReturnRemappedEntityIds(inputDataSource.mapping);
 		
 		boolean dataChanged;
@@ -328,7 +379,7 @@ public class FullDataSourceV2
 		}
 		else if (inputDetailLevel + 1 == thisDetailLevel)
 		{
-			dataChanged = this.updateFromOneBelowDetailLevel(inputDataSource, remappedIds);
+			dataChanged = this.updateFromOneBelowDetailLevel(inputDataSource, remappedIds, inputColumnsToApply);
 			
 			// propagating up, parent will need changes
 			this.applyToParent =
@@ -366,7 +417,7 @@ public class FullDataSourceV2
 		return dataChanged;
 	}
 	
-	public boolean updateFromSameDetailLevel(FullDataSourceV2 inputDataSource, int[] remappedIds)
+	public boolean updateFromSameDetailLevel(FullDataSourceV2 inputDataSource, @Nullable int[] remappedIds)
 	{
 		// both data sources should have the same detail level
 		if (DhSectionPos.getDetailLevel(inputDataSource.pos) != DhSectionPos.getDetailLevel(this.pos))
@@ -414,21 +465,23 @@ public class FullDataSourceV2
 					
 					if (genStateAllowsUpdating)
 					{
-						// check if the data changed
+						// check if the data changed,
+						// each column is checked individually so we know exactly which columns were changed
+						boolean columnChanged = (thisGenState != inputGenState);
 						if (this.dataPoints[index] == null)
 						{
 							// no data was present previously
 							this.dataPoints[index] = new LongArrayList(inputDataArray);
-							dataChanged = true;
+							columnChanged = true;
 						}
 						else if (this.dataPoints[index].size() != inputDataArray.size())
 						{
 							// data is present, but the size is different
-							dataChanged = true;
+							columnChanged = true;
 						}
 						
 						int oldDataHash = 0;
-						if (!dataChanged)
+						if (!columnChanged)
 						{
 							// some old data existed with the same length,
 							// we'll have to compare the caches
@@ -437,8 +490,7 @@ public class FullDataSourceV2
 						
 						
 						// copy over the new data
-						this.dataPoints[index].clear();
-						this.dataPoints[index].addAll(inputDataArray);
+						this.copyIntoColumn(index, inputDataArray);
 						this.remapDataColumn(index, remappedIds);
 						
 						if (RUN_DATA_ORDER_VALIDATION)
@@ -448,17 +500,23 @@ public class FullDataSourceV2
 						
 						
 						
-						if (!dataChanged)
+						if (!columnChanged)
 						{
 							// check if the identical length data column hashes are the same
 							// hashes need to be compared after the ID's have been remapped otherwise the ID's won't match even if the data is the same
 							if (oldDataHash != this.dataPoints[index].hashCode())
 							{
 								// the hashes are different, something was changed
-								dataChanged = true;
+								columnChanged = true;
 							}
 						}
 						
+						if (columnChanged)
+						{
+							this.changedColumns.set(index);
+							dataChanged = true;
+						}
+						
 						
 						this.columnGenerationSteps.set(index, inputGenState);
 						// always overwrite the compression mode since we're replacing this column
@@ -471,7 +529,9 @@ public class FullDataSourceV2
 		
 		return dataChanged;
 	}
-	public boolean updateFromOneBelowDetailLevel(FullDataSourceV2 inputDataSource, int[] remappedIds)
+	public boolean updateFromOneBelowDetailLevel(FullDataSourceV2 inputDataSource, @Nullable int[] remappedIds) { return this.updateFromOneBelowDetailLevel(inputDataSource, remappedIds, null); }
+	/** @param inputColumnsToApply if not null, 2x2 input columns that don't have any columns in this set are skipped */
+	public boolean updateFromOneBelowDetailLevel(FullDataSourceV2 inputDataSource, @Nullable int[] remappedIds, @Nullable BitSet inputColumnsToApply)
 	{
 		if (DhSectionPos.getDetailLevel(inputDataSource.pos) + 1 != DhSectionPos.getDetailLevel(this.pos))
 		{
@@ -494,10 +554,26 @@ public class FullDataSourceV2
 		// merge the input's data points
 		// into this data source's
 		boolean dataChanged = false;
+		TwoByTwoColumnMerger columnMerger = new TwoByTwoColumnMerger();
+		LongArrayList mergedInputDataArray = new LongArrayList();
 		for (int x = 0; x < WIDTH; x += 2)
 		{
 			for (int z = 0; z < WIDTH; z += 2)
 			{
+				if (inputColumnsToApply != null)
+				{
+					// the 2x2 columns are (x,z), (x,z+1), (x+1,z), and (x+1,z+1)
+					int inputIndex = relativePosToIndex(x, z);
+					if (!inputColumnsToApply.get(inputIndex)
+						&& !inputColumnsToApply.get(inputIndex + 1)
+						&& !inputColumnsToApply.get(inputIndex + WIDTH)
+						&& !inputColumnsToApply.get(inputIndex + WIDTH + 1))
+					{
+						// none of these columns changed, the existing data is still valid
+						continue;
+					}
+				}
+				
 				int recipientX = (x / 2) + recipientOffsetX;
 				int recipientZ = (z / 2) + recipientOffsetZ;
 				int recipientIndex = relativePosToIndex(recipientX, recipientZ);
@@ -505,6 +581,7 @@ public class FullDataSourceV2
 				
 				// world gen //
 				byte inputGenStep = determineMinWorldGenStepForTwoByTwoColumn(inputDataSource.columnGenerationSteps, x, z);
+				boolean columnChanged = (this.columnGenerationSteps.getByte(recipientIndex) != inputGenStep);
 				this.columnGenerationSteps.set(recipientIndex, inputGenStep);
 				
 				
@@ -515,22 +592,31 @@ public class FullDataSourceV2
 				
 				
 				// data points //
-				LongArrayList mergedInputDataArray = mergeInputTwoByTwoDataColumn(inputDataSource, x, z);
+				columnMerger.merge(inputDataSource, x, z, mergedInputDataArray);
+				if (RUN_DOWNSAMPLE_VALIDATION)
+				{
+					LongArrayList perBlockDataArray = new LongArrayList();
+					mergeInputTwoByTwoDataColumnPerBlock(inputDataSource, x, z, perBlockDataArray);
+					if (!perBlockDataArray.equals(mergedInputDataArray))
+					{
+						LodUtil.assertNotReach("2x2 merge mismatch for pos ["+DhSectionPos.toString(inputDataSource.pos)+"] at relative position ["+x+","+z+"], per block: "+perBlockDataArray+", interval: "+mergedInputDataArray);
+					}
+				}
 				
 				// check if the data changed
 				if (this.dataPoints[recipientIndex] == null)
 				{
 					// no data was present previously
-					dataChanged = true;
+					columnChanged = true;
 				}
 				else if (this.dataPoints[recipientIndex].size() != mergedInputDataArray.size())
 				{
 					// data is present, but the size is different
-					dataChanged = true;
+					columnChanged = true;
 				}
 				
 				int oldDataHash = 0;
-				if (!dataChanged)
+				if (!columnChanged)
 				{
 					// some old data existed with the same length,
 					// we'll have to compare the caches
@@ -538,7 +624,7 @@ public class FullDataSourceV2
 				}
 				
 				
-				this.dataPoints[recipientIndex] = mergedInputDataArray;
+				this.copyIntoColumn(recipientIndex, mergedInputDataArray);
 				this.remapDataColumn(recipientIndex, remappedIds);
 				
 				if (RUN_DATA_ORDER_VALIDATION)
@@ -548,17 +634,23 @@ public class FullDataSourceV2
 				
 				
 				
-				if (!dataChanged)
+				if (!columnChanged)
 				{
 					// check if the identical length data column hashes are the same
 					// hashes need to be compared after the ID's have been remapped otherwise the ID's won't match even if the data is the same
 					if (oldDataHash != this.dataPoints[recipientIndex].hashCode())
 					{
 						// the hashes are different, something was changed
-						dataChanged = true;
+						columnChanged = true;
 					}
 				}
 				
+				if (columnChanged)
+				{
+					this.changedColumns.set(recipientIndex);
+					dataChanged = true;
+				}
+				
 				this.isEmpty = false;
 			}
 		}
@@ -603,9 +695,15 @@ public class FullDataSourceV2
 		}
 		return minWorldGenStepValue;
 	}
-	private static LongArrayList mergeInputTwoByTwoDataColumn(FullDataSourceV2 inputDataSource, int x, int z)
+	/** 
+	 * The original merge logic, which walks every block Y. <br>
+	 * Only used to validate {@link TwoByTwoColumnMerger}, which should always return the same result.
+	 * 
+	 * @param newColumnList will be cleared and then populated with the merged column
+	 */
+	private static void mergeInputTwoByTwoDataColumnPerBlock(FullDataSourceV2 inputDataSource, int x, int z, LongArrayList newColumnList)
 	{
-		LongArrayList newColumnList = new LongArrayList();
+		newColumnList.clear();
 		
 		// special numbers:
 		// -2 = the column's height hasn't been determined yet
@@ -778,16 +876,210 @@ public class FullDataSourceV2
 		// TODO why is this sometimes necessary? What did I (James) screw up that causes the mergedInputDataArray
 		//  to sometimes be in a different order? Is it potentially related to what detail level is coming in?
 		ensureDataColumnOrder(newColumnList);
+	}
+	/**
+	 * Merges 2x2 input columns into a single column. <br><br>
+	 * 
+	 * Instead of walking every block Y, each step jumps to the next Y where any of the 4 input columns
+	 * starts or ends a data point, since the merged value can't change between those Y positions.
+	 * The result is identical to {@link FullDataSourceV2#mergeInputTwoByTwoDataColumnPerBlock},
+	 * including the quirks of that logic (IE the empty slice above the tallest column). <br><br>
+	 * 
+	 * Holds its working arrays so they can be reused for every column in a data source,
+	 * not thread safe.
+	 */
+	private static final class TwoByTwoColumnMerger
+	{
+		private final LongArrayList[] inputColumns = new LongArrayList[4];
+		/** -1 means the column doesn't have any more data points */
+		private final int[] dataPointIndices = new int[4];
+		/** 0 means the column doesn't have data at the current Y */
+		private final long[] dataPointsForSlice = new long[4];
+		private final int[] mergeIds = new int[4];
+		private final int[] mergeBlockLights = new int[4];
+		private final int[] mergeSkyLights = new int[4];
+		
 		
-		return newColumnList;
+		
+		/** @param newColumnList will be cleared and then populated with the merged column */
+		public void merge(FullDataSourceV2 inputDataSource, int x, int z, LongArrayList newColumnList)
+		{
+			newColumnList.clear();
+			
+			// same column order as the per-block logic
+			int colIndex = 0;
+			for (int inputX = x; inputX < x + 2; inputX++)
+			{
+				for (int inputZ = z; inputZ < z + 2; inputZ++, colIndex++)
+				{
+					LongArrayList inputDataArray = inputDataSource.dataPoints[relativePosToIndex(inputX, inputZ)];
+					if (inputDataArray == null || inputDataArray.size() == 0)
+					{
+						this.inputColumns[colIndex] = null;
+						this.dataPointIndices[colIndex] = -1;
+						continue;
+					}
+					
+					if (RUN_DATA_ORDER_VALIDATION)
+					{
+						throwIfDataColumnInWrongOrder(inputDataSource.pos, inputDataArray);
+					}
+					
+					// columns are sorted top to bottom, so start with the lowest data point
+					this.inputColumns[colIndex] = inputDataArray;
+					this.dataPointIndices[colIndex] = inputDataArray.size() - 1;
+				}
+			}
+			
+			
+			int lastId = 0;
+			byte lastBlockLight = 0;
+			byte lastSkyLight = 0;
+			int height = 0;
+			int minY = 0;
+			
+			int blockY = 0;
+			while (blockY < RenderDataPointUtil.MAX_WORLD_Y_SIZE)
+			{
+				// find each column's data point at this Y
+				// and the next Y where any column changes
+				int nextBlockY = Integer.MAX_VALUE;
+				boolean allColumnsEnded = true;
+				for (int i = 0; i < 4; i++)
+				{
+					this.dataPointsForSlice[i] = 0L;
+					
+					int dataPointIndex = this.dataPointIndices[i];
+					while (dataPointIndex != -1)
+					{
+						long datapoint = this.inputColumns[i].getLong(dataPointIndex);
+						int datapointMinY = FullDataPointUtil.getBottomY(datapoint);
+						int datapointMaxY = datapointMinY + FullDataPointUtil.getHeight(datapoint);
+						if (blockY >= datapointMaxY)
+						{
+							// this Y is above the data point, try the next one up
+							dataPointIndex--;
+							continue;
+						}
+						
+						allColumnsEnded = false;
+						if (blockY < datapointMinY)
+						{
+							// gap below the data point
+							nextBlockY = Math.min(nextBlockY, datapointMinY);
+						}
+						else
+						{
+							this.dataPointsForSlice[i] = datapoint;
+							nextBlockY = Math.min(nextBlockY, datapointMaxY);
+						}
+						break;
+					}
+					this.dataPointIndices[i] = dataPointIndex;
+				}
+				
+				if (allColumnsEnded)
+				{
+					// the per-block logic processes one empty slice after every column has ended
+					nextBlockY = blockY + 1;
+				}
+				nextBlockY = Math.min(nextBlockY, RenderDataPointUtil.MAX_WORLD_Y_SIZE);
+				
+				
+				for (int i = 0; i < 4; i++)
+				{
+					this.mergeIds[i] = FullDataPointUtil.getId(this.dataPointsForSlice[i]);
+					this.mergeBlockLights[i] = FullDataPointUtil.getBlockLight(this.dataPointsForSlice[i]);
+					this.mergeSkyLights[i] = FullDataPointUtil.getSkyLight(this.dataPointsForSlice[i]);
+				}
+				
+				// determine the most common values for this slice
+				int id = determineMostValueInColumnSlice(this.mergeIds, inputDataSource.mapping);
+				byte blockLight = (byte) determineAverageValueInColumnSlice(this.mergeBlockLights);
+				byte skyLight = (byte) determineAverageValueInColumnSlice(this.mergeSkyLights);
+				
+				// if this slice is different then the last one, create a new one
+				if (id != lastId
+					|| blockLight != lastBlockLight
+					|| skyLight != lastSkyLight)
+				{
+					if (height != 0)
+					{
+						addMergedDataPoint(newColumnList, inputDataSource, x, z, lastId, height, minY, lastBlockLight, lastSkyLight);
+					}
+					
+					lastId = id;
+					lastBlockLight = blockLight;
+					lastSkyLight = skyLight;
+					height = 0;
+					minY = blockY;
+				}
+				height += nextBlockY - blockY;
+				
+				if (allColumnsEnded)
+				{
+					break;
+				}
+				blockY = nextBlockY;
+			}
+			
+			// add the last slice if present
+			if (height != 0)
+			{
+				addMergedDataPoint(newColumnList, inputDataSource, x, z, lastId, height, minY, lastBlockLight, lastSkyLight);
+			}
+			
+			ensureDataColumnOrder(newColumnList);
+		}
+		
+		private static void addMergedDataPoint(LongArrayList newColumnList, FullDataSourceV2 inputDataSource, int x, int z, int id, int height, int minY, byte blockLight, byte skyLight)
+		{
+			try
+			{
+				newColumnList.add(FullDataPointUtil.encode(id, height, minY, blockLight, skyLight));
+			}
+			catch (DataCorruptedException e)
+			{
+				// shouldn't happen, (especially if validation is disabled) but just in case
+				LOGGER.warn("Skipping corrupt datapoint for pos "+inputDataSource.pos+" at relative position ["+x+","+z+"] with data: ID["+id+"], Height["+height+"], minY["+minY+"], lastBlockLight["+blockLight+"], lastSkyLight["+skyLight+"].");
+			}
+		}
+	}
+	/** 
+	 * The input is copied instead of shared so remapping this column can't modify the input
+	 * and so this data source never holds onto another data source's pooled arrays.
+	 */
+	private void copyIntoColumn(int dataPointIndex, LongArrayList inputDataArray)
+	{
+		LongArrayList dataColumn = this.dataPoints[dataPointIndex];
+		if (dataColumn == inputDataArray)
+		{
+			// the column was modified in place, IE by the LOD builder
+			return;
+		}
+		else if (dataColumn == null)
+		{
+			this.dataPoints[dataPointIndex] = new LongArrayList(inputDataArray);
+			return;
+		}
+		
+		dataColumn.clear();
+		dataColumn.addElements(0, inputDataArray.elements(), 0, inputDataArray.size());
 	}
 	/**
 	 * Only update the ID once it's been added to this data source.
 	 * Updating the incoming data source will cause issues if it is applied 
 	 * to anything else due to multiple remapping.
+	 * 
+	 * @param remappedIds if null the IDs are already correct and nothing will be changed
 	 */
-	private void remapDataColumn(int dataPointIndex, int[] remappedIds)
+	private void remapDataColumn(int dataPointIndex, @Nullable int[] remappedIds)
 	{
+		if (remappedIds == null)
+		{
+			return;
+		}
+		
 		LongArrayList dataColumn = this.dataPoints[dataPointIndex];
 		for (int i = 0; i < dataColumn.size(); i++)
 		{
@@ -897,7 +1189,7 @@ public class FullDataSourceV2
 	 * already contain data in that column.
 	 * This is done to prevent accidentally downsampling onto already present higher-detail data.
 	 */
-	public boolean downsampleFromOneAboveDetailLevel(FullDataSourceV2 inputDataSource, int[] remappedIds)
+	public boolean downsampleFromOneAboveDetailLevel(FullDataSourceV2 inputDataSource, @Nullable int[] remappedIds)
 	{
 		if (DhSectionPos.getDetailLevel(inputDataSource.pos) - 1 != DhSectionPos.getDetailLevel(this.pos))
 		{
@@ -937,6 +1229,10 @@ public class FullDataSourceV2
 				// a separate generation step needs to be used so can replace
 				// this data with higher-quality data when it is available
 				byte inputGenStep = EDhApiWorldGenerationStep.DOWN_SAMPLED.value;
+				if (this.columnGenerationSteps.getByte(recipientIndex) != inputGenStep)
+				{
+					this.changedColumns.set(recipientIndex);
+				}
 				this.columnGenerationSteps.set(recipientIndex, inputGenStep);
 				
 				
@@ -969,8 +1265,7 @@ public class FullDataSourceV2
 				
 				if (downSampleColumn)
 				{
-					LongArrayList inputDataArray = inputDataSource.dataPoints[inputIndex];
-					this.dataPoints[recipientIndex] = inputDataArray;
+					this.copyIntoColumn(recipientIndex, inputDataSource.dataPoints[inputIndex]);
 					this.remapDataColumn(recipientIndex, remappedIds);
 					
 					if (RUN_DATA_ORDER_VALIDATION)
@@ -978,6 +1273,7 @@ public class FullDataSourceV2
 						throwIfDataColumnInWrongOrder(inputDataSource.pos, this.dataPoints[recipientIndex]);
 					}
 					
+					this.changedColumns.set(recipientIndex);
 					dataChanged = true;
 				}
 				
@@ -1087,9 +1383,10 @@ public class FullDataSourceV2
 	public void setSingleColumn(LongArrayList longArray, int relX, int relZ, EDhApiWorldGenerationStep worldGenStep, EDhApiWorldCompressionMode worldCompressionMode)
 	{
 		int index = relativePosToIndex(relX, relZ);
-		this.dataPoints[index] = longArray;
+		this.copyIntoColumn(index, longArray);
 		this.columnGenerationSteps.set(index, worldGenStep.value);
 		this.columnWorldCompressionMode.set(index, worldCompressionMode.value);
+		this.changedColumns.set(index);
 		
 		
 		if (RUN_UPDATE_DEV_VALIDATION)
@@ -1116,6 +1413,23 @@ public class FullDataSourceV2
 	
 	public void setRunApiChunkValidation(boolean runValidation) { this.runApiChunkValidation = runValidation; }
 	
+	/** 
+	 * Roughly how much heap this data source is using, 
+	 * only the data point and generation arrays are counted since they make up the vast majority.
+	 */
+	public long getEstimatedMemoryUseInBytes()
+	{
+		long dataPointCount = 0;
+		for (int i = 0; i < this.dataPoints.length; i++)
+		{
+			dataPointCount += this.dataPoints[i].size();
+		}
+		
+		return (dataPointCount * Long.BYTES)
+				+ this.columnGenerationSteps.size()
+				+ this.columnWorldCompressionMode.size();
+	}
+	
 	@Override
 	public int getWidthInDataColumns() { return WIDTH; }
 	
@@ -1163,6 +1477,41 @@ public class FullDataSourceV2
 	
 	
 	
+	//====================//
+	// reference counting //
+	//====================//
+	
+	/** 
+	 * Allows the same data source to be shared, 
+	 * each call must be matched with a call to {@link FullDataSourceV2#close()}.
+	 * 
+	 * @throws IllegalStateException if this data source was already closed
+	 */
+	public FullDataSourceV2 retain() throws IllegalStateException
+	{
+		int previousCount = this.referenceCount.getAndUpdate((count) -> (count > 0) ? count + 1 : count);
+		if (previousCount <= 0)
+		{
+			throw new IllegalStateException("Unable to retain closed data source ["+DhSectionPos.toString(this.pos)+"].");
+		}
+		return this;
+	}
+	
+	/** Only returns the pooled arrays once every reference has been closed. */
+	@Override 
+	public void close()
+	{
+		int newCount = this.referenceCount.updateAndGet((count) -> (count > 0) ? count - 1 : count);
+		if (newCount == 0
+			// multiple closes without a retain shouldn't return the arrays multiple times
+			&& this.referenceCount.compareAndSet(0, -1))
+		{
+			super.close();
+		}
+	}
+	
+	
+	
 	//================//
 	// base overrides //
 	//================//
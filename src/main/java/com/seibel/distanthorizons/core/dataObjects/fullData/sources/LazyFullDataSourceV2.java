@@ -0,0 +1,457 @@
+/*
+ *    This file is part of the Distant Horizons mod
+ *    licensed under the GNU LGPL v3 License.
+ *
+ *    Copyright (C) 2020 James Seibel
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, version 3.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public License
+ *    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.seibel.distanthorizons.core.dataObjects.fullData.sources;
+
+import com.seibel.distanthorizons.core.dataObjects.fullData.FullDataPointIdMap;
+import com.seibel.distanthorizons.core.sql.dto.FullDataSourceV2DTO;
+import com.seibel.distanthorizons.core.util.FullDataPointUtil;
+import com.seibel.distanthorizons.core.util.ListUtil;
+import com.seibel.distanthorizons.core.util.objects.DataCorruptedException;
+import com.seibel.distanthorizons.core.wrapperInterfaces.world.ILevelWrapper;
+import it.unimi.dsi.fastutil.bytes.ByteArrayList;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+
+/**
+ * A read-only view of a {@link FullDataSourceV2DTO} that only decodes what is requested. <br>
+ * Useful when only a handful of columns or just the generation steps are needed,
+ * since creating a full {@link FullDataSourceV2} requires decoding every blob
+ * and populating every column. <br><br>
+ *
+ * The data blob still has to be decompressed in full (none of our compressors support random access)
+ * but the first column request builds an index of where each column starts,
+ * after which each column can be read directly from the decompressed bytes. <br><br>
+ *
+ * This object owns the DTO it was created with
+ * and is thread safe.
+ *
+ * @see FullDataSourceV2DTO
+ */
+public class LazyFullDataSourceV2 implements AutoCloseable
+{
+	private static final int COLUMN_COUNT = FullDataSourceV2.WIDTH * FullDataSourceV2.WIDTH;
+	
+	private final FullDataSourceV2DTO dto;
+	
+	private ByteArrayList columnGenerationSteps = null;
+	private FullDataPointIdMap mapping = null;
+	
+	/** the decompressed data blob, null until a column is requested */
+	private byte[] dataBytes = null;
+	/** only used while reading {@link LazyFullDataSourceV2#dataBytes} */
+	private int readIndex = 0;
+	
+	// column index //
+	
+	/**
+	 * format 1: the byte index of each column's first data point <br>
+	 * format 2: the index of each column's first data point, with the total data point count in the last slot
+	 */
+	private int[] columnStartIndexes;
+	/** format 2 only: the byte index of the ID run containing each column's first data point */
+	private int[] idRunByteIndexes;
+	/** format 2 only: how many data points of that ID run belong to previous columns */
+	private int[] idRunSkipCounts;
+	/** format 2 only */
+	private int[] heightByteIndexes;
+	/** format 2 only */
+	private int[] bottomYByteIndexes;
+	/** format 2 only */
+	private int lightByteIndex;
+	
+	
+	
+	//=============//
+	// constructor //
+	//=============//
+	
+	/** Ownership of the DTO is passed to this object. */
+	public LazyFullDataSourceV2(@NotNull FullDataSourceV2DTO dto) { this.dto = dto; }
+	
+	
+	
+	//=========//
+	// getters //
+	//=========//
+	
+	public long getPos() { return this.dto.pos; }
+	
+	public long getLastModifiedUnixDateTime() { return this.dto.lastModifiedUnixDateTime; }
+	
+	/**
+	 * Generally shouldn't be modified,
+	 * but can be used to send the still compressed data somewhere else.
+	 */
+	public FullDataSourceV2DTO getDto() { return this.dto; }
+	
+	/** the returned array shouldn't be modified */
+	public synchronized ByteArrayList getColumnGenerationSteps() throws IOException, DataCorruptedException
+	{
+		if (this.columnGenerationSteps == null)
+		{
+			ByteArrayList columnGenerationSteps = new ByteArrayList(COLUMN_COUNT);
+			this.dto.readColumnGenerationSteps(columnGenerationSteps);
+			this.columnGenerationSteps = columnGenerationSteps;
+		}
+		return this.columnGenerationSteps;
+	}
+	
+	public synchronized FullDataPointIdMap getMapping(@NotNull ILevelWrapper levelWrapper) throws IOException, InterruptedException, DataCorruptedException
+	{
+		if (this.mapping == null)
+		{
+			this.mapping = this.dto.createDataMapping(levelWrapper);
+		}
+		return this.mapping;
+	}
+	
+	/**
+	 * Decodes a single column,
+	 * the output will be empty if the column doesn't contain any data.
+	 *
+	 * @see FullDataSourceV2#get(int, int)
+	 */
+	public synchronized void getColumn(int relX, int relZ, LongArrayList outputDataColumn) throws IOException, DataCorruptedException
+	{
+		int index = FullDataSourceV2.relativePosToIndex(relX, relZ);
+		
+		this.buildColumnIndexIfMissing();
+		
+		try
+		{
+			if (this.dto.getDataFormatVersion() == FullDataSourceV2.DATA_FORMAT_VERSION_PACKED_COLUMNS)
+			{
+				this.readPackedColumn(index, outputDataColumn);
+			}
+			else
+			{
+				this.readColumnarColumn(index, outputDataColumn);
+			}
+		}
+		catch (ArrayIndexOutOfBoundsException e)
+		{
+			// should only happen if the index was built from corrupt data
+			throw new DataCorruptedException(e);
+		}
+	}
+	
+	/** Decodes everything, the same as {@link FullDataSourceV2DTO#createDataSource(ILevelWrapper)}. */
+	public FullDataSourceV2 createDataSource(@NotNull ILevelWrapper levelWrapper) throws IOException, InterruptedException, DataCorruptedException
+	{ return this.dto.createDataSource(levelWrapper); }
+	
+	
+	
+	//==============//
+	// column index //
+	//==============//
+	
+	private void buildColumnIndexIfMissing() throws IOException, DataCorruptedException
+	{
+		if (this.dataBytes != null)
+		{
+			return;
+		}
+		
+		byte[] dataBytes = this.dto.getUncompressedBlob(this.dto.compressedDataByteArray);
+		try
+		{
+			if (this.dto.getDataFormatVersion() == FullDataSourceV2.DATA_FORMAT_VERSION_PACKED_COLUMNS)
+			{
+				this.buildPackedColumnIndex(dataBytes);
+			}
+			else if (this.dto.getDataFormatVersion() == FullDataSourceV2.DATA_FORMAT_VERSION)
+			{
+				this.buildColumnarIndex(dataBytes);
+			}
+			else
+			{
+				throw new DataCorruptedException("Unsupported data format version ["+this.dto.getDataFormatVersion()+"].");
+			}
+		}
+		catch (ArrayIndexOutOfBoundsException e)
+		{
+			throw new DataCorruptedException(e);
+		}
+		
+		// only set once the index is complete so a failed build can be retried
+		this.dataBytes = dataBytes;
+	}
+	
+	/** @see FullDataSourceV2DTO format 1 */
+	private void buildPackedColumnIndex(byte[] dataBytes) throws DataCorruptedException
+	{
+		this.columnStartIndexes = new int[COLUMN_COUNT + 1];
+		
+		int byteIndex = 0;
+		for (int i = 0; i < COLUMN_COUNT; i++)
+		{
+			int columnLength = (short) (((dataBytes[byteIndex] & 0xFF) << 8) | (dataBytes[byteIndex + 1] & 0xFF));
+			if (columnLength < 0)
+			{
+				throw new DataCorruptedException("Data column at index ["+i+"] has the invalid length ["+columnLength+"].");
+			}
+			
+			byteIndex += Short.BYTES;
+			this.columnStartIndexes[i] = byteIndex;
+			byteIndex += columnLength * Long.BYTES;
+		}
+		// offset as if another column length followed, so the last column's length can be calculated the same as the others
+		this.columnStartIndexes[COLUMN_COUNT] = byteIndex + Short.BYTES;
+		
+		if (byteIndex > dataBytes.length)
+		{
+			throw new DataCorruptedException("Data blob is ["+dataBytes.length+"] bytes long, expected at least ["+byteIndex+"].");
+		}
+	}
+	
+	/** @see FullDataSourceV2DTO format 2 */
+	private void buildColumnarIndex(byte[] dataBytes) throws DataCorruptedException
+	{
+		this.readIndex = 0;
+		
+		// column lengths
+		this.columnStartIndexes = new int[COLUMN_COUNT + 1];
+		int[] columnLengths = new int[COLUMN_COUNT];
+		int dataPointCount = 0;
+		for (int i = 0; i < COLUMN_COUNT; i++)
+		{
+			int columnLength = this.readVarInt(dataBytes);
+			if (columnLength < 0 || columnLength > Short.MAX_VALUE)
+			{
+				throw new DataCorruptedException("Data column at index ["+i+"] has the invalid length ["+columnLength+"].");
+			}
+			
+			columnLengths[i] = columnLength;
+			this.columnStartIndexes[i] = dataPointCount;
+			dataPointCount += columnLength;
+		}
+		this.columnStartIndexes[COLUMN_COUNT] = dataPointCount;
+		
+		
+		// IDs
+		this.idRunByteIndexes = new int[COLUMN_COUNT];
+		this.idRunSkipCounts = new int[COLUMN_COUNT];
+		int runStartPointIndex = 0;
+		int columnIndex = 0;
+		while (runStartPointIndex < dataPointCount)
+		{
+			int runByteIndex = this.readIndex;
+			this.readVarInt(dataBytes); // ID
+			int runLength = this.readVarInt(dataBytes);
+			if (runLength <= 0 || runStartPointIndex + runLength > dataPointCount)
+			{
+				throw new DataCorruptedException("ID run at byte ["+runByteIndex+"] has the invalid length ["+runLength+"].");
+			}
+			
+			int runEndPointIndex = runStartPointIndex + runLength;
+			while (columnIndex < COLUMN_COUNT
+					&& this.columnStartIndexes[columnIndex] < runEndPointIndex)
+			{
+				this.idRunByteIndexes[columnIndex] = runByteIndex;
+				this.idRunSkipCounts[columnIndex] = this.columnStartIndexes[columnIndex] - runStartPointIndex;
+				columnIndex++;
+			}
+			
+			runStartPointIndex = runEndPointIndex;
+		}
+		
+		
+		// heights
+		this.heightByteIndexes = new int[COLUMN_COUNT];
+		for (int i = 0; i < COLUMN_COUNT; i++)
+		{
+			this.heightByteIndexes[i] = this.readIndex;
+			this.skipVarInts(dataBytes, columnLengths[i]);
+		}
+		
+		// bottom Y
+		this.bottomYByteIndexes = new int[COLUMN_COUNT];
+		for (int i = 0; i < COLUMN_COUNT; i++)
+		{
+			this.bottomYByteIndexes[i] = this.readIndex;
+			this.skipVarInts(dataBytes, columnLengths[i]);
+		}
+		
+		// light
+		this.lightByteIndex = this.readIndex;
+		if (this.lightByteIndex + dataPointCount > dataBytes.length)
+		{
+			throw new DataCorruptedException("Data blob is ["+dataBytes.length+"] bytes long, expected at least ["+(this.lightByteIndex + dataPointCount)+"].");
+		}
+	}
+	
+	
+	
+	//================//
+	// column reading //
+	//================//
+	
+	private void readPackedColumn(int index, LongArrayList outputDataColumn) throws DataCorruptedException
+	{
+		int byteIndex = this.columnStartIndexes[index];
+		int columnLength = (this.columnStartIndexes[index + 1] - byteIndex - Short.BYTES) / Long.BYTES;
+		
+		ListUtil.clearAndSetSize(outputDataColumn, columnLength);
+		for (int y = 0; y < columnLength; y++)
+		{
+			long dataPoint = 0;
+			for (int i = 0; i < Long.BYTES; i++)
+			{
+				dataPoint = (dataPoint << 8) | (this.dataBytes[byteIndex++] & 0xFF);
+			}
+			
+			if (FullDataSourceV2DTO.VALIDATE_INPUT_DATAPOINTS)
+			{
+				FullDataPointUtil.validateDatapoint(dataPoint);
+			}
+			outputDataColumn.set(y, dataPoint);
+		}
+	}
+	
+	private void readColumnarColumn(int index, LongArrayList outputDataColumn) throws DataCorruptedException
+	{
+		int firstPointIndex = this.columnStartIndexes[index];
+		int columnLength = this.columnStartIndexes[index + 1] - firstPointIndex;
+		ListUtil.clearAndSetSize(outputDataColumn, columnLength);
+		if (columnLength == 0)
+		{
+			return;
+		}
+		
+		
+		// IDs
+		this.readIndex = this.idRunByteIndexes[index];
+		int runId = this.readVarInt(this.dataBytes);
+		int runLength = this.readVarInt(this.dataBytes) - this.idRunSkipCounts[index];
+		for (int y = 0; y < columnLength; y++)
+		{
+			if (runLength == 0)
+			{
+				runId = this.readVarInt(this.dataBytes);
+				runLength = this.readVarInt(this.dataBytes);
+			}
+			
+			outputDataColumn.set(y, runId & FullDataPointUtil.ID_MASK);
+			runLength--;
+		}
+		
+		// heights
+		this.readIndex = this.heightByteIndexes[index];
+		for (int y = 0; y < columnLength; y++)
+		{
+			int height = this.readVarInt(this.dataBytes);
+			outputDataColumn.set(y, FullDataPointUtil.setHeight(outputDataColumn.getLong(y), height & FullDataPointUtil.HEIGHT_MASK));
+		}
+		
+		// bottom Y
+		this.readIndex = this.bottomYByteIndexes[index];
+		int previousBottomY = 0;
+		for (int y = 0; y < columnLength; y++)
+		{
+			long dataPoint = outputDataColumn.getLong(y);
+			int bottomY;
+			if (y == 0)
+			{
+				bottomY = this.readVarInt(this.dataBytes);
+			}
+			else
+			{
+				int gap = this.readVarInt(this.dataBytes);
+				gap = (gap >>> 1) ^ -(gap & 1);
+				bottomY = previousBottomY - gap - FullDataPointUtil.getHeight(dataPoint);
+			}
+			
+			outputDataColumn.set(y, FullDataPointUtil.setBottomY(dataPoint, bottomY & FullDataPointUtil.MIN_Y_MASK));
+			previousBottomY = bottomY;
+		}
+		
+		// light
+		int lightIndex = this.lightByteIndex + firstPointIndex;
+		for (int y = 0; y < columnLength; y++)
+		{
+			int light = this.dataBytes[lightIndex + y] & 0xFF;
+			long dataPoint = outputDataColumn.getLong(y);
+			dataPoint = FullDataPointUtil.setBlockLight(dataPoint, (byte) (light >>> 4));
+			dataPoint = FullDataPointUtil.setSkyLight(dataPoint, light & 0x0F);
+			
+			if (FullDataSourceV2DTO.VALIDATE_INPUT_DATAPOINTS)
+			{
+				FullDataPointUtil.validateDatapoint(dataPoint);
+			}
+			outputDataColumn.set(y, dataPoint);
+		}
+	}
+	
+	
+	
+	//=========//
+	// helpers //
+	//=========//
+	
+	/** @see FullDataSourceV2DTO format 2 */
+	private int readVarInt(byte[] bytes) throws DataCorruptedException
+	{
+		int value = 0;
+		for (int shift = 0; shift < 32; shift += 7)
+		{
+			if (this.readIndex >= bytes.length)
+			{
+				throw new DataCorruptedException("Data blob ended prematurely at byte ["+this.readIndex+"].");
+			}
+			
+			int nextByte = bytes[this.readIndex++] & 0xFF;
+			value |= (nextByte & 0x7F) << shift;
+			if ((nextByte & 0x80) == 0)
+			{
+				return value;
+			}
+		}
+		
+		throw new DataCorruptedException("Var int at byte ["+this.readIndex+"] is longer than 5 bytes.");
+	}
+	private void skipVarInts(byte[] bytes, int count) throws DataCorruptedException
+	{
+		// var ints end with the first byte that doesn't have its high bit set
+		while (count > 0)
+		{
+			if (this.readIndex >= bytes.length)
+			{
+				throw new DataCorruptedException("Data blob ended prematurely at byte ["+this.readIndex+"].");
+			}
+			
+			if ((bytes[this.readIndex++] & 0x80) == 0)
+			{
+				count--;
+			}
+		}
+	}
+	
+	
+	
+	//==========//
+	// shutdown //
+	//==========//
+	
+	@Override
+	public void close() { this.dto.close(); }
+	
+}
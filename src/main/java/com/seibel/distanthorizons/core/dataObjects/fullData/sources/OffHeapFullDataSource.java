@@ -0,0 +1,166 @@
+/*
+ *    This file is part of the Distant Horizons mod
+ *    licensed under the GNU LGPL v3 License.
+ *
+ *    Copyright (C) 2020 James Seibel
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, version 3.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public License
+ *    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.seibel.distanthorizons.core.dataObjects.fullData.sources;
+
+import com.seibel.distanthorizons.core.dataObjects.fullData.FullDataPointIdMap;
+import com.seibel.distanthorizons.core.pooling.OffHeapArena;
+import com.seibel.distanthorizons.core.pooling.OffHeapLongArray;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * A copy of a {@link FullDataSourceV2} with its data points stored in an {@link OffHeapArena}. <br>
+ * Data points are stored back to back in the same order as {@link FullDataSourceV2#dataPoints},
+ * the much smaller mapping and per-column arrays are kept on the heap. <br><br>
+ * 
+ * Must be closed to return its off heap memory.
+ * 
+ * @see FullDataSourceV2
+ */
+public class OffHeapFullDataSource implements AutoCloseable
+{
+	private static final int COLUMN_COUNT = FullDataSourceV2.WIDTH * FullDataSourceV2.WIDTH;
+	
+	private final long pos;
+	private final FullDataPointIdMap mapping;
+	private final OffHeapLongArray dataPoints;
+	/** has one extra entry so the last column's end can be found the same way as every other column */
+	private final int[] columnOffsets;
+	private final byte[] columnGenerationSteps;
+	private final byte[] columnWorldCompressionMode;
+	
+	private final boolean isEmpty;
+	private final long lastModifiedUnixDateTime;
+	private final long createdUnixDateTime;
+	private final int levelMinY;
+	
+	@Nullable
+	public Boolean applyToParent;
+	@Nullable
+	public Boolean applyToChildren;
+	
+	
+	
+	//=============//
+	// constructor //
+	//=============//
+	
+	/** @return null if the arena doesn't have room for the data source */
+	@Nullable
+	public static OffHeapFullDataSource tryCreate(FullDataSourceV2 dataSource)
+	{
+		int[] columnOffsets = new int[COLUMN_COUNT + 1];
+		int offset = 0;
+		for (int i = 0; i < COLUMN_COUNT; i++)
+		{
+			columnOffsets[i] = offset;
+			offset += dataSource.dataPoints[i].size();
+		}
+		columnOffsets[COLUMN_COUNT] = offset;
+		
+		OffHeapLongArray dataPoints = OffHeapArena.INSTANCE.allocate(offset);
+		if (dataPoints == null)
+		{
+			return null;
+		}
+		
+		for (int i = 0; i < COLUMN_COUNT; i++)
+		{
+			LongArrayList column = dataSource.dataPoints[i];
+			dataPoints.copyFrom(column.elements(), 0, columnOffsets[i], column.size());
+		}
+		
+		return new OffHeapFullDataSource(dataSource, dataPoints, columnOffsets);
+	}
+	private OffHeapFullDataSource(FullDataSourceV2 dataSource, OffHeapLongArray dataPoints, int[] columnOffsets)
+	{
+		this.pos = dataSource.getPos();
+		this.dataPoints = dataPoints;
+		this.columnOffsets = columnOffsets;
+		
+		// copied since the data source's mapping will continue to be modified
+		this.mapping = new FullDataPointIdMap(this.pos);
+		this.mapping.addAll(dataSource.mapping);
+		
+		this.columnGenerationSteps = dataSource.columnGenerationSteps.toByteArray();
+		this.columnWorldCompressionMode = dataSource.columnWorldCompressionMode.toByteArray();
+		
+		this.isEmpty = dataSource.isEmpty;
+		this.lastModifiedUnixDateTime = dataSource.lastModifiedUnixDateTime;
+		this.createdUnixDateTime = dataSource.createdUnixDateTime;
+		this.levelMinY = dataSource.levelMinY;
+		this.applyToParent = dataSource.applyToParent;
+		this.applyToChildren = dataSource.applyToChildren;
+	}
+	
+	
+	
+	//=========//
+	// getters //
+	//=========//
+	
+	public long getPos() { return this.pos; }
+	
+	/** @return how much off heap memory this data source is using */
+	public long getSizeInBytes() { return this.dataPoints.getSizeInBytes(); }
+	
+	/** 
+	 * Copies this data source back onto the heap. <br>
+	 * The caller is responsible for closing the returned data source.
+	 */
+	public FullDataSourceV2 createDataSource()
+	{
+		FullDataSourceV2 dataSource = FullDataSourceV2.createEmpty(this.pos);
+		
+		dataSource.mapping.addAll(this.mapping);
+		
+		for (int i = 0; i < COLUMN_COUNT; i++)
+		{
+			int columnLength = this.columnOffsets[i + 1] - this.columnOffsets[i];
+			LongArrayList column = dataSource.dataPoints[i];
+			column.size(columnLength);
+			this.dataPoints.copyTo(this.columnOffsets[i], column.elements(), 0, columnLength);
+		}
+		
+		dataSource.columnGenerationSteps.clear();
+		dataSource.columnGenerationSteps.addElements(0, this.columnGenerationSteps);
+		dataSource.columnWorldCompressionMode.clear();
+		dataSource.columnWorldCompressionMode.addElements(0, this.columnWorldCompressionMode);
+		
+		dataSource.isEmpty = this.isEmpty;
+		dataSource.lastModifiedUnixDateTime = this.lastModifiedUnixDateTime;
+		dataSource.createdUnixDateTime = this.createdUnixDateTime;
+		dataSource.levelMinY = this.levelMinY;
+		dataSource.applyToParent = this.applyToParent;
+		dataSource.applyToChildren = this.applyToChildren;
+		
+		return dataSource;
+	}
+	
+	
+	
+	//================//
+	// base overrides //
+	//================//
+	
+	@Override
+	public void close() { this.dataPoints.close(); }
+	
+}
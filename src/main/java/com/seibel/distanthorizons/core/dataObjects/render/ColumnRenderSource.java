@@ -37,7 +37,9 @@ import com.seibel.distanthorizons.coreapi.ModInfo;
 import com.seibel.distanthorizons.coreapi.util.BitShiftUtil;
 import it.unimi.dsi.fastutil.longs.LongArrayList;
 import org.apache.logging.log4j.Logger;
+import org.jetbrains.annotations.Nullable;
 
+import java.util.BitSet;
 import java.util.concurrent.atomic.AtomicLong;
 
 /**
@@ -138,7 +140,12 @@ public class ColumnRenderSource
 	//=============//
 	
 	@Override
-	public boolean update(FullDataSourceV2 inputFullDataSource, IDhClientLevel level)
+	public boolean update(FullDataSourceV2 inputFullDataSource, IDhClientLevel level) { return this.update(inputFullDataSource, level, null); }
+	/** 
+	 * @param columnsToUpdate if not null only these columns will be rebuilt,
+	 *                        IE {@link FullDataSourceV2#getChangedColumns()}
+	 */
+	public boolean update(FullDataSourceV2 inputFullDataSource, IDhClientLevel level, @Nullable BitSet columnsToUpdate)
 	{
 		final String errorMessagePrefix = "Unable to complete update for RenderSource pos: [" + this.pos + "] and pos: [" + inputFullDataSource.getPos() + "]. Error:";
 		
@@ -163,6 +170,12 @@ public class ColumnRenderSource
 				{
 					for (int z = 0; z < FullDataSourceV2.WIDTH; z++)
 					{
+						if (columnsToUpdate != null 
+							&& !columnsToUpdate.get(FullDataSourceV2.relativePosToIndex(x, z)))
+						{
+							continue;
+						}
+						
 						ColumnArrayView columnArrayView = this.getVerticalDataPointView(x, z);
 						int columnHash = columnArrayView.getDataHash();
 						
@@ -37,6 +37,7 @@ import com.seibel.distanthorizons.core.util.FullDataPointUtil;
 import com.seibel.distanthorizons.core.util.LodUtil;
 import com.seibel.distanthorizons.core.util.RenderDataPointUtil;
 import com.seibel.distanthorizons.core.wrapperInterfaces.IWrapperFactory;
+import com.seibel.distanthorizons.core.wrapperInterfaces.block.BlockStatePropertyTable;
 import com.seibel.distanthorizons.core.wrapperInterfaces.block.IBlockStateWrapper;
 import com.seibel.distanthorizons.core.wrapperInterfaces.minecraft.IMinecraftClientWrapper;
 import com.seibel.distanthorizons.core.wrapperInterfaces.world.IBiomeWrapper;
@@ -46,7 +47,6 @@ import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
 import org.apache.logging.log4j.Logger;
 import org.jetbrains.annotations.Nullable;
 
-import java.util.HashSet;
 
 /**
  * Handles converting {@link FullDataSourceV2}'s to {@link ColumnRenderSource}.
@@ -195,10 +195,6 @@ public class FullDataToRenderDataTransformer
 		boolean ignoreNonCollidingBlocks = (Config.Client.Advanced.Graphics.Quality.blocksToIgnore.get() == EDhApiBlocksToAvoid.NON_COLLIDING);
 		boolean colorBelowWithAvoidedBlocks = Config.Client.Advanced.Graphics.Quality.tintWithAvoidedBlocks.get();
 		
-		HashSet<IBlockStateWrapper> blockStatesToIgnore = WRAPPER_FACTORY.getRendererIgnoredBlocks(level.getLevelWrapper());
-		HashSet<IBlockStateWrapper> caveBlockStatesToIgnore = WRAPPER_FACTORY.getRendererIgnoredCaveBlocks(level.getLevelWrapper());
-		HashSet<String> blockResourceLocationsColorBelow = WRAPPER_FACTORY.getBlockResourceLocationsColorBelow();
-		
 		int caveCullingMaxY = Config.Client.Advanced.Graphics.Culling.caveCullingHeight.get() - level.getMinY();
 		boolean caveCullingEnabled =
 				Config.Client.Advanced.Graphics.Culling.enableCaveCulling.get()
@@ -267,15 +263,16 @@ public class FullDataToRenderDataTransformer
 				continue;
 			}
 			
-			blockLight = Math.max(blockLight, block.getLightEmission());
+			long blockProperties = BlockStatePropertyTable.getRenderProperties(block, level.getLevelWrapper());
+			blockLight = Math.max(blockLight, BlockStatePropertyTable.getLightEmission(blockProperties));
 			
 			//====================//
 			// ignored block and  //
 			// cave culling check //
 			//====================//
 			
-			boolean ignoreBlock = blockStatesToIgnore.contains(block);
-			boolean caveBlock = caveBlockStatesToIgnore.contains(block);
+			boolean ignoreBlock = BlockStatePropertyTable.isRendererIgnored(blockProperties);
+			boolean caveBlock = BlockStatePropertyTable.isRendererCaveIgnored(blockProperties);
 			if (caveBlock)
 			{
 				if (caveCullingEnabled
@@ -324,8 +321,12 @@ public class FullDataToRenderDataTransformer
 			// non-solid block check //
 			//=======================//
 			
-			boolean isForcedNonColliding = blockResourceLocationsColorBelow.stream().anyMatch(blockString -> block.getSerialString().startsWith(blockString));
-			if ((ignoreNonCollidingBlocks && !block.isSolid() && !block.isLiquid() && block.getOpacity() != LodUtil.BLOCK_FULLY_OPAQUE) || (isForcedNonColliding) )
+			boolean isForcedNonColliding = BlockStatePropertyTable.isColorBelow(blockProperties);
+			if ((ignoreNonCollidingBlocks 
+					&& !BlockStatePropertyTable.isSolid(blockProperties) 
+					&& !BlockStatePropertyTable.isLiquid(blockProperties) 
+					&& BlockStatePropertyTable.getOpacity(blockProperties) != LodUtil.BLOCK_FULLY_OPAQUE) 
+				|| (isForcedNonColliding) )
 			{
 				if (colorBelowWithAvoidedBlocks)
 				{
@@ -378,7 +379,7 @@ public class FullDataToRenderDataTransformer
 			{
 				// add the block
 				isColumnVoid = false;
-				long columnData = RenderDataPointUtil.createDataPoint(bottomY + blockHeight, bottomY, color, skyLight, blockLight, block.getMaterialId());
+				long columnData = RenderDataPointUtil.createDataPoint(bottomY + blockHeight, bottomY, color, skyLight, blockLight, BlockStatePropertyTable.getMaterialId(blockProperties));
 				renderColumnData.set(renderDataIndex, columnData);
 				renderDataIndex++;
 			}
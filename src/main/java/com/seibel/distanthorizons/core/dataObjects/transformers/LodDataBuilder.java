@@ -34,6 +34,7 @@ import com.seibel.distanthorizons.core.util.LodUtil;
 import com.seibel.distanthorizons.core.util.RenderDataPointUtil;
 import com.seibel.distanthorizons.core.util.objects.DataCorruptedException;
 import com.seibel.distanthorizons.core.wrapperInterfaces.IWrapperFactory;
+import com.seibel.distanthorizons.core.wrapperInterfaces.block.BlockStatePropertyTable;
 import com.seibel.distanthorizons.core.wrapperInterfaces.block.IBlockStateWrapper;
 import com.seibel.distanthorizons.core.wrapperInterfaces.chunk.IChunkWrapper;
 import com.seibel.distanthorizons.core.wrapperInterfaces.misc.IMutableBlockPosWrapper;
@@ -43,7 +44,6 @@ import org.apache.logging.log4j.Logger;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.Collections;
-import java.util.HashSet;
 import java.util.List;
 
 public class LodDataBuilder
@@ -64,7 +64,7 @@ public class LodDataBuilder
 		if (x < 0 || x > 15 || z < 0 || z > 15 || y < 0)
 			return false;
 		
-		return wrapper.getBlockState(x, y, z).getOpacity() != LodUtil.BLOCK_FULLY_OPAQUE;
+		return BlockStatePropertyTable.getOpacity(BlockStatePropertyTable.getProperties(wrapper.getBlockState(x, y, z))) != LodUtil.BLOCK_FULLY_OPAQUE;
 	}
 	
 	private static boolean isBlockTouchingTransparent(IChunkWrapper wrapper, int x, int y, int z)
@@ -158,7 +158,6 @@ public class LodDataBuilder
 		{
 			IMutableBlockPosWrapper mcBlockPos = chunkWrapper.getMutableBlockPosWrapper();
 			IBlockStateWrapper previousBlockState = null;
-			HashSet<String> blockResourceLocationsColorBelow = WRAPPER_FACTORY.getBlockResourceLocationsColorBelow();
 			
 			int minBuildHeight = chunkWrapper.getMinNonEmptyHeight();
 			for (int relBlockX = 0; relBlockX < LodUtil.CHUNK_WIDTH; relBlockX++)
@@ -208,7 +207,7 @@ public class LodDataBuilder
 						);
 					// go up until we reach open air or the world limit
 					IBlockStateWrapper topBlockState = previousBlockState = chunkWrapper.getBlockState(relBlockX, y, relBlockZ, mcBlockPos, previousBlockState);
-					while (!topBlockState.isAir() && y < chunkWrapper.getExclusiveMaxBuildHeight())
+					while (!BlockStatePropertyTable.isAir(BlockStatePropertyTable.getProperties(topBlockState)) && y < chunkWrapper.getExclusiveMaxBuildHeight())
 					{
 						try
 						{
@@ -248,9 +247,14 @@ public class LodDataBuilder
 							forceSingleBlock = false;
 							// Check if the  previous block colors this block
 							// If so, we must make this block a single entry, aka add the next block even if it is the same
-							IBlockStateWrapper finalBlockState = blockState;
-							boolean isForcedNonColliding = blockResourceLocationsColorBelow.stream().anyMatch(blockString -> finalBlockState.getSerialString().startsWith(blockString));
-							if ((ignoreNonCollidingBlocks && !blockState.isAir() && !blockState.isSolid() && !blockState.isLiquid() && blockState.getOpacity() != LodUtil.BLOCK_FULLY_OPAQUE) || (isForcedNonColliding))
+							long blockProperties = BlockStatePropertyTable.getProperties(blockState);
+							boolean isForcedNonColliding = BlockStatePropertyTable.isColorBelow(blockProperties);
+							if ((ignoreNonCollidingBlocks 
+									&& !BlockStatePropertyTable.isAir(blockProperties) 
+									&& !BlockStatePropertyTable.isSolid(blockProperties) 
+									&& !BlockStatePropertyTable.isLiquid(blockProperties) 
+									&& BlockStatePropertyTable.getOpacity(blockProperties) != LodUtil.BLOCK_FULLY_OPAQUE) 
+								|| (isForcedNonColliding))
 							{
 								forceSingleBlock = true;
 							}
@@ -282,7 +286,7 @@ public class LodDataBuilder
 			
 			if (ignoreHiddenBlocks) 
 			{
-				cullHiddenBlocks(dataSource, chunkOffsetX, chunkOffsetZ,blockResourceLocationsColorBelow);
+				cullHiddenBlocks(dataSource, chunkOffsetX, chunkOffsetZ);
 			}
 		}
 		catch (DataCorruptedException e)
@@ -295,7 +299,7 @@ public class LodDataBuilder
 		return dataSource;
 	}
 	
-	private static void cullHiddenBlocks(FullDataSourceV2 dataSource, int chunkOffsetX, int chunkOffsetZ, HashSet<String> blockResourceLocationsColorBelow)
+	private static void cullHiddenBlocks(FullDataSourceV2 dataSource, int chunkOffsetX, int chunkOffsetZ)
 	{
 		for (int relZ = 1; relZ < LodUtil.CHUNK_WIDTH - 1; relZ++)
 		{
@@ -317,9 +321,8 @@ public class LodDataBuilder
 				{
 					long currentPoint = centerColumn.getLong(centerIndex);
 					
-					IBlockStateWrapper finalBlockState = dataSource.mapping.getBlockStateWrapper(FullDataPointUtil.getId(currentPoint));
-					boolean isForcedNonColliding = blockResourceLocationsColorBelow.stream()
-							.anyMatch(blockString -> finalBlockState.getSerialString().startsWith(blockString));
+					IBlockStateWrapper blockState = dataSource.mapping.getBlockStateWrapper(FullDataPointUtil.getId(currentPoint));
+					boolean isForcedNonColliding = BlockStatePropertyTable.isColorBelow(BlockStatePropertyTable.getProperties(blockState));
 					
 					if (isForcedNonColliding) {
 						continue;
@@ -380,8 +383,7 @@ public class LodDataBuilder
 					long above = centerColumn.getLong(centerIndex - 1);
 					
 					IBlockStateWrapper aboveBlockState = dataSource.mapping.getBlockStateWrapper(FullDataPointUtil.getId(above));
-					boolean isAboveForcedNonColliding = blockResourceLocationsColorBelow.stream()
-							.anyMatch(blockString -> aboveBlockState.getSerialString().startsWith(blockString));
+					boolean isAboveForcedNonColliding = BlockStatePropertyTable.isColorBelow(BlockStatePropertyTable.getProperties(aboveBlockState));
 					
 					if (isAboveForcedNonColliding) {
 						continue;
@@ -446,7 +448,8 @@ public class LodDataBuilder
 	}
 
 	private static boolean isTranslucent(FullDataSourceV2 source, long point) {
-		return source.mapping.getBlockStateWrapper(FullDataPointUtil.getId(point)).getOpacity() < LodUtil.BLOCK_FULLY_OPAQUE;
+		IBlockStateWrapper blockState = source.mapping.getBlockStateWrapper(FullDataPointUtil.getId(point));
+		return BlockStatePropertyTable.getOpacity(BlockStatePropertyTable.getProperties(blockState)) < LodUtil.BLOCK_FULLY_OPAQUE;
 	}
 
 
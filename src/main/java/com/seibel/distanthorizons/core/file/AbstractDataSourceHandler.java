@@ -103,6 +103,53 @@ public abstract class AbstractDataSourceHandler
 	
 	protected abstract TDataSource makeEmptyDataSource(long pos);
 	
+	/** 
+	 * Ownership of the DTO is passed to this method,
+	 * the DTO must be closed once it's no longer needed. <br>
+	 * Can be overridden if the repo supports queued saving.
+	 */
+	protected void saveDto(@Nullable TDTO dto)
+	{
+		if (dto == null)
+		{
+			return;
+		}
+		
+		try (TDTO closableDto = dto)
+		{
+			this.repo.save(closableDto);
+		}
+	}
+	
+	/** Can be overridden if the DTOs are stored somewhere other than the repo. */
+	@Nullable
+	protected TDTO getDto(long pos) { return this.repo.getByKey(pos); }
+	
+	/** Can be overridden if the DTOs are stored somewhere other than the repo. */
+	protected void deleteDto(long pos) { this.repo.deleteWithKey(pos); }
+	
+	/** 
+	 * Used when the returned data source will be modified and saved,
+	 * the caller must hold the position's update lock. <br>
+	 * Can be overridden if decoded data sources are cached.
+	 * 
+	 * @see AbstractDataSourceHandler#get(long)
+	 */
+	@Nullable
+	protected TDataSource getForUpdate(long pos) { return this.get(pos); }
+	
+	/** 
+	 * Called if an update failed part way through, 
+	 * in which case any cached data source for the position may no longer match what was saved.
+	 */
+	protected void onUpdateFailed(long pos) { }
+	
+	/** 
+	 * Called after a data source returned by {@link AbstractDataSourceHandler#getForUpdate(long)} 
+	 * was modified and saved, the caller still holds the position's update lock.
+	 */
+	protected void onUpdateSaved(TDataSource dataSource) { }
+	
 	
 	
 	//==============//
@@ -143,7 +190,7 @@ public abstract class AbstractDataSourceHandler
 	public TDataSource get(long pos)
 	{
 		TDataSource dataSource = null;
-		try(TDTO dto = this.repo.getByKey(pos))
+		try(TDTO dto = this.getDto(pos))
 		{
 			if (dto != null)
 			{
@@ -166,7 +213,7 @@ public abstract class AbstractDataSourceHandler
 						LOGGER.warn("Corrupted data found at pos [" + DhSectionPos.toString(pos) + "]. Data at position will be deleted so it can be re-generated to prevent issues. Future errors with this same message won't be logged. Error: [" + message + "].", e);
 					}
 					
-					this.repo.deleteWithKey(pos);
+					this.deleteDto(pos);
 				}
 			}
 			else
@@ -259,7 +306,7 @@ public abstract class AbstractDataSourceHandler
 			
 			
 			// get or create the data source
-			try (TDataSource recipientDataSource = this.get(updatePos))
+			try (TDataSource recipientDataSource = this.getForUpdate(updatePos))
 			{
 				if (recipientDataSource != null)
 				{
@@ -267,10 +314,8 @@ public abstract class AbstractDataSourceHandler
 					if (dataModified)
 					{
 						// save the updated data to the database
-						try (TDTO dto = this.createDtoFromDataSource(recipientDataSource))
-						{
-							this.repo.save(dto);
-						}
+						this.saveDto(this.createDtoFromDataSource(recipientDataSource));
+						this.onUpdateSaved(recipientDataSource);
 						
 						
 						for (IDataSourceUpdateFunc<TDataSource> listener : this.dateSourceUpdateListeners)
@@ -287,6 +332,7 @@ public abstract class AbstractDataSourceHandler
 		catch (Exception e)
 		{
 			LOGGER.error("Error updating pos ["+DhSectionPos.toString(updatePos)+"], error: "+e.getMessage(), e);
+			this.onUpdateFailed(updatePos);
 		}
 		finally
 		{
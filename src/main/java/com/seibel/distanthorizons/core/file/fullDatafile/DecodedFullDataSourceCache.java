@@ -0,0 +1,282 @@
+package com.seibel.distanthorizons.core.file.fullDatafile;
+
+import com.seibel.distanthorizons.core.config.Config;
+import com.seibel.distanthorizons.core.dataObjects.fullData.sources.FullDataSourceV2;
+import com.seibel.distanthorizons.core.dataObjects.fullData.sources.OffHeapFullDataSource;
+import com.seibel.distanthorizons.core.logging.f3.F3Screen;
+import com.seibel.distanthorizons.core.pooling.OffHeapArena;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Memory limited LRU cache of decoded {@link FullDataSourceV2}'s. <br>
+ * Used so positions that are updated over and over (IE parents during update propagation)
+ * don't have to be decompressed and decoded for every update. <br><br>
+ *
+ * Saves aren't delayed by this cache, every update is still written to the store
+ * (world gen results are already batched by {@link DelayedFullDataSourceSaveCache} before they get here),
+ * so cached data sources never contain unsaved data and can be dropped at any time. <br><br>
+ *
+ * Cached data sources are shared using {@link FullDataSourceV2#retain()},
+ * so they should only be used while holding the position's update lock
+ * and any changes must be passed back in with {@link DecodedFullDataSourceCache#put}. <br>
+ * If {@link OffHeapArena} is enabled data sources are instead copied into and out of off heap memory,
+ * in which case {@link DecodedFullDataSourceCache#get} returns a new data source each time.
+ */
+public class DecodedFullDataSourceCache implements AutoCloseable
+{
+	private static final long BYTES_PER_MB = 1024L * 1024L;
+	
+	/** access ordered so the first entry is always the least recently used */
+	private final LinkedHashMap<Long, CacheEntry> entryByPos = new LinkedHashMap<>(16, 0.75f, true);
+	private long totalSizeInBytes = 0;
+	
+	
+	// metrics //
+	
+	private final AtomicLong hitCount = new AtomicLong(0);
+	private final AtomicLong missCount = new AtomicLong(0);
+	private final AtomicLong evictionCount = new AtomicLong(0);
+	
+	
+	
+	//=================//
+	// cache accessors //
+	//=================//
+	
+	/**
+	 * @return null if the position isn't cached,
+	 *      otherwise a retained data source that must be closed by the caller
+	 */
+	@Nullable
+	public synchronized FullDataSourceV2 get(long pos)
+	{
+		CacheEntry entry = this.entryByPos.get(pos);
+		if (entry == null)
+		{
+			this.missCount.incrementAndGet();
+			return null;
+		}
+		
+		this.hitCount.incrementAndGet();
+		
+		if (entry.offHeapDataSource != null)
+		{
+			// off heap entries don't change size since they're only replaced by put()
+			return entry.offHeapDataSource.createDataSource();
+		}
+		
+		// retained first so evicting can't return the data source's arrays to the pool
+		FullDataSourceV2 dataSource = entry.dataSource.retain();
+		
+		// the data source may have grown since it was last used
+		this.updateEntrySize(entry);
+		this.evictToBudget(getBudgetInBytes());
+		
+		return dataSource;
+	}
+	
+	/**
+	 * Does nothing if caching is disabled or the data source is larger than the whole cache. <br>
+	 * The caller is still responsible for closing the given data source.
+	 */
+	public synchronized void put(FullDataSourceV2 dataSource)
+	{
+		this.removeEntry(dataSource.getPos());
+		
+		long budgetInBytes = getBudgetInBytes();
+		long sizeInBytes = dataSource.getEstimatedMemoryUseInBytes();
+		if (sizeInBytes > budgetInBytes)
+		{
+			// also clears the cache if it was just disabled
+			this.evictToBudget(budgetInBytes);
+			return;
+		}
+		
+		CacheEntry entry = null;
+		if (OffHeapArena.isEnabled())
+		{
+			OffHeapFullDataSource offHeapDataSource = OffHeapFullDataSource.tryCreate(dataSource);
+			if (offHeapDataSource != null)
+			{
+				sizeInBytes = offHeapDataSource.getSizeInBytes();
+				entry = new CacheEntry(null, offHeapDataSource, sizeInBytes);
+			}
+		}
+		
+		if (entry == null)
+		{
+			// off heap storage is disabled or full
+			entry = new CacheEntry(dataSource.retain(), null, sizeInBytes);
+		}
+		this.entryByPos.put(dataSource.getPos(), entry);
+		this.totalSizeInBytes += sizeInBytes;
+		
+		this.evictToBudget(budgetInBytes);
+	}
+	
+	/** Should be called whenever the position is changed without going through the cached data source. */
+	public synchronized void invalidate(long pos) { this.removeEntry(pos); }
+	
+	public synchronized void clear()
+	{
+		for (CacheEntry entry : this.entryByPos.values())
+		{
+			entry.close();
+		}
+		this.entryByPos.clear();
+		this.totalSizeInBytes = 0;
+	}
+	
+	
+	
+	//==============//
+	// update flags //
+	//==============//
+	
+	/** keeps the cached data source in sync with the store, the caller must hold the position's update lock */
+	public synchronized void setApplyToParent(long pos, boolean applyToParent)
+	{
+		CacheEntry entry = this.entryByPos.get(pos);
+		if (entry != null)
+		{
+			if (entry.offHeapDataSource != null)
+			{
+				entry.offHeapDataSource.applyToParent = applyToParent;
+			}
+			else
+			{
+				entry.dataSource.applyToParent = applyToParent;
+			}
+		}
+	}
+	
+	/** keeps the cached data source in sync with the store, the caller must hold the position's update lock */
+	public synchronized void setApplyToChildren(long pos, boolean applyToChildren)
+	{
+		CacheEntry entry = this.entryByPos.get(pos);
+		if (entry != null)
+		{
+			if (entry.offHeapDataSource != null)
+			{
+				entry.offHeapDataSource.applyToChildren = applyToChildren;
+			}
+			else
+			{
+				entry.dataSource.applyToChildren = applyToChildren;
+			}
+		}
+	}
+	
+	
+	
+	//================//
+	// helper methods //
+	//================//
+	
+	private static long getBudgetInBytes() { return Config.Common.LodBuilding.Experimental.decodedDataSourceCacheSizeInMb.get() * BYTES_PER_MB; }
+	
+	private void updateEntrySize(CacheEntry entry)
+	{
+		long newSizeInBytes = entry.dataSource.getEstimatedMemoryUseInBytes();
+		this.totalSizeInBytes += newSizeInBytes - entry.sizeInBytes;
+		entry.sizeInBytes = newSizeInBytes;
+	}
+	
+	private void evictToBudget(long budgetInBytes)
+	{
+		Iterator<Map.Entry<Long, CacheEntry>> iterator = this.entryByPos.entrySet().iterator();
+		while (this.totalSizeInBytes > budgetInBytes && iterator.hasNext())
+		{
+			CacheEntry entry = iterator.next().getValue();
+			iterator.remove();
+			
+			this.totalSizeInBytes -= entry.sizeInBytes;
+			this.evictionCount.incrementAndGet();
+			
+			// anyone currently using the data source will still have their own reference
+			entry.close();
+		}
+	}
+	
+	private void removeEntry(long pos)
+	{
+		CacheEntry entry = this.entryByPos.remove(pos);
+		if (entry != null)
+		{
+			this.totalSizeInBytes -= entry.sizeInBytes;
+			entry.close();
+		}
+	}
+	
+	
+	
+	//=========//
+	// metrics //
+	//=========//
+	
+	public synchronized String getDebugString()
+	{
+		long hits = this.hitCount.get();
+		long lookups = hits + this.missCount.get();
+		int hitPercent = (lookups != 0) ? (int) ((hits * 100) / lookups) : 0;
+		
+		return "Decoded Cache - hit rate: " + hitPercent + "%"
+				+ ", hits: " + F3Screen.NUMBER_FORMAT.format(hits)
+				+ ", misses: " + F3Screen.NUMBER_FORMAT.format(this.missCount.get())
+				+ ", evictions: " + F3Screen.NUMBER_FORMAT.format(this.evictionCount.get())
+				+ ", size: " + F3Screen.NUMBER_FORMAT.format(this.entryByPos.size())
+				+ " (" + F3Screen.NUMBER_FORMAT.format(this.totalSizeInBytes / BYTES_PER_MB) + "/" + F3Screen.NUMBER_FORMAT.format(getBudgetInBytes() / BYTES_PER_MB) + " MB)";
+	}
+	
+	
+	
+	//================//
+	// base overrides //
+	//================//
+	
+	@Override
+	public void close() { this.clear(); }
+	
+	
+	
+	//================//
+	// helper classes //
+	//================//
+	
+	private static class CacheEntry implements AutoCloseable
+	{
+		/** null if the data source is stored off heap */
+		@Nullable
+		public final FullDataSourceV2 dataSource;
+		/** null if the data source is stored on the heap */
+		@Nullable
+		public final OffHeapFullDataSource offHeapDataSource;
+		public long sizeInBytes;
+		
+		public CacheEntry(@Nullable FullDataSourceV2 dataSource, @Nullable OffHeapFullDataSource offHeapDataSource, long sizeInBytes)
+		{
+			this.dataSource = dataSource;
+			this.offHeapDataSource = offHeapDataSource;
+			this.sizeInBytes = sizeInBytes;
+		}
+		
+		@Override
+		public void close()
+		{
+			if (this.offHeapDataSource != null)
+			{
+				this.offHeapDataSource.close();
+			}
+			else
+			{
+				this.dataSource.close();
+			}
+		}
+	}
+	
+}
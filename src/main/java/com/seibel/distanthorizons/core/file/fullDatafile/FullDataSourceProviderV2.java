@@ -19,13 +19,20 @@
 
 package com.seibel.distanthorizons.core.file.fullDatafile;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.seibel.distanthorizons.api.enums.config.EDhApiDataCompressionMode;
+import com.seibel.distanthorizons.api.enums.config.EDhApiFullDataStorageMode;
 import com.seibel.distanthorizons.core.api.internal.ClientApi;
 import com.seibel.distanthorizons.core.config.Config;
 import com.seibel.distanthorizons.core.dataObjects.fullData.sources.FullDataSourceV1;
+import com.seibel.distanthorizons.core.dataObjects.fullData.sources.FullDataSourceSnapshot;
 import com.seibel.distanthorizons.core.dataObjects.fullData.sources.FullDataSourceV2;
+import com.seibel.distanthorizons.core.dataObjects.fullData.sources.LazyFullDataSourceV2;
 import com.seibel.distanthorizons.core.dependencyInjection.SingletonInjector;
 import com.seibel.distanthorizons.core.file.AbstractDataSourceHandler;
+import com.seibel.distanthorizons.core.file.fullDatafile.storage.IFullDataSourceStore;
+import com.seibel.distanthorizons.core.file.fullDatafile.storage.RegionFileFullDataSourceStore;
 import com.seibel.distanthorizons.core.file.structure.ISaveStructure;
 import com.seibel.distanthorizons.core.generation.tasks.WorldGenResult;
 import com.seibel.distanthorizons.core.level.IDhLevel;
@@ -38,6 +45,7 @@ import com.seibel.distanthorizons.core.render.renderer.IDebugRenderable;
 import com.seibel.distanthorizons.core.sql.dto.FullDataSourceV2DTO;
 import com.seibel.distanthorizons.core.sql.repo.AbstractDhRepo;
 import com.seibel.distanthorizons.core.sql.repo.FullDataSourceV2Repo;
+import com.seibel.distanthorizons.core.util.BoolUtil;
 import com.seibel.distanthorizons.core.util.ThreadUtil;
 import com.seibel.distanthorizons.core.util.objects.DataCorruptedException;
 import com.seibel.distanthorizons.core.util.threading.PriorityTaskPicker;
@@ -53,11 +61,13 @@ import java.io.IOException;
 import java.sql.SQLException;
 import java.text.NumberFormat;
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.HashSet;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Set;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.ReentrantLock;
 
 /**
@@ -86,6 +96,8 @@ public class FullDataSourceProviderV2
 	 * to make sure the thread doesn't get stuck.
 	 */
 	private static final int MIGRATION_MAX_UPDATE_TIMEOUT_IN_MS = 5 * 60 * 1_000;
+	/** only the mapping is converted so this can be much larger than {@link FullDataSourceProviderV2#MIGRATION_BATCH_COUNT} */
+	private static final int MAPPING_CONVERSION_BATCH_SIZE = 256;
 	
 	
 	
@@ -108,6 +120,48 @@ public class FullDataSourceProviderV2
 	 */
 	public final Set<Long> updatingPosSet = ConcurrentHashMap.newKeySet();
 	
+	/** 
+	 * Where the full data is read from and written to. <br>
+	 * This will be the same object as {@link AbstractDataSourceHandler#repo}
+	 * unless a different storage mode is selected in the config.
+	 * The repo's database is still used for the level's other data (chunk hashes, beacons, etc.).
+	 */
+	public final IFullDataSourceStore store;
+	
+	/** Groups pending children by parent so each parent is only updated once per batch. */
+	private final ParentUpdateScheduler parentUpdateScheduler = new ParentUpdateScheduler();
+	
+	/** Used to prevent decoding the same parent data sources over and over during update propagation. */
+	private final DecodedFullDataSourceCache decodedDataSourceCache = new DecodedFullDataSourceCache();
+	
+	/** 
+	 * The newest saved version of recently updated positions. <br>
+	 * Readers (rendering, multiplayer, etc.) can copy these without loading and decoding the position
+	 * or waiting on the update threads, which is especially helpful for positions that are being updated repeatedly. <br>
+	 * Snapshots are only published or invalidated while holding the position's update lock.
+	 * The size is only read when the level is loaded.
+	 */
+	private final Cache<Long, FullDataSourceSnapshot> snapshotByPos = CacheBuilder.newBuilder()
+			.maximumWeight(Config.Common.LodBuilding.Experimental.snapshotCacheSizeInMb.get() * 1024L * 1024L)
+			// columns shared between snapshots are counted more than once, so this will over-estimate the memory use
+			.weigher((Long pos, FullDataSourceSnapshot snapshot) -> (int) Math.min(Integer.MAX_VALUE, snapshot.getSizeInBytes()))
+			.<Long, FullDataSourceSnapshot>build();
+	private final AtomicLong snapshotHitCount = new AtomicLong(0);
+	
+	/** 
+	 * The columns changed in each position since its parent was last updated,
+	 * used so parent updates only have to merge the columns that changed. <br>
+	 * Positions without an entry are treated as if every column changed,
+	 * IE positions that were flagged before the level was loaded.
+	 * Entries should only be modified while holding the position's update lock.
+	 */
+	private final ConcurrentHashMap<Long, BitSet> changedColumnsForParentByPos = new ConcurrentHashMap<>();
+	/** 
+	 * Each entry is fairly small, but this prevents the map from growing forever. 
+	 * Dropping entries is safe since missing entries are treated as fully changed.
+	 */
+	private static final int MAX_CHANGED_COLUMN_POS_COUNT = 65_536;
+	
 	// TODO only run thread if modifications happened recently
 	/** 
 	 * This isn't in {@link AbstractDataSourceHandler} since we only want to update
@@ -130,6 +184,7 @@ public class FullDataSourceProviderV2
 	public FullDataSourceProviderV2(IDhLevel level, ISaveStructure saveStructure, @Nullable File saveDirOverride) 
 	{
 		super(level, saveStructure, saveDirOverride);
+		this.store = this.createStore();
 		this.legacyFileHandler = new FullDataSourceProviderV1<>(level, saveStructure, saveDirOverride);
 		
 		DebugRenderer.register(this, Config.Client.Advanced.Debugging.DebugWireframe.showFullDataUpdateStatus);
@@ -141,6 +196,8 @@ public class FullDataSourceProviderV2
 		if (executor != null)
 		{
 			executor.execute(this::convertLegacyDataSources);
+			executor.execute(this::trainCompressionDictionaryIfNeeded);
+			executor.execute(this::convertMappingsToDictionary);
 		}
 		else
 		{
@@ -174,6 +231,25 @@ public class FullDataSourceProviderV2
 		}
 	}
 	
+	protected IFullDataSourceStore createStore()
+	{
+		EDhApiFullDataStorageMode storageMode = Config.Common.LodBuilding.Experimental.fullDataStorageMode.get();
+		if (storageMode == EDhApiFullDataStorageMode.REGION_FILES)
+		{
+			File regionFolder = new File(this.saveDir, RegionFileFullDataSourceStore.REGION_FOLDER_NAME);
+			try
+			{
+				return new RegionFileFullDataSourceStore(regionFolder, this.repo.compressionDictionaries, this.repo.mappingDictionary);
+			}
+			catch (IOException e)
+			{
+				LOGGER.error("Unable to open region files at ["+regionFolder+"], falling back to the database. Error: ["+e.getMessage()+"].", e);
+			}
+		}
+		
+		return this.repo;
+	}
+	
 	@Override 
 	protected FullDataSourceV2DTO createDtoFromDataSource(FullDataSourceV2 dataSource)
 	{
@@ -181,7 +257,7 @@ public class FullDataSourceProviderV2
 		{
 			// when creating new data use the compressor currently selected in the config
 			EDhApiDataCompressionMode compressionModeEnum = Config.Common.LodBuilding.dataCompression.get();
-			return FullDataSourceV2DTO.CreateFromDataSource(dataSource, compressionModeEnum);
+			return FullDataSourceV2DTO.CreateFromDataSource(dataSource, compressionModeEnum, this.repo.compressionDictionaries, this.repo.mappingDictionary);
 		}
 		catch (IOException e)
 		{
@@ -190,6 +266,110 @@ public class FullDataSourceProviderV2
 		}
 	}
 	
+	@Override
+	protected void saveDto(@Nullable FullDataSourceV2DTO dto)
+	{
+		if (dto != null)
+		{
+			// the store will close the DTO once it's been written
+			this.store.queueSave(dto);
+		}
+	}
+	
+	@Override
+	@Nullable
+	protected FullDataSourceV2DTO getDto(long pos) { return this.store.getByKey(pos); }
+	
+	@Override
+	protected void deleteDto(long pos)
+	{
+		this.decodedDataSourceCache.invalidate(pos);
+		this.snapshotByPos.invalidate(pos);
+		this.store.deleteWithKey(pos);
+	}
+	
+	@Override
+	@Nullable
+	protected FullDataSourceV2 getForUpdate(long pos)
+	{
+		FullDataSourceV2 dataSource = this.decodedDataSourceCache.get(pos);
+		if (dataSource == null)
+		{
+			dataSource = this.get(pos);
+			if (dataSource != null)
+			{
+				this.decodedDataSourceCache.put(dataSource);
+			}
+		}
+		
+		if (dataSource != null)
+		{
+			// cached data sources may still have the changes from their last update
+			dataSource.clearChangedColumns();
+		}
+		return dataSource;
+	}
+	
+	@Override
+	protected void onUpdateFailed(long pos) 
+	{
+		this.decodedDataSourceCache.invalidate(pos);
+		this.snapshotByPos.invalidate(pos);
+	}
+	
+	@Override
+	protected void onUpdateSaved(FullDataSourceV2 dataSource)
+	{
+		this.publishSnapshot(dataSource);
+		// needed for off heap caching, where the cache doesn't share the data source that was modified
+		this.decodedDataSourceCache.put(dataSource);
+		
+		if (BoolUtil.falseIfNull(dataSource.applyToParent))
+		{
+			// if there isn't an entry we don't know what changed before this update,
+			// so the whole position will be applied
+			BitSet changedColumns = this.changedColumnsForParentByPos.get(dataSource.getPos());
+			if (changedColumns != null)
+			{
+				changedColumns.or(dataSource.getChangedColumns());
+			}
+		}
+	}
+	
+	/** the caller must hold the position's update lock */
+	private void publishSnapshot(FullDataSourceV2 dataSource)
+	{
+		long pos = dataSource.getPos();
+		if (Config.Common.LodBuilding.Experimental.snapshotCacheSizeInMb.get() == 0)
+		{
+			this.snapshotByPos.invalidate(pos);
+			return;
+		}
+		
+		// the version readers will see
+		dataSource.lastModifiedUnixDateTime = System.currentTimeMillis();
+		
+		// the previous snapshot is always the version this update started from, 
+		// since every other change to this position invalidates it
+		FullDataSourceSnapshot previousSnapshot = this.snapshotByPos.getIfPresent(pos);
+		this.snapshotByPos.put(pos, FullDataSourceSnapshot.create(dataSource, previousSnapshot, dataSource.getChangedColumns()));
+	}
+	
+	/** Positions that were recently updated are copied from their snapshot instead of being loaded from the store. */
+	@Override
+	@Nullable
+	public FullDataSourceV2 get(long pos)
+	{
+		FullDataSourceSnapshot snapshot = this.snapshotByPos.getIfPresent(pos);
+		if (snapshot != null)
+		{
+			this.snapshotHitCount.incrementAndGet();
+			return snapshot.createDataSource();
+		}
+		
+		return super.get(pos);
+	}
+	
 	@Override
 	protected FullDataSourceV2 createDataSourceFromDto(FullDataSourceV2DTO dto) throws InterruptedException, IOException, DataCorruptedException
 	{ return dto.createDataSource(this.level.getLevelWrapper()); }
@@ -200,6 +380,46 @@ public class FullDataSourceProviderV2
 	
 	
 	
+	//==============//
+	// lazy reading //
+	//==============//
+	
+	/**
+	 * Much cheaper than {@link FullDataSourceProviderV2#getAsync(long)}
+	 * when only a few columns, the generation steps, or the compressed data are needed. <br>
+	 * The returned data source will be null if no data exists or the repo is shutting down.
+	 * 
+	 * @see LazyFullDataSourceV2
+	 */
+	public CompletableFuture<LazyFullDataSourceV2> getLazyAsync(long pos)
+	{
+		AbstractExecutorService executor = ThreadPoolUtil.getFileHandlerExecutor();
+		if (executor == null || executor.isTerminated())
+		{
+			return CompletableFuture.completedFuture(null);
+		}
+		
+		
+		try
+		{
+			return CompletableFuture.supplyAsync(() -> this.getLazy(pos), executor);
+		}
+		catch (RejectedExecutionException ignore)
+		{
+			// the thread pool was probably shut down because it's size is being changed, just wait a sec and it should be back
+			return CompletableFuture.completedFuture(null);
+		}
+	}
+	/** @see FullDataSourceProviderV2#getLazyAsync(long) */
+	@Nullable
+	public LazyFullDataSourceV2 getLazy(long pos)
+	{
+		FullDataSourceV2DTO dto = this.getDto(pos);
+		return (dto != null) ? new LazyFullDataSourceV2(dto) : null;
+	}
+	
+	
+	
 	//================//
 	// parent updates //
 	//================//
@@ -257,23 +477,11 @@ public class FullDataSourceProviderV2
 		if (executor.getQueueSize() < maxUpdateTaskCount
 			&& this.updatingPosSet.size() < maxUpdateTaskCount)
 		{
-			// get the positions that need to be applied to their parents
-			LongArrayList parentUpdatePosList = this.repo.getPositionsToUpdate(targetBlockPos.getX(), targetBlockPos.getZ(), maxUpdateTaskCount);
-			
-			// combine updates together based on their parent
-			HashMap<Long, HashSet<Long>> updatePosByParentPos = new HashMap<>();
-			for (Long pos : parentUpdatePosList)
-			{
-				updatePosByParentPos.compute(DhSectionPos.getParentPos(pos), (parentPos, updatePosSet) ->
-				{
-					if (updatePosSet == null)
-					{
-						updatePosSet = new HashSet<>();
-					}
-					updatePosSet.add(pos);
-					return updatePosSet;
-				});
-			}
+			// get the positions that need to be applied to their parents,
+			// grouped by parent so each parent is only written once
+			LinkedHashMap<Long, LongArrayList> updatePosByParentPos = this.parentUpdateScheduler.getNextParentBatch(
+					this.store, this.updatingPosSet, 
+					targetBlockPos.getX(), targetBlockPos.getZ(), maxUpdateTaskCount);
 			
 			// queue the updates
 			for (Long parentUpdatePos : updatePosByParentPos.keySet())
@@ -303,13 +511,15 @@ public class FullDataSourceProviderV2
 								parentLocked = true;
 								this.lockedPosSet.add(parentUpdatePos);
 								
-								try (FullDataSourceV2 parentDataSource = this.get(parentUpdatePos))
+								// The children are combined into an empty data source which is then merged into the parent,
+								// this way the parent only has to be loaded once (and may already be cached).
+								try (FullDataSourceV2 parentDataSource = FullDataSourceV2.createEmpty(parentUpdatePos))
 								{
-									// will return null if the file handler is shutting down
-									if (parentDataSource != null)
+									if (!this.isShutdown)
 									{
 										// apply each child pos to the parent
-										for (Long childPos : updatePosByParentPos.get(parentUpdatePos))
+										int mergedChildCount = 0;
+										for (long childPos : updatePosByParentPos.get(parentUpdatePos))
 										{
 											ReentrantLock childReadLock = this.updateLockProvider.getLock(childPos);
 											try
@@ -317,12 +527,15 @@ public class FullDataSourceProviderV2
 												childReadLock.lock();
 												this.lockedPosSet.add(childPos);
 												
-												try (FullDataSourceV2 childDataSource = this.get(childPos))
+												try (FullDataSourceV2 childDataSource = this.getForUpdate(childPos))
 												{
 													// can return null when the file handler is being shut down
 													if (childDataSource != null)
 													{
-														parentDataSource.update(childDataSource);
+														// null if we don't know which columns changed
+														BitSet changedColumns = this.changedColumnsForParentByPos.get(childPos);
+														parentDataSource.update(childDataSource, changedColumns);
+														mergedChildCount++;
 													}
 												}
 											}
@@ -344,9 +557,20 @@ public class FullDataSourceProviderV2
 										}
 										
 										this.updateDataSourceAtPos(parentUpdatePos, parentDataSource, false);
-										for (Long childPos : updatePosByParentPos.get(parentUpdatePos))
+										this.parentUpdateScheduler.recordParentWrite(mergedChildCount);
+										for (long childPos : updatePosByParentPos.get(parentUpdatePos))
 										{
-											this.repo.setApplyToParent(childPos, false);
+											ReentrantLock childLock = this.updateLockProvider.getLock(childPos);
+											try
+											{
+												childLock.lock();
+												this.setApplyToParent(childPos, false);
+												this.markParentUpToDate(childPos);
+											}
+											finally
+											{
+												childLock.unlock();
+											}
 										}
 									}
 								}
@@ -384,7 +608,7 @@ public class FullDataSourceProviderV2
 			&& this.updatingPosSet.size() < maxUpdateTaskCount)
 		{
 			// get the positions that need to be applied to their children
-			LongArrayList childUpdatePosList = this.repo.getChildPositionsToUpdate(targetBlockPos.getX(), targetBlockPos.getZ(), maxUpdateTaskCount);
+			LongArrayList childUpdatePosList = this.store.getChildPositionsToUpdate(targetBlockPos.getX(), targetBlockPos.getZ(), maxUpdateTaskCount);
 			
 			// queue the updates
 			for (long parentUpdatePos : childUpdatePosList)
@@ -419,7 +643,7 @@ public class FullDataSourceProviderV2
 								parentLocked = true;
 								this.lockedPosSet.add(parentUpdatePos);
 								
-								try (FullDataSourceV2 parentDataSource = this.get(parentUpdatePos))
+								try (FullDataSourceV2 parentDataSource = this.getForUpdate(parentUpdatePos))
 								{
 									// will return null if the file handler is shutting down
 									if (parentDataSource != null)
@@ -435,10 +659,11 @@ public class FullDataSourceProviderV2
 												childWriteLock.lock();
 												this.lockedPosSet.add(childPos);
 												
-												try (FullDataSourceV2 childDataSource = this.get(childPos))
+												// downsampled into an empty data source which is then merged into the child,
+												// the same way parent updates are handled
+												try (FullDataSourceV2 childDataSource = FullDataSourceV2.createEmpty(childPos))
 												{
-													// will return null if the file handler is shutting down
-													if (childDataSource != null)
+													if (!this.isShutdown)
 													{
 														childDataSource.update(parentDataSource);
 														
@@ -463,7 +688,7 @@ public class FullDataSourceProviderV2
 											}
 										}
 										
-										this.repo.setApplyToChild(parentUpdatePos, false);
+										this.setApplyToChildren(parentUpdatePos, false);
 									}
 								}
 							}
@@ -493,6 +718,95 @@ public class FullDataSourceProviderV2
 	
 	
 	
+	/** the caller must hold the position's update lock so the cached data source can't be modified at the same time */
+	private void setApplyToParent(long pos, boolean applyToParent)
+	{
+		this.store.setApplyToParent(pos, applyToParent);
+		this.decodedDataSourceCache.setApplyToParent(pos, applyToParent);
+	}
+	/** the caller must hold the position's update lock so the cached data source can't be modified at the same time */
+	private void setApplyToChildren(long pos, boolean applyToChildren)
+	{
+		this.store.setApplyToChild(pos, applyToChildren);
+		this.decodedDataSourceCache.setApplyToChildren(pos, applyToChildren);
+	}
+	
+	/** 
+	 * Starts tracking which columns change in the given position, 
+	 * the caller must hold the position's update lock.
+	 */
+	private void markParentUpToDate(long pos)
+	{
+		if (this.changedColumnsForParentByPos.size() >= MAX_CHANGED_COLUMN_POS_COUNT)
+		{
+			this.changedColumnsForParentByPos.clear();
+		}
+		this.changedColumnsForParentByPos.put(pos, new BitSet(FullDataSourceV2.WIDTH * FullDataSourceV2.WIDTH));
+	}
+	
+	
+	
+	//========================//
+	// compression dictionary //
+	//========================//
+	
+	/** Only trains a dictionary if ZSTD dictionaries are enabled and this level doesn't have one yet. */
+	private void trainCompressionDictionaryIfNeeded()
+	{
+		if (Config.Common.LodBuilding.dataCompression.get() != EDhApiDataCompressionMode.ZSTD
+			|| !Config.Common.LodBuilding.zstdUseTrainedDictionary.get())
+		{
+			return;
+		}
+		
+		try
+		{
+			this.repo.compressionDictionaries.trainIfMissing(this.store);
+		}
+		catch (Exception e)
+		{
+			LOGGER.error("Unexpected error training compression dictionary, error: ["+e.getMessage()+"].", e);
+		}
+	}
+	
+	
+	
+	//==============================//
+	// mapping dictionary migration //
+	//==============================//
+	
+	/** 
+	 * Data saved before the mapping dictionary existed is still readable,
+	 * but converting it means loading it no longer has to parse every block and biome string. <br>
+	 * Region files aren't converted here, their data is converted whenever it's next saved.
+	 */
+	private void convertMappingsToDictionary()
+	{
+		try
+		{
+			long startTimeMs = System.currentTimeMillis();
+			long convertedCount = 0;
+			
+			int batchCount = this.repo.convertNextMappingBatchToDictionary(MAPPING_CONVERSION_BATCH_SIZE);
+			while (batchCount != -1 && !this.isShutdown)
+			{
+				convertedCount += batchCount;
+				batchCount = this.repo.convertNextMappingBatchToDictionary(MAPPING_CONVERSION_BATCH_SIZE);
+			}
+			
+			if (convertedCount != 0)
+			{
+				LOGGER.info("Converted ["+convertedCount+"] data source mappings to use the mapping dictionary in ["+(System.currentTimeMillis() - startTimeMs)+"]ms.");
+			}
+		}
+		catch (Exception e)
+		{
+			LOGGER.error("Unexpected error converting data source mappings, error: ["+e.getMessage()+"].", e);
+		}
+	}
+	
+	
+	
 	//=======================//
 	// data source migration //
 	//=======================//
@@ -754,7 +1068,7 @@ public class FullDataSourceProviderV2
 	 */
 	@Nullable
 	public LongArrayList getPositionsToRetrieve(Long pos) { return null; }
-		
+	
 	/** @return true if the position was queued, false if not */
 	@Nullable
 	public CompletableFuture<WorldGenResult> queuePositionForRetrieval(Long genPos) { return null; }
@@ -769,7 +1083,7 @@ public class FullDataSourceProviderV2
 	/** Can be used to display how many total chunk retrieval requests should be available. */
 	public void setEstimatedRemainingRetrievalChunkCount(int newCount) { }
 	
-	public boolean fileExists(long pos) { return this.repo.getDataSizeInBytes(pos) > 0; }
+	public boolean fileExists(long pos) { return this.store.getDataSizeInBytes(pos) > 0; }
 	
 	
 	
@@ -779,7 +1093,22 @@ public class FullDataSourceProviderV2
 	
 	@Nullable
 	public Long getTimestampForPos(long pos)
-	{ return this.repo.getTimestampForPos(pos); }
+	{ return this.store.getTimestampForPos(pos); }
+	
+	
+	
+	//=======//
+	// debug //
+	//=======//
+	
+	public void addDebugMenuStringsToList(List<String> messageList)
+	{
+		messageList.add("  " + this.store.getDebugString());
+		messageList.add("  " + this.decodedDataSourceCache.getDebugString());
+		messageList.add("  Snapshots - count: " + F3Screen.NUMBER_FORMAT.format(this.snapshotByPos.size()) 
+				+ ", hits: " + F3Screen.NUMBER_FORMAT.format(this.snapshotHitCount.get()));
+		messageList.add("  " + this.parentUpdateScheduler.getDebugString(this.store, this.updatingPosSet.size()));
+	}
 	
 	
 	
@@ -803,6 +1132,13 @@ public class FullDataSourceProviderV2
 	public void close()
 	{
 		super.close();
+		this.decodedDataSourceCache.close();
+		this.snapshotByPos.invalidateAll();
+		if (this.store != this.repo)
+		{
+			this.store.close();
+		}
+		
 		if (this.updateQueueProcessor != null)
 		{
 			this.updateQueueProcessor.shutdownNow();
@@ -38,6 +38,7 @@ import com.seibel.distanthorizons.core.render.renderer.IDebugRenderable;
 import com.seibel.distanthorizons.core.util.LodUtil;
 import com.seibel.distanthorizons.core.util.threading.PriorityTaskPicker;
 import com.seibel.distanthorizons.core.util.threading.ThreadPoolUtil;
+import com.seibel.distanthorizons.coreapi.util.BitShiftUtil;
 import it.unimi.dsi.fastutil.bytes.ByteArrayList;
 import it.unimi.dsi.fastutil.longs.LongArrayList;
 import org.apache.logging.log4j.Logger;
@@ -46,6 +47,7 @@ import org.jetbrains.annotations.Nullable;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Map;
 import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -231,7 +233,7 @@ public class GeneratedFullDataSourceProvider extends FullDataSourceProviderV2 im
 		
 		
 		int maxWorldGenQueueCount = MAX_WORLD_GEN_REQUESTS_PER_THREAD * Config.Common.MultiThreading.numberOfThreads.get();
-
+		
 		if (this.delayedFullDataSourceSaveCache.getUnsavedCount() >= maxWorldGenQueueCount)
 		{
 			// don't queue additional world gen requests if there are
@@ -321,6 +323,33 @@ public class GeneratedFullDataSourceProvider extends FullDataSourceProviderV2 im
 	
 	public static final PhantomArrayListPool ARRAY_LIST_POOL = new PhantomArrayListPool("Generated Provider");
 	
+	/**
+	 * @param minGenerationStep null if the store doesn't know the position's minimum generation step,
+	 * 		IE the data was saved before the step was tracked or was received from a server.
+	 * 		In that case the column generation steps are decompressed and checked instead.
+	 */
+	private boolean isFullyGenerated(long pos, @Nullable Byte minGenerationStep)
+	{
+		if (minGenerationStep != null)
+		{
+			return minGenerationStep != EDhApiWorldGenerationStep.EMPTY.value
+					&& minGenerationStep != EDhApiWorldGenerationStep.DOWN_SAMPLED.value;
+		}
+		
+		try(PhantomArrayListCheckout checkout = ARRAY_LIST_POOL.checkoutArrays(1, 0, 0))
+		{
+			ByteArrayList columnGenStepArray = checkout.getByteArray(0, FullDataSourceV2.WIDTH*FullDataSourceV2.WIDTH);
+			this.store.getColumnGenerationStepForPos(pos, columnGenStepArray);
+			if (columnGenStepArray.isEmpty())
+			{
+				// the data was removed after the range was queried
+				return false;
+			}
+			
+			return this.isFullyGenerated(columnGenStepArray);
+		}
+	}
+	
 	
 	@Override
 	public LongArrayList getPositionsToRetrieve(Long pos)
@@ -333,102 +362,43 @@ public class GeneratedFullDataSourceProvider extends FullDataSourceProviderV2 im
 		
 		
 		// don't check any child positions if this position is already fully generated 
-		if (this.repo.existsWithKey(pos))
+		int posX = DhSectionPos.getX(pos);
+		int posZ = DhSectionPos.getZ(pos);
+		byte posDetailLevel = DhSectionPos.getDetailLevel(pos);
+		Map<Long, Byte> parentMinGenStepByPos = this.store.getMinGenerationStepsForRange(posDetailLevel, posX, posZ, posX + 1, posZ + 1);
+		if (parentMinGenStepByPos.containsKey(pos)
+			&& this.isFullyGenerated(pos, parentMinGenStepByPos.get(pos)))
 		{
-			try(PhantomArrayListCheckout checkout = ARRAY_LIST_POOL.checkoutArrays(1, 0, 0))
-			{
-				ByteArrayList columnGenStepArray = checkout.getByteArray(0, FullDataSourceV2.WIDTH*FullDataSourceV2.WIDTH);
-				this.repo.getColumnGenerationStepForPos(pos, columnGenStepArray);
-				if (!columnGenStepArray.isEmpty())
-				{
-					boolean positionFullyGenerated = true;
-					
-					// check if any positions are ungenerated
-					for (int i = 0; i < columnGenStepArray.size(); i++)
-					{
-						if (columnGenStepArray.getByte(i) == EDhApiWorldGenerationStep.EMPTY.value
-							|| columnGenStepArray.getByte(i) == EDhApiWorldGenerationStep.DOWN_SAMPLED.value)
-						{
-							positionFullyGenerated = false;
-							break;
-						}
-					}
-					
-					if (positionFullyGenerated)
-					{
-						return new LongArrayList();
-					}
-				}
-			}
+			return new LongArrayList();
 		}
 		
 		
 		
 		// this section is missing one or more columns, queue the missing ones for generation.
-		// TODO speed up this logic by only checking ungenerated columns
 		LongArrayList generationList = new LongArrayList();
 		
 		byte lowestGeneratorDetailLevel = (byte) Math.min(
 				worldGenQueue.lowestDataDetail()  + DhSectionPos.SECTION_MINIMUM_DETAIL_LEVEL,
-				DhSectionPos.getDetailLevel(pos));
+				posDetailLevel);
+		
+		// a single range query replaces checking each child individually
+		long minChildPos = DhSectionPos.convertToDetailLevel(pos, lowestGeneratorDetailLevel);
+		int childWidth = BitShiftUtil.powerOfTwo(posDetailLevel - lowestGeneratorDetailLevel);
+		int minChildX = DhSectionPos.getX(minChildPos);
+		int minChildZ = DhSectionPos.getZ(minChildPos);
+		Map<Long, Byte> childMinGenStepByPos = this.store.getMinGenerationStepsForRange(lowestGeneratorDetailLevel,
+				minChildX, minChildZ,
+				minChildX + childWidth, minChildZ + childWidth);
 		
 		DhSectionPos.forEachChildAtDetailLevel(pos, lowestGeneratorDetailLevel, (genPos) ->
 		{
-			if (!this.repo.existsWithKey(genPos))
+			if (!childMinGenStepByPos.containsKey(genPos))
 			{
 				// nothing exists for this position, it needs generation
 				generationList.add(genPos);
 			}
-			else
+			else if (!this.isFullyGenerated(genPos, childMinGenStepByPos.get(genPos)))
 			{
-				
-				EDhApiWorldGenerationStep currentMinWorldGenStep = EDhApiWorldGenerationStep.LIGHT;
-				try(PhantomArrayListCheckout checkout = ARRAY_LIST_POOL.checkoutArrays(1, 0, 0))
-				{
-					ByteArrayList columnGenerationSteps = checkout.getByteArray(0, FullDataSourceV2.WIDTH*FullDataSourceV2.WIDTH);
-					this.repo.getColumnGenerationStepForPos(genPos, columnGenerationSteps);
-					if (columnGenerationSteps.isEmpty())
-					{
-						// shouldn't happen, but just in case
-						return;
-					}
-					
-					
-					
-					checkWorldGenLoop:
-					for (int x = 0; x < FullDataSourceV2.WIDTH; x++)
-					{
-						for (int z = 0; z < FullDataSourceV2.WIDTH; z++)
-						{
-							int index = FullDataSourceV2.relativePosToIndex(x, z);
-							byte genStepValue = columnGenerationSteps.getByte(index);
-							
-							if (genStepValue < currentMinWorldGenStep.value)
-							{
-								EDhApiWorldGenerationStep newWorldGenStep = EDhApiWorldGenerationStep.fromValue(genStepValue);
-								if (newWorldGenStep != null && newWorldGenStep.value < currentMinWorldGenStep.value)
-								{
-									currentMinWorldGenStep = newWorldGenStep;
-								}
-							}
-							
-							if (currentMinWorldGenStep == EDhApiWorldGenerationStep.EMPTY 
-								|| currentMinWorldGenStep == EDhApiWorldGenerationStep.DOWN_SAMPLED)
-							{
-								// queue the task
-								break checkWorldGenLoop;
-							}
-						}
-					}
-				}
-				
-				if (currentMinWorldGenStep != EDhApiWorldGenerationStep.EMPTY
-					&& currentMinWorldGenStep != EDhApiWorldGenerationStep.DOWN_SAMPLED)
-				{
-					// no world gen needed for this position
-					return;
-				}
-				
 				generationList.add(genPos);
 			}
 		});
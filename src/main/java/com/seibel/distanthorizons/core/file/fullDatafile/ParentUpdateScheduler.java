@@ -0,0 +1,135 @@
+/*
+ *    This file is part of the Distant Horizons mod
+ *    licensed under the GNU LGPL v3 License.
+ *
+ *    Copyright (C) 2020 James Seibel
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, version 3.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public License
+ *    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.seibel.distanthorizons.core.file.fullDatafile;
+
+import com.seibel.distanthorizons.core.file.fullDatafile.storage.IFullDataSourceStore;
+import com.seibel.distanthorizons.core.logging.f3.F3Screen;
+import com.seibel.distanthorizons.core.pos.DhSectionPos;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+
+import java.util.LinkedHashMap;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Decides which parent positions should be updated next
+ * and tracks how well those updates are being combined. <br><br>
+ *
+ * Flagged children are grouped by their parent so every pending child
+ * is applied in the same pass and the parent is only written once. <br>
+ * Parents are handled breadth first, lowest detail level first,
+ * and a parent is held back while any of its children are still being updated,
+ * otherwise the parent would be written again as soon as that child finishes.
+ *
+ * @see FullDataSourceProviderV2
+ */
+public class ParentUpdateScheduler
+{
+	private static final int CHILD_COUNT_PER_PARENT = 4;
+	
+	private final AtomicLong parentWriteCount = new AtomicLong(0);
+	private final AtomicLong childMergeCount = new AtomicLong(0);
+	
+	
+	
+	//============//
+	// scheduling //
+	//============//
+	
+	/**
+	 * @param updatingPosSet positions that are currently being updated,
+	 *                       their parents will wait until they're done
+	 * @return the children to apply for each parent position,
+	 *          in the order the parents should be updated
+	 */
+	public LinkedHashMap<Long, LongArrayList> getNextParentBatch(
+			IFullDataSourceStore store, Set<Long> updatingPosSet,
+			int targetBlockPosX, int targetBlockPosZ, int maxParentCount)
+	{
+		// sorted by detail level then distance,
+		// so the parents will also be sorted breadth first
+		LongArrayList childPosList = store.getPositionsToUpdate(targetBlockPosX, targetBlockPosZ, maxParentCount * CHILD_COUNT_PER_PARENT);
+		
+		LinkedHashMap<Long, LongArrayList> childPosListByParentPos = new LinkedHashMap<>();
+		for (int i = 0; i < childPosList.size() && childPosListByParentPos.size() < maxParentCount; i++)
+		{
+			long parentPos = DhSectionPos.getParentPos(childPosList.getLong(i));
+			if (childPosListByParentPos.containsKey(parentPos)
+				|| updatingPosSet.contains(parentPos))
+			{
+				// already handled by one of this child's siblings
+				// or currently being updated
+				continue;
+			}
+			
+			LongArrayList siblingPosList = new LongArrayList(CHILD_COUNT_PER_PARENT);
+			boolean childStillUpdating = false;
+			for (int childIndex = 0; childIndex < CHILD_COUNT_PER_PARENT; childIndex++)
+			{
+				long siblingPos = DhSectionPos.getChildByIndex(parentPos, childIndex);
+				if (updatingPosSet.contains(siblingPos) 
+					|| childPosListByParentPos.containsKey(siblingPos))
+				{
+					childStillUpdating = true;
+					break;
+				}
+				
+				// the sibling may not have been returned if it's further away
+				if (store.isApplyToParent(siblingPos))
+				{
+					siblingPosList.add(siblingPos);
+				}
+			}
+			
+			if (!childStillUpdating && !siblingPosList.isEmpty())
+			{
+				childPosListByParentPos.put(parentPos, siblingPosList);
+			}
+		}
+		
+		return childPosListByParentPos;
+	}
+	
+	
+	
+	//=========//
+	// metrics //
+	//=========//
+	
+	/** should be called each time a parent is written */
+	public void recordParentWrite(int mergedChildCount)
+	{
+		this.parentWriteCount.incrementAndGet();
+		this.childMergeCount.addAndGet(mergedChildCount);
+	}
+	
+	public String getDebugString(IFullDataSourceStore store, int updatingCount)
+	{
+		long writeCount = this.parentWriteCount.get();
+		double mergesPerWrite = (writeCount != 0) ? (double) this.childMergeCount.get() / writeCount : 0;
+		
+		return "Update Propagation - parents queued: " + F3Screen.NUMBER_FORMAT.format(store.getParentUpdateCount())
+				+ ", children queued: " + F3Screen.NUMBER_FORMAT.format(store.getChildUpdateCount())
+				+ ", updating: " + F3Screen.NUMBER_FORMAT.format(updatingCount)
+				+ ", parent writes: " + F3Screen.NUMBER_FORMAT.format(writeCount)
+				+ ", merges per write: " + String.format("%.2f", mergesPerWrite);
+	}
+	
+}
@@ -0,0 +1,704 @@
+/*
+ *    This file is part of the Distant Horizons mod
+ *    licensed under the GNU LGPL v3 License.
+ *
+ *    Copyright (C) 2020 James Seibel
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, version 3.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public License
+ *    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.seibel.distanthorizons.core.file.fullDatafile.storage;
+
+import com.seibel.distanthorizons.api.enums.config.EDhApiDataCompressionMode;
+import com.seibel.distanthorizons.core.logging.DhLoggerBuilder;
+import com.seibel.distanthorizons.core.pos.DhSectionPos;
+import com.seibel.distanthorizons.core.sql.CompressionDictionaryCache;
+import com.seibel.distanthorizons.core.sql.dto.FullDataSourceV2DTO;
+import com.seibel.distanthorizons.core.util.objects.DataCorruptedException;
+import com.seibel.distanthorizons.core.util.objects.dataStreams.ByteBufferInputStream;
+import com.seibel.distanthorizons.core.util.objects.dataStreams.DhDataInputStream;
+import com.seibel.distanthorizons.core.util.objects.dataStreams.ZstdDictionary;
+import it.unimi.dsi.fastutil.bytes.ByteArrayList;
+import org.apache.logging.log4j.Logger;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.BitSet;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Stores up to 32x32 {@link FullDataSourceV2DTO}'s of a single detail level in one file. <br><br>
+ *
+ * File layout: <br>
+ * - Preamble sector: magic number, format version, region position and each entry's update flags. <br>
+ * - Entry table: {@link FullDataRegionFile#ENTRY_COUNT} fixed size entries pointing to each section's data. <br>
+ * - Data sectors: each section's blobs stored back to back in {@link FullDataRegionFile#SECTOR_SIZE_IN_BYTES} sized sectors. <br><br>
+ *
+ * The preamble and entry table are memory mapped read/write,
+ * the data sectors are memory mapped read only and written via the {@link FileChannel}. <br>
+ * New data is always written to free sectors and forced to disk before the entry table is updated,
+ * and the sectors an entry used to point to are only reused after the updated entry table has been forced,
+ * so a crash mid-write will leave either the old or the new data intact. <br><br>
+ *
+ * All reads must hold {@link FullDataRegionFile#lock}'s read lock
+ * and all writes must hold its write lock.
+ *
+ * @see RegionFileFullDataSourceStore
+ */
+public class FullDataRegionFile implements AutoCloseable
+{
+	private static final Logger LOGGER = DhLoggerBuilder.getLogger();
+	
+	public static final String FILE_EXTENSION = ".dhr";
+	
+	/** how many sections wide a region file is, as a power of 2 */
+	public static final int REGION_WIDTH_POWER = 5;
+	public static final int REGION_WIDTH = 1 << REGION_WIDTH_POWER;
+	public static final int ENTRY_COUNT = REGION_WIDTH * REGION_WIDTH;
+	
+	public static final int SECTOR_SIZE_IN_BYTES = 4096;
+	
+	/** "DHRF" */
+	private static final int MAGIC_NUMBER = 0x44485246;
+	public static final int FILE_FORMAT_VERSION = 1;
+	
+	// preamble layout
+	private static final int PREAMBLE_MAGIC_OFFSET = 0;
+	private static final int PREAMBLE_VERSION_OFFSET = 4;
+	private static final int PREAMBLE_DETAIL_LEVEL_OFFSET = 8;
+	private static final int PREAMBLE_REGION_X_OFFSET = 12;
+	private static final int PREAMBLE_REGION_Z_OFFSET = 16;
+	/**
+	 * The update flags are stored separately from the entries
+	 * so they can be read with a single small read when the store is opened.
+	 */
+	private static final int PREAMBLE_FLAGS_OFFSET = 1024;
+	
+	private static final int ENTRY_SIZE_IN_BYTES = 64;
+	private static final int ENTRY_TABLE_OFFSET = SECTOR_SIZE_IN_BYTES;
+	public static final int HEADER_SIZE_IN_BYTES = ENTRY_TABLE_OFFSET + (ENTRY_COUNT * ENTRY_SIZE_IN_BYTES);
+	private static final int HEADER_SECTOR_COUNT = HEADER_SIZE_IN_BYTES / SECTOR_SIZE_IN_BYTES;
+	
+	// entry layout
+	private static final int ENTRY_SECTOR_OFFSET_OFFSET = 0;
+	private static final int ENTRY_SECTOR_COUNT_OFFSET = 4;
+	private static final int ENTRY_DATA_LENGTH_OFFSET = 8;
+	private static final int ENTRY_GEN_STEP_LENGTH_OFFSET = 12;
+	private static final int ENTRY_WORLD_COMPRESSION_LENGTH_OFFSET = 16;
+	private static final int ENTRY_MAPPING_LENGTH_OFFSET = 20;
+	private static final int ENTRY_LAST_MODIFIED_OFFSET = 24;
+	private static final int ENTRY_CREATED_OFFSET = 32;
+	private static final int ENTRY_MIN_Y_OFFSET = 40;
+	private static final int ENTRY_CHECKSUM_OFFSET = 44;
+	private static final int ENTRY_DATA_FORMAT_VERSION_OFFSET = 48;
+	private static final int ENTRY_COMPRESSION_MODE_OFFSET = 49;
+	private static final int ENTRY_SUMMARY_FLAGS_OFFSET = 50;
+	private static final int ENTRY_MIN_GEN_STEP_OFFSET = 51;
+	
+	/**
+	 * Entries written before the min generation step was tracked have this bit unset,
+	 * unset bits are always 0 so no file format change was needed.
+	 */
+	private static final byte SUMMARY_FLAG_MIN_GEN_STEP_KNOWN = 0b01;
+	
+	public static final byte FLAG_APPLY_TO_PARENT = 0b01;
+	public static final byte FLAG_APPLY_TO_CHILDREN = 0b10;
+	
+	
+	public final File file;
+	public final byte detailLevel;
+	public final int regionX;
+	public final int regionZ;
+	
+	public final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+	
+	private final FileChannel channel;
+	/** contains the preamble and entry table */
+	private final MappedByteBuffer header;
+	/**
+	 * Read only view of the whole file, re-mapped when the file grows. <br>
+	 * Null until the first read.
+	 */
+	@Nullable
+	private MappedByteBuffer dataMapping = null;
+	
+	/** includes the header sectors */
+	private final BitSet usedSectors = new BitSet();
+	
+	private volatile boolean closed = false;
+	
+	
+	
+	//=============//
+	// constructor //
+	//=============//
+	
+	public FullDataRegionFile(File file, byte detailLevel, int regionX, int regionZ) throws IOException
+	{
+		this.file = file;
+		this.detailLevel = detailLevel;
+		this.regionX = regionX;
+		this.regionZ = regionZ;
+		
+		this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.CREATE);
+		try
+		{
+			boolean newFile = (this.channel.size() == 0);
+			
+			// mapping past the end of the file will extend it
+			this.header = this.channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE_IN_BYTES);
+			if (newFile)
+			{
+				this.header.putInt(PREAMBLE_MAGIC_OFFSET, MAGIC_NUMBER);
+				this.header.putInt(PREAMBLE_VERSION_OFFSET, FILE_FORMAT_VERSION);
+				this.header.putInt(PREAMBLE_DETAIL_LEVEL_OFFSET, detailLevel);
+				this.header.putInt(PREAMBLE_REGION_X_OFFSET, regionX);
+				this.header.putInt(PREAMBLE_REGION_Z_OFFSET, regionZ);
+			}
+			else
+			{
+				this.validatePreamble();
+			}
+			
+			this.buildSectorIndex();
+		}
+		catch (IOException | RuntimeException e)
+		{
+			this.channel.close();
+			throw e;
+		}
+	}
+	private void validatePreamble() throws IOException
+	{
+		int magicNumber = this.header.getInt(PREAMBLE_MAGIC_OFFSET);
+		if (magicNumber != MAGIC_NUMBER)
+		{
+			throw new IOException("File ["+this.file+"] isn't a region file, magic number ["+Integer.toHexString(magicNumber)+"].");
+		}
+		
+		int version = this.header.getInt(PREAMBLE_VERSION_OFFSET);
+		if (version != FILE_FORMAT_VERSION)
+		{
+			throw new IOException("Region file ["+this.file+"] has an unsupported version ["+version+"], expected ["+FILE_FORMAT_VERSION+"].");
+		}
+		
+		if (this.header.getInt(PREAMBLE_DETAIL_LEVEL_OFFSET) != this.detailLevel
+			|| this.header.getInt(PREAMBLE_REGION_X_OFFSET) != this.regionX
+			|| this.header.getInt(PREAMBLE_REGION_Z_OFFSET) != this.regionZ)
+		{
+			throw new IOException("Region file ["+this.file+"] doesn't match its file name.");
+		}
+	}
+	/**
+	 * Marks which sectors are in use. <br>
+	 * Any entries that point outside the file or overlap another entry are removed.
+	 */
+	private void buildSectorIndex() throws IOException
+	{
+		this.usedSectors.set(0, HEADER_SECTOR_COUNT);
+		
+		long fileSectorCount = (this.channel.size() + SECTOR_SIZE_IN_BYTES - 1) / SECTOR_SIZE_IN_BYTES;
+		for (int index = 0; index < ENTRY_COUNT; index++)
+		{
+			int sectorOffset = this.getEntryInt(index, ENTRY_SECTOR_OFFSET_OFFSET);
+			if (sectorOffset == 0)
+			{
+				continue;
+			}
+			
+			int sectorCount = this.getEntryInt(index, ENTRY_SECTOR_COUNT_OFFSET);
+			boolean valid = sectorOffset >= HEADER_SECTOR_COUNT
+					&& sectorCount > 0
+					&& (long) sectorOffset + sectorCount <= fileSectorCount
+					&& this.getEntryDataLength(index) <= (long) sectorCount * SECTOR_SIZE_IN_BYTES
+					// overlapping entries
+					&& this.usedSectors.get(sectorOffset, sectorOffset + sectorCount).isEmpty();
+			if (!valid)
+			{
+				LOGGER.warn("Removing invalid entry ["+index+"] in region file ["+this.file+"], sector offset ["+sectorOffset+"], sector count ["+sectorCount+"].");
+				this.clearEntry(index);
+				continue;
+			}
+			
+			this.usedSectors.set(sectorOffset, sectorOffset + sectorCount);
+		}
+	}
+	
+	
+	
+	//================//
+	// static helpers //
+	//================//
+	
+	public static String getFileName(int regionX, int regionZ) { return "r." + regionX + "." + regionZ + FILE_EXTENSION; }
+	
+	/** @return null if the file name isn't a region file name */
+	@Nullable
+	public static int[] parseFileName(String fileName)
+	{
+		if (!fileName.startsWith("r.") || !fileName.endsWith(FILE_EXTENSION))
+		{
+			return null;
+		}
+		
+		String[] parts = fileName.substring(2, fileName.length() - FILE_EXTENSION.length()).split("\\.");
+		if (parts.length != 2)
+		{
+			return null;
+		}
+		
+		try
+		{
+			return new int[] { Integer.parseInt(parts[0]), Integer.parseInt(parts[1]) };
+		}
+		catch (NumberFormatException e)
+		{
+			return null;
+		}
+	}
+	
+	public static int getRegionCoord(int sectionCoord) { return sectionCoord >> REGION_WIDTH_POWER; }
+	
+	/** the returned key is a section pos with the region's detail level and region X/Z */
+	public static long getRegionKey(long pos)
+	{ return DhSectionPos.encode(DhSectionPos.getDetailLevel(pos), getRegionCoord(DhSectionPos.getX(pos)), getRegionCoord(DhSectionPos.getZ(pos))); }
+	
+	public static int getEntryIndex(long pos)
+	{
+		int localX = DhSectionPos.getX(pos) & (REGION_WIDTH - 1);
+		int localZ = DhSectionPos.getZ(pos) & (REGION_WIDTH - 1);
+		return localX + (localZ * REGION_WIDTH);
+	}
+	
+	public long getSectionPos(int index)
+	{
+		int posX = (this.regionX << REGION_WIDTH_POWER) + (index % REGION_WIDTH);
+		int posZ = (this.regionZ << REGION_WIDTH_POWER) + (index / REGION_WIDTH);
+		return DhSectionPos.encode(this.detailLevel, posX, posZ);
+	}
+	
+	/**
+	 * Reads just the update flags from the given file without opening it as a region. <br>
+	 * Used to build the update index without needing to keep every file open.
+	 *
+	 * @return null if the file isn't a valid region file
+	 */
+	@Nullable
+	public static byte[] readUpdateFlags(File file) throws IOException
+	{
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ))
+		{
+			ByteBuffer buffer = ByteBuffer.allocate(PREAMBLE_FLAGS_OFFSET + ENTRY_COUNT);
+			readFully(channel, buffer, 0);
+			
+			if (buffer.getInt(PREAMBLE_MAGIC_OFFSET) != MAGIC_NUMBER
+				|| buffer.getInt(PREAMBLE_VERSION_OFFSET) != FILE_FORMAT_VERSION)
+			{
+				return null;
+			}
+			
+			byte[] flags = new byte[ENTRY_COUNT];
+			buffer.position(PREAMBLE_FLAGS_OFFSET);
+			buffer.get(flags);
+			return flags;
+		}
+		catch (EOFException e)
+		{
+			// the file is too short to be a region file
+			return null;
+		}
+	}
+	
+	
+	
+	//=========//
+	// reading //
+	//=========//
+	
+	public boolean isClosed() { return this.closed; }
+	
+	public boolean exists(int index) { return this.getEntryInt(index, ENTRY_SECTOR_OFFSET_OFFSET) != 0; }
+	
+	public byte getFlags(int index) { return this.header.get(PREAMBLE_FLAGS_OFFSET + index); }
+	
+	public long getLastModifiedUnixDateTime(int index) { return this.getEntryLong(index, ENTRY_LAST_MODIFIED_OFFSET); }
+	
+	public int getDataLength(int index) { return this.getEntryInt(index, ENTRY_DATA_LENGTH_OFFSET); }
+	
+	/** @return null if the step is unknown or nothing exists at the given index */
+	@Nullable
+	public Byte getMinGenerationStep(int index)
+	{
+		if ((this.getEntryByte(index, ENTRY_SUMMARY_FLAGS_OFFSET) & SUMMARY_FLAG_MIN_GEN_STEP_KNOWN) == 0)
+		{
+			return null;
+		}
+		return this.getEntryByte(index, ENTRY_MIN_GEN_STEP_OFFSET);
+	}
+	
+	/** @return null if nothing exists at the given index */
+	@Nullable
+	public FullDataSourceV2DTO readDto(int index) throws IOException
+	{
+		if (!this.exists(index))
+		{
+			return null;
+		}
+		
+		ByteBuffer slice = this.getEntrySlice(index);
+		
+		FullDataSourceV2DTO dto = FullDataSourceV2DTO.CreateEmptyDataSourceForDecoding();
+		try
+		{
+			// read order must match the write order
+			copyToList(slice, this.getEntryInt(index, ENTRY_GEN_STEP_LENGTH_OFFSET), dto.compressedColumnGenStepByteArray);
+			copyToList(slice, this.getEntryInt(index, ENTRY_WORLD_COMPRESSION_LENGTH_OFFSET), dto.compressedWorldCompressionModeByteArray);
+			copyToList(slice, this.getEntryInt(index, ENTRY_MAPPING_LENGTH_OFFSET), dto.compressedMappingByteArray);
+			copyToList(slice, this.getEntryInt(index, ENTRY_DATA_LENGTH_OFFSET), dto.compressedDataByteArray);
+			
+			byte flags = this.getFlags(index);
+			
+			dto.pos = this.getSectionPos(index);
+			dto.levelMinY = this.getEntryInt(index, ENTRY_MIN_Y_OFFSET);
+			dto.dataChecksum = this.getEntryInt(index, ENTRY_CHECKSUM_OFFSET);
+			dto.dataFormatVersion = this.getEntryByte(index, ENTRY_DATA_FORMAT_VERSION_OFFSET);
+			dto.compressionModeValue = this.getEntryByte(index, ENTRY_COMPRESSION_MODE_OFFSET);
+			dto.applyToParent = (flags & FLAG_APPLY_TO_PARENT) != 0;
+			dto.applyToChildren = (flags & FLAG_APPLY_TO_CHILDREN) != 0;
+			dto.lastModifiedUnixDateTime = this.getEntryLong(index, ENTRY_LAST_MODIFIED_OFFSET);
+			dto.createdUnixDateTime = this.getEntryLong(index, ENTRY_CREATED_OFFSET);
+			dto.minGenerationStep = this.getMinGenerationStep(index);
+			
+			return dto;
+		}
+		catch (RuntimeException e)
+		{
+			dto.close();
+			throw new IOException("Unable to read entry ["+index+"] from region file ["+this.file+"], error: ["+e.getMessage()+"].", e);
+		}
+	}
+	private static void copyToList(ByteBuffer source, int length, ByteArrayList outputList)
+	{
+		outputList.size(length);
+		source.get(outputList.elements(), 0, length);
+	}
+	
+	/**
+	 * Decompresses the column generation steps directly from the memory mapped file,
+	 * skipping the intermediate copy {@link FullDataRegionFile#readDto(int)} needs.
+	 *
+	 * @param compressionDictionaries needed if the data was compressed with a dictionary
+	 * @return false if nothing exists at the given index
+	 * @throws IOException if the data couldn't be decompressed
+	 */
+	public boolean readColumnGenerationSteps(int index, ByteArrayList outputByteArray, @Nullable CompressionDictionaryCache compressionDictionaries) throws IOException
+	{
+		if (!this.exists(index))
+		{
+			return false;
+		}
+		
+		ByteBuffer slice = this.getEntrySlice(index);
+		slice.limit(this.getEntryInt(index, ENTRY_GEN_STEP_LENGTH_OFFSET));
+		
+		byte compressionModeValue = this.getEntryByte(index, ENTRY_COMPRESSION_MODE_OFFSET);
+		EDhApiDataCompressionMode compressionModeEnum;
+		ZstdDictionary dictionary;
+		try
+		{
+			compressionModeEnum = FullDataSourceV2DTO.getCompressionModeFromValue(compressionModeValue);
+			dictionary = FullDataSourceV2DTO.getDictionaryFromValue(compressionModeValue, compressionDictionaries);
+		}
+		catch (IllegalArgumentException | DataCorruptedException e)
+		{
+			throw new IOException(e);
+		}
+		
+		DhDataInputStream compressedIn = new DhDataInputStream(new ByteBufferInputStream(slice), compressionModeEnum, dictionary);
+		outputByteArray.clear();
+		int nextByte = compressedIn.read();
+		while (nextByte != -1)
+		{
+			outputByteArray.add((byte) nextByte);
+			nextByte = compressedIn.read();
+		}
+		return true;
+	}
+	
+	/** @return a buffer containing every blob for the given entry, positioned at the first blob */
+	private ByteBuffer getEntrySlice(int index) throws IOException
+	{
+		long startByte = (long) this.getEntryInt(index, ENTRY_SECTOR_OFFSET_OFFSET) * SECTOR_SIZE_IN_BYTES;
+		int length = (int) this.getEntryDataLength(index);
+		long endByte = startByte + length;
+		
+		if (endByte > Integer.MAX_VALUE)
+		{
+			// a single mapping can't be larger than 2 GB,
+			// this shouldn't happen for normal worlds but just in case
+			ByteBuffer buffer = ByteBuffer.allocate(length);
+			readFully(this.channel, buffer, startByte);
+			buffer.flip();
+			return buffer;
+		}
+		
+		ByteBuffer slice = this.getDataMapping((int) endByte).duplicate();
+		slice.position((int) startByte);
+		slice.limit((int) endByte);
+		return slice.slice();
+	}
+	/** re-maps the file if it has grown past the current mapping */
+	private synchronized MappedByteBuffer getDataMapping(int requiredEndByte) throws IOException
+	{
+		if (this.dataMapping == null || this.dataMapping.capacity() < requiredEndByte)
+		{
+			long mapSize = Math.min(this.channel.size(), Integer.MAX_VALUE);
+			if (mapSize < requiredEndByte)
+			{
+				throw new EOFException("Region file ["+this.file+"] is shorter than expected. Required ["+requiredEndByte+"] bytes, file length ["+mapSize+"] bytes.");
+			}
+			
+			// the old mapping will be unmapped once any slices using it are garbage collected
+			this.dataMapping = this.channel.map(FileChannel.MapMode.READ_ONLY, 0, mapSize);
+		}
+		return this.dataMapping;
+	}
+	
+	
+	
+	//=========//
+	// writing //
+	//=========//
+	
+	/**
+	 * @param preserveTimestamps if true the DTO's timestamps are written as-is,
+	 *                           otherwise the last modified time is set to now
+	 */
+	public void write(int index, FullDataSourceV2DTO dto, boolean preserveTimestamps) throws IOException
+	{
+		int genStepLength = dto.compressedColumnGenStepByteArray.size();
+		int worldCompressionLength = dto.compressedWorldCompressionModeByteArray.size();
+		int mappingLength = dto.compressedMappingByteArray.size();
+		int dataLength = dto.compressedDataByteArray.size();
+		long totalLength = (long) genStepLength + worldCompressionLength + mappingLength + dataLength;
+		
+		int sectorCount = (int) Math.max(1, (totalLength + SECTOR_SIZE_IN_BYTES - 1) / SECTOR_SIZE_IN_BYTES);
+		int sectorOffset = this.allocateSectors(sectorCount);
+		
+		try
+		{
+			// write order must match the read order
+			long filePosition = (long) sectorOffset * SECTOR_SIZE_IN_BYTES;
+			filePosition = this.writeList(dto.compressedColumnGenStepByteArray, filePosition);
+			filePosition = this.writeList(dto.compressedWorldCompressionModeByteArray, filePosition);
+			filePosition = this.writeList(dto.compressedMappingByteArray, filePosition);
+			this.writeList(dto.compressedDataByteArray, filePosition);
+			
+			// the OS can write the mapped header back at any time,
+			// so the data has to be on disk before the entry can point to it
+			this.channel.force(false);
+		}
+		catch (IOException e)
+		{
+			this.usedSectors.clear(sectorOffset, sectorOffset + sectorCount);
+			throw e;
+		}
+		
+		
+		// the entry is only updated once the data has been written
+		boolean exists = this.exists(index);
+		int oldSectorOffset = this.getEntryInt(index, ENTRY_SECTOR_OFFSET_OFFSET);
+		int oldSectorCount = this.getEntryInt(index, ENTRY_SECTOR_COUNT_OFFSET);
+		
+		long now = System.currentTimeMillis();
+		long lastModified = preserveTimestamps ? dto.lastModifiedUnixDateTime : now;
+		long created = (preserveTimestamps || exists) ? dto.createdUnixDateTime : now;
+		
+		int entryOffset = getEntryOffset(index);
+		this.header.putInt(entryOffset + ENTRY_SECTOR_OFFSET_OFFSET, sectorOffset);
+		this.header.putInt(entryOffset + ENTRY_SECTOR_COUNT_OFFSET, sectorCount);
+		this.header.putInt(entryOffset + ENTRY_DATA_LENGTH_OFFSET, dataLength);
+		this.header.putInt(entryOffset + ENTRY_GEN_STEP_LENGTH_OFFSET, genStepLength);
+		this.header.putInt(entryOffset + ENTRY_WORLD_COMPRESSION_LENGTH_OFFSET, worldCompressionLength);
+		this.header.putInt(entryOffset + ENTRY_MAPPING_LENGTH_OFFSET, mappingLength);
+		this.header.putLong(entryOffset + ENTRY_LAST_MODIFIED_OFFSET, lastModified);
+		this.header.putLong(entryOffset + ENTRY_CREATED_OFFSET, created);
+		this.header.putInt(entryOffset + ENTRY_MIN_Y_OFFSET, dto.levelMinY);
+		this.header.putInt(entryOffset + ENTRY_CHECKSUM_OFFSET, dto.dataChecksum);
+		this.header.put(entryOffset + ENTRY_DATA_FORMAT_VERSION_OFFSET, dto.dataFormatVersion);
+		this.header.put(entryOffset + ENTRY_COMPRESSION_MODE_OFFSET, dto.compressionModeValue);
+		this.header.put(entryOffset + ENTRY_SUMMARY_FLAGS_OFFSET, (dto.minGenerationStep != null) ? SUMMARY_FLAG_MIN_GEN_STEP_KNOWN : 0);
+		this.header.put(entryOffset + ENTRY_MIN_GEN_STEP_OFFSET, (dto.minGenerationStep != null) ? dto.minGenerationStep : 0);
+		
+		// null flags keep their existing value
+		byte flags = exists ? this.getFlags(index) : 0;
+		if (dto.applyToParent != null)
+		{
+			flags = setFlag(flags, FLAG_APPLY_TO_PARENT, dto.applyToParent);
+		}
+		if (dto.applyToChildren != null)
+		{
+			flags = setFlag(flags, FLAG_APPLY_TO_CHILDREN, dto.applyToChildren);
+		}
+		this.header.put(PREAMBLE_FLAGS_OFFSET + index, flags);
+		
+		// once this returns the save is on disk,
+		// which the store relies on to know when writes that depend on this data (IE chunk hashes) are safe
+		this.header.force();
+		
+		if (exists)
+		{
+			// the old sectors can't be reused until the header no longer points to them on disk,
+			// otherwise a crash could leave the old entry pointing at another section's data
+			this.usedSectors.clear(oldSectorOffset, oldSectorOffset + oldSectorCount);
+		}
+	}
+	private long writeList(ByteArrayList list, long filePosition) throws IOException
+	{
+		ByteBuffer buffer = ByteBuffer.wrap(list.elements(), 0, list.size());
+		while (buffer.hasRemaining())
+		{
+			filePosition += this.channel.write(buffer, filePosition);
+		}
+		return filePosition;
+	}
+	
+	/** does nothing if nothing exists at the given index */
+	public void delete(int index)
+	{
+		if (!this.exists(index))
+		{
+			return;
+		}
+		
+		int sectorOffset = this.getEntryInt(index, ENTRY_SECTOR_OFFSET_OFFSET);
+		int sectorCount = this.getEntryInt(index, ENTRY_SECTOR_COUNT_OFFSET);
+		this.clearEntry(index);
+		
+		// see write() for why the header has to be forced first
+		this.header.force();
+		this.usedSectors.clear(sectorOffset, sectorOffset + sectorCount);
+	}
+	private void clearEntry(int index)
+	{
+		int entryOffset = getEntryOffset(index);
+		for (int i = 0; i < ENTRY_SIZE_IN_BYTES; i++)
+		{
+			this.header.put(entryOffset + i, (byte) 0);
+		}
+		this.header.put(PREAMBLE_FLAGS_OFFSET + index, (byte) 0);
+	}
+	
+	/**
+	 * Does nothing if nothing exists at the given index.
+	 * @return the entry's new flags
+	 */
+	public byte setFlag(int index, byte flag, boolean value)
+	{
+		if (!this.exists(index))
+		{
+			return 0;
+		}
+		
+		byte flags = setFlag(this.getFlags(index), flag, value);
+		this.header.put(PREAMBLE_FLAGS_OFFSET + index, flags);
+		return flags;
+	}
+	private static byte setFlag(byte flags, byte flag, boolean value) { return (byte) (value ? (flags | flag) : (flags & ~flag)); }
+	
+	/** first fit, extends the file if no large enough gap is found */
+	private int allocateSectors(int sectorCount)
+	{
+		int startSector = this.usedSectors.nextClearBit(HEADER_SECTOR_COUNT);
+		while (true)
+		{
+			int nextUsedSector = this.usedSectors.nextSetBit(startSector);
+			if (nextUsedSector == -1 || nextUsedSector - startSector >= sectorCount)
+			{
+				break;
+			}
+			startSector = this.usedSectors.nextClearBit(nextUsedSector);
+		}
+		
+		this.usedSectors.set(startSector, startSector + sectorCount);
+		return startSector;
+	}
+	
+	
+	
+	//================//
+	// header helpers //
+	//================//
+	
+	private static int getEntryOffset(int index) { return ENTRY_TABLE_OFFSET + (index * ENTRY_SIZE_IN_BYTES); }
+	
+	private int getEntryInt(int index, int fieldOffset) { return this.header.getInt(getEntryOffset(index) + fieldOffset); }
+	private long getEntryLong(int index, int fieldOffset) { return this.header.getLong(getEntryOffset(index) + fieldOffset); }
+	private byte getEntryByte(int index, int fieldOffset) { return this.header.get(getEntryOffset(index) + fieldOffset); }
+	
+	/** @return the combined length of every blob for the given entry */
+	private long getEntryDataLength(int index)
+	{
+		return (long) this.getEntryInt(index, ENTRY_GEN_STEP_LENGTH_OFFSET)
+				+ this.getEntryInt(index, ENTRY_WORLD_COMPRESSION_LENGTH_OFFSET)
+				+ this.getEntryInt(index, ENTRY_MAPPING_LENGTH_OFFSET)
+				+ this.getEntryInt(index, ENTRY_DATA_LENGTH_OFFSET);
+	}
+	
+	private static void readFully(FileChannel channel, ByteBuffer buffer, long filePosition) throws IOException
+	{
+		while (buffer.hasRemaining())
+		{
+			int readCount = channel.read(buffer, filePosition);
+			if (readCount == -1)
+			{
+				throw new EOFException();
+			}
+			filePosition += readCount;
+		}
+	}
+	
+	
+	
+	//==========//
+	// shutdown //
+	//==========//
+	
+	/** should be called while holding the write lock */
+	@Override
+	public void close()
+	{
+		if (this.closed)
+		{
+			return;
+		}
+		this.closed = true;
+		
+		try
+		{
+			this.header.force();
+			this.channel.close();
+		}
+		catch (IOException e)
+		{
+			LOGGER.warn("Unable to close region file ["+this.file+"], error: ["+e.getMessage()+"].", e);
+		}
+	}
+	
+}
@@ -0,0 +1,106 @@
+/*
+ *    This file is part of the Distant Horizons mod
+ *    licensed under the GNU LGPL v3 License.
+ *
+ *    Copyright (C) 2020 James Seibel
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, version 3.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public License
+ *    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.seibel.distanthorizons.core.file.fullDatafile.storage;
+
+import com.seibel.distanthorizons.core.logging.DhLoggerBuilder;
+import com.seibel.distanthorizons.core.logging.f3.F3Screen;
+import com.seibel.distanthorizons.core.pos.DhSectionPos;
+import com.seibel.distanthorizons.core.sql.dto.FullDataSourceV2DTO;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import org.apache.logging.log4j.Logger;
+
+import java.text.NumberFormat;
+
+/**
+ * Copies every {@link FullDataSourceV2DTO} from one {@link IFullDataSourceStore} to another. <br>
+ * The data is copied as-is, nothing is decompressed or re-encoded. <br><br>
+ *
+ * Timestamps are only preserved when converting into a {@link RegionFileFullDataSourceStore},
+ * the database always sets the last modified time when data is saved.
+ *
+ * @see com.seibel.distanthorizons.core.jar.JarMain
+ */
+public class FullDataSourceStoreConverter
+{
+	private static final Logger LOGGER = DhLoggerBuilder.getLogger();
+	
+	/** how often progress should be logged */
+	private static final int LOG_INTERVAL_COUNT = 1_000;
+	
+	
+	
+	/**
+	 * The source store isn't modified.
+	 * @return the number of positions converted
+	 */
+	public static long convert(IFullDataSourceStore source, IFullDataSourceStore target)
+	{
+		LongArrayList posList = source.getAllPositions();
+		NumberFormat numFormat = F3Screen.NUMBER_FORMAT;
+		LOGGER.info("Converting [" + numFormat.format(posList.size()) + "] positions from [" + source.getClass().getSimpleName() + "] to [" + target.getClass().getSimpleName() + "]...");
+		
+		long startTimeMs = System.currentTimeMillis();
+		long convertedCount = 0;
+		long failedCount = 0;
+		for (int i = 0; i < posList.size(); i++)
+		{
+			long pos = posList.getLong(i);
+			
+			try
+			{
+				FullDataSourceV2DTO dto = source.getByKey(pos);
+				if (dto == null)
+				{
+					// shouldn't happen unless the source was modified during conversion
+					continue;
+				}
+				
+				if (target instanceof RegionFileFullDataSourceStore)
+				{
+					try (FullDataSourceV2DTO closableDto = dto)
+					{
+						((RegionFileFullDataSourceStore) target).importDto(closableDto);
+					}
+				}
+				else
+				{
+					// the target is responsible for closing the DTO
+					target.queueSave(dto);
+				}
+				
+				convertedCount++;
+			}
+			catch (Exception e)
+			{
+				failedCount++;
+				LOGGER.warn("Unable to convert pos [" + DhSectionPos.toString(pos) + "], error: [" + e.getMessage() + "].", e);
+			}
+			
+			if ((i + 1) % LOG_INTERVAL_COUNT == 0)
+			{
+				LOGGER.info("Converted [" + numFormat.format(i + 1) + "/" + numFormat.format(posList.size()) + "]...");
+			}
+		}
+		
+		LOGGER.info("Converted [" + numFormat.format(convertedCount) + "] positions in [" + (System.currentTimeMillis() - startTimeMs) + "]ms, [" + numFormat.format(failedCount) + "] failed.");
+		return convertedCount;
+	}
+	
+}
@@ -0,0 +1,148 @@
+/*
+ *    This file is part of the Distant Horizons mod
+ *    licensed under the GNU LGPL v3 License.
+ *
+ *    Copyright (C) 2020 James Seibel
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, version 3.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public License
+ *    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.seibel.distanthorizons.core.file.fullDatafile.storage;
+
+import com.seibel.distanthorizons.core.file.fullDatafile.FullDataSourceProviderV2;
+import com.seibel.distanthorizons.core.sql.dto.FullDataSourceV2DTO;
+import com.seibel.distanthorizons.core.sql.repo.FullDataSourceV2Repo;
+import it.unimi.dsi.fastutil.bytes.ByteArrayList;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Map;
+
+/**
+ * The storage operations {@link FullDataSourceProviderV2}
+ * needs to read and write {@link FullDataSourceV2DTO}'s. <br><br>
+ *
+ * Implementations must be thread safe. <br>
+ * Returned DTOs are owned by the caller and must be closed.
+ *
+ * @see FullDataSourceV2Repo
+ * @see RegionFileFullDataSourceStore
+ */
+public interface IFullDataSourceStore extends AutoCloseable
+{
+	//=========//
+	// reading //
+	//=========//
+	
+	/** @return null if no data exists for the given position */
+	@Nullable
+	FullDataSourceV2DTO getByKey(Long pos);
+	
+	boolean existsWithKey(Long pos);
+	
+	/**
+	 * Populates the output array with the decompressed generation steps for the given position,
+	 * the array won't be modified if the position doesn't exist.
+	 */
+	void getColumnGenerationStepForPos(long pos, ByteArrayList outputByteArray);
+	
+	/** @return null if no data exists for the given position */
+	@Nullable
+	Long getTimestampForPos(long pos);
+	/**
+	 * The start positions are inclusive and the end positions are exclusive.
+	 * @return the last modified time for every position in the range, keyed by position
+	 */
+	Map<Long, Long> getTimestampsForRange(byte detailLevel, int startPosX, int startPosZ, int endPosX, int endPosZ);
+	/**
+	 * Used to check which positions still need world generation without decompressing any data. <br>
+	 * The start positions are inclusive and the end positions are exclusive.
+	 * @return the lowest {@link com.seibel.distanthorizons.api.enums.worldGeneration.EDhApiWorldGenerationStep} value
+	 * 		of every position in the range, keyed by position.
+	 * 		Positions without data are absent and positions whose step is unknown map to null.
+	 */
+	Map<Long, Byte> getMinGenerationStepsForRange(byte detailLevel, int startPosX, int startPosZ, int endPosX, int endPosZ);
+	
+	/**
+	 * @return the size of the full data at the given position
+	 *          (doesn't include the size of the mapping or any other column),
+	 *          0 if nothing exists
+	 */
+	long getDataSizeInBytes(long pos);
+	
+	/** @return every position in this store */
+	LongArrayList getAllPositions();
+	
+	
+	
+	//=========//
+	// writing //
+	//=========//
+	
+	/** Saves a copy of the given DTO, the caller is still responsible for closing it. */
+	void save(FullDataSourceV2DTO dto);
+	/**
+	 * Ownership of the DTO is passed to the store,
+	 * the caller shouldn't use or close the DTO after calling this method.
+	 */
+	void queueSave(FullDataSourceV2DTO dto);
+	
+	void deleteWithKey(Long pos);
+	
+	/** When this method returns every save queued before it was called will have been written. */
+	void flushQueuedSaves();
+	/**
+	 * Runs the given task once every save queued before this call has been written,
+	 * used for writes that must not be stored before the data they describe (IE chunk hashes). <br>
+	 * The task may run on another thread, or not at all if the saves couldn't be written.
+	 */
+	void runAfterQueuedSaves(Runnable task);
+	
+	
+	
+	//====================//
+	// update propagation //
+	//====================//
+	
+	void setApplyToParent(long pos, boolean applyToParent);
+	void setApplyToChild(long pos, boolean applyToChild);
+	
+	/**
+	 * @return up to returnCount positions that need to be applied to their parent,
+	 *          sorted by detail level and then by distance to the given block position
+	 */
+	LongArrayList getPositionsToUpdate(int targetBlockPosX, int targetBlockPosZ, int returnCount);
+	/** @see IFullDataSourceStore#getPositionsToUpdate(int, int, int) */
+	LongArrayList getChildPositionsToUpdate(int targetBlockPosX, int targetBlockPosZ, int returnCount);
+	
+	/** @return true if the given position still needs to be applied to its parent */
+	boolean isApplyToParent(long pos);
+	/** @return how many positions still need to be applied to their parent */
+	int getParentUpdateCount();
+	/** @return how many positions still need to be applied to their children */
+	int getChildUpdateCount();
+	
+	
+	
+	//==========//
+	// shutdown //
+	//==========//
+	
+	/** Used by the F3 menu */
+	String getDebugString();
+	
+	/** Writes anything still pending and releases any open files/connections. */
+	@Override
+	void close();
+	
+}
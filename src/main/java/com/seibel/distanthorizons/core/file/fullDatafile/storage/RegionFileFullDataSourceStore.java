@@ -0,0 +1,666 @@
+/*
+ *    This file is part of the Distant Horizons mod
+ *    licensed under the GNU LGPL v3 License.
+ *
+ *    Copyright (C) 2020 James Seibel
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, version 3.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public License
+ *    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.seibel.distanthorizons.core.file.fullDatafile.storage;
+
+import com.seibel.distanthorizons.core.dataObjects.fullData.sources.FullDataSourceV2;
+import com.seibel.distanthorizons.core.logging.DhLoggerBuilder;
+import com.seibel.distanthorizons.core.logging.f3.F3Screen;
+import com.seibel.distanthorizons.core.pos.DhSectionPos;
+import com.seibel.distanthorizons.core.sql.CompressionDictionaryCache;
+import com.seibel.distanthorizons.core.sql.FullDataMappingDictionaryCache;
+import com.seibel.distanthorizons.core.sql.dto.FullDataSourceV2DTO;
+import com.seibel.distanthorizons.core.util.ListUtil;
+import com.seibel.distanthorizons.core.util.objects.RollingAverage;
+import it.unimi.dsi.fastutil.bytes.ByteArrayList;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import org.apache.logging.log4j.Logger;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Stores {@link FullDataSourceV2DTO}'s in {@link FullDataRegionFile}'s,
+ * one folder per detail level. <br><br>
+ *
+ * This skips the JDBC layer entirely, each section is read
+ * straight out of a memory mapped file. <br>
+ * Positions that need their updates propagated are tracked in memory
+ * so the update queue doesn't have to scan every file.
+ *
+ * @see FullDataRegionFile
+ * @see FullDataSourceStoreConverter
+ */
+public class RegionFileFullDataSourceStore implements IFullDataSourceStore
+{
+	private static final Logger LOGGER = DhLoggerBuilder.getLogger();
+	
+	public static final String REGION_FOLDER_NAME = "regions";
+	
+	/**
+	 * Region files past this count will be closed when unused,
+	 * prevents running out of file handles on very large worlds.
+	 */
+	private static final int MAX_OPEN_REGION_FILE_COUNT = 256;
+	
+	
+	public final File regionFolder;
+	/** 
+	 * Dictionaries are always stored in the level's database, 
+	 * so region files can't be read without it if any dictionaries were used. 
+	 */
+	@Nullable
+	private final CompressionDictionaryCache compressionDictionaries;
+	/** @see RegionFileFullDataSourceStore#compressionDictionaries */
+	@Nullable
+	private final FullDataMappingDictionaryCache mappingDictionary;
+	
+	/** access ordered so the least recently used file can be closed first */
+	private final LinkedHashMap<Long, FullDataRegionFile> regionFileByKey = new LinkedHashMap<>(16, 0.75f, true);
+	private final ReentrantLock regionFileMapLock = new ReentrantLock();
+	
+	private final UpdatePropagationIndex updateIndex = new UpdatePropagationIndex();
+	
+	private final AtomicLong readCount = new AtomicLong(0);
+	private final AtomicLong writeCount = new AtomicLong(0);
+	private final RollingAverage readTimeInNsAvg = new RollingAverage(200);
+	
+	private volatile boolean closed = false;
+	
+	
+	
+	//=============//
+	// constructor //
+	//=============//
+	
+	public RegionFileFullDataSourceStore(File regionFolder, @Nullable CompressionDictionaryCache compressionDictionaries, @Nullable FullDataMappingDictionaryCache mappingDictionary) throws IOException
+	{
+		this.regionFolder = regionFolder;
+		this.compressionDictionaries = compressionDictionaries;
+		this.mappingDictionary = mappingDictionary;
+		if (!regionFolder.exists() && !regionFolder.mkdirs())
+		{
+			throw new IOException("Unable to create region folder ["+regionFolder+"].");
+		}
+		
+		this.buildUpdateIndex();
+	}
+	/**
+	 * Only the update flags are read from each file
+	 * so this should be relatively quick even for large worlds.
+	 */
+	private void buildUpdateIndex()
+	{
+		long startTimeMs = System.currentTimeMillis();
+		
+		this.forEachRegionFileOnDisk((file, detailLevel, regionX, regionZ) ->
+		{
+			try
+			{
+				byte[] flags = FullDataRegionFile.readUpdateFlags(file);
+				if (flags == null)
+				{
+					LOGGER.warn("Skipping invalid region file ["+file+"].");
+					return;
+				}
+				
+				for (int index = 0; index < flags.length; index++)
+				{
+					if (flags[index] != 0)
+					{
+						long pos = DhSectionPos.encode(detailLevel,
+								(regionX << FullDataRegionFile.REGION_WIDTH_POWER) + (index % FullDataRegionFile.REGION_WIDTH),
+								(regionZ << FullDataRegionFile.REGION_WIDTH_POWER) + (index / FullDataRegionFile.REGION_WIDTH));
+						this.updateIndexedFlags(pos, flags[index]);
+					}
+				}
+			}
+			catch (IOException e)
+			{
+				LOGGER.warn("Unable to read update flags from region file ["+file+"], error: ["+e.getMessage()+"].", e);
+			}
+		});
+		
+		LOGGER.info("Indexed region files in ["+this.regionFolder+"] in ["+(System.currentTimeMillis() - startTimeMs)+"]ms, found ["+this.updateIndex.getParentUpdateCount()+"] parent and ["+this.updateIndex.getChildUpdateCount()+"] child updates.");
+	}
+	
+	
+	
+	//=========//
+	// reading //
+	//=========//
+	
+	@Override
+	@Nullable
+	public FullDataSourceV2DTO getByKey(Long pos)
+	{
+		long startTimeNs = System.nanoTime();
+		
+		FullDataSourceV2DTO dto = this.runWithRegionFile(pos, false, false, (regionFile, index) -> regionFile.readDto(index));
+		if (dto != null)
+		{
+			dto.compressionDictionaries = this.compressionDictionaries;
+			dto.mappingDictionary = this.mappingDictionary;
+		}
+		
+		this.readCount.incrementAndGet();
+		this.readTimeInNsAvg.addValue(System.nanoTime() - startTimeNs);
+		return dto;
+	}
+	
+	@Override
+	public boolean existsWithKey(Long pos)
+	{
+		Boolean exists = this.runWithRegionFile(pos, false, false, (regionFile, index) -> regionFile.exists(index));
+		return exists != null && exists;
+	}
+	
+	@Override
+	public void getColumnGenerationStepForPos(long pos, ByteArrayList outputByteArray)
+	{
+		Boolean corrupt = this.runWithRegionFile(pos, false, false, (regionFile, index) ->
+		{
+			try
+			{
+				regionFile.readColumnGenerationSteps(index, outputByteArray, this.compressionDictionaries);
+				return false;
+			}
+			catch (IOException e)
+			{
+				LOGGER.warn("Decompression issue when getting column gen steps for pos: [" + DhSectionPos.toString(pos) + "], deleting corrupted data.", e);
+				return true;
+			}
+		});
+		
+		if (corrupt != null && corrupt)
+		{
+			// the read lock has to be released before the data can be deleted
+			this.deleteWithKey(pos);
+			ListUtil.clearAndSetSize(outputByteArray, FullDataSourceV2.WIDTH * FullDataSourceV2.WIDTH);
+		}
+	}
+	
+	@Override
+	@Nullable
+	public Long getTimestampForPos(long pos)
+	{
+		return this.runWithRegionFile(pos, false, false, (regionFile, index) ->
+				regionFile.exists(index) ? regionFile.getLastModifiedUnixDateTime(index) : null);
+	}
+	
+	@Override
+	public Map<Long, Long> getTimestampsForRange(byte detailLevel, int startPosX, int startPosZ, int endPosX, int endPosZ)
+	{
+		HashMap<Long, Long> returnMap = new HashMap<>();
+		this.forEachEntryInRange(detailLevel, startPosX, startPosZ, endPosX, endPosZ, (regionFile, index, pos) ->
+				returnMap.put(pos, regionFile.getLastModifiedUnixDateTime(index)));
+		return returnMap;
+	}
+	
+	@Override
+	public Map<Long, Byte> getMinGenerationStepsForRange(byte detailLevel, int startPosX, int startPosZ, int endPosX, int endPosZ)
+	{
+		HashMap<Long, Byte> returnMap = new HashMap<>();
+		this.forEachEntryInRange(detailLevel, startPosX, startPosZ, endPosX, endPosZ, (regionFile, index, pos) ->
+				returnMap.put(pos, regionFile.getMinGenerationStep(index)));
+		return returnMap;
+	}
+	
+	@Override
+	public long getDataSizeInBytes(long pos)
+	{
+		Long dataSize = this.runWithRegionFile(pos, false, false, (regionFile, index) ->
+				regionFile.exists(index) ? (long) regionFile.getDataLength(index) : 0L);
+		return (dataSize != null) ? dataSize : 0L;
+	}
+	
+	@Override
+	public LongArrayList getAllPositions()
+	{
+		LongArrayList list = new LongArrayList();
+		
+		this.forEachRegionFileOnDisk((file, detailLevel, regionX, regionZ) ->
+		{
+			long regionCornerPos = DhSectionPos.encode(detailLevel, regionX << FullDataRegionFile.REGION_WIDTH_POWER, regionZ << FullDataRegionFile.REGION_WIDTH_POWER);
+			this.runWithRegionFile(regionCornerPos, false, false, (regionFile, ignored) ->
+			{
+				for (int index = 0; index < FullDataRegionFile.ENTRY_COUNT; index++)
+				{
+					if (regionFile.exists(index))
+					{
+						list.add(regionFile.getSectionPos(index));
+					}
+				}
+				return null;
+			});
+		});
+		
+		return list;
+	}
+	
+	
+	
+	//=========//
+	// writing //
+	//=========//
+	
+	@Override
+	public void save(FullDataSourceV2DTO dto) { this.write(dto, false); }
+	
+	@Override
+	public void queueSave(FullDataSourceV2DTO dto)
+	{
+		// region files are written immediately,
+		// so there's no need to hold onto the DTO
+		try (FullDataSourceV2DTO closableDto = dto)
+		{
+			this.write(closableDto, false);
+		}
+	}
+	
+	/**
+	 * Writes the DTO with its timestamps unchanged,
+	 * used when converting data from another store.
+	 */
+	public void importDto(FullDataSourceV2DTO dto) { this.write(dto, true); }
+	
+	private void write(FullDataSourceV2DTO dto, boolean preserveTimestamps)
+	{
+		this.runWithRegionFile(dto.pos, true, true, (regionFile, index) ->
+		{
+			regionFile.write(index, dto, preserveTimestamps);
+			this.updateIndexedFlags(dto.pos, regionFile.getFlags(index));
+			return null;
+		});
+		
+		this.writeCount.incrementAndGet();
+	}
+	
+	@Override
+	public void deleteWithKey(Long pos)
+	{
+		this.runWithRegionFile(pos, false, true, (regionFile, index) ->
+		{
+			regionFile.delete(index);
+			return null;
+		});
+		
+		this.updateIndexedFlags(pos, (byte) 0);
+	}
+	
+	/** region files are written immediately, so there's nothing to flush */
+	@Override
+	public void flushQueuedSaves() { }
+	
+	@Override
+	public void runAfterQueuedSaves(Runnable task) 
+	{
+		// saves have already been written by the time they return
+		task.run(); 
+	}
+	
+	
+	
+	//====================//
+	// update propagation //
+	//====================//
+	
+	@Override
+	public void setApplyToParent(long pos, boolean applyToParent)
+	{ this.setApplyToFlag(pos, FullDataRegionFile.FLAG_APPLY_TO_PARENT, applyToParent); }
+	
+	@Override
+	public void setApplyToChild(long pos, boolean applyToChild)
+	{ this.setApplyToFlag(pos, FullDataRegionFile.FLAG_APPLY_TO_CHILDREN, applyToChild); }
+	
+	private void setApplyToFlag(long pos, byte flag, boolean value)
+	{
+		Byte newFlags = this.runWithRegionFile(pos, false, true, (regionFile, index) -> regionFile.setFlag(index, flag, value));
+		
+		// if the position doesn't exist the flag can't be set,
+		// so the index should be cleared to prevent repeatedly trying to update it
+		this.updateIndexedFlags(pos, (newFlags != null) ? newFlags.byteValue() : (byte) 0);
+	}
+	
+	private void updateIndexedFlags(long pos, byte flags)
+	{
+		this.updateIndex.setApplyToParent(pos, (flags & FullDataRegionFile.FLAG_APPLY_TO_PARENT) != 0);
+		this.updateIndex.setApplyToChildren(pos, (flags & FullDataRegionFile.FLAG_APPLY_TO_CHILDREN) != 0);
+	}
+	
+	@Override
+	public LongArrayList getPositionsToUpdate(int targetBlockPosX, int targetBlockPosZ, int returnCount)
+	{ return this.updateIndex.getClosestParentUpdates(targetBlockPosX, targetBlockPosZ, returnCount); }
+	
+	@Override
+	public LongArrayList getChildPositionsToUpdate(int targetBlockPosX, int targetBlockPosZ, int returnCount)
+	{ return this.updateIndex.getClosestChildUpdates(targetBlockPosX, targetBlockPosZ, returnCount); }
+	
+	@Override
+	public boolean isApplyToParent(long pos) { return this.updateIndex.isApplyToParent(pos); }
+	@Override
+	public int getParentUpdateCount() { return this.updateIndex.getParentUpdateCount(); }
+	@Override
+	public int getChildUpdateCount() { return this.updateIndex.getChildUpdateCount(); }
+	
+	
+	
+	//=====================//
+	// region file helpers //
+	//=====================//
+	
+	/**
+	 * Runs the given function while holding the region file's read or write lock.
+	 *
+	 * @return null if the region file doesn't exist (and createIfMissing is false),
+	 *          the store is closed, or the file couldn't be read
+	 */
+	@Nullable
+	private <T> T runWithRegionFile(long pos, boolean createIfMissing, boolean writeLock, IRegionFileFunc<T> func)
+	{
+		while (!this.closed)
+		{
+			FullDataRegionFile regionFile = this.getRegionFile(pos, createIfMissing);
+			if (regionFile == null)
+			{
+				return null;
+			}
+			
+			Lock lock = writeLock ? regionFile.lock.writeLock() : regionFile.lock.readLock();
+			lock.lock();
+			try
+			{
+				if (regionFile.isClosed())
+				{
+					// the file was closed between getting and locking it, try again
+					continue;
+				}
+				
+				return func.run(regionFile, FullDataRegionFile.getEntryIndex(pos));
+			}
+			catch (IOException e)
+			{
+				LOGGER.warn("Region file error for pos ["+DhSectionPos.toString(pos)+"] in file ["+regionFile.file+"], error: ["+e.getMessage()+"].", e);
+				return null;
+			}
+			finally
+			{
+				lock.unlock();
+			}
+		}
+		
+		return null;
+	}
+	
+	@Nullable
+	private FullDataRegionFile getRegionFile(long pos, boolean createIfMissing)
+	{
+		long regionKey = FullDataRegionFile.getRegionKey(pos);
+		
+		this.regionFileMapLock.lock();
+		try
+		{
+			FullDataRegionFile regionFile = this.regionFileByKey.get(regionKey);
+			if (regionFile != null)
+			{
+				return regionFile;
+			}
+			
+			
+			byte detailLevel = DhSectionPos.getDetailLevel(regionKey);
+			int regionX = DhSectionPos.getX(regionKey);
+			int regionZ = DhSectionPos.getZ(regionKey);
+			
+			File detailLevelFolder = new File(this.regionFolder, Byte.toString(detailLevel));
+			File file = new File(detailLevelFolder, FullDataRegionFile.getFileName(regionX, regionZ));
+			if (!file.exists())
+			{
+				if (!createIfMissing)
+				{
+					return null;
+				}
+				
+				if (!detailLevelFolder.exists() && !detailLevelFolder.mkdirs())
+				{
+					LOGGER.error("Unable to create region folder ["+detailLevelFolder+"].");
+					return null;
+				}
+			}
+			
+			try
+			{
+				regionFile = new FullDataRegionFile(file, detailLevel, regionX, regionZ);
+			}
+			catch (IOException e)
+			{
+				LOGGER.error("Unable to open region file ["+file+"], error: ["+e.getMessage()+"].", e);
+				return null;
+			}
+			
+			this.regionFileByKey.put(regionKey, regionFile);
+			this.closeUnusedRegionFiles();
+			return regionFile;
+		}
+		finally
+		{
+			this.regionFileMapLock.unlock();
+		}
+	}
+	/** should be called while holding {@link RegionFileFullDataSourceStore#regionFileMapLock} */
+	private void closeUnusedRegionFiles()
+	{
+		Iterator<FullDataRegionFile> iterator = this.regionFileByKey.values().iterator();
+		while (this.regionFileByKey.size() > MAX_OPEN_REGION_FILE_COUNT && iterator.hasNext())
+		{
+			FullDataRegionFile regionFile = iterator.next();
+			
+			// files that are currently in use will be skipped
+			if (regionFile.lock.writeLock().tryLock())
+			{
+				try
+				{
+					regionFile.close();
+					iterator.remove();
+				}
+				finally
+				{
+					regionFile.lock.writeLock().unlock();
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Only reads the region file headers. <br>
+	 * The start positions are inclusive and the end positions are exclusive.
+	 */
+	private void forEachEntryInRange(byte detailLevel, int startPosX, int startPosZ, int endPosX, int endPosZ, IRegionEntryConsumer consumer)
+	{
+		int minRegionX = FullDataRegionFile.getRegionCoord(startPosX);
+		int minRegionZ = FullDataRegionFile.getRegionCoord(startPosZ);
+		int maxRegionX = FullDataRegionFile.getRegionCoord(endPosX - 1);
+		int maxRegionZ = FullDataRegionFile.getRegionCoord(endPosZ - 1);
+		for (int regionX = minRegionX; regionX <= maxRegionX; regionX++)
+		{
+			for (int regionZ = minRegionZ; regionZ <= maxRegionZ; regionZ++)
+			{
+				long regionCornerPos = DhSectionPos.encode(detailLevel, regionX << FullDataRegionFile.REGION_WIDTH_POWER, regionZ << FullDataRegionFile.REGION_WIDTH_POWER);
+				this.runWithRegionFile(regionCornerPos, false, false, (regionFile, ignored) ->
+				{
+					for (int index = 0; index < FullDataRegionFile.ENTRY_COUNT; index++)
+					{
+						if (!regionFile.exists(index))
+						{
+							continue;
+						}
+						
+						long pos = regionFile.getSectionPos(index);
+						int posX = DhSectionPos.getX(pos);
+						int posZ = DhSectionPos.getZ(pos);
+						if (posX >= startPosX && posX < endPosX
+							&& posZ >= startPosZ && posZ < endPosZ)
+						{
+							consumer.accept(regionFile, index, pos);
+						}
+					}
+					return null;
+				});
+			}
+		}
+	}
+	
+	private void forEachRegionFileOnDisk(IRegionFileOnDiskConsumer consumer)
+	{
+		File[] detailLevelFolders = this.regionFolder.listFiles(File::isDirectory);
+		if (detailLevelFolders == null)
+		{
+			return;
+		}
+		
+		for (File detailLevelFolder : detailLevelFolders)
+		{
+			byte detailLevel;
+			try
+			{
+				detailLevel = Byte.parseByte(detailLevelFolder.getName());
+			}
+			catch (NumberFormatException e)
+			{
+				continue;
+			}
+			
+			File[] files = detailLevelFolder.listFiles();
+			if (files == null)
+			{
+				continue;
+			}
+			
+			for (File file : files)
+			{
+				int[] regionPos = FullDataRegionFile.parseFileName(file.getName());
+				if (regionPos != null)
+				{
+					consumer.accept(file, detailLevel, regionPos[0], regionPos[1]);
+				}
+			}
+		}
+	}
+	
+	
+	
+	//=======//
+	// debug //
+	//=======//
+	
+	@Override
+	public String getDebugString()
+	{
+		int openFileCount;
+		this.regionFileMapLock.lock();
+		try
+		{
+			openFileCount = this.regionFileByKey.size();
+		}
+		finally
+		{
+			this.regionFileMapLock.unlock();
+		}
+		
+		return "Region Files - open: " + openFileCount
+				+ ", reads: " + F3Screen.NUMBER_FORMAT.format(this.readCount.get())
+				+ ", avg read: " + F3Screen.NUMBER_FORMAT.format(TimeUnit.NANOSECONDS.toMicros((long) this.readTimeInNsAvg.getAverage())) + "us"
+				+ ", writes: " + F3Screen.NUMBER_FORMAT.format(this.writeCount.get());
+	}
+	
+	
+	
+	//==========//
+	// shutdown //
+	//==========//
+	
+	@Override
+	public void close()
+	{
+		this.closed = true;
+		
+		ArrayList<FullDataRegionFile> regionFiles;
+		this.regionFileMapLock.lock();
+		try
+		{
+			regionFiles = new ArrayList<>(this.regionFileByKey.values());
+			this.regionFileByKey.clear();
+		}
+		finally
+		{
+			this.regionFileMapLock.unlock();
+		}
+		
+		// wait for any in progress reads/writes to finish
+		for (FullDataRegionFile regionFile : regionFiles)
+		{
+			regionFile.lock.writeLock().lock();
+			try
+			{
+				regionFile.close();
+			}
+			finally
+			{
+				regionFile.lock.writeLock().unlock();
+			}
+		}
+		
+		LOGGER.info("Closed ["+regionFiles.size()+"] region files in ["+this.regionFolder+"].");
+	}
+	
+	
+	
+	//================//
+	// helper classes //
+	//================//
+	
+	@FunctionalInterface
+	private interface IRegionFileFunc<T>
+	{
+		/** @param index the position's entry index in the region file */
+		T run(FullDataRegionFile regionFile, int index) throws IOException;
+	}
+	
+	@FunctionalInterface
+	private interface IRegionFileOnDiskConsumer
+	{
+		void accept(File file, byte detailLevel, int regionX, int regionZ);
+	}
+	
+	@FunctionalInterface
+	private interface IRegionEntryConsumer
+	{
+		void accept(FullDataRegionFile regionFile, int index, long pos);
+	}
+	
+}
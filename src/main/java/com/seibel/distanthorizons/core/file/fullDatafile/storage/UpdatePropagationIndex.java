@@ -0,0 +1,180 @@
+/*
+ *    This file is part of the Distant Horizons mod
+ *    licensed under the GNU LGPL v3 License.
+ *
+ *    Copyright (C) 2020 James Seibel
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, version 3.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public License
+ *    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.seibel.distanthorizons.core.file.fullDatafile.storage;
+
+import com.seibel.distanthorizons.core.pos.DhSectionPos;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongHeapPriorityQueue;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+
+/**
+ * In-memory copy of every position flagged with
+ * {@link IFullDataSourceStore#setApplyToParent} or {@link IFullDataSourceStore#setApplyToChild}. <br><br>
+ *
+ * The store is still responsible for persisting the flags,
+ * this index is only rebuilt from the store when it's opened. <br>
+ * Positions are grouped by detail level so finding the closest positions
+ * only has to look at the lowest detail levels that have updates,
+ * and within a detail level only the closest {@code returnCount} positions are kept
+ * instead of sorting every flagged position.
+ *
+ * @see IFullDataSourceStore#getPositionsToUpdate(int, int, int)
+ */
+public class UpdatePropagationIndex
+{
+	private final PosSetByDetailLevel applyToParentPosSet = new PosSetByDetailLevel();
+	private final PosSetByDetailLevel applyToChildrenPosSet = new PosSetByDetailLevel();
+	
+	
+	
+	//=========//
+	// setters //
+	//=========//
+	
+	public void setApplyToParent(long pos, boolean applyToParent) { this.applyToParentPosSet.set(pos, applyToParent); }
+	public void setApplyToChildren(long pos, boolean applyToChildren) { this.applyToChildrenPosSet.set(pos, applyToChildren); }
+	
+	/** should be called when the position's data is deleted */
+	public void remove(long pos)
+	{
+		this.applyToParentPosSet.set(pos, false);
+		this.applyToChildrenPosSet.set(pos, false);
+	}
+	
+	
+	
+	//=========//
+	// getters //
+	//=========//
+	
+	/** sorted by detail level, then by distance to the target */
+	public LongArrayList getClosestParentUpdates(int targetBlockPosX, int targetBlockPosZ, int returnCount)
+	{ return this.applyToParentPosSet.getClosest(targetBlockPosX, targetBlockPosZ, returnCount); }
+	/** sorted by detail level, then by distance to the target */
+	public LongArrayList getClosestChildUpdates(int targetBlockPosX, int targetBlockPosZ, int returnCount)
+	{ return this.applyToChildrenPosSet.getClosest(targetBlockPosX, targetBlockPosZ, returnCount); }
+	
+	public boolean isApplyToParent(long pos) { return this.applyToParentPosSet.contains(pos); }
+	
+	public int getParentUpdateCount() { return this.applyToParentPosSet.size(); }
+	public int getChildUpdateCount() { return this.applyToChildrenPosSet.size(); }
+	
+	
+	
+	//================//
+	// helper classes //
+	//================//
+	
+	private static class PosSetByDetailLevel
+	{
+		/** indexed by section detail level, null until a position at that detail level is added */
+		private final LongOpenHashSet[] posSetByDetailLevel = new LongOpenHashSet[Byte.MAX_VALUE + 1];
+		private int size = 0;
+		
+		
+		
+		public synchronized void set(long pos, boolean value)
+		{
+			byte detailLevel = DhSectionPos.getDetailLevel(pos);
+			LongOpenHashSet posSet = this.posSetByDetailLevel[detailLevel];
+			if (value)
+			{
+				if (posSet == null)
+				{
+					posSet = new LongOpenHashSet();
+					this.posSetByDetailLevel[detailLevel] = posSet;
+				}
+				
+				if (posSet.add(pos))
+				{
+					this.size++;
+				}
+			}
+			else if (posSet != null && posSet.remove(pos))
+			{
+				this.size--;
+			}
+		}
+		
+		public synchronized int size() { return this.size; }
+		
+		public synchronized boolean contains(long pos)
+		{
+			LongOpenHashSet posSet = this.posSetByDetailLevel[DhSectionPos.getDetailLevel(pos)];
+			return posSet != null && posSet.contains(pos);
+		}
+		
+		public synchronized LongArrayList getClosest(int targetBlockPosX, int targetBlockPosZ, int returnCount)
+		{
+			LongArrayList list = new LongArrayList(Math.min(returnCount, this.size));
+			for (int detailLevel = 0; detailLevel < this.posSetByDetailLevel.length && list.size() < returnCount; detailLevel++)
+			{
+				LongOpenHashSet posSet = this.posSetByDetailLevel[detailLevel];
+				if (posSet == null || posSet.isEmpty())
+				{
+					continue;
+				}
+				
+				// max-heap, the furthest kept position is replaced whenever a closer one is found
+				int remainingCount = returnCount - list.size();
+				LongHeapPriorityQueue furthestFirstQueue = new LongHeapPriorityQueue(Math.min(remainingCount, posSet.size()),
+						(a, b) -> Long.compare(
+								getManhattanDistance(b, targetBlockPosX, targetBlockPosZ),
+								getManhattanDistance(a, targetBlockPosX, targetBlockPosZ)));
+				
+				long furthestDistance = Long.MAX_VALUE;
+				for (long pos : posSet)
+				{
+					if (furthestFirstQueue.size() < remainingCount)
+					{
+						furthestFirstQueue.enqueue(pos);
+						furthestDistance = getManhattanDistance(furthestFirstQueue.firstLong(), targetBlockPosX, targetBlockPosZ);
+					}
+					else if (getManhattanDistance(pos, targetBlockPosX, targetBlockPosZ) < furthestDistance)
+					{
+						furthestFirstQueue.dequeueLong();
+						furthestFirstQueue.enqueue(pos);
+						furthestDistance = getManhattanDistance(furthestFirstQueue.firstLong(), targetBlockPosX, targetBlockPosZ);
+					}
+				}
+				
+				// the queue returns the furthest positions first
+				int startIndex = list.size();
+				list.size(startIndex + furthestFirstQueue.size());
+				for (int i = list.size() - 1; i >= startIndex; i--)
+				{
+					list.set(i, furthestFirstQueue.dequeueLong());
+				}
+			}
+			
+			return list;
+		}
+	}
+	
+	/** measured from the position's minimum corner in block coordinates */
+	private static long getManhattanDistance(long pos, int targetBlockPosX, int targetBlockPosZ)
+	{
+		byte detailLevel = DhSectionPos.getDetailLevel(pos);
+		long blockX = (long) DhSectionPos.getX(pos) << detailLevel;
+		long blockZ = (long) DhSectionPos.getZ(pos) << detailLevel;
+		return Math.abs(blockX - targetBlockPosX) + Math.abs(blockZ - targetBlockPosZ);
+	}
+	
+}
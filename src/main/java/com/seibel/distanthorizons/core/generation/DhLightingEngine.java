@@ -20,27 +20,22 @@
 package com.seibel.distanthorizons.core.generation;
 
 import com.seibel.distanthorizons.core.dataObjects.fullData.sources.FullDataSourceV2;
-import com.seibel.distanthorizons.core.enums.EDhDirection;
 import com.seibel.distanthorizons.core.logging.DhLoggerBuilder;
 import com.seibel.distanthorizons.core.pos.DhChunkPos;
 import com.seibel.distanthorizons.core.pos.DhSectionPos;
-import com.seibel.distanthorizons.core.pos.blockPos.DhBlockPos;
-import com.seibel.distanthorizons.core.pos.blockPos.DhBlockPosMutable;
 import com.seibel.distanthorizons.core.render.renderer.DebugRenderer;
 import com.seibel.distanthorizons.core.util.FullDataPointUtil;
 import com.seibel.distanthorizons.core.util.LodUtil;
+import com.seibel.distanthorizons.core.wrapperInterfaces.block.BlockStatePropertyTable;
 import com.seibel.distanthorizons.core.wrapperInterfaces.block.IBlockStateWrapper;
 import com.seibel.distanthorizons.core.wrapperInterfaces.chunk.IChunkWrapper;
-import com.seibel.distanthorizons.core.wrapperInterfaces.misc.IMutableBlockPosWrapper;
-import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntArrayFIFOQueue;
 import it.unimi.dsi.fastutil.longs.LongArrayList;
 import org.apache.logging.log4j.Logger;
 import org.jetbrains.annotations.NotNull;
 
 import java.awt.*;
 import java.util.*;
-import java.util.Queue;
-import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * This logic was roughly based on
@@ -52,18 +47,19 @@ public class DhLightingEngine
 	private static final Logger LOGGER = DhLoggerBuilder.getLogger();
 	public static final DhLightingEngine INSTANCE = new DhLightingEngine();
 	
-	/** 
-	 * Minor garbage collection optimization. <br>
-	 * Since these objects are always mutated anyway, using a {@link ThreadLocal} will allow us to
-	 * only create as many of these {@link DhBlockPos} as necessary.
-	 */
-	private static final ThreadLocal<DhBlockPosMutable> PRIMARY_BLOCK_POS_REF = ThreadLocal.withInitial(() -> new DhBlockPosMutable());
-	private static final ThreadLocal<DhBlockPosMutable> SECONDARY_BLOCK_POS_REF = ThreadLocal.withInitial(() -> new DhBlockPosMutable());
-	
 	/** if enabled will render each block light value when the chunk lighting engine is run */
 	private static final boolean RENDER_BLOCK_LIGHT_WIREFRAME = false;
 	/** if enabled will render each sky light value when the chunk lighting engine is run */
 	private static final boolean RENDER_SKY_LIGHT_WIREFRAME = false;
+	/** 
+	 * If enabled every data source is also sky lit with the original recursive logic
+	 * and an assertion is thrown if the two-phase logic is darker anywhere
+	 * or if its result still has light that could propagate further. <br>
+	 * Very slow, should only be used when changing {@link DhLightingEngine#bakeDataSourceSkyLight}. <br><br>
+	 * 
+	 * This stands in for a differential test since this project doesn't have any test sources yet.
+	 */
+	private static final boolean RUN_SKY_LIGHT_VALIDATION = false;
 	
 	/**
 	 * Used for dataSource lighting. <br> 
@@ -124,263 +120,56 @@ public class DhLightingEngine
 			int maxSkyLight, boolean updateBlockLight, boolean updateSkyLight)
 	{
 		DhChunkPos centerChunkPos = centerChunk.getChunkPos();
-		AdjacentChunkHolder adjacentChunkHolder = new AdjacentChunkHolder(centerChunk);
-		
 		
-		// try-finally to handle the stableArray resources
-		StableLightPosStack blockLightWorldPosQueue = null;
-		StableLightPosStack skyLightWorldPosQueue = null;
 		try
 		{
-			blockLightWorldPosQueue = StableLightPosStack.borrowStableLightPosArray();
-			skyLightWorldPosQueue = StableLightPosStack.borrowStableLightPosArray();
-			
-			
-			
-			// generate the list of chunk pos we need,
-			// currently a 3x3 grid
-			HashSet<DhChunkPos> requestedAdjacentPositions = new HashSet<>(9);
-			for (int xOffset = -1; xOffset <= 1; xOffset++)
-			{
-				for (int zOffset = -1; zOffset <= 1; zOffset++)
-				{
-					DhChunkPos adjacentPos = new DhChunkPos(centerChunkPos.getX() + xOffset, centerChunkPos.getZ() + zOffset);
-					requestedAdjacentPositions.add(adjacentPos);
-				}
-			}
+			FlatArrayLightEngine lightEngine = FlatArrayLightEngine.get();
+			lightEngine.load(centerChunk, nearbyChunkList);
 			
-			
-			// find all adjacent chunks
-			// and get any necessary info from them
-			for (int chunkIndex = 0; chunkIndex < nearbyChunkList.size(); chunkIndex++) // using iterators in high traffic areas can cause GC issues due to allocating a bunch of iterators, use an indexed for-loop instead
-			{
-				IChunkWrapper chunk = nearbyChunkList.get(chunkIndex);
-				if (chunk != null && requestedAdjacentPositions.contains(chunk.getChunkPos()))
-				{
-					// remove the newly found position
-					requestedAdjacentPositions.remove(chunk.getChunkPos());
-					
-					// add the adjacent chunk
-					adjacentChunkHolder.add(chunk);
-					
-					// get and set the adjacent chunk's initial block lights
-					final DhBlockPosMutable relLightBlockPos = PRIMARY_BLOCK_POS_REF.get();
-					
-					
-					
-					//==================//
-					// set block lights //
-					//==================//
-					
-					if (updateBlockLight)
-					{
-						ArrayList<DhBlockPos> blockLightPosList = chunk.getWorldBlockLightPosList();
-						for (int blockLightIndex = 0; blockLightIndex < blockLightPosList.size(); blockLightIndex++) // using iterators in high traffic areas can cause GC issues due to allocating a bunch of iterators, use an indexed for-loop instead
-						{
-							DhBlockPos blockLightPos = blockLightPosList.get(blockLightIndex);
-							blockLightPos.mutateToChunkRelativePos(relLightBlockPos);
-							
-							// get the light
-							IBlockStateWrapper blockState = chunk.getBlockState(relLightBlockPos);
-							int lightValue = blockState.getLightEmission();
-							blockLightWorldPosQueue.push(blockLightPos.getX(), blockLightPos.getY(), blockLightPos.getZ(), lightValue);
-							
-							// set the light
-							chunk.setDhBlockLight(relLightBlockPos.getX(), relLightBlockPos.getY(), relLightBlockPos.getZ(), lightValue);
-						}
-					}
-					
-					
-					
-					//================//
-					// set sky lights //
-					//================//
-					
-					// get and set the adjacent chunk's initial skylights,
-					// if the dimension has skylights
-					if (updateSkyLight && maxSkyLight > 0)
-					{
-						IMutableBlockPosWrapper mcBlockPos = chunk.getMutableBlockPosWrapper();
-						IBlockStateWrapper previousBlockState = null;
-						
-						int maxY = chunk.getMaxNonEmptyHeight();
-						int minY = chunk.getInclusiveMinBuildHeight();
-						
-						// get the adjacent chunk's sky lights
-						for (int relX = 0; relX < LodUtil.CHUNK_WIDTH; relX++) // relative block pos
-						{
-							for (int relZ = 0; relZ < LodUtil.CHUNK_WIDTH; relZ++)
-							{
-								// set each pos' sky light all the way down until an opaque block is hit
-								for (int y = maxY; y >= minY; y--)
-								{
-									IBlockStateWrapper block = previousBlockState = chunk.getBlockState(relX, y, relZ, mcBlockPos, previousBlockState);
-									if (block != null && block.getOpacity() != LodUtil.BLOCK_FULLY_TRANSPARENT)
-									{
-										// keep moving down until we find a non-transparent block
-										break;
-									}
-									
-									
-									// add sky light to the queue
-									DhBlockPos skyLightPos = new DhBlockPos(chunk.getMinBlockX() + relX, y, chunk.getMinBlockZ() + relZ);
-									skyLightWorldPosQueue.push(skyLightPos.getX(), skyLightPos.getY(), skyLightPos.getZ(), maxSkyLight);
-									
-									// set the chunk's sky light
-									skyLightPos.mutateToChunkRelativePos(relLightBlockPos);
-									chunk.setDhSkyLight(relLightBlockPos.getX(), relLightBlockPos.getY(), relLightBlockPos.getZ(), maxSkyLight);
-								}
-							}
-						}
-					}
-				}
-				
-				
-				if (requestedAdjacentPositions.isEmpty())
-				{
-					// we found every chunk we needed, we don't need to keep iterating
-					break;
-				}
-			}
+			// only the center chunk is written to,
+			// adjacent chunks will be lit when they're the center chunk
 			
 			// block light
 			if (updateBlockLight)
 			{
-				// done to prevent a rare issue where the light values are incorrectly set to -1
-				// TODO why could that happen?
-				centerChunk.clearDhBlockLighting();
-				
-				this.propagateChunkLightPosList(blockLightWorldPosQueue, adjacentChunkHolder,
-						(neighbourChunk, relBlockPos) -> neighbourChunk.getDhBlockLight(relBlockPos.getX(), relBlockPos.getY(), relBlockPos.getZ()),
-						(neighbourChunk, relBlockPos, newLightValue) -> neighbourChunk.setDhBlockLight(relBlockPos.getX(), relBlockPos.getY(), relBlockPos.getZ(), newLightValue),
-						true);
+				lightEngine.propagateBlockLights();
+				centerChunk.setAllDhBlockLights(lightEngine.getLights(), lightEngine.getCenterChunkStartIndex(),
+						FlatArrayLightEngine.X_STRIDE, FlatArrayLightEngine.Y_STRIDE, FlatArrayLightEngine.Z_STRIDE);
 			}
 			
 			// sky light
 			if (updateSkyLight)
 			{
-				centerChunk.clearDhSkyLighting();
-				
-				this.propagateChunkLightPosList(skyLightWorldPosQueue, adjacentChunkHolder,
-						(neighbourChunk, relBlockPos) -> neighbourChunk.getDhSkyLight(relBlockPos.getX(), relBlockPos.getY(), relBlockPos.getZ()),
-						(neighbourChunk, relBlockPos, newLightValue) -> neighbourChunk.setDhSkyLight(relBlockPos.getX(), relBlockPos.getY(), relBlockPos.getZ(), newLightValue),
-						false);
+				lightEngine.propagateSkyLights(maxSkyLight);
+				centerChunk.setAllDhSkyLights(lightEngine.getLights(), lightEngine.getCenterChunkStartIndex(),
+						FlatArrayLightEngine.X_STRIDE, FlatArrayLightEngine.Y_STRIDE, FlatArrayLightEngine.Z_STRIDE);
 			}
 		}
 		catch (Exception e)
 		{
 			LOGGER.error("Unexpected lighting issue for center chunk: "+centerChunkPos, e);
 		}
-		finally
-		{
-			StableLightPosStack.returnStableLightPosArray(blockLightWorldPosQueue);
-			StableLightPosStack.returnStableLightPosArray(skyLightWorldPosQueue);
-		}
 		
 		
-		if (updateBlockLight)
+		// can be enable if troubleshooting lighting issues
+		if (RENDER_BLOCK_LIGHT_WIREFRAME && updateBlockLight)
 		{
-			centerChunk.setIsDhBlockLightCorrect(true);
+			RenderDhLightValuesAsWireframe(new AdjacentChunkHolder(centerChunk, nearbyChunkList), true);
 		}
-		if (updateSkyLight)
+		if (RENDER_SKY_LIGHT_WIREFRAME && updateSkyLight)
 		{
-			centerChunk.setIsDhSkyLightCorrect(true);
+			RenderDhLightValuesAsWireframe(new AdjacentChunkHolder(centerChunk, nearbyChunkList), false);
 		}
-	}
-	
-	/** Applies each {@link LightPos} from the queue to the given set of {@link IChunkWrapper}'s. */
-	private void propagateChunkLightPosList(
-			StableLightPosStack lightPosQueue, AdjacentChunkHolder adjacentChunkHolder,
-			IGetLightFunc getLightFunc, ISetLightFunc setLightFunc,
-			boolean propagatingBlockLights)
-	{
-		// these objects are saved so they can be mutated throughout the method,
-		// this reduces the number of allocations necessary, reducing GC pressure
-		final LightPos lightPos = new LightPos(0, 0, 0, 0);
-		final DhBlockPosMutable neighbourBlockPos = PRIMARY_BLOCK_POS_REF.get();
-		final DhBlockPosMutable relNeighbourBlockPos = SECONDARY_BLOCK_POS_REF.get();
 		
-		IMutableBlockPosWrapper mcBlockPos = null;
-		IBlockStateWrapper previousBlockState = null;
 		
-		// update each light position
-		while (!lightPosQueue.isEmpty())
-		{
-			// since we don't care about the order the positions are processed,
-			// we can grab the last position instead of the first for a slight performance increase (this way the array doesn't need to be shifted over every loop)
-			lightPosQueue.popMutate(lightPos);
-			
-			int lightValue = lightPos.lightValue;
-			
-			
-			// propagate the lighting in each cardinal direction, IE: -x, +x, -y, +y, -z, +z
-			for (EDhDirection direction : EDhDirection.CARDINAL_DIRECTIONS) // since this is an array instead of an ArrayList this advanced for-loop shouldn't cause any GC issues
-			{
-				lightPos.mutateOffset(direction, neighbourBlockPos);
-				neighbourBlockPos.mutateToChunkRelativePos(relNeighbourBlockPos);
-				
-				
-				// only continue if the light position is inside one of our chunks
-				IChunkWrapper neighbourChunk = adjacentChunkHolder.getByBlockPos(neighbourBlockPos.getX(), neighbourBlockPos.getZ());
-				if (neighbourChunk == null)
-				{
-					// the light pos is outside our generator's range, ignore it
-					continue;
-				}
-				
-				if (relNeighbourBlockPos.getY() < neighbourChunk.getMinNonEmptyHeight() || relNeighbourBlockPos.getY() > neighbourChunk.getExclusiveMaxBuildHeight())
-				{
-					// the light pos is outside the chunk's min/max height,
-					// this can happen if given a chunk that hasn't finished generating
-					continue;
-				}
-				
-				
-				int currentBlockLight = getLightFunc.getLight(neighbourChunk, relNeighbourBlockPos);
-				if (currentBlockLight >= (lightValue - 1))
-				{
-					// short circuit for when the light value at this position
-					// is already greater-than what we could set it
-					continue;
-				}
-				
-				
-				if (mcBlockPos == null)
-				{
-					// it doesn't matter what chunk we get the position object from
-					// TODO move this getter logic out of ChunkWrapper
-					mcBlockPos = neighbourChunk.getMutableBlockPosWrapper();
-				}
-				
-				
-				IBlockStateWrapper neighbourBlockState = previousBlockState = neighbourChunk.getBlockState(relNeighbourBlockPos, mcBlockPos, previousBlockState);
-				// Math.max(1, ...) is used so that the propagated light level always drops by at least 1, preventing infinite cycles.
-				int targetLevel = lightValue - Math.max(1, neighbourBlockState.getOpacity());
-				if (targetLevel > currentBlockLight)
-				{
-					// this position is darker than the new light value, update/set it
-					setLightFunc.setLight(neighbourChunk, relNeighbourBlockPos, targetLevel);
-					
-					// now that light has been propagated to this blockPos
-					// we need to queue it up so its neighbours can be propagated as well
-					lightPosQueue.push(neighbourBlockPos.getX(), neighbourBlockPos.getY(), neighbourBlockPos.getZ(), targetLevel);
-				}
-			}
-		}
-		
-		
-		// can be enable if troubleshooting lighting issues
-		if (RENDER_BLOCK_LIGHT_WIREFRAME && propagatingBlockLights)
+		if (updateBlockLight)
 		{
-			RenderDhLightValuesAsWireframe(adjacentChunkHolder, true);
+			centerChunk.setIsDhBlockLightCorrect(true);
 		}
-		else if (RENDER_SKY_LIGHT_WIREFRAME && !propagatingBlockLights)
+		if (updateSkyLight)
 		{
-			RenderDhLightValuesAsWireframe(adjacentChunkHolder, false);
+			centerChunk.setIsDhSkyLightCorrect(true);
 		}
-		
-		
-		// propagation complete
 	}
 	
 	
@@ -389,86 +178,250 @@ public class DhLightingEngine
 	// data source lighting //
 	//======================//
 	
-	/** @author BuilderB0y */
+	/**
+	 * Lights the data source in two phases: <br>
+	 * 1. each column is lit top-down until its first non-transparent data point, <br>
+	 * 2. that light is flooded sideways, starting only from columns next to a taller column. <br><br>
+	 * 
+	 * Most surface columns are completely handled by the first phase,
+	 * so the flood only needs to visit overhangs, caves and the sides of cliffs. <br><br>
+	 * 
+	 * <strong>Difference from {@link DhLightingEngine#bakeDataSourceSkyLightRecursive}: </strong><br>
+	 * The recursive logic only copied light down into a transparent data point
+	 * if the data point above had already been lit when its column was visited,
+	 * so light that spread sideways from a column visited later never reached further down.
+	 * The flood repeats until nothing else can be lit, so those data points can be brighter,
+	 * every other data point gets the same light as before. <br>
+	 * {@link DhLightingEngine#RUN_SKY_LIGHT_VALIDATION} can be enabled to confirm this.
+	 * 
+	 * @author BuilderB0y
+	 */
 	public void bakeDataSourceSkyLight(FullDataSourceV2 dataSource, int maxSkyLight)
 	{
-		// create a cache of all the IDs which are completely transparent.
+		// create a cache of each ID's opacity.
 		// FullDataPointIdMap is thread-safe with locks, and is also a map lookup,
 		// and both of these things add a bit of overhead which is not necessary
 		// in this context.
 		// note: since IDs map to both biomes and blocks, there can be more than
 		// one ID which corresponds to air.
-		BitSet airIDs = new BitSet(dataSource.mapping.size());
-		for (int id = 0, size = dataSource.mapping.size(); id < size; id++)
+		int mappingSize = dataSource.mapping.size();
+		byte[] opacityById = new byte[mappingSize];
+		for (int id = 0; id < mappingSize; id++)
 		{
-			if (dataSource.mapping.getBlockStateWrapper(id).getOpacity() == 0)
+			IBlockStateWrapper blockState = dataSource.mapping.getBlockStateWrapper(id);
+			opacityById[id] = (byte) BlockStatePropertyTable.getOpacity(BlockStatePropertyTable.getProperties(blockState));
+		}
+		
+		LongArrayList[] validationColumns = null;
+		if (RUN_SKY_LIGHT_VALIDATION)
+		{
+			validationColumns = new LongArrayList[dataSource.dataPoints.length];
+			for (int i = 0; i < validationColumns.length; i++)
 			{
-				airIDs.set(id, true);
+				if (dataSource.dataPoints[i] != null)
+				{
+					validationColumns[i] = new LongArrayList(dataSource.dataPoints[i]);
+				}
 			}
 		}
 		
 		
+		
+		//========================//
+		// light columns top-down //
+		//========================//
+		
+		// the bottom Y of each column's sky lit data points,
+		// Integer.MAX_VALUE if the column is empty or its top data point isn't transparent
+		int[] skyFloorYByColumn = new int[FullDataSourceV2.WIDTH * FullDataSourceV2.WIDTH];
 		for (int z = 0; z < FullDataSourceV2.WIDTH; z++)
 		{
 			for (int x = 0; x < FullDataSourceV2.WIDTH; x++)
 			{
+				int skyFloorY = Integer.MAX_VALUE;
+				
 				LongArrayList dataPoints = dataSource.get(x, z);
-				if (dataPoints != null && !dataPoints.isEmpty())
+				if (dataPoints != null)
 				{
-					// iterate through the data points in this column top-down
-					// until we reach light level 0 in some way. at this point,
-					// no more propagation needs to be performed for this column.
-					int size = dataPoints.size();
-					for (int index = 0; index < size; index++)
+					for (int index = 0, size = dataPoints.size(); index < size; index++)
 					{
 						long point = dataPoints.getLong(index);
-						// if the data point in the column is transparent,
-						// then fill it with light and then propagate 
-						// that light both horizontally and downwards.
-						if (airIDs.get(FullDataPointUtil.getId(point)))
+						if (opacityById[FullDataPointUtil.getId(point)] != LodUtil.BLOCK_FULLY_TRANSPARENT)
 						{
-							int skylight;
-							if (index == 0)
-							{
-								// top-most data point in the column.
-								skylight = maxSkyLight;
-							}
-							else
-							{
-								// handle down propagation here. sort of.
-								// down propagation is also handled partially elsewhere.
-								// basically if the data point above is transparent,
-								// we copy its light level.
-								// otherwise, if the data point above is opaque,
-								// then no light can propagate downwards from it.
-								// therefore, this data point should be light level 0*
-								// and no more propagation needs to be performed for this column.
-								//
-								// *unless light propagates into it horizontally,
-								// but that is handled separately.
-								long above = dataPoints.getLong(index - 1);
-								if (airIDs.get(FullDataPointUtil.getId(above)))
-								{
-									skylight = FullDataPointUtil.getSkyLight(above);
-								}
-								else
-								{
-									continue;
-								}
-							}
-							
-							// update the data point to contain the correct starting skylight level.
-							point = FullDataPointUtil.setSkyLight(point, skylight);
-							dataPoints.set(index, point);
-							// now for the propagation.
-							recursivelyLightAdjacentDataPoints(dataSource, airIDs, x, z, point);
+							break;
+						}
+						
+						dataPoints.set(index, FullDataPointUtil.setSkyLight(point, maxSkyLight));
+						skyFloorY = FullDataPointUtil.getBottomY(point);
+					}
+				}
+				
+				skyFloorYByColumn[x + (z * FullDataSourceV2.WIDTH)] = skyFloorY;
+			}
+		}
+		
+		
+		
+		//======================//
+		// flood light sideways //
+		//======================//
+		
+		// light can only spread from a column into a neighbour 
+		// where the neighbour's sky light stops higher up,
+		// every other neighbour is either already fully lit or can't be reached
+		IntArrayFIFOQueue floodQueue = new IntArrayFIFOQueue();
+		for (int z = 0; z < FullDataSourceV2.WIDTH; z++)
+		{
+			for (int x = 0; x < FullDataSourceV2.WIDTH; x++)
+			{
+				LongArrayList dataPoints = dataSource.get(x, z);
+				if (dataPoints == null)
+				{
+					continue;
+				}
+				
+				int skyFloorY = skyFloorYByColumn[x + (z * FullDataSourceV2.WIDTH)];
+				int maxNeighbourSkyFloorY = Integer.MIN_VALUE;
+				for (int offsetIndex = 0; offsetIndex < ADJACENT_DIRECTION_OFFSETS.length; )
+				{
+					int adjacentX = x + ADJACENT_DIRECTION_OFFSETS[offsetIndex++];
+					int adjacentZ = z + ADJACENT_DIRECTION_OFFSETS[offsetIndex++];
+					if (adjacentX >= 0 && adjacentX < FullDataSourceV2.WIDTH && adjacentZ >= 0 && adjacentZ < FullDataSourceV2.WIDTH
+						&& dataSource.get(adjacentX, adjacentZ) != null)
+					{
+						maxNeighbourSkyFloorY = Math.max(maxNeighbourSkyFloorY, skyFloorYByColumn[adjacentX + (adjacentZ * FullDataSourceV2.WIDTH)]);
+					}
+				}
+				
+				for (int index = 0, size = dataPoints.size(); index < size; index++)
+				{
+					long point = dataPoints.getLong(index);
+					if (opacityById[FullDataPointUtil.getId(point)] != LodUtil.BLOCK_FULLY_TRANSPARENT)
+					{
+						continue;
+					}
+					
+					if (FullDataPointUtil.getBottomY(point) >= skyFloorY)
+					{
+						// part of the sky lit run,
+						// only queue it if it overlaps a neighbour's unlit area
+						if (maxSkyLight > 1 && FullDataPointUtil.getBottomY(point) < maxNeighbourSkyFloorY)
+						{
+							floodQueue.enqueue(packFloodPos(x, z, index));
 						}
 					}
+					else if (FullDataPointUtil.getSkyLight(point) > LodUtil.MIN_MC_LIGHT)
+					{
+						// below the sky lit run but already has light from the chunk,
+						// that light should also be spread
+						floodQueue.enqueue(packFloodPos(x, z, index));
+					}
+				}
+			}
+		}
+		
+		while (!floodQueue.isEmpty())
+		{
+			int packedPos = floodQueue.dequeueInt();
+			int x = getFloodPosX(packedPos);
+			int z = getFloodPosZ(packedPos);
+			int index = getFloodPosIndex(packedPos);
+			
+			LongArrayList dataPoints = dataSource.get(x, z);
+			long dataPoint = dataPoints.getLong(index);
+			int lightLevel = FullDataPointUtil.getSkyLight(dataPoint);
+			
+			// down propagation,
+			// transparent data points directly below a lit transparent data point receive the same light
+			if (index + 1 < dataPoints.size())
+			{
+				long below = dataPoints.getLong(index + 1);
+				if (opacityById[FullDataPointUtil.getId(below)] == LodUtil.BLOCK_FULLY_TRANSPARENT
+					&& FullDataPointUtil.getSkyLight(below) < lightLevel)
+				{
+					dataPoints.set(index + 1, FullDataPointUtil.setSkyLight(below, lightLevel));
+					floodQueue.enqueue(packFloodPos(x, z, index + 1));
+				}
+			}
+			
+			// early exit condition:
+			// in this case, propagating light is guaranteed to be 0 at adjacent positions,
+			// and therefore we do not need to waste time propagating it.
+			if (lightLevel <= 1)
+			{
+				continue;
+			}
+			
+			int minY = FullDataPointUtil.getBottomY(dataPoint);
+			int maxY = FullDataPointUtil.getHeight(dataPoint) + minY;
+			// try to propagate in all 4 directions.
+			for (int offsetIndex = 0; offsetIndex < ADJACENT_DIRECTION_OFFSETS.length; )
+			{
+				int adjacentX = x + ADJACENT_DIRECTION_OFFSETS[offsetIndex++];
+				int adjacentZ = z + ADJACENT_DIRECTION_OFFSETS[offsetIndex++];
+				
+				// check if the adjacent position is within the bounds of this data source...
+				if (adjacentX < 0 || adjacentX >= FullDataSourceV2.WIDTH || adjacentZ < 0 || adjacentZ >= FullDataSourceV2.WIDTH)
+				{
+					continue;
+				}
+				
+				// ...and also check to make sure we have some data points
+				// (potentially transparent ones) to propagate through in the adjacent column.
+				LongArrayList adjacentDataPoints = dataSource.get(adjacentX, adjacentZ);
+				if (adjacentDataPoints == null)
+				{
+					continue;
+				}
+				
+				// try to find adjacent data points we can propagate into.
+				// we go top-down so we can stop once the adjacent data points are completely below this one.
+				for (int adjacentIndex = 0, size = adjacentDataPoints.size(); adjacentIndex < size; adjacentIndex++)
+				{
+					long adjacentDataPoint = adjacentDataPoints.getLong(adjacentIndex);
+					int adjacentMinY = FullDataPointUtil.getBottomY(adjacentDataPoint);
+					int adjacentMaxY = FullDataPointUtil.getHeight(adjacentDataPoint) + adjacentMinY;
+					if (adjacentMinY >= maxY)
+					{
+						// completely above this data point, no overlap
+						continue;
+					}
+					else if (adjacentMaxY <= minY)
+					{
+						// completely below this data point,
+						// since we're going top-down neither can any subsequent adjacent data points.
+						break;
+					}
+					else if (opacityById[FullDataPointUtil.getId(adjacentDataPoint)] != LodUtil.BLOCK_FULLY_TRANSPARENT)
+					{
+						// assume for now that we cannot propagate into non-transparent data points.
+						continue; // TODO how does this work with water? Do we care?
+					}
+					
+					// only propagate if it would increase the adjacent data point's light level
+					if (lightLevel - 1 > FullDataPointUtil.getSkyLight(adjacentDataPoint))
+					{
+						adjacentDataPoints.set(adjacentIndex, FullDataPointUtil.setSkyLight(adjacentDataPoint, lightLevel - 1));
+						floodQueue.enqueue(packFloodPos(adjacentX, adjacentZ, adjacentIndex));
+					}
 				}
 			}
 		}
 		
 		
+		
+		lightOpaqueDataPoints(dataSource.dataPoints, opacityById, maxSkyLight);
+		
+		
+		if (RUN_SKY_LIGHT_VALIDATION)
+		{
+			bakeDataSourceSkyLightRecursive(validationColumns, opacityById, maxSkyLight);
+			validateSkyLight(dataSource, validationColumns, opacityById);
+		}
+	}
+	
+	private static void lightOpaqueDataPoints(LongArrayList[] columns, byte[] opacityById, int maxSkyLight)
+	{
 		// at this point, all transparent data points have been lit,
 		// but opaque ones still have light level 0.
 		// in this loop we make opaque data points copy the light level
@@ -479,7 +432,7 @@ public class DhLightingEngine
 		// note that this alternate logic assumes the 
 		// data point above is being lit from the top.
 		// this is a fine assumption for water and oceans.
-		for (LongArrayList list : dataSource.dataPoints)
+		for (LongArrayList list : columns)
 		{
 			if (list != null)
 			{
@@ -497,13 +450,13 @@ public class DhLightingEngine
 						// there is another data point above this one.
 						// check to see how opaque this data point is first.
 						// we will check the above one after that.
-						if (!airIDs.get(FullDataPointUtil.getId(dataPoint)))
+						if (opacityById[FullDataPointUtil.getId(dataPoint)] != LodUtil.BLOCK_FULLY_TRANSPARENT)
 						{
 							// this data point is not transparent.
 							// it should be lit from above.
 							long above = list.getLong(index - 1);
 							int aboveLight = FullDataPointUtil.getSkyLight(above);
-							if (airIDs.get(FullDataPointUtil.getId(above)))
+							if (opacityById[FullDataPointUtil.getId(above)] == LodUtil.BLOCK_FULLY_TRANSPARENT)
 							{
 								// the above data point is transparent,
 								// and does not absorb any light.
@@ -514,7 +467,7 @@ public class DhLightingEngine
 							else
 							{
 								// determine how much light should be absorbed by this column
-								int absorption = dataSource.mapping.getBlockStateWrapper(FullDataPointUtil.getId(above)).getOpacity() * FullDataPointUtil.getHeight(above);
+								int absorption = opacityById[FullDataPointUtil.getId(above)] * FullDataPointUtil.getHeight(above);
 								if (absorption < aboveLight)
 								{
 									// the above data point is partially translucent,
@@ -532,10 +485,86 @@ public class DhLightingEngine
 		}
 	}
 	
+	/** 
+	 * Packs a data point's column and index for the sky light flood queue. <br>
+	 * The X and Z positions use 6 bits each since they're always less than {@link FullDataSourceV2#WIDTH}.
+	 */
+	private static int packFloodPos(int relX, int relZ, int index) { return (index << 12) | (relZ << 6) | relX; }
+	private static int getFloodPosX(int packedPos) { return packedPos & 0x3F; }
+	private static int getFloodPosZ(int packedPos) { return (packedPos >>> 6) & 0x3F; }
+	private static int getFloodPosIndex(int packedPos) { return packedPos >>> 12; }
+	
+	
+	//======================//
+	// sky light validation //
+	//======================//
+	
+	/** 
+	 * The original sky lighting logic, only used by {@link DhLightingEngine#RUN_SKY_LIGHT_VALIDATION}.
+	 * 
+	 * @param columns indexed with {@link FullDataSourceV2#relativePosToIndex}
+	 * @author BuilderB0y
+	 */
+	private static void bakeDataSourceSkyLightRecursive(LongArrayList[] columns, byte[] opacityById, int maxSkyLight)
+	{
+		for (int z = 0; z < FullDataSourceV2.WIDTH; z++)
+		{
+			for (int x = 0; x < FullDataSourceV2.WIDTH; x++)
+			{
+				LongArrayList dataPoints = columns[FullDataSourceV2.relativePosToIndex(x, z)];
+				if (dataPoints != null && !dataPoints.isEmpty())
+				{
+					// iterate through the data points in this column top-down
+					// until we reach light level 0 in some way. at this point,
+					// no more propagation needs to be performed for this column.
+					int size = dataPoints.size();
+					for (int index = 0; index < size; index++)
+					{
+						long point = dataPoints.getLong(index);
+						// if the data point in the column is transparent,
+						// then fill it with light and then propagate 
+						// that light both horizontally and downwards.
+						if (opacityById[FullDataPointUtil.getId(point)] == LodUtil.BLOCK_FULLY_TRANSPARENT)
+						{
+							int skylight;
+							if (index == 0)
+							{
+								// top-most data point in the column.
+								skylight = maxSkyLight;
+							}
+							else
+							{
+								// if the data point above is transparent, we copy its light level.
+								// otherwise no light can propagate downwards from it.
+								long above = dataPoints.getLong(index - 1);
+								if (opacityById[FullDataPointUtil.getId(above)] == LodUtil.BLOCK_FULLY_TRANSPARENT)
+								{
+									skylight = FullDataPointUtil.getSkyLight(above);
+								}
+								else
+								{
+									continue;
+								}
+							}
+							
+							// update the data point to contain the correct starting skylight level.
+							point = FullDataPointUtil.setSkyLight(point, skylight);
+							dataPoints.set(index, point);
+							// now for the propagation.
+							recursivelyLightAdjacentDataPoints(columns, opacityById, x, z, point);
+						}
+					}
+				}
+			}
+		}
+		
+		lightOpaqueDataPoints(columns, opacityById, maxSkyLight);
+	}
+	
 	/** @author BuilderB0y */
-	public void recursivelyLightAdjacentDataPoints(
-			FullDataSourceV2 chunk,
-			BitSet airIDs,
+	private static void recursivelyLightAdjacentDataPoints(
+			LongArrayList[] columns,
+			byte[] opacityById,
 			int relativeX,
 			int relativeZ,
 			long dataPoint
@@ -563,7 +592,7 @@ public class DhLightingEngine
 			// check if the adjacent position is within the bounds of this data source...
 			if (adjacentX >= 0 && adjacentX < FullDataSourceV2.WIDTH && adjacentZ >= 0 && adjacentZ < FullDataSourceV2.WIDTH)
 			{
-				LongArrayList adjacentDataPoints = chunk.get(adjacentX, adjacentZ);
+				LongArrayList adjacentDataPoints = columns[FullDataSourceV2.relativePosToIndex(adjacentX, adjacentZ)];
 				// ...and also check to make sure we have some data points
 				// (potentially transparent ones) to propagate through in the adjacent column.
 				if (adjacentDataPoints != null)
@@ -579,37 +608,30 @@ public class DhLightingEngine
 						int adjacentMaxY = FullDataPointUtil.getHeight(adjacentDataPoint) + adjacentMinY;
 						if (adjacentMinY >= maxY)
 						{
-							// if the adjacent data point is completely above this one,
-							// then there is no overlap between this one and the adjacent one,
-							// and therefore light cannot propagate here.
-							// try to propagate to the next data point down from the adjacent one.
+							// completely above this one, try the next data point down.
 							continue;
 						}
 						else if (adjacentMaxY <= minY)
 						{
-							// if the adjacent data point is completely below this one,
-							// then it also has no overlap and can't propagate,
-							// but since we're going top-down, neither can any subsequent adjacent data points.
+							// completely below this one,
+							// since we're going top-down, neither can any subsequent adjacent data points.
 							break;
 						}
-						else if (!airIDs.get(FullDataPointUtil.getId(adjacentDataPoint)))
+						else if (opacityById[FullDataPointUtil.getId(adjacentDataPoint)] != LodUtil.BLOCK_FULLY_TRANSPARENT)
 						{
 							// assume for now that we cannot propagate into non-transparent data points.
-							continue; // TODO how does this work with water? Do we care?
+							continue;
 						}
 						else
 						{
-							// now we can try to propagate.
+							// only propagate if it would increase the adjacent data point's light level.
 							int adjacentLightLevel = FullDataPointUtil.getSkyLight(adjacentDataPoint);
-							// if the resulting light level after propagation would INCREASE
-							// the light level of the adjacent data point, then propagate to it.
-							// otherwise, don't do that.
 							if (lightLevel - 1 > adjacentLightLevel)
 							{
 								adjacentDataPoint = FullDataPointUtil.setSkyLight(adjacentDataPoint, lightLevel - 1);
 								adjacentDataPoints.set(adjacentIndex, adjacentDataPoint);
 								// if propagation succeeded, recursively propagate again starting at the adjacent data point.
-								recursivelyLightAdjacentDataPoints(chunk, airIDs, adjacentX, adjacentZ, adjacentDataPoint);
+								recursivelyLightAdjacentDataPoints(columns, opacityById, adjacentX, adjacentZ, adjacentDataPoint);
 							}
 						}
 					}
@@ -618,6 +640,103 @@ public class DhLightingEngine
 		}
 	}
 	
+	/** 
+	 * Asserts that the two-phase result is never darker than the recursive result,
+	 * that only sky light changed, and that no transparent data point could still light a neighbour. 
+	 */
+	private static void validateSkyLight(FullDataSourceV2 dataSource, LongArrayList[] recursiveColumns, byte[] opacityById)
+	{
+		String posString = DhSectionPos.toString(dataSource.getPos());
+		int brighterCount = 0;
+		
+		for (int z = 0; z < FullDataSourceV2.WIDTH; z++)
+		{
+			for (int x = 0; x < FullDataSourceV2.WIDTH; x++)
+			{
+				LongArrayList dataPoints = dataSource.get(x, z);
+				LongArrayList recursiveDataPoints = recursiveColumns[FullDataSourceV2.relativePosToIndex(x, z)];
+				if (dataPoints == null || recursiveDataPoints == null)
+				{
+					LodUtil.assertTrue(dataPoints == recursiveDataPoints, "Sky light column mismatch for pos ["+posString+"] at relative position ["+x+","+z+"].");
+					continue;
+				}
+				LodUtil.assertTrue(dataPoints.size() == recursiveDataPoints.size(), "Sky light column size mismatch for pos ["+posString+"] at relative position ["+x+","+z+"].");
+				
+				for (int index = 0; index < dataPoints.size(); index++)
+				{
+					long point = dataPoints.getLong(index);
+					long recursivePoint = recursiveDataPoints.getLong(index);
+					
+					if (FullDataPointUtil.setSkyLight(point, 0) != FullDataPointUtil.setSkyLight(recursivePoint, 0))
+					{
+						LodUtil.assertNotReach("Sky lighting changed more than sky light for pos ["+posString+"] at relative position ["+x+","+z+"] index ["+index+"].");
+					}
+					
+					int lightLevel = FullDataPointUtil.getSkyLight(point);
+					int recursiveLightLevel = FullDataPointUtil.getSkyLight(recursivePoint);
+					if (lightLevel < recursiveLightLevel)
+					{
+						LodUtil.assertNotReach("Sky light darker than the recursive logic for pos ["+posString+"] at relative position ["+x+","+z+"] index ["+index+"], two-phase: ["+lightLevel+"], recursive: ["+recursiveLightLevel+"].");
+					}
+					else if (lightLevel > recursiveLightLevel)
+					{
+						brighterCount++;
+					}
+					
+					
+					// confirm the flood finished
+					if (opacityById[FullDataPointUtil.getId(point)] != LodUtil.BLOCK_FULLY_TRANSPARENT)
+					{
+						continue;
+					}
+					
+					if (index + 1 < dataPoints.size())
+					{
+						long below = dataPoints.getLong(index + 1);
+						if (opacityById[FullDataPointUtil.getId(below)] == LodUtil.BLOCK_FULLY_TRANSPARENT
+							&& FullDataPointUtil.getSkyLight(below) < lightLevel)
+						{
+							LodUtil.assertNotReach("Sky light wasn't copied down for pos ["+posString+"] at relative position ["+x+","+z+"] index ["+index+"].");
+						}
+					}
+					
+					int minY = FullDataPointUtil.getBottomY(point);
+					int maxY = FullDataPointUtil.getHeight(point) + minY;
+					for (int offsetIndex = 0; offsetIndex < ADJACENT_DIRECTION_OFFSETS.length; )
+					{
+						int adjacentX = x + ADJACENT_DIRECTION_OFFSETS[offsetIndex++];
+						int adjacentZ = z + ADJACENT_DIRECTION_OFFSETS[offsetIndex++];
+						if (adjacentX < 0 || adjacentX >= FullDataSourceV2.WIDTH || adjacentZ < 0 || adjacentZ >= FullDataSourceV2.WIDTH
+							|| dataSource.get(adjacentX, adjacentZ) == null)
+						{
+							continue;
+						}
+						
+						LongArrayList adjacentDataPoints = dataSource.get(adjacentX, adjacentZ);
+						for (int adjacentIndex = 0; adjacentIndex < adjacentDataPoints.size(); adjacentIndex++)
+						{
+							long adjacentDataPoint = adjacentDataPoints.getLong(adjacentIndex);
+							int adjacentMinY = FullDataPointUtil.getBottomY(adjacentDataPoint);
+							int adjacentMaxY = FullDataPointUtil.getHeight(adjacentDataPoint) + adjacentMinY;
+							if (adjacentMinY < maxY && adjacentMaxY > minY
+								&& opacityById[FullDataPointUtil.getId(adjacentDataPoint)] == LodUtil.BLOCK_FULLY_TRANSPARENT
+								&& FullDataPointUtil.getSkyLight(adjacentDataPoint) < lightLevel - 1)
+							{
+								LodUtil.assertNotReach("Sky light wasn't spread sideways for pos ["+posString+"] at relative position ["+x+","+z+"] index ["+index+"].");
+							}
+						}
+					}
+				}
+			}
+		}
+		
+		if (brighterCount != 0)
+		{
+			LOGGER.debug("Two-phase sky light was brighter than the recursive logic for ["+brighterCount+"] data points in pos ["+posString+"].");
+		}
+	}
+	
+	
 	
 	
 	//===========//
@@ -693,143 +812,4 @@ public class DhLightingEngine
 		}
 	}
 	
-	
-	
-	//================//
-	// helper classes //
-	//================//
-	
-	@FunctionalInterface
-	interface IGetLightFunc { int getLight(IChunkWrapper chunk, DhBlockPos pos); }
-	
-	@FunctionalInterface
-	interface ISetLightFunc { void setLight(IChunkWrapper chunk, DhBlockPos pos, int lightValue); }
-	
-	private static class LightPos extends DhBlockPosMutable
-	{
-		public int lightValue;
-		
-		public LightPos(int x, int y, int z, int lightValue)
-		{
-			super(x, y, z);
-			this.lightValue = lightValue;
-		}
-		
-		
-		@Override
-		public String toString() { return this.lightValue+" - ["+ this.x +", "+ this.y +", "+ this.z +"]"; }
-		
-		
-	}
-	
-	/** 
-	 * Holds all potential {@link LightPos} objects a lighting task may need.
-	 * This is done so existing {@link LightPos} objects can be repurposed instead of destroyed,
-	 * reducing garbage collector load.
-	 */
-	private static class StableLightPosStack
-	{
-		/** necessary to prevent multiple threads from modifying the cache at once */
-		private static final ReentrantLock cacheLock = new ReentrantLock();
-		private static final Queue<StableLightPosStack> lightArrayCache = new ArrayDeque<>();
-		
-		/** the index of the last item in the array, -1 if empty */
-		private int index = -1;
-
-		/** x, y, z, and lightValue. */
-		public static final int INTS_PER_LIGHT_POS = 4;
-		
-		/**
-		 * When tested with a normal 1.20 world James saw a maximum of 36,709 block and 2,355 sky lights,
-		 * so 40,000 should be a good starting point that can contain most lighting tasks.
-		 */
-		private final IntArrayList lightPositions = new IntArrayList(40_000 * INTS_PER_LIGHT_POS);
-		
-		
-		
-		//================//
-		// cache handling //
-		//================//
-		
-		private static StableLightPosStack borrowStableLightPosArray()
-		{
-			try
-			{
-				// prevent multiple threads modifying the cache at once
-				cacheLock.lock();
-				
-				return lightArrayCache.isEmpty() ? new StableLightPosStack() : lightArrayCache.remove();
-			}
-			finally
-			{
-				cacheLock.unlock();
-			}
-		}
-		
-		private static void returnStableLightPosArray(StableLightPosStack stableArray)
-		{
-			try
-			{
-				// prevent multiple threads modifying the cache at once
-				cacheLock.lock();
-				
-				if (stableArray != null)
-				{
-					lightArrayCache.add(stableArray);
-				}
-			}
-			finally
-			{
-				cacheLock.unlock();
-			}
-		}
-		
-		
-		
-		//===============//
-		// stack methods //
-		//===============//
-		
-		public boolean isEmpty() { return this.index == -1; }
-		public int size() { return this.index+1; }
-		
-		public void push(int blockX, int blockY, int blockZ, int lightValue)
-		{
-			this.index++;
-			int subIndex = this.index * INTS_PER_LIGHT_POS;
-			if (subIndex < this.lightPositions.size())
-			{
-				this.lightPositions.set(subIndex, blockX);
-				this.lightPositions.set(subIndex + 1, blockY);
-				this.lightPositions.set(subIndex + 2, blockZ);
-				this.lightPositions.set(subIndex + 3, lightValue);
-			}
-			else
-			{
-				// add a new pos
-				this.lightPositions.add(blockX);
-				this.lightPositions.add(blockY);
-				this.lightPositions.add(blockZ);
-				this.lightPositions.add(lightValue);
-			}
-		}
-		
-		/** mutates the given {@link LightPos} to match the next {@link LightPos} in the queue. */
-		public void popMutate(LightPos pos)
-		{
-			int subIndex = this.index * INTS_PER_LIGHT_POS;
-			
-			pos.setX(this.lightPositions.getInt(subIndex));
-			pos.setY(this.lightPositions.getInt(subIndex + 1));
-			pos.setZ(this.lightPositions.getInt(subIndex + 2));
-			pos.lightValue = this.lightPositions.getInt(subIndex + 3);
-			
-			this.index--;
-		}
-		
-		@Override
-		public String toString() { return this.index + "/" + (this.lightPositions.size() / INTS_PER_LIGHT_POS); }
-		
-	}
-	
 }
@@ -0,0 +1,416 @@
+/*
+ *    This file is part of the Distant Horizons mod
+ *    licensed under the GNU LGPL v3 License.
+ *
+ *    Copyright (C) 2020 James Seibel
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, version 3.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public License
+ *    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package com.seibel.distanthorizons.core.generation;
+
+import com.seibel.distanthorizons.core.pos.DhChunkPos;
+import com.seibel.distanthorizons.core.pos.blockPos.DhBlockPos;
+import com.seibel.distanthorizons.core.util.LodUtil;
+import com.seibel.distanthorizons.core.wrapperInterfaces.block.BlockStatePropertyTable;
+import com.seibel.distanthorizons.core.wrapperInterfaces.block.IBlockStateWrapper;
+import com.seibel.distanthorizons.core.wrapperInterfaces.chunk.IChunkWrapper;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Propagates light through a 3x3 grid of chunks stored in flat arrays. <br><br>
+ * 
+ * Each position's light and opacity is stored in a single byte,
+ * neighbours are found by adding a fixed offset to the position's index
+ * and positions waiting to propagate are stored in an int ring buffer. <br>
+ * The volume has a one block wall on every side so neighbour lookups never need bounds checks. <br><br>
+ * 
+ * Opacity is only looked up the first time light reaches a position,
+ * and positions above each chunk's highest non-empty section are known to be transparent
+ * so their block states are never read. <br><br>
+ * 
+ * Each instance is about 1.5 MB so they are reused per thread.
+ * 
+ * @see DhLightingEngine
+ */
+class FlatArrayLightEngine
+{
+	private static final ThreadLocal<FlatArrayLightEngine> ENGINE_REF = ThreadLocal.withInitial(FlatArrayLightEngine::new);
+	
+	/** 3 chunks plus a 1 block wall on each side */
+	private static final int PADDED_WIDTH = (LodUtil.CHUNK_WIDTH * 3) + 2;
+	
+	public static final int X_STRIDE = 1;
+	public static final int Z_STRIDE = PADDED_WIDTH;
+	public static final int Y_STRIDE = PADDED_WIDTH * PADDED_WIDTH;
+	/** -x, +x, -z, +z, -y, +y */
+	private static final int[] NEIGHBOUR_INDEX_OFFSETS = new int[] { -X_STRIDE, +X_STRIDE, -Z_STRIDE, +Z_STRIDE, -Y_STRIDE, +Y_STRIDE };
+	
+	private static final byte UNKNOWN_OPACITY = -1;
+	/** used for the padding and any positions in chunks that weren't provided */
+	private static final byte WALL_OPACITY = LodUtil.BLOCK_FULLY_OPAQUE;
+	
+	/** queued positions are packed as (index << 4) | lightValue */
+	private static final int LIGHT_BITS = 4;
+	private static final int LIGHT_MASK = 0xF;
+	private static final int INITIAL_QUEUE_SIZE = 1 << 16;
+	
+	
+	/** indexed by [x offset + 1 + ((z offset + 1) * 3)] */
+	private final IChunkWrapper[] chunkArray = new IChunkWrapper[9];
+	private int minBlockX;
+	private int minBlockZ;
+	private int minBuildHeight;
+	private int exclusiveMaxBuildHeight;
+	private int paddedHeight;
+	
+	private byte[] lights = new byte[0];
+	private byte[] opacities = new byte[0];
+	
+	/** the lowest sky lit Y value for each column, or the max build height if the column has no sky light */
+	private final int[] skyFloorByColumn = new int[(LodUtil.CHUNK_WIDTH * 3) * (LodUtil.CHUNK_WIDTH * 3)];
+	
+	private int[] queue = new int[INITIAL_QUEUE_SIZE];
+	private int queueHead = 0;
+	private int queueTail = 0;
+	
+	
+	
+	//=============//
+	// constructor //
+	//=============//
+	
+	public static FlatArrayLightEngine get() { return ENGINE_REF.get(); }
+	
+	private FlatArrayLightEngine() { }
+	
+	
+	
+	//=======//
+	// setup //
+	//=======//
+	
+	/**
+	 * Must be called before each lighting pass. <br>
+	 * Clears any light and opacity data from previous uses.
+	 * 
+	 * @param nearbyChunkList may contain chunks outside the 3x3 grid, they will be ignored
+	 */
+	public void load(IChunkWrapper centerChunk, ArrayList<IChunkWrapper> nearbyChunkList)
+	{
+		DhChunkPos centerPos = centerChunk.getChunkPos();
+		this.minBlockX = centerChunk.getMinBlockX() - LodUtil.CHUNK_WIDTH;
+		this.minBlockZ = centerChunk.getMinBlockZ() - LodUtil.CHUNK_WIDTH;
+		this.minBuildHeight = centerChunk.getInclusiveMinBuildHeight();
+		this.exclusiveMaxBuildHeight = centerChunk.getExclusiveMaxBuildHeight();
+		this.paddedHeight = (this.exclusiveMaxBuildHeight - this.minBuildHeight) + 2;
+		
+		Arrays.fill(this.chunkArray, null);
+		this.chunkArray[4] = centerChunk;
+		for (int i = 0; i < nearbyChunkList.size(); i++) // using iterators in high traffic areas can cause GC issues due to allocating a bunch of iterators, use an indexed for-loop instead
+		{
+			IChunkWrapper chunk = nearbyChunkList.get(i);
+			if (chunk == null)
+			{
+				continue;
+			}
+			
+			int offsetX = chunk.getChunkPos().getX() - centerPos.getX();
+			int offsetZ = chunk.getChunkPos().getZ() - centerPos.getZ();
+			if (offsetX >= -1 && offsetX <= 1 
+				&& offsetZ >= -1 && offsetZ <= 1
+				&& this.chunkArray[(offsetX + 1) + ((offsetZ + 1) * 3)] == null)
+			{
+				this.chunkArray[(offsetX + 1) + ((offsetZ + 1) * 3)] = chunk;
+			}
+		}
+		
+		
+		int volume = Y_STRIDE * this.paddedHeight;
+		if (this.lights.length < volume)
+		{
+			this.lights = new byte[volume];
+			this.opacities = new byte[volume];
+		}
+		Arrays.fill(this.opacities, 0, volume, UNKNOWN_OPACITY);
+	}
+	
+	/** Removes any light from the last pass, opacity data is kept. */
+	private void clearLights()
+	{
+		Arrays.fill(this.lights, 0, Y_STRIDE * this.paddedHeight, (byte) LodUtil.MIN_MC_LIGHT);
+		
+		// the walls are given max light so propagation 
+		// short circuits before checking their opacity
+		byte wallLight = LodUtil.MAX_MC_LIGHT;
+		Arrays.fill(this.lights, 0, Y_STRIDE, wallLight);
+		Arrays.fill(this.lights, Y_STRIDE * (this.paddedHeight - 1), Y_STRIDE * this.paddedHeight, wallLight);
+		for (int paddedY = 1; paddedY < this.paddedHeight - 1; paddedY++)
+		{
+			int layerIndex = paddedY * Y_STRIDE;
+			Arrays.fill(this.lights, layerIndex, layerIndex + PADDED_WIDTH, wallLight);
+			Arrays.fill(this.lights, layerIndex + Y_STRIDE - PADDED_WIDTH, layerIndex + Y_STRIDE, wallLight);
+			for (int paddedZ = 1; paddedZ < PADDED_WIDTH - 1; paddedZ++)
+			{
+				this.lights[layerIndex + (paddedZ * Z_STRIDE)] = wallLight;
+				this.lights[layerIndex + (paddedZ * Z_STRIDE) + PADDED_WIDTH - 1] = wallLight;
+			}
+		}
+		
+		this.queueHead = 0;
+		this.queueTail = 0;
+	}
+	
+	
+	
+	//==========//
+	// lighting //
+	//==========//
+	
+	/** Lights every block light source in the loaded chunks. */
+	public void propagateBlockLights()
+	{
+		this.clearLights();
+		
+		for (IChunkWrapper chunk : this.chunkArray) // since this is an array instead of an ArrayList this advanced for-loop shouldn't cause any GC issues
+		{
+			if (chunk == null)
+			{
+				continue;
+			}
+			
+			ArrayList<DhBlockPos> blockLightPosList = chunk.getWorldBlockLightPosList();
+			for (int i = 0; i < blockLightPosList.size(); i++) // using iterators in high traffic areas can cause GC issues due to allocating a bunch of iterators, use an indexed for-loop instead
+			{
+				DhBlockPos blockLightPos = blockLightPosList.get(i);
+				int y = blockLightPos.getY();
+				if (y < this.minBuildHeight || y >= this.exclusiveMaxBuildHeight)
+				{
+					continue;
+				}
+				
+				IBlockStateWrapper blockState = chunk.getBlockState(blockLightPos.getX() & 15, y, blockLightPos.getZ() & 15);
+				int lightValue = BlockStatePropertyTable.getLightEmission(BlockStatePropertyTable.getProperties(blockState));
+				
+				int index = this.getIndex(blockLightPos.getX() - this.minBlockX, y, blockLightPos.getZ() - this.minBlockZ);
+				if (lightValue > this.lights[index])
+				{
+					this.lights[index] = (byte) lightValue;
+					this.enqueue(index, lightValue);
+				}
+			}
+		}
+		
+		this.propagateQueue();
+	}
+	
+	/** 
+	 * Lights every column from the top of the world down to the first non-transparent block,
+	 * then propagates that light sideways and into partially transparent blocks.
+	 */
+	public void propagateSkyLights(int maxSkyLight)
+	{
+		this.clearLights();
+		
+		if (maxSkyLight <= LodUtil.MIN_MC_LIGHT)
+		{
+			return;
+		}
+		
+		int regionWidth = LodUtil.CHUNK_WIDTH * 3;
+		
+		// light each column top-down
+		for (int z = 0; z < regionWidth; z++)
+		{
+			for (int x = 0; x < regionWidth; x++)
+			{
+				int floorY = this.exclusiveMaxBuildHeight;
+				if (this.chunkArray[(x >> 4) + ((z >> 4) * 3)] != null)
+				{
+					int index = this.getIndex(x, this.exclusiveMaxBuildHeight - 1, z);
+					for (int y = this.exclusiveMaxBuildHeight - 1; y >= this.minBuildHeight; y--, index -= Y_STRIDE)
+					{
+						if (this.getOpacity(index) != LodUtil.BLOCK_FULLY_TRANSPARENT)
+						{
+							break;
+						}
+						
+						this.lights[index] = (byte) maxSkyLight;
+						floorY = y;
+					}
+				}
+				this.skyFloorByColumn[x + (z * regionWidth)] = floorY;
+			}
+		}
+		
+		
+		// only positions next to something that isn't directly sky lit can change anything,
+		// the rest of the sky is already fully lit and doesn't need to be queued
+		for (int z = 0; z < regionWidth; z++)
+		{
+			for (int x = 0; x < regionWidth; x++)
+			{
+				int floorY = this.skyFloorByColumn[x + (z * regionWidth)];
+				if (floorY >= this.exclusiveMaxBuildHeight)
+				{
+					continue;
+				}
+				
+				// the light only needs to spread sideways where the neighbouring column's sky light ends higher up
+				int maxNeighbourFloorY = floorY;
+				if (x > 0) { maxNeighbourFloorY = Math.max(maxNeighbourFloorY, this.skyFloorByColumn[(x - 1) + (z * regionWidth)]); }
+				if (x < regionWidth - 1) { maxNeighbourFloorY = Math.max(maxNeighbourFloorY, this.skyFloorByColumn[(x + 1) + (z * regionWidth)]); }
+				if (z > 0) { maxNeighbourFloorY = Math.max(maxNeighbourFloorY, this.skyFloorByColumn[x + ((z - 1) * regionWidth)]); }
+				if (z < regionWidth - 1) { maxNeighbourFloorY = Math.max(maxNeighbourFloorY, this.skyFloorByColumn[x + ((z + 1) * regionWidth)]); }
+				
+				// the floor is always queued so light can move down into partially transparent blocks
+				int topQueuedY = Math.min(maxNeighbourFloorY, this.exclusiveMaxBuildHeight - 1);
+				int index = this.getIndex(x, floorY, z);
+				for (int y = floorY; y <= topQueuedY; y++, index += Y_STRIDE)
+				{
+					this.enqueue(index, maxSkyLight);
+				}
+			}
+		}
+		
+		this.propagateQueue();
+	}
+	
+	private void propagateQueue()
+	{
+		byte[] lights = this.lights;
+		while (this.queueHead != this.queueTail)
+		{
+			int packedPos = this.queue[this.queueHead];
+			this.queueHead = (this.queueHead + 1) & (this.queue.length - 1);
+			
+			int index = packedPos >>> LIGHT_BITS;
+			int lightValue = packedPos & LIGHT_MASK;
+			if (lights[index] != lightValue || lightValue <= 1)
+			{
+				// this position was brightened and re-queued after this entry was added
+				// or it's too dark to light its neighbours
+				continue;
+			}
+			
+			for (int i = 0; i < NEIGHBOUR_INDEX_OFFSETS.length; i++)
+			{
+				int neighbourIndex = index + NEIGHBOUR_INDEX_OFFSETS[i];
+				int currentLight = lights[neighbourIndex];
+				if (currentLight >= (lightValue - 1))
+				{
+					// short circuit for when the light value at this position
+					// is already greater-than what we could set it
+					continue;
+				}
+				
+				// Math.max(1, ...) is used so that the propagated light level always drops by at least 1, preventing infinite cycles.
+				int targetLight = lightValue - Math.max(1, this.getOpacity(neighbourIndex));
+				if (targetLight > currentLight)
+				{
+					lights[neighbourIndex] = (byte) targetLight;
+					this.enqueue(neighbourIndex, targetLight);
+				}
+			}
+		}
+	}
+	
+	
+	
+	//===========//
+	// write out //
+	//===========//
+	
+	/** @return the {@link FlatArrayLightEngine#getLights()} index for the center chunk's relative position 0, min build height, 0 */
+	public int getCenterChunkStartIndex() { return this.getIndex(LodUtil.CHUNK_WIDTH, this.minBuildHeight, LodUtil.CHUNK_WIDTH); }
+	
+	/** 
+	 * One light value per byte. <br>
+	 * Use {@link FlatArrayLightEngine#X_STRIDE}, {@link FlatArrayLightEngine#Y_STRIDE}, and {@link FlatArrayLightEngine#Z_STRIDE} to index it.
+	 */
+	public byte[] getLights() { return this.lights; }
+	
+	
+	
+	//================//
+	// helper methods //
+	//================//
+	
+	/** x and z are relative to the 3x3 grid's min corner, y is the block's Y position */
+	private int getIndex(int x, int y, int z) 
+	{ return ((y - this.minBuildHeight + 1) * Y_STRIDE) + ((z + 1) * Z_STRIDE) + (x + 1); }
+	
+	private int getOpacity(int index)
+	{
+		byte opacity = this.opacities[index];
+		if (opacity == UNKNOWN_OPACITY)
+		{
+			opacity = this.findOpacity(index);
+			this.opacities[index] = opacity;
+		}
+		return opacity;
+	}
+	private byte findOpacity(int index)
+	{
+		int paddedY = index / Y_STRIDE;
+		int layerIndex = index - (paddedY * Y_STRIDE);
+		int paddedZ = layerIndex / Z_STRIDE;
+		int paddedX = layerIndex - (paddedZ * Z_STRIDE);
+		if (paddedX == 0 || paddedX == PADDED_WIDTH - 1
+			|| paddedZ == 0 || paddedZ == PADDED_WIDTH - 1
+			|| paddedY == 0 || paddedY == this.paddedHeight - 1)
+		{
+			return WALL_OPACITY;
+		}
+		
+		int x = paddedX - 1;
+		int z = paddedZ - 1;
+		int y = paddedY - 1 + this.minBuildHeight;
+		
+		IChunkWrapper chunk = this.chunkArray[(x >> 4) + ((z >> 4) * 3)];
+		if (chunk == null || y < chunk.getMinNonEmptyHeight())
+		{
+			// the position is outside our generator's range,
+			// or below the chunk's min height, which can happen if given a chunk that hasn't finished generating
+			return WALL_OPACITY;
+		}
+		else if (y >= chunk.getMaxNonEmptyHeight())
+		{
+			// empty sections are always air
+			return LodUtil.BLOCK_FULLY_TRANSPARENT;
+		}
+		
+		IBlockStateWrapper blockState = chunk.getBlockState(x & 15, y, z & 15);
+		return (byte) BlockStatePropertyTable.getOpacity(BlockStatePropertyTable.getProperties(blockState));
+	}
+	
+	private void enqueue(int index, int lightValue)
+	{
+		this.queue[this.queueTail] = (index << LIGHT_BITS) | lightValue;
+		this.queueTail = (this.queueTail + 1) & (this.queue.length - 1);
+		if (this.queueTail == this.queueHead)
+		{
+			// the queue is full, double its size while keeping the order
+			int[] newQueue = new int[this.queue.length * 2];
+			int headLength = this.queue.length - this.queueHead;
+			System.arraycopy(this.queue, this.queueHead, newQueue, 0, headLength);
+			System.arraycopy(this.queue, 0, newQueue, headLength, this.queueTail);
+			
+			this.queueHead = 0;
+			this.queueTail = this.queue.length;
+			this.queue = newQueue;
+		}
+	}
+	
+}
@@ -19,6 +19,11 @@
 package com.seibel.distanthorizons.core.jar;
 
 
+import com.seibel.distanthorizons.api.enums.config.EDhApiDataCompressionMode;
+import com.seibel.distanthorizons.core.dataObjects.fullData.sources.FullDataSourceV2;
+import com.seibel.distanthorizons.core.file.fullDatafile.storage.FullDataSourceStoreConverter;
+import com.seibel.distanthorizons.core.file.fullDatafile.storage.IFullDataSourceStore;
+import com.seibel.distanthorizons.core.file.fullDatafile.storage.RegionFileFullDataSourceStore;
 import com.seibel.distanthorizons.core.jar.gui.BaseJFrame;
 import com.seibel.distanthorizons.core.jar.gui.cusomJObject.JBox;
 import com.seibel.distanthorizons.core.jar.installer.ModrinthGetter;
@@ -26,7 +31,10 @@ import com.seibel.distanthorizons.core.jar.installer.WebDownloader;
 import com.seibel.distanthorizons.core.pos.DhSectionPos;
 import com.seibel.distanthorizons.core.sql.dto.FullDataSourceV2DTO;
 import com.seibel.distanthorizons.core.sql.repo.FullDataSourceV2Repo;
+import com.seibel.distanthorizons.core.util.objects.DataCorruptedException;
+import com.seibel.distanthorizons.core.util.objects.dataStreams.DhDataOutputStream;
 import com.seibel.distanthorizons.coreapi.ModInfo;
+import it.unimi.dsi.fastutil.bytes.ByteArrayList;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.apache.logging.log4j.core.LoggerContext;
@@ -35,10 +43,12 @@ import org.lwjgl.util.tinyfd.TinyFileDialogs;
 import javax.swing.*;
 import java.awt.*;
 import java.io.File;
+import java.io.IOException;
 import java.net.URL;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Locale;
 import java.util.concurrent.atomic.AtomicReference;
@@ -56,6 +66,8 @@ public class JarMain
 	public static final boolean isDarkTheme = DarkModeDetector.isDarkMode();
 	public static boolean isOffline = WebDownloader.netIsAvailable();
 	
+	private static final int DEFAULT_BENCHMARK_SAMPLE_COUNT = 200;
+	
 	// TODO: Rewrite the standalone jar
 	// Previous version here https://gitlab.com/jeseibel/distant-horizons-core/-/blob/333dc4d0e079777b712c0fff246837104ae9a2b6/core/src/main/java/com/seibel/lod/core/jar/JarMain.java
 	
@@ -236,6 +248,156 @@ public class JarMain
 				exportEntireDatabase(repo, exportFile);
 			}
 		}
+		else if (argList.get(0).equals("--convert-storage"))
+		{
+			convertStorage();
+		}
+		else if (argList.get(0).equals("--benchmark-data-format"))
+		{
+			benchmarkDataFormat();
+		}
+	}
+	
+	private static void convertStorage()
+	{
+		boolean toRegionFiles = argList.size() == 2 && argList.get(1).equals("to-regions");
+		boolean toDatabase = argList.size() == 2 && argList.get(1).equals("to-database");
+		if (!toRegionFiles && !toDatabase)
+		{
+			logger.info("--convert-storage copies the LOD data between the 'DistantHorizons.sqlite' file and the '"+RegionFileFullDataSourceStore.REGION_FOLDER_NAME+"' folder next to this jar. \n" +
+					"The source data isn't modified or deleted. \n" +
+					"Usage: \n" +
+					"--convert-storage to-regions\n" +
+					"\tCopy the database's LOD data into region files.\n" +
+					"--convert-storage to-database\n" +
+					"\tCopy the region files' LOD data into the database.\n");
+			return;
+		}
+		
+		
+		File dbFile = new File("./DistantHorizons.sqlite");
+		if (toRegionFiles && !dbFile.exists())
+		{
+			logger.error("Unable to find a database to convert at: ["+dbFile.getAbsolutePath()+"].");
+			return;
+		}
+		
+		File regionFolder = new File("./" + RegionFileFullDataSourceStore.REGION_FOLDER_NAME);
+		if (toDatabase && !regionFolder.exists())
+		{
+			logger.error("Unable to find region files to convert at: ["+regionFolder.getAbsolutePath()+"].");
+			return;
+		}
+		
+		
+		try (FullDataSourceV2Repo repo = new FullDataSourceV2Repo(FullDataSourceV2Repo.DEFAULT_DATABASE_TYPE, dbFile);
+			RegionFileFullDataSourceStore regionStore = new RegionFileFullDataSourceStore(regionFolder, repo.compressionDictionaries, repo.mappingDictionary))
+		{
+			IFullDataSourceStore source = toRegionFiles ? repo : regionStore;
+			IFullDataSourceStore target = toRegionFiles ? regionStore : repo;
+			FullDataSourceStoreConverter.convert(source, target);
+		}
+		catch (SQLException | IOException e)
+		{
+			logger.error("Failed to open LOD storage for conversion, error: ["+e.getMessage()+"].", e);
+		}
+	}
+	
+	private static void benchmarkDataFormat()
+	{
+		if (argList.size() > 2 || (argList.size() == 2 && !argList.get(1).matches("\\d+")))
+		{
+			logger.info("--benchmark-data-format re-encodes a random sample of the LOD data in the 'DistantHorizons.sqlite' file next to this jar \n" +
+					"using each data format and compression mode, then logs the resulting size and encode/decode speed. \n" +
+					"The database isn't modified. \n" +
+					"Usage: \n" +
+					"--benchmark-data-format [sampleCount]\n" +
+					"\tDefaults to ["+DEFAULT_BENCHMARK_SAMPLE_COUNT+"] samples.\n");
+			return;
+		}
+		int sampleCount = (argList.size() == 2) ? Integer.parseInt(argList.get(1)) : DEFAULT_BENCHMARK_SAMPLE_COUNT;
+		
+		File dbFile = new File("./DistantHorizons.sqlite");
+		if (!dbFile.exists())
+		{
+			logger.error("Unable to find a database to benchmark at: ["+dbFile.getAbsolutePath()+"].");
+			return;
+		}
+		
+		
+		try (FullDataSourceV2Repo repo = new FullDataSourceV2Repo(FullDataSourceV2Repo.DEFAULT_DATABASE_TYPE, dbFile))
+		{
+			// decode the samples up front so only the data blob encoding is measured
+			ArrayList<Long> posList = new ArrayList<>(repo.getAllPositions());
+			Collections.shuffle(posList);
+			
+			// the data sources are kept (instead of just their data arrays) so their pooled arrays aren't re-used mid benchmark
+			ArrayList<FullDataSourceV2> sampleDataList = new ArrayList<>();
+			for (int i = 0; i < posList.size() && sampleDataList.size() < sampleCount; i++)
+			{
+				try (FullDataSourceV2DTO dto = repo.getByKey(posList.get(i)))
+				{
+					if (dto != null)
+					{
+						sampleDataList.add(dto.createUnitTestDataSource());
+					}
+				}
+				catch (IOException | InterruptedException | DataCorruptedException e)
+				{
+					logger.warn("Skipping benchmark sample ["+DhSectionPos.toString(posList.get(i))+"], error: ["+e.getMessage()+"].");
+				}
+			}
+			
+			if (sampleDataList.isEmpty())
+			{
+				logger.error("No LOD data found to benchmark in: ["+dbFile.getAbsolutePath()+"].");
+				return;
+			}
+			logger.info("Benchmarking ["+sampleDataList.size()+"] data sources...");
+			
+			
+			byte[] dataFormatVersions = new byte[] { FullDataSourceV2.DATA_FORMAT_VERSION_PACKED_COLUMNS, FullDataSourceV2.DATA_FORMAT_VERSION };
+			FullDataSourceV2 decodedDataSource = FullDataSourceV2.createEmpty(0);
+			for (EDhApiDataCompressionMode compressionMode : EDhApiDataCompressionMode.values())
+			{
+				for (byte dataFormatVersion : dataFormatVersions)
+				{
+					long totalByteCount = 0;
+					long encodeTimeNs = 0;
+					long decodeTimeNs = 0;
+					
+					for (FullDataSourceV2 dataSource : sampleDataList)
+					{
+						ByteArrayList encodedByteArray = new ByteArrayList();
+						
+						long startTimeNs = System.nanoTime();
+						FullDataSourceV2DTO.writeDataSourceDataArrayToBlob(dataSource.dataPoints, encodedByteArray, dataFormatVersion, compressionMode, DhDataOutputStream.DEFAULT_ZSTD_COMPRESSION_LEVEL, null);
+						encodeTimeNs += System.nanoTime() - startTimeNs;
+						
+						startTimeNs = System.nanoTime();
+						FullDataSourceV2DTO.readBlobToDataSourceDataArray(encodedByteArray, decodedDataSource.dataPoints, dataFormatVersion, compressionMode, null);
+						decodeTimeNs += System.nanoTime() - startTimeNs;
+						
+						totalByteCount += encodedByteArray.size();
+					}
+					
+					logger.info("Compression: ["+compressionMode+"], format: ["+dataFormatVersion+"], " +
+							"average size: ["+(totalByteCount / sampleDataList.size())+"] bytes, " +
+							"average encode: ["+(encodeTimeNs / sampleDataList.size() / 1_000_000.0)+"]ms, " +
+							"average decode: ["+(decodeTimeNs / sampleDataList.size() / 1_000_000.0)+"]ms.");
+				}
+			}
+			
+			decodedDataSource.close();
+			for (FullDataSourceV2 dataSource : sampleDataList)
+			{
+				dataSource.close();
+			}
+		}
+		catch (SQLException | IOException | DataCorruptedException e)
+		{
+			logger.error("Failed to benchmark data formats, error: ["+e.getMessage()+"].", e);
+		}
 	}
 	
 	private static void exportLodDataAtPosition(FullDataSourceV2Repo repo, File exportFile, long pos)
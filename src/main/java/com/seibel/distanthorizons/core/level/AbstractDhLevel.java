@@ -22,6 +22,7 @@ package com.seibel.distanthorizons.core.level;
 import com.seibel.distanthorizons.api.methods.events.abstractEvents.DhApiChunkModifiedEvent;
 import com.seibel.distanthorizons.core.dataObjects.fullData.sources.FullDataSourceV2;
 import com.seibel.distanthorizons.core.file.fullDatafile.DelayedFullDataSourceSaveCache;
+import com.seibel.distanthorizons.core.file.fullDatafile.FullDataSourceProviderV2;
 import com.seibel.distanthorizons.core.generation.DhLightingEngine;
 import com.seibel.distanthorizons.core.logging.DhLoggerBuilder;
 import com.seibel.distanthorizons.core.pos.DhChunkPos;
@@ -38,11 +39,13 @@ import com.seibel.distanthorizons.core.util.KeyedLockContainer;
 import com.seibel.distanthorizons.core.util.LodUtil;
 import com.seibel.distanthorizons.core.wrapperInterfaces.chunk.IChunkWrapper;
 import com.seibel.distanthorizons.coreapi.DependencyInjection.ApiEventInjector;
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
 import org.apache.logging.log4j.Logger;
 import org.jetbrains.annotations.Nullable;
 
 import java.io.File;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -54,6 +57,11 @@ public abstract class AbstractDhLevel implements IDhLevel
 {
 	private static final Logger LOGGER = DhLoggerBuilder.getLogger();
 	
+	/** once this many hashes are cached the cache is cleared, prevents unbounded growth when exploring */
+	private static final int MAX_CACHED_CHUNK_HASH_COUNT = 100_000;
+	/** unsaved chunk hashes are written once this many are queued */
+	private static final int CHUNK_HASH_SAVE_BATCH_SIZE = 256;
+	
 	/** if this is null then the other handler is probably null too, but just in case */
 	@Nullable
 	public ChunkHashRepo chunkHashRepo;
@@ -68,6 +76,16 @@ public abstract class AbstractDhLevel implements IDhLevel
 	protected final ConcurrentHashMap<Long, HashSet<DhChunkPos>> updatedChunkPosSetBySectionPos = new ConcurrentHashMap<>();
 	protected final ConcurrentHashMap<DhChunkPos, Integer> updatedChunkHashesByChunkPos = new ConcurrentHashMap<>();
 	
+	/** 
+	 * In memory copy of the hashes in {@link AbstractDhLevel#chunkHashRepo},
+	 * so chunks that were already checked don't need a database query. <br>
+	 * Only contains positions that have been queried or saved.
+	 * Also used as the lock for {@link AbstractDhLevel#unsavedChunkHashByPos}.
+	 */
+	private final Long2IntOpenHashMap chunkHashByPos = new Long2IntOpenHashMap();
+	/** hashes waiting to be saved to {@link AbstractDhLevel#chunkHashRepo} in a single transaction */
+	private final HashMap<DhChunkPos, ChunkHashDTO> unsavedChunkHashByPos = new HashMap<>();
+	
 	/** Will be null if clouds shouldn't be rendered for this level. */
 	@Nullable
 	protected CloudRenderHandler cloudRenderHandler;
@@ -184,9 +202,9 @@ public abstract class AbstractDhLevel implements IDhLevel
 					{
 						// save after the data source has been updated to prevent saving the hash without the associated datasource
 						Integer chunkHash = this.updatedChunkHashesByChunkPos.remove(chunkPos);
-						if (this.chunkHashRepo != null && chunkHash != null)
+						if (chunkHash != null)
 						{
-							this.chunkHashRepo.save(new ChunkHashDTO(chunkPos, chunkHash));
+							this.queueChunkHashSave(chunkPos, chunkHash);
 						}
 						
 						ApiEventInjector.INSTANCE.fireAllEvents(
@@ -208,15 +226,114 @@ public abstract class AbstractDhLevel implements IDhLevel
 	@Override
 	public int getChunkHash(DhChunkPos pos)
 	{
+		long key = getChunkHashKey(pos);
+		synchronized (this.chunkHashByPos)
+		{
+			if (this.chunkHashByPos.containsKey(key))
+			{
+				return this.chunkHashByPos.get(key);
+			}
+		}
+		
 		if (this.chunkHashRepo == null)
 		{
 			return 0;
 		}
 		
 		ChunkHashDTO dto = this.chunkHashRepo.getByKey(pos);
-		return (dto != null) ? dto.chunkHash : 0;
+		int chunkHash = (dto != null) ? dto.chunkHash : 0;
+		
+		synchronized (this.chunkHashByPos)
+		{
+			// a newer hash may have been queued while the database was being queried
+			if (!this.chunkHashByPos.containsKey(key))
+			{
+				this.cacheChunkHash(key, chunkHash);
+			}
+		}
+		return chunkHash;
 	}
 	
+	private void queueChunkHashSave(DhChunkPos pos, int chunkHash)
+	{
+		ArrayList<ChunkHashDTO> dtosToSave = null;
+		synchronized (this.chunkHashByPos)
+		{
+			this.cacheChunkHash(getChunkHashKey(pos), chunkHash);
+			this.unsavedChunkHashByPos.put(pos, new ChunkHashDTO(pos, chunkHash));
+			
+			if (this.unsavedChunkHashByPos.size() >= CHUNK_HASH_SAVE_BATCH_SIZE)
+			{
+				dtosToSave = new ArrayList<>(this.unsavedChunkHashByPos.values());
+				this.unsavedChunkHashByPos.clear();
+			}
+		}
+		
+		if (dtosToSave != null)
+		{
+			this.saveChunkHashes(dtosToSave);
+		}
+	}
+	/** writes any queued hashes to the database */
+	private void flushChunkHashes()
+	{
+		ArrayList<ChunkHashDTO> dtosToSave;
+		synchronized (this.chunkHashByPos)
+		{
+			dtosToSave = new ArrayList<>(this.unsavedChunkHashByPos.values());
+			this.unsavedChunkHashByPos.clear();
+		}
+		
+		if (!dtosToSave.isEmpty())
+		{
+			this.saveChunkHashes(dtosToSave);
+		}
+	}
+	private void saveChunkHashes(ArrayList<ChunkHashDTO> dtoList)
+	{
+		ChunkHashRepo chunkHashRepo = this.chunkHashRepo;
+		FullDataSourceProviderV2 fullDataProvider = this.getFullDataProvider();
+		if (chunkHashRepo == null || fullDataProvider == null)
+		{
+			return;
+		}
+		
+		// the data sources these hashes describe may still be waiting to be written,
+		// if a hash was written first and the game stopped before its data was written
+		// the chunk would be skipped the next time it was loaded and the LOD would never be fixed
+		fullDataProvider.store.runAfterQueuedSaves(() ->
+		{
+			try
+			{
+				chunkHashRepo.upsertBatch(dtoList);
+			}
+			catch (SQLException e)
+			{
+				// the affected chunks will just be rebuilt the next time they're loaded
+				LOGGER.warn("Unable to save ["+dtoList.size()+"] chunk hashes, error: ["+e.getMessage()+"].", e);
+			}
+		});
+	}
+	
+	/** the caller must hold the {@link AbstractDhLevel#chunkHashByPos} lock */
+	private void cacheChunkHash(long key, int chunkHash)
+	{
+		if (this.chunkHashByPos.size() >= MAX_CACHED_CHUNK_HASH_COUNT)
+		{
+			this.chunkHashByPos.clear();
+			
+			// unsaved hashes aren't in the database yet, so they need to stay cached
+			for (ChunkHashDTO dto : this.unsavedChunkHashByPos.values())
+			{
+				this.chunkHashByPos.put(getChunkHashKey(dto.pos), dto.chunkHash);
+			}
+		}
+		
+		this.chunkHashByPos.put(key, chunkHash);
+	}
+	
+	private static long getChunkHashKey(DhChunkPos pos) { return ((long) pos.getX() << 32) | (pos.getZ() & 0xFFFFFFFFL); }
+	
 	
 	
 	//=================//
@@ -367,6 +484,16 @@ public abstract class AbstractDhLevel implements IDhLevel
 	@Override
 	public void close() 
 	{ 
+		this.flushChunkHashes();
+		
+		// the hashes are written after their data sources,
+		// so the data needs to be flushed before the hash repo can be closed
+		FullDataSourceProviderV2 fullDataProvider = this.getFullDataProvider();
+		if (fullDataProvider != null)
+		{
+			fullDataProvider.store.flushQueuedSaves();
+		}
+		
 		if (this.chunkHashRepo != null)
 		{
 			this.chunkHashRepo.close();
@@ -318,6 +318,9 @@ public abstract class AbstractDhServerLevel extends AbstractDhLevel implements I
 			messageList.add("  Migration Failed");
 		}
 		
+		// database
+		this.serverside.fullDataFileHandler.addDebugMenuStringsToList(messageList);
+		
 		// world gen
 		this.serverside.worldGenModule.addDebugMenuStringsToList(messageList);
 	}
@@ -221,7 +221,8 @@ public class ClientLevelModule implements Closeable, AbstractDataSourceHandler.I
 		ClientRenderState ClientRenderState = this.ClientRenderStateRef.get();
 		if (ClientRenderState != null)
 		{
-			ClientRenderState.quadtree.reloadPos(updatedFullDataSource.getPos());
+			// adjacent sections only need to be reloaded if their shared edge changed
+			ClientRenderState.quadtree.reloadPos(updatedFullDataSource.getPos(), updatedFullDataSource.getChangedColumns());
 		}
 	}
 	
@@ -350,6 +350,9 @@ public class DhClientLevel extends AbstractDhLevel implements IDhClientLevel
 		}
 		
 		
+		// database
+		this.dataFileHandler.addDebugMenuStringsToList(messageList);
+		
 		// world gen
 		this.worldGenModule.addDebugMenuStringsToList(messageList);
 		if (this.syncOnLoadRequestQueue != null)
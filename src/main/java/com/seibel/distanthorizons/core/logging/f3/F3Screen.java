@@ -24,10 +24,12 @@ import com.seibel.distanthorizons.core.config.Config;
 import com.seibel.distanthorizons.core.dependencyInjection.SingletonInjector;
 import com.seibel.distanthorizons.core.jar.ModJarInfo;
 import com.seibel.distanthorizons.core.level.IDhLevel;
+import com.seibel.distanthorizons.core.pooling.OffHeapArena;
 import com.seibel.distanthorizons.core.pooling.PhantomArrayListPool;
 import com.seibel.distanthorizons.core.pos.DhSectionPos;
 import com.seibel.distanthorizons.core.render.RenderBufferHandler;
 import com.seibel.distanthorizons.core.render.renderer.generic.GenericObjectRenderer;
+import com.seibel.distanthorizons.core.sql.repo.AbstractDhRepo;
 import com.seibel.distanthorizons.core.util.threading.PriorityTaskPicker;
 import com.seibel.distanthorizons.core.util.threading.ThreadPoolUtil;
 import com.seibel.distanthorizons.core.world.AbstractDhWorld;
@@ -135,6 +137,10 @@ public class F3Screen
 		if (Config.Client.Advanced.Debugging.F3Screen.showCombinedObjectPools.get())
 		{
 			PhantomArrayListPool.addDebugMenuStringsToListForCombinedPools(messageList);
+			if (OffHeapArena.isEnabled())
+			{
+				OffHeapArena.INSTANCE.addDebugMenuStringsToList(messageList);
+			}
 			messageList.add("");
 		}
 		// separated object pools
@@ -155,6 +161,7 @@ public class F3Screen
 		if (Config.Client.Advanced.Debugging.F3Screen.showLevelStatus.get())
 		{
 			world.addDebugMenuStringsToList(messageList);
+			AbstractDhRepo.addDebugMenuStringsToList(messageList);
 			messageList.add("");
 			for (IDhLevel level : levelIterator)
 			{
@@ -4,10 +4,16 @@ import com.google.common.base.MoreObjects;
 import com.seibel.distanthorizons.api.enums.config.EDhApiDataCompressionMode;
 import com.seibel.distanthorizons.core.config.Config;
 import com.seibel.distanthorizons.core.dataObjects.fullData.sources.FullDataSourceV2;
+import com.seibel.distanthorizons.core.dataObjects.fullData.sources.LazyFullDataSourceV2;
 import com.seibel.distanthorizons.core.network.INetworkObject;
 import com.seibel.distanthorizons.core.network.messages.fullData.FullDataSplitMessage;
+import com.seibel.distanthorizons.core.pos.DhSectionPos;
 import com.seibel.distanthorizons.core.sql.dto.BeaconBeamDTO;
 import com.seibel.distanthorizons.core.sql.dto.FullDataSourceV2DTO;
+import com.seibel.distanthorizons.core.util.LodUtil;
+import com.seibel.distanthorizons.core.util.objects.DataCorruptedException;
+import com.seibel.distanthorizons.core.wrapperInterfaces.world.ILevelWrapper;
+import com.seibel.distanthorizons.coreapi.ModInfo;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.UnpooledByteBufAllocator;
 import org.jetbrains.annotations.NotNull;
@@ -46,11 +52,11 @@ public class FullDataPayload implements INetworkObject, AutoCloseable
 		try
 		{
 			EDhApiDataCompressionMode compressionMode = Config.Common.LodBuilding.dataCompression.get();
+			// compression dictionaries are only stored in the server's database, 
+			// so data sent over the network never uses one
 			try (FullDataSourceV2DTO dataSourceDto = FullDataSourceV2DTO.CreateFromDataSource(fullDataSource, compressionMode))
 			{
-				// TODO this.dtoBuffer = ByteBufAllocator.DEFAULT.buffer();
-                this.dtoBuffer = UnpooledByteBufAllocator.DEFAULT.buffer();
-				dataSourceDto.encode(this.dtoBuffer);
+				this.encodeDto(dataSourceDto);
 			}
 		}
 		catch (IOException e)
@@ -60,6 +66,69 @@ public class FullDataPayload implements INetworkObject, AutoCloseable
 		
 		this.beaconBeams = beaconBeams;
 	}
+	/** 
+	 * Sends the stored data as-is when possible, 
+	 * skipping decoding and re-encoding the whole data source. <br>
+	 * The stored data format and compression mode are passed through unchanged,
+	 * so every format or mode the server can store must be readable by clients
+	 * with the same {@link ModInfo#PROTOCOL_VERSION}.
+	 */
+	public FullDataPayload(@NotNull LazyFullDataSourceV2 lazyDataSource, ILevelWrapper levelWrapper, List<BeaconBeamDTO> beaconBeams)
+	{
+		Objects.requireNonNull(lazyDataSource);
+		
+		this.dtoBufferId = lastBufferId.getAndIncrement();
+		this.beaconBeams = beaconBeams;
+		
+		FullDataSourceV2DTO storedDto = lazyDataSource.getDto();
+		if (storedDto.getDictionaryId() == 0)
+		{
+			if (!storedDto.usesMappingDictionary())
+			{
+				this.encodeDto(storedDto);
+				return;
+			}
+			
+			// the client won't have this level's mapping dictionary either,
+			// but only the (much smaller) mapping needs to be re-encoded
+			try (FullDataSourceV2DTO dataSourceDto = storedDto.copyWithoutMappingDictionary(levelWrapper))
+			{
+				this.encodeDto(dataSourceDto);
+				return;
+			}
+			catch (IOException | InterruptedException | DataCorruptedException e)
+			{
+				throw new RuntimeException(e);
+			}
+		}
+		
+		
+		// the client won't have the dictionary this data was compressed with, 
+		// so it has to be re-compressed
+		try (FullDataSourceV2 fullDataSource = lazyDataSource.createDataSource(levelWrapper);
+			FullDataSourceV2DTO dataSourceDto = FullDataSourceV2DTO.CreateFromDataSource(fullDataSource, Config.Common.LodBuilding.dataCompression.get()))
+		{
+			this.encodeDto(dataSourceDto);
+		}
+		catch (IOException | InterruptedException | DataCorruptedException e)
+		{
+			throw new RuntimeException(e);
+		}
+	}
+	/** 
+	 * The DTO's compression mode and data format are sent unchanged, 
+	 * which is only safe because clients must use the same {@link ModInfo#PROTOCOL_VERSION}. <br>
+	 * Level specific dictionaries can't be decoded by the client and must be removed beforehand.
+	 */
+	private void encodeDto(FullDataSourceV2DTO dataSourceDto)
+	{
+		LodUtil.assertTrue(dataSourceDto.getDictionaryId() == 0 && !dataSourceDto.usesMappingDictionary(), 
+				"Full data for pos [" + DhSectionPos.toString(dataSourceDto.pos) + "] can't be sent to clients while it references one of the level's dictionaries.");
+		
+		// TODO this.dtoBuffer = ByteBufAllocator.DEFAULT.buffer();
+        this.dtoBuffer = UnpooledByteBufAllocator.DEFAULT.buffer();
+		dataSourceDto.encode(this.dtoBuffer);
+	}
 	
 	
 	
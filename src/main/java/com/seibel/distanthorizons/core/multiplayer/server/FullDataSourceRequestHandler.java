@@ -2,6 +2,7 @@ package com.seibel.distanthorizons.core.multiplayer.server;
 
 import com.seibel.distanthorizons.api.enums.worldGeneration.EDhApiDistantGeneratorMode;
 import com.seibel.distanthorizons.core.config.Config;
+import com.seibel.distanthorizons.core.dataObjects.fullData.sources.LazyFullDataSourceV2;
 import com.seibel.distanthorizons.core.file.fullDatafile.GeneratedFullDataSourceProvider;
 import com.seibel.distanthorizons.core.level.AbstractDhServerLevel;
 import com.seibel.distanthorizons.core.logging.ConfigBasedLogger;
@@ -84,12 +85,20 @@ public class FullDataSourceRequestHandler
 			return;
 		}
 		
-		this.fullDataSourceProvider().getAsync(message.sectionPos).thenAcceptAsync(fullDataSource ->
+		// the stored data can usually be sent as-is, so there's no need to decode it
+		this.fullDataSourceProvider().getLazyAsync(message.sectionPos).thenAcceptAsync(lazyDataSource ->
 		{
-			try (FullDataPayload payload = new FullDataPayload(fullDataSource, this.getAllBeamsForPos(message.sectionPos)))
+			if (lazyDataSource == null)
+			{
+				// the data was deleted after the timestamp was checked, or the provider is shutting down
+				rateLimiterSet.syncOnLoginRateLimiter.release();
+				message.sendResponse(new FullDataSourceResponseMessage(null));
+				return;
+			}
+			
+			try (LazyFullDataSourceV2 closableDataSource = lazyDataSource;
+				FullDataPayload payload = new FullDataPayload(closableDataSource, this.serverLevel.getLevelWrapper(), this.getAllBeamsForPos(message.sectionPos)))
 			{
-				fullDataSource.close();
-				
 				serverPlayerState.fullDataPayloadSender.sendInChunks(payload, () ->
 				{
 					message.sendResponse(new FullDataSourceResponseMessage(payload));
@@ -0,0 +1,238 @@
+package com.seibel.distanthorizons.core.pooling;
+
+import com.seibel.distanthorizons.core.config.Config;
+import com.seibel.distanthorizons.core.logging.DhLoggerBuilder;
+import com.seibel.distanthorizons.core.logging.f3.F3Screen;
+import com.seibel.distanthorizons.coreapi.util.StringUtil;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import org.apache.logging.log4j.Logger;
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Allocates {@link OffHeapLongArray}s outside the Java heap
+ * so large, long-lived LOD arrays don't have to be scanned or copied by the garbage collector. <br><br>
+ * 
+ * Memory is reserved from the OS in {@link OffHeapArena#SLAB_SIZE_IN_BYTES} slabs,
+ * each slab is split into fixed size pages and each array is made up of as many pages as it needs.
+ * Since every page is the same size any freed page can be reused by any array,
+ * so the arena doesn't fragment like a general purpose allocator. <br><br>
+ * 
+ * Pages are returned as soon as their {@link OffHeapLongArray} is closed,
+ * and slabs are released once all of their pages are free and either
+ * nothing is using the arena or more memory is reserved than {@link Config.Common.LodBuilding.Experimental#offHeapArenaSizeInMb} allows. <br>
+ * Note: the JVM only returns a released slab's memory to the OS once the slab's (very small) buffer object is garbage collected.
+ * 
+ * @see OffHeapLongArray
+ */
+public class OffHeapArena
+{
+	private static final Logger LOGGER = DhLoggerBuilder.getLogger();
+	
+	public static final OffHeapArena INSTANCE = new OffHeapArena();
+	
+	private static final long BYTES_PER_MB = 1024L * 1024L;
+	
+	/** 8,192 longs (64 KB) per page */
+	static final int PAGE_SIZE_SHIFT = 13;
+	static final int PAGE_SIZE_IN_LONGS = 1 << PAGE_SIZE_SHIFT;
+	static final int PAGE_INDEX_MASK = PAGE_SIZE_IN_LONGS - 1;
+	private static final int PAGES_PER_SLAB = 64;
+	private static final long SLAB_SIZE_IN_BYTES = (long) PAGE_SIZE_IN_LONGS * Long.BYTES * PAGES_PER_SLAB;
+	
+	
+	/** null entries are slabs that have been released and can be replaced */
+	private final ArrayList<LongBuffer> slabs = new ArrayList<>();
+	/** how many pages of each slab are currently allocated, indexed the same as {@link OffHeapArena#slabs} */
+	private final IntArrayList usedPageCountBySlab = new IntArrayList();
+	/** page index = (slab index * {@link OffHeapArena#PAGES_PER_SLAB}) + page in slab */
+	private final IntArrayList freePageIndices = new IntArrayList();
+	
+	private int reservedSlabCount = 0;
+	private int usedPageCount = 0;
+	
+	
+	// metrics //
+	
+	private final AtomicLong failedAllocationCount = new AtomicLong(0);
+	
+	
+	
+	//=============//
+	// constructor //
+	//=============//
+	
+	private OffHeapArena() { }
+	
+	
+	
+	//============//
+	// allocation //
+	//============//
+	
+	/** @return false if off heap storage is disabled in the config */
+	public static boolean isEnabled() { return Config.Common.LodBuilding.Experimental.offHeapArenaSizeInMb.get() > 0; }
+	
+	/**
+	 * The returned array's contents are undefined until written to. <br>
+	 * The caller is responsible for closing the returned array.
+	 * 
+	 * @return null if the arena is disabled or allocating the array would go over the arena's budget,
+	 *      in which case the caller should fall back to storing the data on the heap
+	 */
+	@Nullable
+	public synchronized OffHeapLongArray allocate(int lengthInLongs)
+	{
+		if (lengthInLongs < 0)
+		{
+			throw new IllegalArgumentException("Array length ["+lengthInLongs+"] can't be negative.");
+		}
+		
+		int pageCount = (lengthInLongs + PAGE_SIZE_IN_LONGS - 1) >> PAGE_SIZE_SHIFT;
+		if (!this.reservePages(pageCount))
+		{
+			this.failedAllocationCount.incrementAndGet();
+			return null;
+		}
+		
+		int[] pageIndices = new int[pageCount];
+		LongBuffer[] pages = new LongBuffer[pageCount];
+		for (int i = 0; i < pageCount; i++)
+		{
+			int pageIndex = this.freePageIndices.removeInt(this.freePageIndices.size() - 1);
+			int slabIndex = pageIndex / PAGES_PER_SLAB;
+			
+			pageIndices[i] = pageIndex;
+			// each page gets its own slice so the arrays never have to access the slab list
+			pages[i] = this.slabs.get(slabIndex).slice((pageIndex % PAGES_PER_SLAB) * PAGE_SIZE_IN_LONGS, PAGE_SIZE_IN_LONGS);
+			this.usedPageCountBySlab.set(slabIndex, this.usedPageCountBySlab.getInt(slabIndex) + 1);
+		}
+		this.usedPageCount += pageCount;
+		
+		return new OffHeapLongArray(this, pageIndices, pages, lengthInLongs);
+	}
+	/** @return false if the pages couldn't be reserved without going over budget */
+	private boolean reservePages(int pageCount)
+	{
+		long budgetInBytes = Config.Common.LodBuilding.Experimental.offHeapArenaSizeInMb.get() * BYTES_PER_MB;
+		while (this.freePageIndices.size() < pageCount)
+		{
+			if ((this.reservedSlabCount + 1) * SLAB_SIZE_IN_BYTES > budgetInBytes)
+			{
+				return false;
+			}
+			
+			LongBuffer slab;
+			try
+			{
+				slab = ByteBuffer.allocateDirect((int) SLAB_SIZE_IN_BYTES).order(ByteOrder.nativeOrder()).asLongBuffer();
+			}
+			catch (OutOfMemoryError e)
+			{
+				// can happen if the JVM's direct memory limit (-XX:MaxDirectMemorySize) is lower than the arena's budget
+				LOGGER.warn("Unable to reserve off heap LOD memory, reserved: ["+StringUtil.convertBytesToHumanReadable(this.reservedSlabCount * SLAB_SIZE_IN_BYTES)+"], error: ["+e.getMessage()+"].");
+				return false;
+			}
+			
+			// reuse released slab slots so page indices stay small
+			int slabIndex = this.slabs.indexOf(null);
+			if (slabIndex == -1)
+			{
+				slabIndex = this.slabs.size();
+				this.slabs.add(slab);
+				this.usedPageCountBySlab.add(0);
+			}
+			else
+			{
+				this.slabs.set(slabIndex, slab);
+			}
+			this.reservedSlabCount++;
+			
+			// added in reverse so pages are handed out in order
+			for (int i = PAGES_PER_SLAB - 1; i >= 0; i--)
+			{
+				this.freePageIndices.add((slabIndex * PAGES_PER_SLAB) + i);
+			}
+		}
+		
+		return true;
+	}
+	
+	/** should only be called by {@link OffHeapLongArray#close()} */
+	synchronized void free(int[] pageIndices)
+	{
+		for (int pageIndex : pageIndices)
+		{
+			int slabIndex = pageIndex / PAGES_PER_SLAB;
+			this.usedPageCountBySlab.set(slabIndex, this.usedPageCountBySlab.getInt(slabIndex) - 1);
+			this.freePageIndices.add(pageIndex);
+		}
+		this.usedPageCount -= pageIndices.length;
+		
+		long budgetInBytes = Config.Common.LodBuilding.Experimental.offHeapArenaSizeInMb.get() * BYTES_PER_MB;
+		if (this.usedPageCount == 0
+			|| this.reservedSlabCount * SLAB_SIZE_IN_BYTES > budgetInBytes)
+		{
+			this.releaseUnusedSlabs();
+		}
+	}
+	private void releaseUnusedSlabs()
+	{
+		boolean slabReleased = false;
+		for (int slabIndex = 0; slabIndex < this.slabs.size(); slabIndex++)
+		{
+			if (this.slabs.get(slabIndex) != null 
+				&& this.usedPageCountBySlab.getInt(slabIndex) == 0)
+			{
+				this.slabs.set(slabIndex, null);
+				this.reservedSlabCount--;
+				slabReleased = true;
+			}
+		}
+		
+		if (slabReleased)
+		{
+			// remove the released slabs' pages
+			IntArrayList remainingFreePages = new IntArrayList(this.freePageIndices.size());
+			for (int i = 0; i < this.freePageIndices.size(); i++)
+			{
+				int pageIndex = this.freePageIndices.getInt(i);
+				if (this.slabs.get(pageIndex / PAGES_PER_SLAB) != null)
+				{
+					remainingFreePages.add(pageIndex);
+				}
+			}
+			this.freePageIndices.clear();
+			this.freePageIndices.addAll(remainingFreePages);
+		}
+	}
+	
+	
+	
+	//=========//
+	// metrics //
+	//=========//
+	
+	public void addDebugMenuStringsToList(List<String> messageList)
+	{
+		long usedBytes;
+		long reservedBytes;
+		synchronized (this)
+		{
+			usedBytes = (long) this.usedPageCount * PAGE_SIZE_IN_LONGS * Long.BYTES;
+			reservedBytes = this.reservedSlabCount * SLAB_SIZE_IN_BYTES;
+		}
+		long budgetInBytes = Config.Common.LodBuilding.Experimental.offHeapArenaSizeInMb.get() * BYTES_PER_MB;
+		
+		messageList.add("Off Heap Arena - used: " + StringUtil.convertBytesToHumanReadable(usedBytes)
+				+ ", reserved: " + StringUtil.convertBytesToHumanReadable(reservedBytes) + "/" + StringUtil.convertBytesToHumanReadable(budgetInBytes)
+				+ ", failed allocations: " + F3Screen.NUMBER_FORMAT.format(this.failedAllocationCount.get()));
+	}
+	
+}
@@ -0,0 +1,113 @@
+package com.seibel.distanthorizons.core.pooling;
+
+import java.nio.LongBuffer;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A fixed length array of longs stored outside the Java heap,
+ * created by {@link OffHeapArena#allocate(int)}. <br><br>
+ * 
+ * The array's memory is returned to the arena as soon as it's closed,
+ * reading or writing a closed array may modify a different array's data. <br>
+ * Reads and writes aren't synchronized, the same as a normal array.
+ * 
+ * @see OffHeapArena
+ */
+public class OffHeapLongArray implements AutoCloseable
+{
+	private final OffHeapArena arena;
+	private final int[] pageIndices;
+	private final LongBuffer[] pages;
+	public final int length;
+	
+	private final AtomicBoolean closed = new AtomicBoolean(false);
+	
+	
+	
+	//=============//
+	// constructor //
+	//=============//
+	
+	OffHeapLongArray(OffHeapArena arena, int[] pageIndices, LongBuffer[] pages, int length)
+	{
+		this.arena = arena;
+		this.pageIndices = pageIndices;
+		this.pages = pages;
+		this.length = length;
+	}
+	
+	
+	
+	//=====================//
+	// getters and setters //
+	//=====================//
+	
+	public long get(int index) { return this.pages[index >> OffHeapArena.PAGE_SIZE_SHIFT].get(index & OffHeapArena.PAGE_INDEX_MASK); }
+	public void set(int index, long value) { this.pages[index >> OffHeapArena.PAGE_SIZE_SHIFT].put(index & OffHeapArena.PAGE_INDEX_MASK, value); }
+	
+	/** @return how many bytes of off heap memory this array is using */
+	public long getSizeInBytes() { return (long) this.pages.length * OffHeapArena.PAGE_SIZE_IN_LONGS * Long.BYTES; }
+	
+	
+	
+	//==============//
+	// bulk copying //
+	//==============//
+	
+	/** copies {@code length} longs from {@code source} into this array starting at {@code index} */
+	public void copyFrom(long[] source, int sourceOffset, int index, int length)
+	{
+		this.checkRange(index, length);
+		while (length > 0)
+		{
+			int pageOffset = index & OffHeapArena.PAGE_INDEX_MASK;
+			int copyLength = Math.min(length, OffHeapArena.PAGE_SIZE_IN_LONGS - pageOffset);
+			this.pages[index >> OffHeapArena.PAGE_SIZE_SHIFT].put(pageOffset, source, sourceOffset, copyLength);
+			
+			sourceOffset += copyLength;
+			index += copyLength;
+			length -= copyLength;
+		}
+	}
+	
+	/** copies {@code length} longs from this array starting at {@code index} into {@code target} */
+	public void copyTo(int index, long[] target, int targetOffset, int length)
+	{
+		this.checkRange(index, length);
+		while (length > 0)
+		{
+			int pageOffset = index & OffHeapArena.PAGE_INDEX_MASK;
+			int copyLength = Math.min(length, OffHeapArena.PAGE_SIZE_IN_LONGS - pageOffset);
+			this.pages[index >> OffHeapArena.PAGE_SIZE_SHIFT].get(pageOffset, target, targetOffset, copyLength);
+			
+			targetOffset += copyLength;
+			index += copyLength;
+			length -= copyLength;
+		}
+	}
+	
+	private void checkRange(int index, int length) throws IndexOutOfBoundsException
+	{
+		if (index < 0 || length < 0 || index + length > this.length)
+		{
+			throw new IndexOutOfBoundsException("Range ["+index+"-"+(index + length)+"] is outside the array's length ["+this.length+"].");
+		}
+	}
+	
+	
+	
+	//================//
+	// base overrides //
+	//================//
+	
+	@Override
+	public void close()
+	{
+		// multiple closes shouldn't free the pages multiple times
+		if (this.closed.compareAndSet(false, true))
+		{
+			this.arena.free(this.pageIndices);
+		}
+	}
+	
+}
@@ -22,6 +22,7 @@ package com.seibel.distanthorizons.core.render;
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
 import com.seibel.distanthorizons.core.config.Config;
+import com.seibel.distanthorizons.core.dataObjects.fullData.sources.FullDataSourceV2;
 import com.seibel.distanthorizons.core.dataObjects.render.CachedColumnRenderSource;
 import com.seibel.distanthorizons.core.dataObjects.render.ColumnRenderSource;
 import com.seibel.distanthorizons.core.dataObjects.render.bufferBuilding.ColumnRenderBuffer;
@@ -49,6 +50,7 @@ import org.jetbrains.annotations.Nullable;
 import javax.annotation.WillNotClose;
 import java.awt.*;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Objects;
@@ -618,15 +620,32 @@ public class LodQuadTree extends QuadTree<LodRenderSection> implements IDebugRen
 	 * Can be called whenever a render section's data needs to be refreshed. <br>
 	 * This should be called whenever a world generation task is completed or if the connected server has new data to show.
 	 */
-	public void reloadPos(long pos)
+	public void reloadPos(long pos) { this.reloadPos(pos, null); }
+	/**
+	 * @param changedColumns if not null, adjacent sections will only be reloaded 
+	 *                       if a column along their shared edge was changed.
+	 *                       Indexed using {@link FullDataSourceV2#relativePosToIndex}.
+	 */
+	public void reloadPos(long pos, @Nullable BitSet changedColumns)
 	{
+		// only the edge columns are used when building an adjacent section's render data
+		boolean[] reloadAdjacentPos = new boolean[EDhDirection.ADJ_DIRECTIONS.length];
+		for (int i = 0; i < EDhDirection.ADJ_DIRECTIONS.length; i++)
+		{
+			reloadAdjacentPos[i] = (changedColumns == null || hasChangedColumnOnEdge(changedColumns, EDhDirection.ADJ_DIRECTIONS[i]));
+		}
+		
+		
 		// clear cache //
 		
 		this.clearRenderCacheForPos(pos);
-		for (EDhDirection direction : EDhDirection.ADJ_DIRECTIONS)
+		for (int i = 0; i < EDhDirection.ADJ_DIRECTIONS.length; i++)
 		{
-			long adjacentPos = DhSectionPos.getAdjacentPos(pos, direction);
-			this.clearRenderCacheForPos(adjacentPos);
+			if (reloadAdjacentPos[i])
+			{
+				long adjacentPos = DhSectionPos.getAdjacentPos(pos, EDhDirection.ADJ_DIRECTIONS[i]);
+				this.clearRenderCacheForPos(adjacentPos);
+			}
 		}
 		
 		
@@ -641,11 +660,50 @@ public class LodQuadTree extends QuadTree<LodRenderSection> implements IDebugRen
 		// the adjacent locations also need to be updated to make sure lighting
 		// and water updates correctly, otherwise oceans may have walls
 		// and lights may not show up over LOD borders
-		for (EDhDirection direction : EDhDirection.ADJ_DIRECTIONS)
+		for (int i = 0; i < EDhDirection.ADJ_DIRECTIONS.length; i++)
+		{
+			if (reloadAdjacentPos[i])
+			{
+				long adjacentPos = DhSectionPos.getAdjacentPos(pos, EDhDirection.ADJ_DIRECTIONS[i]);
+				this.sectionsToReload.add(adjacentPos);
+			}
+		}
+	}
+	private static boolean hasChangedColumnOnEdge(BitSet changedColumns, EDhDirection direction)
+	{
+		int width = FullDataSourceV2.WIDTH;
+		for (int i = 0; i < width; i++)
 		{
-			long adjacentPos = DhSectionPos.getAdjacentPos(pos, direction);
-			this.sectionsToReload.add(adjacentPos);
+			int relX;
+			int relZ;
+			switch (direction)
+			{
+				case NORTH:
+					relX = i;
+					relZ = 0;
+					break;
+				case SOUTH:
+					relX = i;
+					relZ = width - 1;
+					break;
+				case WEST:
+					relX = 0;
+					relZ = i;
+					break;
+				case EAST:
+					relX = width - 1;
+					relZ = i;
+					break;
+				default:
+					throw new IllegalArgumentException("Only adjacent directions are supported, received ["+direction+"].");
+			}
+			
+			if (changedColumns.get(FullDataSourceV2.relativePosToIndex(relX, relZ)))
+			{
+				return true;
+			}
 		}
+		return false;
 	}
 	private void clearRenderCacheForPos(long pos)
 	{
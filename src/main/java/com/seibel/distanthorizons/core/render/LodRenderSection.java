@@ -470,7 +470,7 @@ public class LodRenderSection implements IDebugRenderable, AutoCloseable
 	{  
 		if (!this.checkedIfFullDataSourceExists)
 		{
-			this.fullDataSourceExists = this.fullDataSourceProvider.repo.existsWithKey(this.pos);
+			this.fullDataSourceExists = this.fullDataSourceProvider.store.existsWithKey(this.pos);
 			this.checkedIfFullDataSourceExists = true;
 		}
 		
@@ -0,0 +1,215 @@
+package com.seibel.distanthorizons.core.sql;
+
+import com.github.luben.zstd.ZstdDictTrainer;
+import com.github.luben.zstd.ZstdException;
+import com.seibel.distanthorizons.api.enums.config.EDhApiDataCompressionMode;
+import com.seibel.distanthorizons.core.config.Config;
+import com.seibel.distanthorizons.core.file.fullDatafile.storage.IFullDataSourceStore;
+import com.seibel.distanthorizons.core.logging.DhLoggerBuilder;
+import com.seibel.distanthorizons.core.sql.dto.CompressionDictionaryDTO;
+import com.seibel.distanthorizons.core.sql.dto.FullDataSourceV2DTO;
+import com.seibel.distanthorizons.core.sql.repo.CompressionDictionaryRepo;
+import com.seibel.distanthorizons.core.util.objects.dataStreams.ZstdDictionary;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import org.apache.logging.log4j.Logger;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Holds every {@link ZstdDictionary} stored in a single database. <br><br>
+ *
+ * Dictionary IDs are stored in the upper 4 bits of {@link FullDataSourceV2DTO#compressionModeValue}
+ * so each database can have at most {@link CompressionDictionaryCache#MAX_DICTIONARY_ID} dictionaries.
+ * Dictionaries are never deleted since existing data may still reference them.
+ *
+ * @see CompressionDictionaryRepo
+ */
+public class CompressionDictionaryCache implements AutoCloseable
+{
+	private static final Logger LOGGER = DhLoggerBuilder.getLogger();
+	
+	public static final int MAX_DICTIONARY_ID = 15;
+	
+	/**
+	 * Zstandard's recommended dictionary size,
+	 * larger dictionaries don't noticeably improve compression for our data.
+	 */
+	private static final int DICTIONARY_SIZE_IN_BYTES = 112 * 1024;
+	/** training with fewer samples than this generally creates a dictionary that hurts more than it helps */
+	private static final int MIN_TRAINING_SAMPLE_COUNT = 64;
+	private static final int MAX_TRAINING_DTO_COUNT = 512;
+	/** limits how much memory training can use */
+	private static final int MAX_TRAINING_SAMPLE_SIZE_IN_BYTES = 32 * 1024 * 1024;
+	
+	
+	private final CompressionDictionaryRepo repo;
+	private final ConcurrentHashMap<Integer, ZstdDictionary> dictionaryById = new ConcurrentHashMap<>();
+	/** null if no dictionaries have been trained yet */
+	@Nullable
+	private volatile ZstdDictionary newestDictionary = null;
+	
+	private final AtomicBoolean trainingRunning = new AtomicBoolean(false);
+	
+	
+	
+	//=============//
+	// constructor //
+	//=============//
+	
+	public CompressionDictionaryCache(String databaseType, File databaseFile) throws SQLException
+	{
+		this.repo = new CompressionDictionaryRepo(databaseType, databaseFile);
+		
+		for (CompressionDictionaryDTO dto : this.repo.getAll())
+		{
+			if (dto.compressionModeValue != EDhApiDataCompressionMode.ZSTD.value)
+			{
+				LOGGER.warn("Ignoring compression dictionary ["+dto.id+"] with unsupported compression mode ["+dto.compressionModeValue+"].");
+				continue;
+			}
+			
+			this.addDictionary(new ZstdDictionary(dto.id, dto.dictionaryBytes));
+		}
+	}
+	
+	
+	
+	//=========//
+	// getters //
+	//=========//
+	
+	/** @return null if no dictionary exists with the given ID */
+	@Nullable
+	public ZstdDictionary get(int id) { return this.dictionaryById.get(id); }
+	
+	/** @return null if dictionaries are disabled or none have been trained yet */
+	@Nullable
+	public ZstdDictionary getDictionaryForWriting()
+	{
+		if (!Config.Common.LodBuilding.zstdUseTrainedDictionary.get())
+		{
+			return null;
+		}
+		
+		return this.newestDictionary;
+	}
+	
+	private void addDictionary(ZstdDictionary dictionary)
+	{
+		this.dictionaryById.put(dictionary.id, dictionary);
+		
+		ZstdDictionary newest = this.newestDictionary;
+		if (newest == null || dictionary.id > newest.id)
+		{
+			this.newestDictionary = dictionary;
+		}
+	}
+	
+	
+	
+	//==========//
+	// training //
+	//==========//
+	
+	/**
+	 * Trains and saves a new dictionary using a random sample of the data in the given store. <br>
+	 * Does nothing if a dictionary already exists or there isn't enough data to sample yet. <br><br>
+	 *
+	 * Can take a few seconds so this shouldn't be run on the render or server thread.
+	 *
+	 * @return true if a new dictionary was created
+	 */
+	public boolean trainIfMissing(IFullDataSourceStore store)
+	{
+		if (this.newestDictionary != null
+			|| !this.trainingRunning.compareAndSet(false, true))
+		{
+			return false;
+		}
+		
+		try
+		{
+			LongArrayList posList = store.getAllPositions();
+			if (posList.size() < MIN_TRAINING_SAMPLE_COUNT)
+			{
+				LOGGER.debug("Skipping compression dictionary training, only ["+posList.size()+"/"+MIN_TRAINING_SAMPLE_COUNT+"] data sources are available.");
+				return false;
+			}
+			
+			long startTimeMs = System.currentTimeMillis();
+			
+			ArrayList<Long> shuffledPosList = new ArrayList<>(posList);
+			Collections.shuffle(shuffledPosList);
+			
+			ZstdDictTrainer trainer = new ZstdDictTrainer(MAX_TRAINING_SAMPLE_SIZE_IN_BYTES, DICTIONARY_SIZE_IN_BYTES);
+			int sampleCount = 0;
+			boolean trainerFull = false;
+			for (int i = 0; i < shuffledPosList.size() && i < MAX_TRAINING_DTO_COUNT && !trainerFull; i++)
+			{
+				try (FullDataSourceV2DTO dto = store.getByKey(shuffledPosList.get(i)))
+				{
+					if (dto == null)
+					{
+						continue;
+					}
+					
+					// the mapping and data blobs make up the vast majority of each DTO
+					trainerFull = !trainer.addSample(dto.getUncompressedBlob(dto.compressedMappingByteArray))
+							|| !trainer.addSample(dto.getUncompressedBlob(dto.compressedDataByteArray));
+					sampleCount++;
+				}
+				catch (Exception e)
+				{
+					// corrupt data will be handled when it's next loaded
+					LOGGER.debug("Unable to sample pos for compression dictionary training, error: ["+e.getMessage()+"].");
+				}
+			}
+			
+			if (sampleCount < MIN_TRAINING_SAMPLE_COUNT)
+			{
+				LOGGER.debug("Skipping compression dictionary training, only ["+sampleCount+"/"+MIN_TRAINING_SAMPLE_COUNT+"] data sources could be sampled.");
+				return false;
+			}
+			
+			byte[] dictionaryBytes = trainer.trainSamples();
+			int id = this.dictionaryById.keySet().stream().mapToInt(Integer::intValue).max().orElse(0) + 1;
+			if (id > MAX_DICTIONARY_ID)
+			{
+				LOGGER.warn("Unable to save compression dictionary, the max of ["+MAX_DICTIONARY_ID+"] dictionaries has been reached.");
+				return false;
+			}
+			
+			this.repo.save(new CompressionDictionaryDTO(id, EDhApiDataCompressionMode.ZSTD.value, dictionaryBytes));
+			this.addDictionary(new ZstdDictionary(id, dictionaryBytes));
+			
+			LOGGER.info("Trained compression dictionary ["+id+"] from ["+sampleCount+"] data sources in ["+(System.currentTimeMillis() - startTimeMs)+"]ms, dictionary size: ["+dictionaryBytes.length+"] bytes.");
+			return true;
+		}
+		catch (ZstdException e)
+		{
+			// can happen if the samples are too similar or too small
+			LOGGER.warn("Unable to train compression dictionary, error: ["+e.getMessage()+"].", e);
+			return false;
+		}
+		finally
+		{
+			this.trainingRunning.set(false);
+		}
+	}
+	
+	
+	
+	//==========//
+	// shutdown //
+	//==========//
+	
+	@Override
+	public void close() { this.repo.close(); }
+	
+}
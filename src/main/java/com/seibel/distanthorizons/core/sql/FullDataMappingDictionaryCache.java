@@ -0,0 +1,215 @@
+package com.seibel.distanthorizons.core.sql;
+
+import com.seibel.distanthorizons.core.dataObjects.fullData.FullDataPointIdMap;
+import com.seibel.distanthorizons.core.logging.DhLoggerBuilder;
+import com.seibel.distanthorizons.core.sql.dto.FullDataMappingDictionaryDTO;
+import com.seibel.distanthorizons.core.sql.dto.FullDataSourceV2DTO;
+import com.seibel.distanthorizons.core.sql.repo.FullDataMappingDictionaryRepo;
+import com.seibel.distanthorizons.core.util.objects.DataCorruptedException;
+import com.seibel.distanthorizons.core.wrapperInterfaces.world.ILevelWrapper;
+import org.apache.logging.log4j.Logger;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Assigns a permanent ID to every biome/block state pair stored in a single database,
+ * so {@link FullDataSourceV2DTO} mappings only have to store a list of IDs
+ * instead of every pair's serial string. <br><br>
+ *
+ * Each ID's {@link FullDataPointIdMap.Entry} is only resolved once,
+ * after that decoding a mapping is just an array lookup per ID. <br>
+ * IDs are never deleted since existing data may still reference them.
+ *
+ * @see FullDataMappingDictionaryRepo
+ */
+public class FullDataMappingDictionaryCache implements AutoCloseable
+{
+	private static final Logger LOGGER = DhLoggerBuilder.getLogger();
+	
+	private final FullDataMappingDictionaryRepo repo;
+	
+	/** the index is the entry's ID, null if the database is missing that ID */
+	private final ArrayList<String> serialStringById = new ArrayList<>();
+	private final ConcurrentHashMap<String, Integer> idBySerialString = new ConcurrentHashMap<>();
+	
+	/** resolved lazily since it requires the level to be loaded */
+	private volatile ResolvedEntries resolvedEntries = new ResolvedEntries(null, new FullDataPointIdMap.Entry[0]);
+	
+	
+	
+	//=============//
+	// constructor //
+	//=============//
+	
+	public FullDataMappingDictionaryCache(String databaseType, File databaseFile) throws SQLException
+	{
+		this.repo = new FullDataMappingDictionaryRepo(databaseType, databaseFile);
+		
+		for (FullDataMappingDictionaryDTO dto : this.repo.getAll())
+		{
+			if (dto.id < 0)
+			{
+				LOGGER.warn("Ignoring full data mapping dictionary entry with invalid ID ["+dto.id+"].");
+				continue;
+			}
+			
+			while (this.serialStringById.size() <= dto.id)
+			{
+				this.serialStringById.add(null);
+			}
+			this.serialStringById.set(dto.id, dto.serialString);
+			this.idBySerialString.put(dto.serialString, dto.id);
+		}
+	}
+	
+	
+	
+	//=========//
+	// getters //
+	//=========//
+	
+	/** @throws DataCorruptedException if the ID doesn't exist in this dictionary */
+	public FullDataPointIdMap.Entry getEntry(int id, ILevelWrapper levelWrapper) throws DataCorruptedException
+	{
+		ResolvedEntries resolvedEntries = this.resolvedEntries;
+		if (levelWrapper == resolvedEntries.levelWrapper
+			&& id >= 0 && id < resolvedEntries.entryById.length)
+		{
+			FullDataPointIdMap.Entry entry = resolvedEntries.entryById[id];
+			if (entry != null)
+			{
+				return entry;
+			}
+		}
+		
+		return this.resolveEntry(id, levelWrapper);
+	}
+	private synchronized FullDataPointIdMap.Entry resolveEntry(int id, ILevelWrapper levelWrapper) throws DataCorruptedException
+	{
+		if (id < 0 || id >= this.serialStringById.size() || this.serialStringById.get(id) == null)
+		{
+			throw new DataCorruptedException("Full data mapping dictionary ID ["+id+"] doesn't exist, known ID count: ["+this.serialStringById.size()+"].");
+		}
+		
+		// wrappers are specific to a level, so they have to be re-resolved if the level changes
+		ResolvedEntries resolvedEntries = this.resolvedEntries;
+		FullDataPointIdMap.Entry[] entryById = resolvedEntries.entryById;
+		if (levelWrapper != resolvedEntries.levelWrapper)
+		{
+			entryById = new FullDataPointIdMap.Entry[this.serialStringById.size()];
+		}
+		else if (entryById.length < this.serialStringById.size())
+		{
+			entryById = Arrays.copyOf(entryById, this.serialStringById.size());
+		}
+		
+		FullDataPointIdMap.Entry entry = entryById[id];
+		if (entry == null)
+		{
+			entry = FullDataPointIdMap.Entry.deserialize(this.serialStringById.get(id), levelWrapper);
+			entryById[id] = entry;
+		}
+		
+		if (entryById != resolvedEntries.entryById)
+		{
+			this.resolvedEntries = new ResolvedEntries(levelWrapper, entryById);
+		}
+		return entry;
+	}
+	
+	public int size() { return this.idBySerialString.size(); }
+	
+	
+	
+	//=========//
+	// setters //
+	//=========//
+	
+	/**
+	 * Any serial strings that don't have an ID yet are added to the database
+	 * before this method returns, so the returned IDs can be safely saved.
+	 * 
+	 * @return the ID for each serial string in order, 
+	 *          null if one or more IDs couldn't be saved
+	 */
+	@Nullable
+	public int[] getOrCreateIds(String[] serialStrings)
+	{
+		int[] ids = new int[serialStrings.length];
+		for (int i = 0; i < serialStrings.length; i++)
+		{
+			Integer id = this.idBySerialString.get(serialStrings[i]);
+			if (id == null)
+			{
+				id = this.createId(serialStrings[i]);
+				if (id == null)
+				{
+					return null;
+				}
+			}
+			ids[i] = id;
+		}
+		return ids;
+	}
+	@Nullable
+	private synchronized Integer createId(String serialString)
+	{
+		// another thread may have created the ID while we were waiting
+		Integer id = this.idBySerialString.get(serialString);
+		if (id != null)
+		{
+			return id;
+		}
+		
+		id = this.serialStringById.size();
+		try
+		{
+			this.repo.save(new FullDataMappingDictionaryDTO(id, serialString));
+		}
+		catch (RuntimeException e)
+		{
+			LOGGER.error("Unable to save full data mapping dictionary entry ["+serialString+"], error: ["+e.getMessage()+"].", e);
+			return null;
+		}
+		
+		this.serialStringById.add(serialString);
+		this.idBySerialString.put(serialString, id);
+		return id;
+	}
+	
+	
+	
+	//==========//
+	// shutdown //
+	//==========//
+	
+	@Override
+	public void close() { this.repo.close(); }
+	
+	
+	
+	//================//
+	// helper classes //
+	//================//
+	
+	/** kept together so the entries can't be read with the wrong level */
+	private static class ResolvedEntries
+	{
+		@Nullable
+		public final ILevelWrapper levelWrapper;
+		/** the index is the entry's ID, null if that ID hasn't been resolved yet */
+		public final FullDataPointIdMap.Entry[] entryById;
+		
+		public ResolvedEntries(@Nullable ILevelWrapper levelWrapper, FullDataPointIdMap.Entry[] entryById)
+		{
+			this.levelWrapper = levelWrapper;
+			this.entryById = entryById;
+		}
+	}
+	
+}
@@ -0,0 +1,176 @@
+package com.seibel.distanthorizons.core.sql;
+
+import com.seibel.distanthorizons.core.logging.f3.F3Screen;
+import com.seibel.distanthorizons.core.sql.repo.AbstractDhRepo;
+import org.jetbrains.annotations.Nullable;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Caches {@link PreparedStatement}'s for a single {@link Connection}
+ * so SQLite doesn't have to re-parse and re-plan the same SQL for every query. <br><br>
+ *
+ * Statements are cached per thread since JDBC statements can't
+ * be safely shared while another thread is using them. <br>
+ * Because of that a cached statement must only be used by the thread that requested it
+ * and should <b>not</b> be closed by the caller, only its {@link java.sql.ResultSet}. <br>
+ * Connections that are only used by one thread at a time (IE pooled connections)
+ * can skip the per-thread caching. <br><br>
+ *
+ * Only constant SQL templates should be cached,
+ * SQL with inlined values would fill up the cache with single use statements.
+ *
+ * @see AbstractDhRepo#createPreparedStatement(String)
+ */
+public class PreparedStatementCache implements AutoCloseable
+{
+	private static final AtomicLong TOTAL_HIT_COUNT = new AtomicLong(0);
+	private static final AtomicLong TOTAL_PREPARE_COUNT = new AtomicLong(0);
+	
+	
+	private final Connection connection;
+	private final int queryTimeoutInSeconds;
+	
+	/** null if {@link PreparedStatementCache#sharedStatementBySql} is being used */
+	@Nullable
+	private final ThreadLocal<HashMap<String, PreparedStatement>> statementBySqlForThread;
+	/** null if {@link PreparedStatementCache#statementBySqlForThread} is being used */
+	@Nullable
+	private final HashMap<String, PreparedStatement> sharedStatementBySql;
+	/** tracks every statement across all threads so they can be closed with the connection */
+	private final Set<PreparedStatement> allStatements = ConcurrentHashMap.newKeySet();
+	
+	private volatile boolean closed = false;
+	
+	
+	
+	//=============//
+	// constructor //
+	//=============//
+	
+	/** 
+	 * @param cachePerThread should be false if the connection will only 
+	 *                       ever be used by one thread at a time
+	 */
+	public PreparedStatementCache(Connection connection, int queryTimeoutInSeconds, boolean cachePerThread)
+	{
+		this.connection = connection;
+		this.queryTimeoutInSeconds = queryTimeoutInSeconds;
+		
+		this.statementBySqlForThread = cachePerThread ? ThreadLocal.withInitial(HashMap::new) : null;
+		this.sharedStatementBySql = cachePerThread ? null : new HashMap<>();
+	}
+	
+	
+	
+	//=========//
+	// getters //
+	//=========//
+	
+	/**
+	 * Returns a cached statement for the current thread with its parameters cleared,
+	 * or prepares a new one if none exists.
+	 *
+	 * @return null if the cache/connection has been closed
+	 * @throws SQLException if the statement couldn't be prepared
+	 */
+	@Nullable
+	public PreparedStatement get(String sql) throws SQLException
+	{
+		if (this.closed)
+		{
+			return null;
+		}
+		
+		
+		HashMap<String, PreparedStatement> statementBySql = (this.statementBySqlForThread != null) ? this.statementBySqlForThread.get() : this.sharedStatementBySql;
+		PreparedStatement statement = statementBySql.get(sql);
+		if (statement != null)
+		{
+			if (!statement.isClosed())
+			{
+				// clear anything left over from the last use
+				statement.clearParameters();
+				statement.clearBatch();
+				
+				TOTAL_HIT_COUNT.incrementAndGet();
+				return statement;
+			}
+			
+			// can happen if the caller closed the statement
+			this.allStatements.remove(statement);
+		}
+		
+		
+		statement = this.connection.prepareStatement(sql);
+		statement.setQueryTimeout(this.queryTimeoutInSeconds);
+		TOTAL_PREPARE_COUNT.incrementAndGet();
+		
+		statementBySql.put(sql, statement);
+		this.allStatements.add(statement);
+		
+		// if the cache was closed while this statement was being prepared
+		// the statement may have been missed
+		if (this.closed)
+		{
+			this.allStatements.remove(statement);
+			statement.close();
+			return null;
+		}
+		
+		return statement;
+	}
+	
+	public int getStatementCount() { return this.allStatements.size(); }
+	
+	
+	
+	//=========//
+	// metrics //
+	//=========//
+	
+	public static long getTotalHitCount() { return TOTAL_HIT_COUNT.get(); }
+	public static long getTotalPrepareCount() { return TOTAL_PREPARE_COUNT.get(); }
+	
+	public static String getDebugMenuString()
+	{
+		return "SQL Statement Cache - hits: " + F3Screen.NUMBER_FORMAT.format(TOTAL_HIT_COUNT.get())
+				+ ", prepares: " + F3Screen.NUMBER_FORMAT.format(TOTAL_PREPARE_COUNT.get());
+	}
+	
+	
+	
+	//==========//
+	// shutdown //
+	//==========//
+	
+	/** should be called before the connection is closed */
+	@Override
+	public void close()
+	{
+		this.closed = true;
+		
+		for (PreparedStatement statement : this.allStatements)
+		{
+			try
+			{
+				statement.close();
+			}
+			catch (SQLException ignore) { /* the connection was probably already closed */ }
+		}
+		this.allStatements.clear();
+		
+		if (this.statementBySqlForThread != null)
+		{
+			// other threads' maps will be cleaned up when this object is garbage collected
+			this.statementBySqlForThread.remove();
+		}
+	}
+	
+}
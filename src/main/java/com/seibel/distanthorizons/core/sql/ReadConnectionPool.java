@@ -0,0 +1,273 @@
+package com.seibel.distanthorizons.core.sql;
+
+import com.seibel.distanthorizons.core.logging.DhLoggerBuilder;
+import com.seibel.distanthorizons.core.logging.f3.F3Screen;
+import com.seibel.distanthorizons.core.sql.repo.AbstractDhRepo;
+import org.apache.logging.log4j.Logger;
+import org.jetbrains.annotations.Nullable;
+import org.sqlite.SQLiteConfig;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A pool of read-only connections for a single database file. <br><br>
+ *
+ * SQLite in WAL mode allows any number of readers to run alongside a single writer,
+ * so using separate read connections prevents SELECT queries from being serialized
+ * behind each other and behind writes. <br>
+ * All writes should still go through the repo's single writer connection. <br><br>
+ *
+ * Connections are created lazily, up to the max size given when the pool was created.
+ *
+ * @see AbstractDhRepo
+ */
+public class ReadConnectionPool implements AutoCloseable
+{
+	private static final Logger LOGGER = DhLoggerBuilder.getLogger();
+	
+	/** how long a thread will wait for a connection before logging a warning and continuing to wait */
+	private static final int BORROW_WARNING_TIMEOUT_IN_MS = 10_000;
+	
+	/**
+	 * Upper bounds (exclusive) for each contention histogram bucket,
+	 * any wait longer than the last bound goes in the final bucket.
+	 */
+	private static final long[] WAIT_BUCKET_UPPER_BOUNDS_IN_NS = new long[] {
+			TimeUnit.MICROSECONDS.toNanos(100),
+			TimeUnit.MILLISECONDS.toNanos(1),
+			TimeUnit.MILLISECONDS.toNanos(10),
+			TimeUnit.MILLISECONDS.toNanos(100),
+		};
+	private static final String[] WAIT_BUCKET_NAMES = new String[] { "<0.1ms", "<1ms", "<10ms", "<100ms", "100ms+" };
+	/** shared between every pool so the F3 menu doesn't need to list each database */
+	private static final AtomicLongArray WAIT_HISTOGRAM = new AtomicLongArray(WAIT_BUCKET_NAMES.length);
+	
+	
+	private final String connectionString;
+	private final int maxConnectionCount;
+	
+	/** used as a stack so the most recently used (and warmest) connections are reused first */
+	private final LinkedBlockingDeque<ReadConnection> idleConnections = new LinkedBlockingDeque<>();
+	private final Set<ReadConnection> allConnections = ConcurrentHashMap.newKeySet();
+	private final AtomicInteger createdConnectionCount = new AtomicInteger(0);
+	
+	private volatile boolean closed = false;
+	/** if a connection couldn't be opened once, it probably won't work the next time either */
+	private volatile boolean connectionCreationFailed = false;
+	
+	
+	
+	//=============//
+	// constructor //
+	//=============//
+	
+	public ReadConnectionPool(String connectionString, int maxConnectionCount)
+	{
+		this.connectionString = connectionString;
+		this.maxConnectionCount = Math.max(1, maxConnectionCount);
+	}
+	
+	
+	
+	//===================//
+	// borrow and return //
+	//===================//
+	
+	/**
+	 * The returned connection must be given back via {@link ReadConnectionPool#returnConnection(ReadConnection)}
+	 * once the caller is done with it.
+	 *
+	 * @return null if the pool has been closed or no connection could be opened
+	 */
+	@Nullable
+	public ReadConnection borrowConnection() throws InterruptedException
+	{
+		if (this.closed)
+		{
+			return null;
+		}
+		
+		
+		long startTimeNs = System.nanoTime();
+		
+		ReadConnection readConnection = this.idleConnections.pollFirst();
+		if (readConnection == null)
+		{
+			readConnection = this.tryCreateConnection();
+			if (readConnection == null && this.allConnections.isEmpty())
+			{
+				// no connections could be opened,
+				// the caller will have to fall back to the writer connection
+				return null;
+			}
+		}
+		
+		boolean warningLogged = false;
+		while (readConnection == null && !this.closed)
+		{
+			// a short timeout is used so waiting threads will notice if the pool is closed
+			readConnection = this.idleConnections.pollFirst(100, TimeUnit.MILLISECONDS);
+			
+			if (readConnection == null 
+				&& !warningLogged
+				&& TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTimeNs) > BORROW_WARNING_TIMEOUT_IN_MS)
+			{
+				warningLogged = true;
+				LOGGER.warn("Waited over ["+BORROW_WARNING_TIMEOUT_IN_MS+"] milliseconds for a read connection to ["+this.connectionString+"], all ["+this.maxConnectionCount+"] connections are in use.");
+			}
+		}
+		
+		recordWaitTime(System.nanoTime() - startTimeNs);
+		return readConnection;
+	}
+	
+	public void returnConnection(ReadConnection readConnection)
+	{
+		if (this.closed)
+		{
+			readConnection.close();
+			this.allConnections.remove(readConnection);
+			return;
+		}
+		
+		this.idleConnections.offerFirst(readConnection);
+	}
+	
+	/** @return null if the max number of connections have already been created */
+	@Nullable
+	private ReadConnection tryCreateConnection()
+	{
+		if (this.connectionCreationFailed)
+		{
+			return null;
+		}
+		
+		if (this.createdConnectionCount.incrementAndGet() > this.maxConnectionCount)
+		{
+			this.createdConnectionCount.decrementAndGet();
+			return null;
+		}
+		
+		
+		try
+		{
+			SQLiteConfig config = new SQLiteConfig();
+			config.setReadOnly(true);
+			
+			Connection connection = DriverManager.getConnection(this.connectionString, config.toProperties());
+			ReadConnection readConnection = new ReadConnection(connection);
+			this.allConnections.add(readConnection);
+			return readConnection;
+		}
+		catch (SQLException e)
+		{
+			// the pool will just have to make do with fewer connections
+			this.createdConnectionCount.decrementAndGet();
+			this.connectionCreationFailed = true;
+			LOGGER.error("Unable to open read connection to ["+this.connectionString+"], error: ["+e.getMessage()+"].", e);
+			return null;
+		}
+	}
+	
+	
+	
+	//=========//
+	// metrics //
+	//=========//
+	
+	private static void recordWaitTime(long waitTimeNs)
+	{
+		int bucketIndex = 0;
+		while (bucketIndex < WAIT_BUCKET_UPPER_BOUNDS_IN_NS.length
+				&& waitTimeNs >= WAIT_BUCKET_UPPER_BOUNDS_IN_NS[bucketIndex])
+		{
+			bucketIndex++;
+		}
+		WAIT_HISTOGRAM.incrementAndGet(bucketIndex);
+	}
+	
+	/** returns the number of connection borrows that waited for each time range */
+	public static String getContentionHistogramDebugString()
+	{
+		StringBuilder builder = new StringBuilder("SQL Read Wait - ");
+		for (int i = 0; i < WAIT_BUCKET_NAMES.length; i++)
+		{
+			if (i != 0)
+			{
+				builder.append(", ");
+			}
+			builder.append(WAIT_BUCKET_NAMES[i]).append(": ").append(F3Screen.NUMBER_FORMAT.format(WAIT_HISTOGRAM.get(i)));
+		}
+		return builder.toString();
+	}
+	
+	
+	
+	//==========//
+	// shutdown //
+	//==========//
+	
+	/** closes every idle connection, borrowed connections will be closed when they're returned */
+	@Override
+	public void close()
+	{
+		this.closed = true;
+		
+		ReadConnection readConnection = this.idleConnections.pollFirst();
+		while (readConnection != null)
+		{
+			readConnection.close();
+			this.allConnections.remove(readConnection);
+			
+			readConnection = this.idleConnections.pollFirst();
+		}
+	}
+	
+	
+	
+	//================//
+	// helper classes //
+	//================//
+	
+	/**
+	 * A read-only connection and its statement cache. <br>
+	 * Should only be used by one thread at a time.
+	 */
+	public static class ReadConnection implements AutoCloseable
+	{
+		public final Connection connection;
+		public final PreparedStatementCache statementCache;
+		
+		
+		public ReadConnection(Connection connection)
+		{
+			this.connection = connection;
+			// pooled connections are only ever used by one thread at a time
+			this.statementCache = new PreparedStatementCache(connection, AbstractDhRepo.TIMEOUT_SECONDS, false);
+		}
+		
+		@Override
+		public void close()
+		{
+			this.statementCache.close();
+			
+			try
+			{
+				this.connection.close();
+			}
+			catch (SQLException e)
+			{
+				LOGGER.warn("Unable to close read connection, error: ["+e.getMessage()+"].");
+			}
+		}
+	}
+	
+}
@@ -0,0 +1,61 @@
+/*
+ *    This file is part of the Distant Horizons mod
+ *    licensed under the GNU LGPL v3 License.
+ *
+ *    Copyright (C) 2020 James Seibel
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, version 3.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public License
+ *    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.seibel.distanthorizons.core.sql.dto;
+
+import com.seibel.distanthorizons.api.enums.config.EDhApiDataCompressionMode;
+import com.seibel.distanthorizons.core.util.objects.dataStreams.ZstdDictionary;
+
+/** handles storing {@link ZstdDictionary}'s in the database. */
+public class CompressionDictionaryDTO implements IBaseDTO<Integer>
+{
+	public int id;
+	/** @see EDhApiDataCompressionMode */
+	public byte compressionModeValue;
+	public byte[] dictionaryBytes;
+	
+	
+	
+	//=============//
+	// constructor //
+	//=============//
+	
+	public CompressionDictionaryDTO(int id, byte compressionModeValue, byte[] dictionaryBytes)
+	{
+		this.id = id;
+		this.compressionModeValue = compressionModeValue;
+		this.dictionaryBytes = dictionaryBytes;
+	}
+	
+	
+	
+	//===========//
+	// overrides //
+	//===========//
+	
+	@Override 
+	public Integer getKey() { return this.id; }
+	
+	@Override
+	public void close()
+	{ /* no closing needed */ }
+	
+	
+	
+}
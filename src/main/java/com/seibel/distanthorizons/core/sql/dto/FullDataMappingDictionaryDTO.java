@@ -0,0 +1,58 @@
+/*
+ *    This file is part of the Distant Horizons mod
+ *    licensed under the GNU LGPL v3 License.
+ *
+ *    Copyright (C) 2020 James Seibel
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, version 3.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public License
+ *    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.seibel.distanthorizons.core.sql.dto;
+
+import com.seibel.distanthorizons.core.sql.FullDataMappingDictionaryCache;
+
+/** handles storing {@link FullDataMappingDictionaryCache} entries in the database. */
+public class FullDataMappingDictionaryDTO implements IBaseDTO<Integer>
+{
+	public int id;
+	/** the biome and block state serial strings for a single full data point ID */
+	public String serialString;
+	
+	
+	
+	//=============//
+	// constructor //
+	//=============//
+	
+	public FullDataMappingDictionaryDTO(int id, String serialString)
+	{
+		this.id = id;
+		this.serialString = serialString;
+	}
+	
+	
+	
+	//===========//
+	// overrides //
+	//===========//
+	
+	@Override 
+	public Integer getKey() { return this.id; }
+	
+	@Override
+	public void close()
+	{ /* no closing needed */ }
+	
+	
+	
+}
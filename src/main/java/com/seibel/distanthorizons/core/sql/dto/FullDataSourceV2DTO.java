@@ -23,12 +23,16 @@ import com.google.common.base.MoreObjects;
 import com.seibel.distanthorizons.api.enums.config.EDhApiDataCompressionMode;
 import com.seibel.distanthorizons.api.enums.config.EDhApiWorldCompressionMode;
 import com.seibel.distanthorizons.api.enums.worldGeneration.EDhApiWorldGenerationStep;
+import com.seibel.distanthorizons.core.config.Config;
+import com.seibel.distanthorizons.core.dataObjects.fullData.FullDataColumnArray;
 import com.seibel.distanthorizons.core.dataObjects.fullData.FullDataPointIdMap;
 import com.seibel.distanthorizons.core.dataObjects.fullData.sources.FullDataSourceV2;
 import com.seibel.distanthorizons.core.network.INetworkObject;
 import com.seibel.distanthorizons.core.pooling.PhantomArrayListParent;
 import com.seibel.distanthorizons.core.pooling.PhantomArrayListPool;
 import com.seibel.distanthorizons.core.pos.DhSectionPos;
+import com.seibel.distanthorizons.core.sql.CompressionDictionaryCache;
+import com.seibel.distanthorizons.core.sql.FullDataMappingDictionaryCache;
 import com.seibel.distanthorizons.core.util.BoolUtil;
 import com.seibel.distanthorizons.core.util.FullDataPointUtil;
 import com.seibel.distanthorizons.core.util.ListUtil;
@@ -36,6 +40,7 @@ import com.seibel.distanthorizons.core.util.LodUtil;
 import com.seibel.distanthorizons.core.util.objects.DataCorruptedException;
 import com.seibel.distanthorizons.core.util.objects.dataStreams.DhDataInputStream;
 import com.seibel.distanthorizons.core.util.objects.dataStreams.DhDataOutputStream;
+import com.seibel.distanthorizons.core.util.objects.dataStreams.ZstdDictionary;
 import com.seibel.distanthorizons.core.wrapperInterfaces.world.ILevelWrapper;
 import io.netty.buffer.ByteBuf;
 import it.unimi.dsi.fastutil.bytes.ByteArrayList;
@@ -47,6 +52,7 @@ import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.EOFException;
 import java.io.IOException;
+import java.io.InputStream;
 
 /** handles storing {@link FullDataSourceV2}'s in the database. */
 public class FullDataSourceV2DTO 
@@ -55,6 +61,25 @@ public class FullDataSourceV2DTO
 {
 	public static final boolean VALIDATE_INPUT_DATAPOINTS = true;
 	
+	/** the lower 4 bits of {@link FullDataSourceV2DTO#compressionModeValue} store the {@link EDhApiDataCompressionMode} */
+	private static final int COMPRESSION_MODE_MASK = 0x0F;
+	/** the upper 4 bits of {@link FullDataSourceV2DTO#compressionModeValue} store the {@link ZstdDictionary} ID, 0 means no dictionary was used */
+	private static final int DICTIONARY_ID_SHIFT = 4;
+	
+	/** the lower 6 bits of {@link FullDataSourceV2DTO#dataFormatVersion} store the data blob's format */
+	private static final int DATA_FORMAT_VERSION_MASK = 0x3F;
+	/** 
+	 * Set in {@link FullDataSourceV2DTO#dataFormatVersion} if the mapping blob 
+	 * stores {@link FullDataMappingDictionaryCache} IDs instead of serial strings. 
+	 */
+	public static final int MAPPING_DICTIONARY_FLAG = 0x40;
+	
+	/** 
+	 * Data points are (de)serialized from a single flat array,
+	 * this is reused so each thread only has to grow its array once. 
+	 */
+	private static final ThreadLocal<FullDataColumnArray> COLUMN_ARRAY_GETTER = ThreadLocal.withInitial(FullDataColumnArray::new);
+	
 	
 	public long pos;
 	
@@ -72,9 +97,35 @@ public class FullDataSourceV2DTO
 	
 	public ByteArrayList compressedMappingByteArray;
 	
+	/**
+	 * Stores both the data blob's format version and if the mapping uses a {@link FullDataMappingDictionaryCache}.
+	 * 
+	 * @see FullDataSourceV2DTO#getDataFormatVersion()
+	 * @see FullDataSourceV2DTO#usesMappingDictionary() 
+	 */
 	public byte dataFormatVersion;
+	/** 
+	 * Stores both the {@link EDhApiDataCompressionMode} and the ID of the {@link ZstdDictionary} (if any) 
+	 * used to compress the blobs.
+	 * 
+	 * @see FullDataSourceV2DTO#getCompressionMode()
+	 * @see FullDataSourceV2DTO#getDictionaryId() 
+	 */
 	public byte compressionModeValue;
 	
+	/** 
+	 * The dictionaries available when decoding this DTO. <br>
+	 * Will be null for DTOs received over the network, since those never use a dictionary. 
+	 */
+	@Nullable
+	public CompressionDictionaryCache compressionDictionaries;
+	/** 
+	 * The mapping IDs available when decoding this DTO. <br>
+	 * Will be null for DTOs received over the network, since those never use a mapping dictionary. 
+	 */
+	@Nullable
+	public FullDataMappingDictionaryCache mappingDictionary;
+	
 	/** Will be null if we don't want to update this value in the DB */
 	@Nullable
 	public Boolean applyToParent;
@@ -85,6 +136,16 @@ public class FullDataSourceV2DTO
 	public long lastModifiedUnixDateTime;
 	public long createdUnixDateTime;
 	
+	/** 
+	 * The lowest {@link EDhApiWorldGenerationStep} value in {@link FullDataSourceV2DTO#compressedColumnGenStepByteArray},
+	 * stored separately so world gen can check if a position is fully generated without decompressing anything. <br>
+	 * Will be null if unknown, IE for DTOs received over the network or data saved before this value was tracked.
+	 * 
+	 * @see FullDataSourceV2DTO#getMinGenerationStep(ByteArrayList) 
+	 */
+	@Nullable
+	public Byte minGenerationStep;
+	
 	
 	public static final PhantomArrayListPool ARRAY_LIST_POOL = new PhantomArrayListPool("V2DTO");
 	
@@ -94,15 +155,33 @@ public class FullDataSourceV2DTO
 	// constructors //
 	//==============//
 	
+	/** Creates a DTO that doesn't use any compression or mapping dictionaries, IE for sending over the network. */
 	public static FullDataSourceV2DTO CreateFromDataSource(FullDataSourceV2 dataSource, EDhApiDataCompressionMode compressionModeEnum) throws IOException
+	{ return CreateFromDataSource(dataSource, compressionModeEnum, null, null); }
+	/** 
+	 * @param compressionDictionaries if not null and the compression mode supports it, 
+	 *                                the newest dictionary will be used to compress the data
+	 * @param mappingDictionary if not null the mapping will be stored as IDs from this dictionary
+	 */
+	public static FullDataSourceV2DTO CreateFromDataSource(
+			FullDataSourceV2 dataSource, EDhApiDataCompressionMode compressionModeEnum, 
+			@Nullable CompressionDictionaryCache compressionDictionaries, @Nullable FullDataMappingDictionaryCache mappingDictionary) throws IOException
 	{
 		FullDataSourceV2DTO dto = FullDataSourceV2DTO.CreateEmptyDataSourceForDecoding();
 		
+		ZstdDictionary dictionary = null;
+		if (compressionModeEnum == EDhApiDataCompressionMode.ZSTD
+			&& compressionDictionaries != null)
+		{
+			dictionary = compressionDictionaries.getDictionaryForWriting();
+		}
+		int zstdLevel = Config.Common.LodBuilding.zstdCompressionLevel.get();
+		
 		// populate arrays
-		writeDataSourceDataArrayToBlob(dataSource.dataPoints, dto.compressedDataByteArray, compressionModeEnum);
-		writeGenerationStepsToBlob(dataSource.columnGenerationSteps, dto.compressedColumnGenStepByteArray, compressionModeEnum);
-		writeWorldCompressionModeToBlob(dataSource.columnWorldCompressionMode, dto.compressedWorldCompressionModeByteArray, compressionModeEnum);
-		writeDataMappingToBlob(dataSource.mapping, dto.compressedMappingByteArray, compressionModeEnum);
+		writeDataSourceDataArrayToBlob(dataSource.dataPoints, dto.compressedDataByteArray, FullDataSourceV2.DATA_FORMAT_VERSION, compressionModeEnum, zstdLevel, dictionary);
+		writeGenerationStepsToBlob(dataSource.columnGenerationSteps, dto.compressedColumnGenStepByteArray, compressionModeEnum, zstdLevel, dictionary);
+		writeWorldCompressionModeToBlob(dataSource.columnWorldCompressionMode, dto.compressedWorldCompressionModeByteArray, compressionModeEnum, zstdLevel, dictionary);
+		boolean usedMappingDictionary = writeDataMappingToBlob(dataSource.mapping, dto.compressedMappingByteArray, compressionModeEnum, zstdLevel, dictionary, mappingDictionary);
 		
 		// populate individual variables
 		{
@@ -110,13 +189,16 @@ public class FullDataSourceV2DTO
 			// the mapping hash isn't included since it takes significantly longer to calculate and 
 			// as of the time of this comment (2025-1-22) the checksum isn't used for anything so changing it shouldn't cause any issues
 			dto.dataChecksum = dataSource.hashCode();
-			dto.dataFormatVersion = FullDataSourceV2.DATA_FORMAT_VERSION;
-			dto.compressionModeValue = compressionModeEnum.value;
+			dto.dataFormatVersion = createDataFormatVersionValue(FullDataSourceV2.DATA_FORMAT_VERSION, usedMappingDictionary);
+			dto.compressionModeValue = createCompressionModeValue(compressionModeEnum, dictionary);
+			dto.compressionDictionaries = compressionDictionaries;
+			dto.mappingDictionary = mappingDictionary;
 			dto.lastModifiedUnixDateTime = dataSource.lastModifiedUnixDateTime;
 			dto.createdUnixDateTime = dataSource.createdUnixDateTime;
 			dto.applyToParent = dataSource.applyToParent;
 			dto.applyToChildren = dataSource.applyToChildren;
 			dto.levelMinY = dataSource.levelMinY;
+			dto.minGenerationStep = getMinGenerationStep(dataSource.columnGenerationSteps);
 		}
 		
 		return dto;
@@ -136,6 +218,67 @@ public class FullDataSourceV2DTO
 		this.compressedMappingByteArray = this.pooledArraysCheckout.getByteArray(3, 0);
 	}
 	
+	/**
+	 * Creates a deep copy of this DTO with its own pooled arrays,
+	 * the returned DTO must be closed separately.
+	 */
+	public FullDataSourceV2DTO copy()
+	{
+		FullDataSourceV2DTO dto = FullDataSourceV2DTO.CreateEmptyDataSourceForDecoding();
+		
+		// copy arrays
+		dto.compressedDataByteArray.addElements(0, this.compressedDataByteArray.elements(), 0, this.compressedDataByteArray.size());
+		dto.compressedColumnGenStepByteArray.addElements(0, this.compressedColumnGenStepByteArray.elements(), 0, this.compressedColumnGenStepByteArray.size());
+		dto.compressedWorldCompressionModeByteArray.addElements(0, this.compressedWorldCompressionModeByteArray.elements(), 0, this.compressedWorldCompressionModeByteArray.size());
+		dto.compressedMappingByteArray.addElements(0, this.compressedMappingByteArray.elements(), 0, this.compressedMappingByteArray.size());
+		
+		// copy individual variables
+		{
+			dto.pos = this.pos;
+			dto.dataChecksum = this.dataChecksum;
+			dto.dataFormatVersion = this.dataFormatVersion;
+			dto.compressionModeValue = this.compressionModeValue;
+			dto.compressionDictionaries = this.compressionDictionaries;
+			dto.mappingDictionary = this.mappingDictionary;
+			dto.lastModifiedUnixDateTime = this.lastModifiedUnixDateTime;
+			dto.createdUnixDateTime = this.createdUnixDateTime;
+			dto.applyToParent = this.applyToParent;
+			dto.applyToChildren = this.applyToChildren;
+			dto.levelMinY = this.levelMinY;
+			dto.minGenerationStep = this.minGenerationStep;
+		}
+		
+		return dto;
+	}
+	
+	/**
+	 * Creates a copy whose mapping stores serial strings instead of {@link FullDataMappingDictionaryCache} IDs,
+	 * so it can be decoded without this level's dictionary, IE when sending it over the network. <br>
+	 * Only the mapping blob is re-encoded, the returned DTO must be closed separately.
+	 */
+	public FullDataSourceV2DTO copyWithoutMappingDictionary(@NotNull ILevelWrapper levelWrapper) throws IOException, InterruptedException, DataCorruptedException
+	{
+		FullDataPointIdMap mapping = this.createDataMapping(levelWrapper);
+		EDhApiDataCompressionMode compressionModeEnum = this.getValidatedCompressionMode();
+		ZstdDictionary dictionary = this.getDictionary();
+		
+		FullDataSourceV2DTO dto = this.copy();
+		try
+		{
+			dto.compressedMappingByteArray.clear();
+			writeDataMappingToBlob(mapping, dto.compressedMappingByteArray, compressionModeEnum, Config.Common.LodBuilding.zstdCompressionLevel.get(), dictionary, null);
+			
+			dto.dataFormatVersion = createDataFormatVersionValue(this.getDataFormatVersion(), false);
+			dto.mappingDictionary = null;
+		}
+		catch (IOException | RuntimeException e)
+		{
+			dto.close();
+			throw e;
+		}
+		return dto;
+	}
+	
 	
 	
 	//========================//
@@ -156,30 +299,39 @@ public class FullDataSourceV2DTO
 	public FullDataSourceV2 createUnitTestDataSource() throws IOException, InterruptedException, DataCorruptedException 
 	{ return this.internalPopulateDataSource(FullDataSourceV2.createEmpty(this.pos), null, true); }
 	
+	/**
+	 * Only decodes the generation step blob,
+	 * significantly cheaper than creating a full data source.
+	 * 
+	 * @param outputByteArray will be resized to fit every column
+	 */
+	public void readColumnGenerationSteps(ByteArrayList outputByteArray) throws IOException, DataCorruptedException
+	{
+		ListUtil.clearAndSetSize(outputByteArray, FullDataSourceV2.WIDTH * FullDataSourceV2.WIDTH);
+		readBlobToGenerationSteps(this.compressedColumnGenStepByteArray, outputByteArray, this.getValidatedCompressionMode(), this.getDictionary());
+	}
+	
+	/** Only decodes the mapping blob */
+	public FullDataPointIdMap createDataMapping(@NotNull ILevelWrapper levelWrapper) throws IOException, InterruptedException, DataCorruptedException
+	{ return readBlobToDataMapping(this.compressedMappingByteArray, this.pos, levelWrapper, this.getValidatedCompressionMode(), this.getDictionary(), this.getValidatedMappingDictionary()); }
+	
 	private FullDataSourceV2 internalPopulateDataSource(FullDataSourceV2 dataSource, ILevelWrapper levelWrapper, boolean unitTest) throws IOException, InterruptedException, DataCorruptedException
 	{
-		if (FullDataSourceV2.DATA_FORMAT_VERSION != this.dataFormatVersion)
+		byte dataFormatVersion = this.getDataFormatVersion();
+		if (FullDataSourceV2.DATA_FORMAT_VERSION != dataFormatVersion
+			&& FullDataSourceV2.DATA_FORMAT_VERSION_PACKED_COLUMNS != dataFormatVersion)
 		{
-			throw new IllegalStateException("There should only be one data format ["+FullDataSourceV2.DATA_FORMAT_VERSION+"].");
+			throw new IllegalStateException("Unsupported data format ["+dataFormatVersion+"], expected ["+FullDataSourceV2.DATA_FORMAT_VERSION_PACKED_COLUMNS+"] or ["+FullDataSourceV2.DATA_FORMAT_VERSION+"].");
 		}
 		
 		
-		EDhApiDataCompressionMode compressionModeEnum;
-		try
-		{
-			compressionModeEnum = this.getCompressionMode();
-		}
-		catch (IllegalArgumentException e)
-		{
-			// may happen if ZStd was used (which was added and removed during the nightly builds)
-			// or if the compressor value is changed to an invalid option
-			throw new DataCorruptedException(e);
-		}
+		EDhApiDataCompressionMode compressionModeEnum = this.getValidatedCompressionMode();
+		ZstdDictionary dictionary = this.getDictionary();
 		
 		
-		readBlobToGenerationSteps(this.compressedColumnGenStepByteArray, dataSource.columnGenerationSteps, compressionModeEnum);
-		readBlobToWorldCompressionMode(this.compressedWorldCompressionModeByteArray, dataSource.columnWorldCompressionMode, compressionModeEnum);
-		readBlobToDataSourceDataArray(this.compressedDataByteArray, dataSource.dataPoints, compressionModeEnum);
+		readBlobToGenerationSteps(this.compressedColumnGenStepByteArray, dataSource.columnGenerationSteps, compressionModeEnum, dictionary);
+		readBlobToWorldCompressionMode(this.compressedWorldCompressionModeByteArray, dataSource.columnWorldCompressionMode, compressionModeEnum, dictionary);
+		readBlobToDataSourceDataArray(this.compressedDataByteArray, dataSource.dataPoints, dataFormatVersion, compressionModeEnum, dictionary);
 		
 		dataSource.mapping.clear(dataSource.getPos());
 		// should only be null when used in a unit test
@@ -190,7 +342,7 @@ public class FullDataSourceV2DTO
 				throw new NullPointerException("No level wrapper present, unable to deserialize data map. This should only be used for unit tests.");
 			}
 			
-			FullDataPointIdMap newMap = readBlobToDataMapping(this.compressedMappingByteArray, dataSource.getPos(), levelWrapper,  compressionModeEnum);
+			FullDataPointIdMap newMap = readBlobToDataMapping(this.compressedMappingByteArray, dataSource.getPos(), levelWrapper, compressionModeEnum, dictionary, this.getValidatedMappingDictionary());
 			dataSource.mapping.addAll(newMap);
 			if (dataSource.mapping.size() != newMap.size())
 			{
@@ -224,48 +376,86 @@ public class FullDataSourceV2DTO
 	// (de)serializing //
 	//=================//
 	
-	private static void writeDataSourceDataArrayToBlob(LongArrayList[] inputDataArray, ByteArrayList outputByteArray, EDhApiDataCompressionMode compressionModeEnum) throws IOException
+	/** public so different data formats can be benchmarked */
+	public static void writeDataSourceDataArrayToBlob(LongArrayList[] inputDataArray, ByteArrayList outputByteArray, byte dataFormatVersion, EDhApiDataCompressionMode compressionModeEnum, int zstdLevel, @Nullable ZstdDictionary dictionary) throws IOException
 	{
 		// write the outputs to a stream to prep for writing to the database
 		ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
 		
 		// normally a DhStream should be the topmost stream to prevent closing the stream accidentally, 
 		// but since this stream will be closed immediately after writing anyway, it won't be an issue
-		DhDataOutputStream compressedOut = new DhDataOutputStream(byteArrayOutputStream, compressionModeEnum);
+		DhDataOutputStream compressedOut = new DhDataOutputStream(byteArrayOutputStream, compressionModeEnum, zstdLevel, dictionary);
 		
+		FullDataColumnArray columnArray = COLUMN_ARRAY_GETTER.get();
+		columnArray.copyFrom(inputDataArray);
 		
-		// write the data
-		int dataArrayLength = FullDataSourceV2.WIDTH * FullDataSourceV2.WIDTH;
-		for (int xz = 0; xz < dataArrayLength; xz++)
+		if (dataFormatVersion == FullDataSourceV2.DATA_FORMAT_VERSION_PACKED_COLUMNS)
+		{
+			writePackedDataColumns(columnArray, compressedOut);
+		}
+		else if (dataFormatVersion == FullDataSourceV2.DATA_FORMAT_VERSION)
+		{
+			writeColumnarDataStreams(columnArray, compressedOut);
+		}
+		else
+		{
+			throw new IllegalArgumentException("Unsupported data format version ["+dataFormatVersion+"].");
+		}
+		
+		
+		// generate the checksum
+		compressedOut.flush();
+		byteArrayOutputStream.close();
+		outputByteArray.addElements(0, byteArrayOutputStream.toByteArray());
+	}
+	/** public so different data formats can be benchmarked */
+	public static void readBlobToDataSourceDataArray(ByteArrayList inputCompressedDataByteArray, LongArrayList[] outputDataLongArray, byte dataFormatVersion, EDhApiDataCompressionMode compressionModeEnum, @Nullable ZstdDictionary dictionary) throws IOException, DataCorruptedException
+	{
+		ByteArrayInputStream byteArrayInputStream = new ByteArrayInputStream(inputCompressedDataByteArray.elements(), 0, inputCompressedDataByteArray.size());
+		DhDataInputStream compressedIn = new DhDataInputStream(byteArrayInputStream, compressionModeEnum, dictionary);
+		
+		if (dataFormatVersion == FullDataSourceV2.DATA_FORMAT_VERSION_PACKED_COLUMNS)
+		{
+			readPackedDataColumns(compressedIn, outputDataLongArray);
+		}
+		else if (dataFormatVersion == FullDataSourceV2.DATA_FORMAT_VERSION)
+		{
+			FullDataColumnArray columnArray = COLUMN_ARRAY_GETTER.get();
+			readColumnarDataStreams(compressedIn, columnArray);
+			columnArray.copyTo(outputDataLongArray);
+		}
+		else
+		{
+			throw new DataCorruptedException("Unsupported data format version ["+dataFormatVersion+"].");
+		}
+	}
+	
+	
+	//===============================//
+	// format 1 - packed data points //
+	//===============================//
+	
+	private static void writePackedDataColumns(FullDataColumnArray inputColumnArray, DhDataOutputStream compressedOut) throws IOException
+	{
+		long[] data = inputColumnArray.getData();
+		for (int xz = 0; xz < FullDataColumnArray.COLUMN_COUNT; xz++)
 		{
-			LongArrayList dataColumn = inputDataArray[xz];
-			
 			// write column length
-			short columnLength = (dataColumn != null) ? (short) dataColumn.size() : 0;
+			short columnLength = (short) inputColumnArray.getColumnLength(xz);
 			// a short is used instead of an int because at most we store 4096 vertical slices and a 
 			// short fits that with less wasted spaces vs an int (short has max value of 32,767 vs int's max of 2 billion)
 			compressedOut.writeShort(columnLength);
 			
 			// write column data (will be skipped if no data was present)
-			for (int y = 0; y < columnLength; y++)
+			int start = inputColumnArray.getColumnStart(xz);
+			for (int i = start; i < start + columnLength; i++)
 			{
-				compressedOut.writeLong(dataColumn.getLong(y));
+				compressedOut.writeLong(data[i]);
 			}
 		}
-		
-		
-		// generate the checksum
-		compressedOut.flush();
-		byteArrayOutputStream.close();
-		outputByteArray.addElements(0, byteArrayOutputStream.toByteArray());
 	}
-	private static void readBlobToDataSourceDataArray(ByteArrayList inputCompressedDataByteArray, LongArrayList[] outputDataLongArray, EDhApiDataCompressionMode compressionModeEnum) throws IOException, DataCorruptedException
+	private static void readPackedDataColumns(DhDataInputStream compressedIn, LongArrayList[] outputDataLongArray) throws IOException, DataCorruptedException
 	{
-		ByteArrayInputStream byteArrayInputStream = new ByteArrayInputStream(inputCompressedDataByteArray.elements());
-		DhDataInputStream compressedIn = new DhDataInputStream(byteArrayInputStream, compressionModeEnum);
-		
-		
-		// read the data
 		int dataArrayLength = FullDataSourceV2.WIDTH * FullDataSourceV2.WIDTH;
 		for (int xz = 0; xz < dataArrayLength; xz++)
 		{
@@ -293,10 +483,189 @@ public class FullDataSourceV2DTO
 	}
 	
 	
-	private static void writeGenerationStepsToBlob(ByteArrayList inputColumnGenStepByteArray, ByteArrayList outputByteArray, EDhApiDataCompressionMode compressionModeEnum) throws IOException
+	//==================================//
+	// format 2 - columnar data streams //
+	//==================================//
+	
+	/**
+	 * Each data point field is written as a separate stream so similar values end up next to each other,
+	 * this lets the compressor work with small, repetitive values instead of mostly empty longs. <br><br>
+	 * 
+	 * Streams (in order): <br>
+	 * 1. column lengths - var ints <br>
+	 * 2. IDs - (ID, run length) var int pairs, runs continue between columns <br>
+	 * 3. heights - var ints <br>
+	 * 4. bottom Y - the first data point in each column is stored as a var int, 
+	 *    the rest are stored as zig-zag var int gaps between the data point's top and the previous data point's bottom (generally 0) <br>
+	 * 5. light - one byte per data point, block light in the upper 4 bits and sky light in the lower 4 bits <br>
+	 */
+	private static void writeColumnarDataStreams(FullDataColumnArray inputColumnArray, DhDataOutputStream compressedOut) throws IOException
+	{
+		long[] data = inputColumnArray.getData();
+		int dataPointCount = inputColumnArray.getDataPointCount();
+		
+		// column lengths
+		for (int xz = 0; xz < FullDataColumnArray.COLUMN_COUNT; xz++)
+		{
+			compressedOut.writeVarInt(inputColumnArray.getColumnLength(xz));
+		}
+		
+		// IDs
+		// columns are stored back to back so runs continue between columns automatically
+		int runId = 0;
+		int runLength = 0;
+		for (int i = 0; i < dataPointCount; i++)
+		{
+			int id = FullDataPointUtil.getId(data[i]);
+			if (runLength != 0 && id == runId)
+			{
+				runLength++;
+			}
+			else
+			{
+				if (runLength != 0)
+				{
+					compressedOut.writeVarInt(runId);
+					compressedOut.writeVarInt(runLength);
+				}
+				runId = id;
+				runLength = 1;
+			}
+		}
+		if (runLength != 0)
+		{
+			compressedOut.writeVarInt(runId);
+			compressedOut.writeVarInt(runLength);
+		}
+		
+		// heights
+		for (int i = 0; i < dataPointCount; i++)
+		{
+			compressedOut.writeVarInt(FullDataPointUtil.getHeight(data[i]));
+		}
+		
+		// bottom Y
+		for (int xz = 0; xz < FullDataColumnArray.COLUMN_COUNT; xz++)
+		{
+			int start = inputColumnArray.getColumnStart(xz);
+			int end = start + inputColumnArray.getColumnLength(xz);
+			int previousBottomY = 0;
+			for (int i = start; i < end; i++)
+			{
+				long dataPoint = data[i];
+				int bottomY = FullDataPointUtil.getBottomY(dataPoint);
+				if (i == start)
+				{
+					compressedOut.writeVarInt(bottomY);
+				}
+				else
+				{
+					// columns are sorted top to bottom
+					int topY = bottomY + FullDataPointUtil.getHeight(dataPoint);
+					compressedOut.writeZigZagVarInt(previousBottomY - topY);
+				}
+				previousBottomY = bottomY;
+			}
+		}
+		
+		// light
+		for (int i = 0; i < dataPointCount; i++)
+		{
+			long dataPoint = data[i];
+			compressedOut.writeByte((FullDataPointUtil.getBlockLight(dataPoint) << 4) | FullDataPointUtil.getSkyLight(dataPoint));
+		}
+	}
+	private static void readColumnarDataStreams(DhDataInputStream compressedIn, FullDataColumnArray outputColumnArray) throws IOException, DataCorruptedException
+	{
+		// column lengths
+		int[] columnLengths = new int[FullDataColumnArray.COLUMN_COUNT];
+		for (int xz = 0; xz < FullDataColumnArray.COLUMN_COUNT; xz++)
+		{
+			int dataColumnLength = compressedIn.readVarInt();
+			if (dataColumnLength < 0 || dataColumnLength > Short.MAX_VALUE)
+			{
+				throw new DataCorruptedException("Read DataSource Blob data at index ["+xz+"], column length ["+dataColumnLength+"] should be between 0 and ["+Short.MAX_VALUE+"].");
+			}
+			
+			columnLengths[xz] = dataColumnLength;
+		}
+		outputColumnArray.setColumnLengths(columnLengths);
+		
+		long[] data = outputColumnArray.getData();
+		int dataPointCount = outputColumnArray.getDataPointCount();
+		
+		// IDs
+		int runId = 0;
+		int runLength = 0;
+		for (int i = 0; i < dataPointCount; i++)
+		{
+			if (runLength == 0)
+			{
+				runId = compressedIn.readVarInt();
+				runLength = compressedIn.readVarInt();
+				if (runLength <= 0)
+				{
+					throw new DataCorruptedException("Read DataSource Blob ID run at data point index ["+i+"], run length ["+runLength+"] should be greater than zero.");
+				}
+			}
+			
+			data[i] = runId & FullDataPointUtil.ID_MASK;
+			runLength--;
+		}
+		
+		// heights
+		for (int i = 0; i < dataPointCount; i++)
+		{
+			int height = compressedIn.readVarInt();
+			data[i] = FullDataPointUtil.setHeight(data[i], height & FullDataPointUtil.HEIGHT_MASK);
+		}
+		
+		// bottom Y
+		for (int xz = 0; xz < FullDataColumnArray.COLUMN_COUNT; xz++)
+		{
+			int start = outputColumnArray.getColumnStart(xz);
+			int end = start + columnLengths[xz];
+			int previousBottomY = 0;
+			for (int i = start; i < end; i++)
+			{
+				long dataPoint = data[i];
+				int bottomY;
+				if (i == start)
+				{
+					bottomY = compressedIn.readVarInt();
+				}
+				else
+				{
+					int gap = compressedIn.readZigZagVarInt();
+					bottomY = previousBottomY - gap - FullDataPointUtil.getHeight(dataPoint);
+				}
+				
+				data[i] = FullDataPointUtil.setBottomY(dataPoint, bottomY & FullDataPointUtil.MIN_Y_MASK);
+				previousBottomY = bottomY;
+			}
+		}
+		
+		// light
+		for (int i = 0; i < dataPointCount; i++)
+		{
+			int light = compressedIn.readUnsignedByte();
+			long dataPoint = data[i];
+			dataPoint = FullDataPointUtil.setBlockLight(dataPoint, (byte) (light >>> 4));
+			dataPoint = FullDataPointUtil.setSkyLight(dataPoint, light & 0x0F);
+			
+			if (VALIDATE_INPUT_DATAPOINTS)
+			{
+				FullDataPointUtil.validateDatapoint(dataPoint);
+			}
+			data[i] = dataPoint;
+		}
+	}
+	
+	
+	private static void writeGenerationStepsToBlob(ByteArrayList inputColumnGenStepByteArray, ByteArrayList outputByteArray, EDhApiDataCompressionMode compressionModeEnum, int zstdLevel, @Nullable ZstdDictionary dictionary) throws IOException
 	{
 		ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
-		DhDataOutputStream compressedOut = new DhDataOutputStream(byteArrayOutputStream, compressionModeEnum);
+		DhDataOutputStream compressedOut = new DhDataOutputStream(byteArrayOutputStream, compressionModeEnum, zstdLevel, dictionary);
 		
 		for (int i = 0; i < inputColumnGenStepByteArray.size(); i++)
 		{
@@ -307,10 +676,10 @@ public class FullDataSourceV2DTO
 		byteArrayOutputStream.close();
 		outputByteArray.addElements(0, byteArrayOutputStream.toByteArray());
 	}
-	private static void readBlobToGenerationSteps(ByteArrayList inputCompressedDataByteArray, ByteArrayList outputByteArray, EDhApiDataCompressionMode compressionModeEnum) throws IOException, DataCorruptedException
+	private static void readBlobToGenerationSteps(ByteArrayList inputCompressedDataByteArray, ByteArrayList outputByteArray, EDhApiDataCompressionMode compressionModeEnum, @Nullable ZstdDictionary dictionary) throws IOException, DataCorruptedException
 	{
-		ByteArrayInputStream byteArrayInputStream = new ByteArrayInputStream(inputCompressedDataByteArray.elements());
-		DhDataInputStream compressedIn = new DhDataInputStream(byteArrayInputStream, compressionModeEnum);
+		ByteArrayInputStream byteArrayInputStream = new ByteArrayInputStream(inputCompressedDataByteArray.elements(), 0, inputCompressedDataByteArray.size());
+		DhDataInputStream compressedIn = new DhDataInputStream(byteArrayInputStream, compressionModeEnum, dictionary);
 		
 		try
 		{
@@ -323,10 +692,10 @@ public class FullDataSourceV2DTO
 	}
 	
 	
-	private static void writeWorldCompressionModeToBlob(ByteArrayList inputWorldCompressionModeByteArray, ByteArrayList outputByteArray, EDhApiDataCompressionMode compressionModeEnum) throws IOException
+	private static void writeWorldCompressionModeToBlob(ByteArrayList inputWorldCompressionModeByteArray, ByteArrayList outputByteArray, EDhApiDataCompressionMode compressionModeEnum, int zstdLevel, @Nullable ZstdDictionary dictionary) throws IOException
 	{
 		ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
-		DhDataOutputStream compressedOut = new DhDataOutputStream(byteArrayOutputStream, compressionModeEnum);
+		DhDataOutputStream compressedOut = new DhDataOutputStream(byteArrayOutputStream, compressionModeEnum, zstdLevel, dictionary);
 		
 		for (int i = 0; i < inputWorldCompressionModeByteArray.size(); i++)
 		{
@@ -337,10 +706,10 @@ public class FullDataSourceV2DTO
 		byteArrayOutputStream.close();
 		outputByteArray.addElements(0, byteArrayOutputStream.toByteArray());
 	}
-	private static void readBlobToWorldCompressionMode(ByteArrayList inputCompressedDataByteArray, ByteArrayList outputByteArray, EDhApiDataCompressionMode compressionModeEnum) throws IOException, DataCorruptedException
+	private static void readBlobToWorldCompressionMode(ByteArrayList inputCompressedDataByteArray, ByteArrayList outputByteArray, EDhApiDataCompressionMode compressionModeEnum, @Nullable ZstdDictionary dictionary) throws IOException, DataCorruptedException
 	{
-		ByteArrayInputStream byteArrayInputStream = new ByteArrayInputStream(inputCompressedDataByteArray.elements());
-		DhDataInputStream compressedIn = new DhDataInputStream(byteArrayInputStream, compressionModeEnum);
+		ByteArrayInputStream byteArrayInputStream = new ByteArrayInputStream(inputCompressedDataByteArray.elements(), 0, inputCompressedDataByteArray.size());
+		DhDataInputStream compressedIn = new DhDataInputStream(byteArrayInputStream, compressionModeEnum, dictionary);
 		
 		try
 		{
@@ -353,26 +722,86 @@ public class FullDataSourceV2DTO
 	}
 	
 	
-	private static void writeDataMappingToBlob(FullDataPointIdMap mapping, ByteArrayList outputByteArray, EDhApiDataCompressionMode compressionModeEnum) throws IOException
+	/** 
+	 * @param mappingDictionary if null the mapping will be written as serial strings
+	 * @return true if the mapping was written using the mapping dictionary
+	 */
+	private static boolean writeDataMappingToBlob(FullDataPointIdMap mapping, ByteArrayList outputByteArray, EDhApiDataCompressionMode compressionModeEnum, int zstdLevel, @Nullable ZstdDictionary dictionary, @Nullable FullDataMappingDictionaryCache mappingDictionary) throws IOException
 	{
 		ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
-		DhDataOutputStream compressedOut = new DhDataOutputStream(byteArrayOutputStream, compressionModeEnum);
+		DhDataOutputStream compressedOut = new DhDataOutputStream(byteArrayOutputStream, compressionModeEnum, zstdLevel, dictionary);
 		
-		mapping.serialize(compressedOut);
+		// fall back to serial strings if the dictionary couldn't be updated,
+		// otherwise the data would reference IDs that don't exist
+		boolean usedMappingDictionary = (mappingDictionary != null && mapping.serialize(compressedOut, mappingDictionary));
+		if (!usedMappingDictionary)
+		{
+			mapping.serialize(compressedOut);
+		}
 		
 		compressedOut.flush();
 		byteArrayOutputStream.close();
 		outputByteArray.addElements(0, byteArrayOutputStream.toByteArray());
+		return usedMappingDictionary;
 	}
-	private static FullDataPointIdMap readBlobToDataMapping(ByteArrayList compressedMappingByteArray, long pos, @NotNull ILevelWrapper levelWrapper, EDhApiDataCompressionMode compressionModeEnum) throws IOException, InterruptedException, DataCorruptedException
+	/** @param mappingDictionary if null the mapping is expected to contain serial strings */
+	private static FullDataPointIdMap readBlobToDataMapping(ByteArrayList compressedMappingByteArray, long pos, @NotNull ILevelWrapper levelWrapper, EDhApiDataCompressionMode compressionModeEnum, @Nullable ZstdDictionary dictionary, @Nullable FullDataMappingDictionaryCache mappingDictionary) throws IOException, InterruptedException, DataCorruptedException
 	{
-		ByteArrayInputStream byteArrayInputStream = new ByteArrayInputStream(compressedMappingByteArray.elements());
-		DhDataInputStream compressedIn = new DhDataInputStream(byteArrayInputStream, compressionModeEnum);
+		ByteArrayInputStream byteArrayInputStream = new ByteArrayInputStream(compressedMappingByteArray.elements(), 0, compressedMappingByteArray.size());
+		DhDataInputStream compressedIn = new DhDataInputStream(byteArrayInputStream, compressionModeEnum, dictionary);
 		
-		FullDataPointIdMap mapping = FullDataPointIdMap.deserialize(compressedIn, pos, levelWrapper);
+		FullDataPointIdMap mapping;
+		if (mappingDictionary != null)
+		{
+			mapping = FullDataPointIdMap.deserialize(compressedIn, pos, levelWrapper, mappingDictionary);
+		}
+		else
+		{
+			mapping = FullDataPointIdMap.deserialize(compressedIn, pos, levelWrapper);
+		}
 		return mapping;
 	}
 	
+	/**
+	 * Converts a mapping blob containing serial strings into one that only contains {@link FullDataMappingDictionaryCache} IDs,
+	 * without needing to resolve any of the biomes or block states. <br>
+	 * The new blob is compressed the same way as the original.
+	 * 
+	 * @return null if the dictionary IDs couldn't be created
+	 */
+	@Nullable
+	public static byte[] convertMappingBlobToDictionaryIds(
+			InputStream compressedMappingStream, byte compressionModeValue, 
+			@Nullable CompressionDictionaryCache compressionDictionaries, FullDataMappingDictionaryCache mappingDictionary) throws IOException, DataCorruptedException
+	{
+		EDhApiDataCompressionMode compressionModeEnum;
+		try
+		{
+			compressionModeEnum = getCompressionModeFromValue(compressionModeValue);
+		}
+		catch (IllegalArgumentException e)
+		{
+			throw new DataCorruptedException(e);
+		}
+		ZstdDictionary dictionary = getDictionaryFromValue(compressionModeValue, compressionDictionaries);
+		
+		DhDataInputStream compressedIn = new DhDataInputStream(compressedMappingStream, compressionModeEnum, dictionary);
+		String[] serialStrings = FullDataPointIdMap.deserializeSerialStrings(compressedIn);
+		
+		int[] ids = mappingDictionary.getOrCreateIds(serialStrings);
+		if (ids == null)
+		{
+			return null;
+		}
+		
+		ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+		DhDataOutputStream compressedOut = new DhDataOutputStream(byteArrayOutputStream, compressionModeEnum, Config.Common.LodBuilding.zstdCompressionLevel.get(), dictionary);
+		FullDataPointIdMap.writeDictionaryIds(compressedOut, ids);
+		compressedOut.flush();
+		byteArrayOutputStream.close();
+		return byteArrayOutputStream.toByteArray();
+	}
+	
 	
 	
 	//============//
@@ -439,7 +868,119 @@ public class FullDataSourceV2DTO
 	// helper methods //
 	//================//
 	
-	public EDhApiDataCompressionMode getCompressionMode() throws IllegalArgumentException { return EDhApiDataCompressionMode.getFromValue(this.compressionModeValue); }
+	public EDhApiDataCompressionMode getCompressionMode() throws IllegalArgumentException { return getCompressionModeFromValue(this.compressionModeValue); }
+	/** @return 0 if no dictionary was used */
+	public int getDictionaryId() { return getDictionaryIdFromValue(this.compressionModeValue); }
+	
+	/** @return the format of the data blob, IE {@link FullDataSourceV2#DATA_FORMAT_VERSION} */
+	public byte getDataFormatVersion() { return (byte) (this.dataFormatVersion & DATA_FORMAT_VERSION_MASK); }
+	public boolean usesMappingDictionary() { return (this.dataFormatVersion & MAPPING_DICTIONARY_FLAG) != 0; }
+	
+	/** 
+	 * @return null if the mapping doesn't use a dictionary 
+	 * @throws DataCorruptedException if the mapping uses a dictionary that isn't available
+	 */
+	@Nullable
+	private FullDataMappingDictionaryCache getValidatedMappingDictionary() throws DataCorruptedException
+	{
+		if (!this.usesMappingDictionary())
+		{
+			return null;
+		}
+		
+		if (this.mappingDictionary == null)
+		{
+			// can happen if data was sent over the network without removing the dictionary IDs
+			throw new DataCorruptedException("Missing full data mapping dictionary for pos ["+DhSectionPos.toString(this.pos)+"].");
+		}
+		return this.mappingDictionary;
+	}
+	
+	private EDhApiDataCompressionMode getValidatedCompressionMode() throws DataCorruptedException
+	{
+		try
+		{
+			return this.getCompressionMode();
+		}
+		catch (IllegalArgumentException e)
+		{
+			// may happen if ZStd was used (which was added and removed during the nightly builds)
+			// or if the compressor value is changed to an invalid option
+			throw new DataCorruptedException(e);
+		}
+	}
+	
+	/** 
+	 * @return null if no dictionary was used 
+	 * @throws DataCorruptedException if the dictionary this DTO was written with isn't available
+	 */
+	@Nullable
+	public ZstdDictionary getDictionary() throws DataCorruptedException { return getDictionaryFromValue(this.compressionModeValue, this.compressionDictionaries); }
+	
+	/** @return the decompressed contents of one of this DTO's blobs, used when training compression dictionaries */
+	public byte[] getUncompressedBlob(ByteArrayList compressedBlob) throws IOException, DataCorruptedException
+	{
+		ByteArrayInputStream byteArrayInputStream = new ByteArrayInputStream(compressedBlob.elements(), 0, compressedBlob.size());
+		DhDataInputStream compressedIn = new DhDataInputStream(byteArrayInputStream, this.getValidatedCompressionMode(), this.getDictionary());
+		
+		// single byte reads are used since DhDataInputStream only works around 
+		// the LZ4/XZ end of stream bugs for read()
+		ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream(compressedBlob.size() * 4);
+		int nextByte = compressedIn.read();
+		while (nextByte != -1)
+		{
+			byteArrayOutputStream.write(nextByte);
+			nextByte = compressedIn.read();
+		}
+		return byteArrayOutputStream.toByteArray();
+	}
+	
+	/** @return the lowest {@link EDhApiWorldGenerationStep} value in the given array */
+	public static byte getMinGenerationStep(ByteArrayList columnGenerationSteps)
+	{
+		byte minGenerationStep = EDhApiWorldGenerationStep.LIGHT.value;
+		for (int i = 0; i < columnGenerationSteps.size(); i++)
+		{
+			byte generationStep = columnGenerationSteps.getByte(i);
+			if (generationStep < minGenerationStep)
+			{
+				minGenerationStep = generationStep;
+			}
+		}
+		return minGenerationStep;
+	}
+	
+	/** @throws IllegalArgumentException if the value doesn't contain a valid {@link EDhApiDataCompressionMode} */
+	public static EDhApiDataCompressionMode getCompressionModeFromValue(byte compressionModeValue) throws IllegalArgumentException
+	{ return EDhApiDataCompressionMode.getFromValue((byte) (compressionModeValue & COMPRESSION_MODE_MASK)); }
+	public static int getDictionaryIdFromValue(byte compressionModeValue) { return (compressionModeValue >> DICTIONARY_ID_SHIFT) & COMPRESSION_MODE_MASK; }
+	/** 
+	 * @return null if no dictionary was used 
+	 * @throws DataCorruptedException if the dictionary referenced by the value isn't available
+	 */
+	@Nullable
+	public static ZstdDictionary getDictionaryFromValue(byte compressionModeValue, @Nullable CompressionDictionaryCache compressionDictionaries) throws DataCorruptedException
+	{
+		int dictionaryId = getDictionaryIdFromValue(compressionModeValue);
+		if (dictionaryId == 0)
+		{
+			return null;
+		}
+		
+		ZstdDictionary dictionary = (compressionDictionaries != null) ? compressionDictionaries.get(dictionaryId) : null;
+		if (dictionary == null)
+		{
+			throw new DataCorruptedException("Missing compression dictionary ["+dictionaryId+"].");
+		}
+		return dictionary;
+	}
+	public static byte createCompressionModeValue(EDhApiDataCompressionMode compressionMode, @Nullable ZstdDictionary dictionary)
+	{
+		int dictionaryId = (dictionary != null) ? dictionary.id : 0;
+		return (byte) ((dictionaryId << DICTIONARY_ID_SHIFT) | compressionMode.value);
+	}
+	public static byte createDataFormatVersionValue(byte dataFormatVersion, boolean usesMappingDictionary)
+	{ return (byte) ((dataFormatVersion & DATA_FORMAT_VERSION_MASK) | (usesMappingDictionary ? MAPPING_DICTIONARY_FLAG : 0)); }
 	
 	
 	
@@ -19,14 +19,18 @@
 
 package com.seibel.distanthorizons.core.sql.repo;
 
+import com.seibel.distanthorizons.core.config.Config;
 import com.seibel.distanthorizons.core.logging.DhLoggerBuilder;
 import com.seibel.distanthorizons.core.sql.DatabaseUpdater;
 import com.seibel.distanthorizons.core.sql.DbConnectionClosedException;
+import com.seibel.distanthorizons.core.sql.PreparedStatementCache;
+import com.seibel.distanthorizons.core.sql.ReadConnectionPool;
 import com.seibel.distanthorizons.core.sql.dto.IBaseDTO;
 import com.seibel.distanthorizons.core.util.KeyedLockContainer;
 import com.seibel.distanthorizons.core.util.ThreadUtil;
 import org.apache.logging.log4j.Logger;
 import org.jetbrains.annotations.Nullable;
+import org.sqlite.SQLiteConfig;
 
 import java.io.File;
 import java.io.IOException;
@@ -54,6 +58,10 @@ public abstract class AbstractDhRepo<TKey, TDTO extends IBaseDTO<TKey>> implemen
 	public static final int TIMEOUT_SECONDS = 0;
 	
 	private static final ConcurrentHashMap<String, Connection> CONNECTIONS_BY_CONNECTION_STRING = new ConcurrentHashMap<>();
+	private static final ConcurrentHashMap<String, PreparedStatementCache> STATEMENT_CACHES_BY_CONNECTION_STRING = new ConcurrentHashMap<>();
+	private static final ConcurrentHashMap<String, ReadConnectionPool> READ_POOLS_BY_CONNECTION_STRING = new ConcurrentHashMap<>();
+	/** created the first time a repo runs a transaction for the given database */
+	private static final ConcurrentHashMap<String, TransactionConnection> TRANSACTION_CONNECTIONS_BY_CONNECTION_STRING = new ConcurrentHashMap<>();
 	private static final ConcurrentHashMap<AbstractDhRepo<?, ?>, String> ACTIVE_CONNECTION_STRINGS_BY_REPO = new ConcurrentHashMap<>();
 	
 	private static final ThreadPoolExecutor WAL_FLUSH_THREAD = ThreadUtil.makeSingleDaemonThreadPool("Abstract Repo WAL Flush");
@@ -61,7 +69,13 @@ public abstract class AbstractDhRepo<TKey, TDTO extends IBaseDTO<TKey>> implemen
 	
 	
 	private final String connectionString;
+	/** 
+	 * The single connection used for writing to this database file. <br>
+	 * Reads should use {@link AbstractDhRepo#runReadQuery} instead when possible.
+	 */
 	private final Connection connection;
+	private final PreparedStatementCache statementCache;
+	private final ReadConnectionPool readConnectionPool;
 	
 	public final String databaseType;
 	public final File databaseFile;
@@ -163,6 +177,12 @@ public abstract class AbstractDhRepo<TKey, TDTO extends IBaseDTO<TKey>> implemen
 			throw new SQLException("Unable to get repo with connection string ["+this.connectionString+"]");
 		}
 		
+		// statements are shared between every repo using this connection
+		this.statementCache = STATEMENT_CACHES_BY_CONNECTION_STRING.computeIfAbsent(this.connectionString, (connectionString) -> new PreparedStatementCache(this.connection, TIMEOUT_SECONDS, true));
+		// WAL journaling allows reads to run in parallel with each other and the writer,
+		// one read connection per DH thread should prevent most contention
+		this.readConnectionPool = READ_POOLS_BY_CONNECTION_STRING.computeIfAbsent(this.connectionString, (connectionString) -> new ReadConnectionPool(connectionString, Config.Common.MultiThreading.numberOfThreads.get()));
+		
 		ACTIVE_CONNECTION_STRINGS_BY_REPO.put(this, this.connectionString);
 		
 		DatabaseUpdater.runAutoUpdateScripts(this);
@@ -176,17 +196,24 @@ public abstract class AbstractDhRepo<TKey, TDTO extends IBaseDTO<TKey>> implemen
 	
 	public TDTO getByKey(TKey primaryKey)
 	{
-		try(PreparedStatement statement = this.createSelectStatementByKey(primaryKey);
-			ResultSet resultSet = this.query(statement))
+		try
 		{
-			if (resultSet != null && resultSet.next())
-			{
-				return this.convertResultSetToDto(resultSet);
-			}
-			else 
+			return this.runReadQuery(this.getSelectSqlTemplate(), (statement) ->
 			{
-				return null;
-			}
+				this.setPreparedStatementWhereClause(statement, primaryKey);
+				
+				try (ResultSet resultSet = this.query(statement))
+				{
+					if (resultSet != null && resultSet.next())
+					{
+						return this.convertResultSetToDto(resultSet);
+					}
+					else
+					{
+						return null;
+					}
+				}
+			});
 		}
 		catch (SQLException | IOException e)
 		{
@@ -232,8 +259,7 @@ public abstract class AbstractDhRepo<TKey, TDTO extends IBaseDTO<TKey>> implemen
 	}
 	private void insert(TDTO dto) 
 	{
-		try(PreparedStatement statement = this.createInsertStatement(dto);
-			ResultSet result = this.query(statement))
+		try(ResultSet result = this.query(this.createInsertStatement(dto)))
 		{
 		}
 		catch (DbConnectionClosedException ignored) 
@@ -249,8 +275,7 @@ public abstract class AbstractDhRepo<TKey, TDTO extends IBaseDTO<TKey>> implemen
 	}
 	private void update(TDTO dto)
 	{
-		try(PreparedStatement statement = this.createUpdateStatement(dto);
-			ResultSet result = this.query(statement))
+		try(ResultSet result = this.query(this.createUpdateStatement(dto)))
 		{
 			
 		}
@@ -270,8 +295,7 @@ public abstract class AbstractDhRepo<TKey, TDTO extends IBaseDTO<TKey>> implemen
 	public void delete(TDTO dto) { this.deleteWithKey(dto.getKey()); }
 	public void deleteWithKey(TKey key) 
 	{
-		try (PreparedStatement statement = this.createDeleteStatementByKey(key);
-			ResultSet result = this.query(statement))
+		try (ResultSet result = this.query(this.createDeleteStatementByKey(key)))
 		{
 			
 		}
@@ -289,8 +313,7 @@ public abstract class AbstractDhRepo<TKey, TDTO extends IBaseDTO<TKey>> implemen
 	public void deleteAll() 
 	{ 
 		String sql = "DELETE FROM " + this.getTableName();
-		try (PreparedStatement statement = this.createPreparedStatement(sql);
-			ResultSet result = this.query(statement))
+		try (ResultSet result = this.query(this.createPreparedStatement(sql)))
 		{
 			
 		}
@@ -306,13 +329,18 @@ public abstract class AbstractDhRepo<TKey, TDTO extends IBaseDTO<TKey>> implemen
 	{
 		try
 		{
-			try (PreparedStatement statement = this.createExistsStatementByKey(key);
-				ResultSet result = this.query(statement))
+			Boolean exists = this.runReadQuery(this.getExistsSqlTemplate(), (statement) ->
 			{
-				return result != null && result.getInt("existingCount") != 0;
-			}
+				this.setPreparedStatementWhereClause(statement, key);
+				
+				try (ResultSet result = this.query(statement))
+				{
+					return result != null && result.getInt("existingCount") != 0;
+				}
+			});
+			return exists != null && exists;
 		}
-		catch (SQLException e)
+		catch (SQLException | IOException e)
 		{
 			return false;
 		}
@@ -436,17 +464,22 @@ public abstract class AbstractDhRepo<TKey, TDTO extends IBaseDTO<TKey>> implemen
 	
 	
 	/** 
+	 * Returns a cached statement for the current thread with its parameters cleared. <br><br>
+	 * 
+	 * Warning: the returned statement is reused and must <b>not</b> be closed or
+	 * passed to another thread, only its {@link ResultSet} should be closed. <br>
+	 * The SQL should be a constant template, values should be passed in as parameters.
+	 * 
 	 * @return Null if the database was closed
 	 * @throws RuntimeException if there was a problem with the given SQL string
+	 * @see PreparedStatementCache
 	 */
 	@Nullable
 	public PreparedStatement createPreparedStatement(String sql) throws RuntimeException
 	{
 		try
 		{
-			PreparedStatement statement = this.connection.prepareStatement(sql);
-			statement.setQueryTimeout(TIMEOUT_SECONDS);
-			return statement;
+			return this.statementCache.get(sql);
 		}
 		catch(SQLException e)
 		{
@@ -468,6 +501,115 @@ public abstract class AbstractDhRepo<TKey, TDTO extends IBaseDTO<TKey>> implemen
 	
 	
 	
+	/**
+	 * Runs the given query using one of the pooled read-only connections,
+	 * this allows multiple threads to read from the database at the same time. <br>
+	 * Should only be used for SELECT statements. <br><br>
+	 * 
+	 * The statement passed into the function follows the same rules as 
+	 * {@link AbstractDhRepo#createPreparedStatement(String)} and must not be kept after the function returns.
+	 * 
+	 * @return null if the database was closed
+	 */
+	@Nullable
+	public <T> T runReadQuery(String sql, IReadQueryFunc<T> queryFunc) throws SQLException, IOException
+	{
+		ReadConnectionPool.ReadConnection readConnection;
+		try
+		{
+			readConnection = this.readConnectionPool.borrowConnection();
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			return null;
+		}
+		
+		if (readConnection == null)
+		{
+			// the pool was closed or no read connections could be opened,
+			// fall back to the writer connection
+			PreparedStatement statement = this.createPreparedStatement(sql);
+			return (statement != null) ? queryFunc.run(statement) : null;
+		}
+		
+		
+		try
+		{
+			PreparedStatement statement = readConnection.statementCache.get(sql);
+			return (statement != null) ? queryFunc.run(statement) : null;
+		}
+		finally
+		{
+			this.readConnectionPool.returnConnection(readConnection);
+		}
+	}
+	
+	
+	
+	/**
+	 * Runs the given function as a single transaction on a connection that's only used for transactions. <br>
+	 * Toggling auto-commit on the shared writer connection would pull any other thread's writes
+	 * into the transaction (and roll them back with it), so every repo for the same database
+	 * shares one transaction connection and only one transaction can run on it at a time. <br><br>
+	 * 
+	 * Statements must come from the {@link PreparedStatementCache} passed into the function,
+	 * they follow the same rules as {@link AbstractDhRepo#createPreparedStatement(String)}.
+	 * 
+	 * @throws SQLException if the transaction failed, in which case nothing was written
+	 */
+	public void runInWriteTransaction(IWriteTransactionFunc transactionFunc) throws SQLException
+	{
+		TransactionConnection transactionConnection = TRANSACTION_CONNECTIONS_BY_CONNECTION_STRING.computeIfAbsent(this.connectionString, TransactionConnection::tryOpen);
+		if (transactionConnection == null)
+		{
+			throw new SQLException("Unable to open a transaction connection for ["+this.connectionString+"].");
+		}
+		
+		
+		transactionConnection.lock.lock();
+		try
+		{
+			Connection connection = transactionConnection.connection;
+			if (connection.isClosed())
+			{
+				// the message is checked by DbConnectionClosedException.isClosedException()
+				throw new SQLException("Unable to run transaction, the database has been closed.");
+			}
+			
+			try
+			{
+				connection.setAutoCommit(false);
+				transactionFunc.run(transactionConnection.statementCache);
+				connection.commit();
+			}
+			catch (SQLException | RuntimeException e)
+			{
+				try
+				{
+					connection.rollback();
+				}
+				catch (SQLException ignore) { /* the connection was probably closed */ }
+				
+				throw e;
+			}
+			finally
+			{
+				try
+				{
+					connection.setAutoCommit(true);
+				}
+				catch (SQLException ignore) { /* the connection was probably closed */ }
+			}
+		}
+		finally
+		{
+			transactionConnection.lock.unlock();
+		}
+	}
+	
+	
+	
 	//=============//
 	// connections //
 	//=============//
@@ -486,14 +628,52 @@ public abstract class AbstractDhRepo<TKey, TDTO extends IBaseDTO<TKey>> implemen
 		}
 	}
 	
+	public static void addDebugMenuStringsToList(List<String> messageList)
+	{
+		messageList.add(PreparedStatementCache.getDebugMenuString());
+		messageList.add(ReadConnectionPool.getContentionHistogramDebugString());
+	}
+	
 	/** can be used to make sure everything is closed when the world closes */
 	public static void closeAllConnections()
 	{
 		LOGGER.info("Closing all ["+ACTIVE_CONNECTION_STRINGS_BY_REPO.size()+"] database connections...");
+		
+		// any queued writes need to be finished before their connection is closed
+		for (AbstractDhRepo<?, ?> repo : ACTIVE_CONNECTION_STRINGS_BY_REPO.keySet())
+		{
+			try
+			{
+				repo.flushPendingWrites();
+			}
+			catch (Exception e)
+			{
+				LOGGER.error("Unable to flush pending writes for ["+repo.connectionString+"], error: ["+e.getMessage()+"]", e);
+			}
+		}
+		
 		for (String connectionString : ACTIVE_CONNECTION_STRINGS_BY_REPO.values())
 		{
 			try
 			{
+				ReadConnectionPool readConnectionPool = READ_POOLS_BY_CONNECTION_STRING.remove(connectionString);
+				if (readConnectionPool != null)
+				{
+					readConnectionPool.close();
+				}
+				
+				PreparedStatementCache statementCache = STATEMENT_CACHES_BY_CONNECTION_STRING.remove(connectionString);
+				if (statementCache != null)
+				{
+					statementCache.close();
+				}
+				
+				TransactionConnection transactionConnection = TRANSACTION_CONNECTIONS_BY_CONNECTION_STRING.remove(connectionString);
+				if (transactionConnection != null)
+				{
+					transactionConnection.close();
+				}
+				
 				Connection connection = CONNECTIONS_BY_CONNECTION_STRING.remove(connectionString);
 				if (connection != null)
 				{
@@ -516,6 +696,12 @@ public abstract class AbstractDhRepo<TKey, TDTO extends IBaseDTO<TKey>> implemen
 		}
 	}
 	
+	/** 
+	 * Should be overridden by repos that don't write immediately. <br>
+	 * When this method returns all writes queued before it was called should be in the database.
+	 */
+	protected void flushPendingWrites() { }
+	
 	@Override
 	public void close()
 	{
@@ -527,6 +713,18 @@ public abstract class AbstractDhRepo<TKey, TDTO extends IBaseDTO<TKey>> implemen
 			// check if any other repos are using this connection
 			if (!ACTIVE_CONNECTION_STRINGS_BY_REPO.containsValue(this.connectionString)) // not a fast operation, but we shouldn't have more than 10 repos active at a time, so it shouldn't be a problem
 			{
+				READ_POOLS_BY_CONNECTION_STRING.remove(this.connectionString);
+				this.readConnectionPool.close();
+				
+				STATEMENT_CACHES_BY_CONNECTION_STRING.remove(this.connectionString);
+				this.statementCache.close();
+				
+				TransactionConnection transactionConnection = TRANSACTION_CONNECTIONS_BY_CONNECTION_STRING.remove(this.connectionString);
+				if (transactionConnection != null)
+				{
+					transactionConnection.close();
+				}
+				
 				if(this.connection != null)
 				{
 					CONNECTIONS_BY_CONNECTION_STRING.remove(this.connectionString);
@@ -649,15 +847,18 @@ public abstract class AbstractDhRepo<TKey, TDTO extends IBaseDTO<TKey>> implemen
 	
 	
 	private String selectSqlTemplate = null;
-	public PreparedStatement createSelectStatementByKey(TKey key) throws SQLException
+	private String getSelectSqlTemplate()
 	{
 		// create shared template string
 		if (this.selectSqlTemplate == null)
 		{
 			this.selectSqlTemplate = "SELECT * FROM "+this.getTableName() + " WHERE " + this.CreateParameterizedWhereString();
 		}
-		
-		PreparedStatement statement = this.createPreparedStatement(this.selectSqlTemplate);
+		return this.selectSqlTemplate;
+	}
+	public PreparedStatement createSelectStatementByKey(TKey key) throws SQLException
+	{
+		PreparedStatement statement = this.createPreparedStatement(this.getSelectSqlTemplate());
 		if (statement == null)
 		{
 			return null;
@@ -668,15 +869,18 @@ public abstract class AbstractDhRepo<TKey, TDTO extends IBaseDTO<TKey>> implemen
 	}
 	
 	private String existsSqlTemplate = null;
-	public PreparedStatement createExistsStatementByKey(TKey key) throws SQLException
+	private String getExistsSqlTemplate()
 	{
 		// create shared template string
 		if (this.existsSqlTemplate == null)
 		{
 			this.existsSqlTemplate = "SELECT EXISTS(SELECT 1 FROM "+this.getTableName()+" WHERE "+this.CreateParameterizedWhereString()+") as 'existingCount'";
 		}
-		
-		PreparedStatement statement = this.createPreparedStatement(this.existsSqlTemplate);
+		return this.existsSqlTemplate;
+	}
+	public PreparedStatement createExistsStatementByKey(TKey key) throws SQLException
+	{
+		PreparedStatement statement = this.createPreparedStatement(this.getExistsSqlTemplate());
 		if (statement == null)
 		{
 			return null;
@@ -714,5 +918,86 @@ public abstract class AbstractDhRepo<TKey, TDTO extends IBaseDTO<TKey>> implemen
 	
 	
 	
+	//================//
+	// helper classes //
+	//================//
+	
+	/** @see AbstractDhRepo#runReadQuery */
+	@FunctionalInterface
+	public interface IReadQueryFunc<T>
+	{
+		@Nullable
+		T run(PreparedStatement statement) throws SQLException, IOException;
+	}
+	
+	/** @see AbstractDhRepo#runInWriteTransaction */
+	@FunctionalInterface
+	public interface IWriteTransactionFunc
+	{
+		void run(PreparedStatementCache statementCache) throws SQLException;
+	}
+	
+	/** 
+	 * The connection used by {@link AbstractDhRepo#runInWriteTransaction}. <br>
+	 * Should only be used while {@link TransactionConnection#lock} is held.
+	 */
+	private static class TransactionConnection implements AutoCloseable
+	{
+		/** 
+		 * SQLite only allows one writer at a time, 
+		 * so this connection may have to wait for a write on the shared connection to finish 
+		 */
+		private static final int BUSY_TIMEOUT_IN_MS = 30_000;
+		
+		public final Connection connection;
+		public final PreparedStatementCache statementCache;
+		public final ReentrantLock lock = new ReentrantLock();
+		
+		
+		private TransactionConnection(Connection connection)
+		{
+			this.connection = connection;
+			// only one thread can use this connection at a time
+			this.statementCache = new PreparedStatementCache(connection, TIMEOUT_SECONDS, false);
+		}
+		
+		/** @return null if the connection couldn't be opened */
+		@Nullable
+		public static TransactionConnection tryOpen(String connectionString)
+		{
+			try
+			{
+				SQLiteConfig config = new SQLiteConfig();
+				config.setBusyTimeout(BUSY_TIMEOUT_IN_MS);
+				
+				return new TransactionConnection(DriverManager.getConnection(connectionString, config.toProperties()));
+			}
+			catch (SQLException e)
+			{
+				LOGGER.error("Unable to open transaction connection to ["+connectionString+"], error: ["+e.getMessage()+"].", e);
+				return null;
+			}
+		}
+		
+		/** waits for any running transaction to finish */
+		@Override
+		public void close()
+		{
+			this.lock.lock();
+			try
+			{
+				this.statementCache.close();
+				this.connection.close();
+			}
+			catch (SQLException e)
+			{
+				LOGGER.warn("Unable to close transaction connection, error: ["+e.getMessage()+"].");
+			}
+			finally
+			{
+				this.lock.unlock();
+			}
+		}
+	}
 	
 }
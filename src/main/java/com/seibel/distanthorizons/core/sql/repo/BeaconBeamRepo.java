@@ -204,27 +204,26 @@ public class BeaconBeamRepo extends AbstractDhRepo<DhBlockPos, BeaconBeamDTO>
 	{
 		ArrayList<BeaconBeamDTO> beamList = new ArrayList<>();
 		
-		try(PreparedStatement statement = this.createPreparedStatement(this.getAllBeamsInRangeTemplate))
+		try
 		{
-			if(statement == null)
+			this.runReadQuery(this.getAllBeamsInRangeTemplate, (statement) ->
 			{
-				return beamList;
-			}
-			
-			int i = 1;
-			statement.setInt(i++, minBlockX);
-			statement.setInt(i++, maxBlockX);
-			statement.setInt(i++, minBlockZ);
-			statement.setInt(i++, maxBlockZ);
-			
-			
-			try (ResultSet result = this.query(statement))
-			{
-				while (result != null && result.next())
+				int i = 1;
+				statement.setInt(i++, minBlockX);
+				statement.setInt(i++, maxBlockX);
+				statement.setInt(i++, minBlockZ);
+				statement.setInt(i++, maxBlockZ);
+				
+				
+				try (ResultSet result = this.query(statement))
 				{
-					beamList.add(this.convertResultSetToDto(result));
+					while (result != null && result.next())
+					{
+						beamList.add(this.convertResultSetToDto(result));
+					}
 				}
-			}
+				return null;
+			});
 		}
 		catch (Exception e)
 		{
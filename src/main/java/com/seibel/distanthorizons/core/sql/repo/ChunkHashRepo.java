@@ -29,6 +29,7 @@ import java.io.File;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.Collection;
 
 public class ChunkHashRepo extends AbstractDhRepo<DhChunkPos, ChunkHashDTO>
 {
@@ -135,4 +136,54 @@ public class ChunkHashRepo extends AbstractDhRepo<DhChunkPos, ChunkHashDTO>
 	
 	
 	
+	//===============//
+	// batch upserts //
+	//===============//
+	
+	private final String upsertSqlTemplate =
+		"INSERT INTO "+this.getTableName() + " (\n" +
+		"   ChunkPosX, ChunkPosZ, \n" +
+		"   ChunkHash, \n" +
+		"   LastModifiedUnixDateTime, CreatedUnixDateTime) \n" +
+		"VALUES( \n" +
+		"    ?, ?, \n" +
+		"    ?, \n" +
+		"    ?, ? \n" +
+		") \n" +
+		"ON CONFLICT (ChunkPosX, ChunkPosZ) DO UPDATE SET \n" +
+		"    ChunkHash = excluded.ChunkHash \n" +
+		"   ,LastModifiedUnixDateTime = excluded.LastModifiedUnixDateTime;";
+	
+	/** Saves every DTO in a single transaction. */
+	public void upsertBatch(Collection<ChunkHashDTO> dtoList) throws SQLException
+	{
+		this.runInWriteTransaction((statementCache) ->
+		{
+			PreparedStatement statement = statementCache.get(this.upsertSqlTemplate);
+			if (statement == null)
+			{
+				return;
+			}
+			
+			long nowUnixDateTime = System.currentTimeMillis();
+			for (ChunkHashDTO dto : dtoList)
+			{
+				int i = 1;
+				statement.setInt(i++, dto.pos.getX());
+				statement.setInt(i++, dto.pos.getZ());
+				
+				statement.setInt(i++, dto.chunkHash);
+				
+				statement.setLong(i++, nowUnixDateTime); // last modified unix time
+				statement.setLong(i++, nowUnixDateTime); // created unix time, ignored if the row already exists
+				
+				statement.addBatch();
+			}
+			
+			statement.executeBatch();
+		});
+	}
+	
+	
+	
 }
@@ -0,0 +1,162 @@
+/*
+ *    This file is part of the Distant Horizons mod
+ *    licensed under the GNU LGPL v3 License.
+ *
+ *    Copyright (C) 2020 James Seibel
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, version 3.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public License
+ *    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.seibel.distanthorizons.core.sql.repo;
+
+import com.seibel.distanthorizons.core.logging.DhLoggerBuilder;
+import com.seibel.distanthorizons.core.sql.dto.FullDataMappingDictionaryDTO;
+import org.apache.logging.log4j.Logger;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+
+public class FullDataMappingDictionaryRepo extends AbstractDhRepo<Integer, FullDataMappingDictionaryDTO>
+{
+	private static final Logger LOGGER = DhLoggerBuilder.getLogger();
+	
+	
+	
+	//=============//
+	// constructor //
+	//=============//
+	
+	public FullDataMappingDictionaryRepo(String databaseType, File databaseFile) throws SQLException
+	{
+		super(databaseType, databaseFile, FullDataMappingDictionaryDTO.class);
+	}
+	
+	
+	
+	//===========//
+	// overrides //
+	//===========//
+	
+	@Override 
+	public String getTableName() { return "FullDataMappingDictionary"; }
+	
+	@Override
+	protected String CreateParameterizedWhereString() { return "Id = ?"; }
+	
+	@Override
+	protected int setPreparedStatementWhereClause(PreparedStatement statement, int index, Integer id) throws SQLException
+	{
+		statement.setInt(index++, id);
+		return index;
+	}
+	
+	
+	
+	//=======================//
+	// repo required methods //
+	//=======================//
+	
+	@Override
+	@Nullable
+	public FullDataMappingDictionaryDTO convertResultSetToDto(ResultSet resultSet) throws ClassCastException, SQLException
+	{
+		int id = resultSet.getInt("Id");
+		String serialString = resultSet.getString("SerialString");
+		
+		
+		FullDataMappingDictionaryDTO dto = new FullDataMappingDictionaryDTO(id, serialString);
+		return dto;
+	}
+	
+	@Override
+	public PreparedStatement createInsertStatement(FullDataMappingDictionaryDTO dto) throws SQLException
+	{
+		String sql =
+			"INSERT INTO "+this.getTableName() + " (\n" +
+			"   Id, SerialString, \n" +
+			"   CreatedUnixDateTime) \n" +
+			"VALUES( \n" +
+			"    ?, ?, \n" +
+			"    ? \n" +
+			");";
+		PreparedStatement statement = this.createPreparedStatement(sql);
+		
+		int i = 1;
+		statement.setObject(i++, dto.id);
+		statement.setString(i++, dto.serialString);
+		
+		statement.setObject(i++, System.currentTimeMillis()); // created unix time
+		
+		return statement;
+	}
+	
+	@Override
+	public PreparedStatement createUpdateStatement(FullDataMappingDictionaryDTO dto) throws SQLException
+	{
+		// shouldn't be needed since entries are never changed once created
+		String sql =
+			"UPDATE "+this.getTableName()+" \n" +
+			"SET \n" +
+			"    SerialString = ? \n" +
+			"WHERE Id = ?";
+		PreparedStatement statement = this.createPreparedStatement(sql);
+		
+		int i = 1;
+		statement.setString(i++, dto.serialString);
+		
+		statement.setObject(i++, dto.id);
+		
+		return statement;
+	}
+	
+	
+	
+	//=========//
+	// getters //
+	//=========//
+	
+	private final String getAllSql = "SELECT * FROM " + this.getTableName() + " ORDER BY Id ASC;";
+	/** Every entry is needed to decode any data source, so they're always loaded together. */
+	public ArrayList<FullDataMappingDictionaryDTO> getAll()
+	{
+		ArrayList<FullDataMappingDictionaryDTO> list = new ArrayList<>();
+		try
+		{
+			this.runReadQuery(this.getAllSql, (statement) ->
+			{
+				try (ResultSet result = this.query(statement))
+				{
+					while (result != null && result.next())
+					{
+						list.add(this.convertResultSetToDto(result));
+					}
+				}
+				return null;
+			});
+		}
+		catch (SQLException | IOException e)
+		{
+			LOGGER.error("Unable to get full data mapping dictionary, error: ["+e.getMessage()+"].", e);
+		}
+		
+		return list;
+	}
+	
+	
+	
+}
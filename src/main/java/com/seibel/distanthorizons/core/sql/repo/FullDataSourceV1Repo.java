@@ -209,8 +209,9 @@ public class FullDataSourceV1Repo extends AbstractDhRepo<Long, FullDataSourceV1D
 	{
 		LongArrayList posList = new LongArrayList();
 		
-		try(PreparedStatement statement = this.createPreparedStatement(this.getMigrationPositionsSqlTemplate))
+		try
 		{
+			PreparedStatement statement = this.createPreparedStatement(this.getMigrationPositionsSqlTemplate);
 			if (statement == null)
 			{
 				return posList;
@@ -287,8 +288,9 @@ public class FullDataSourceV1Repo extends AbstractDhRepo<Long, FullDataSourceV1D
 	{
 		ArrayList<String> deletePosList = new ArrayList<>();
 		
-		try(PreparedStatement statement = this.createPreparedStatement(this.getUnusedPositionSqlTemplate))
+		try
 		{
+			PreparedStatement statement = this.createPreparedStatement(this.getUnusedPositionSqlTemplate);
 			if (statement == null)
 			{
 				return deletePosList;
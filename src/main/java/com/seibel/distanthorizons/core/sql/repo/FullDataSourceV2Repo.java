@@ -21,13 +21,19 @@ package com.seibel.distanthorizons.core.sql.repo;
 
 import com.seibel.distanthorizons.api.enums.config.EDhApiDataCompressionMode;
 import com.seibel.distanthorizons.core.dataObjects.fullData.sources.FullDataSourceV2;
+import com.seibel.distanthorizons.core.file.fullDatafile.storage.IFullDataSourceStore;
+import com.seibel.distanthorizons.core.file.fullDatafile.storage.UpdatePropagationIndex;
 import com.seibel.distanthorizons.core.logging.DhLoggerBuilder;
 import com.seibel.distanthorizons.core.pos.DhSectionPos;
+import com.seibel.distanthorizons.core.sql.CompressionDictionaryCache;
 import com.seibel.distanthorizons.core.sql.DbConnectionClosedException;
+import com.seibel.distanthorizons.core.sql.FullDataMappingDictionaryCache;
 import com.seibel.distanthorizons.core.sql.dto.FullDataSourceV2DTO;
 import com.seibel.distanthorizons.core.util.BoolUtil;
 import com.seibel.distanthorizons.core.util.ListUtil;
+import com.seibel.distanthorizons.core.util.objects.DataCorruptedException;
 import com.seibel.distanthorizons.core.util.objects.dataStreams.DhDataInputStream;
+import com.seibel.distanthorizons.core.util.objects.dataStreams.ZstdDictionary;
 import it.unimi.dsi.fastutil.bytes.ByteArrayList;
 import it.unimi.dsi.fastutil.longs.LongArrayList;
 import org.apache.logging.log4j.Logger;
@@ -37,13 +43,39 @@ import java.io.*;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
-public class FullDataSourceV2Repo extends AbstractDhRepo<Long, FullDataSourceV2DTO>
+public class FullDataSourceV2Repo extends AbstractDhRepo<Long, FullDataSourceV2DTO> implements IFullDataSourceStore
 {
 	private static final Logger LOGGER = DhLoggerBuilder.getLogger();
 	
+	/** 
+	 * All saves go through this queue so they can be committed in batches. <br>
+	 * Any method that reads from the database should check this queue first,
+	 * otherwise it may return outdated data.
+	 */
+	public final FullDataSourceV2WriteQueue writeQueue;
+	/** 
+	 * Every compression dictionary stored in this database, 
+	 * also used by other {@link IFullDataSourceStore}'s for this level.
+	 */
+	public final CompressionDictionaryCache compressionDictionaries;
+	/** 
+	 * Every mapping ID stored in this database, 
+	 * also used by other {@link IFullDataSourceStore}'s for this level.
+	 */
+	public final FullDataMappingDictionaryCache mappingDictionary;
+	/**
+	 * Every position with ApplyToParent or ApplyToChildren set. <br>
+	 * Kept in memory so finding the next positions to update doesn't
+	 * have to sort every flagged row in the database.
+	 */
+	private final UpdatePropagationIndex updateIndex = new UpdatePropagationIndex();
+	
 	
 	
 	//=============//
@@ -53,6 +85,46 @@ public class FullDataSourceV2Repo extends AbstractDhRepo<Long, FullDataSourceV2D
 	public FullDataSourceV2Repo(String databaseType, File databaseFile) throws SQLException
 	{
 		super(databaseType, databaseFile, FullDataSourceV2DTO.class);
+		
+		this.writeQueue = new FullDataSourceV2WriteQueue(this);
+		this.compressionDictionaries = new CompressionDictionaryCache(databaseType, databaseFile);
+		this.mappingDictionary = new FullDataMappingDictionaryCache(databaseType, databaseFile);
+		
+		this.buildUpdateIndex();
+	}
+	
+	private final String getFlaggedPositionsSql =
+			"SELECT DetailLevel, PosX, PosZ, ApplyToParent, ApplyToChildren " +
+			"FROM " + this.getTableName() + " " +
+			"WHERE ApplyToParent = 1 OR ApplyToChildren = 1; ";
+	private void buildUpdateIndex() throws SQLException
+	{
+		long startTimeMs = System.currentTimeMillis();
+		
+		try
+		{
+			this.runReadQuery(this.getFlaggedPositionsSql, (statement) ->
+			{
+				try (ResultSet result = this.query(statement))
+				{
+					while (result != null && result.next())
+					{
+						byte sectionDetailLevel = (byte) (result.getByte("DetailLevel") + DhSectionPos.SECTION_MINIMUM_DETAIL_LEVEL);
+						long pos = DhSectionPos.encode(sectionDetailLevel, result.getInt("PosX"), result.getInt("PosZ"));
+						
+						this.updateIndex.setApplyToParent(pos, result.getInt("ApplyToParent") == 1);
+						this.updateIndex.setApplyToChildren(pos, result.getInt("ApplyToChildren") == 1);
+					}
+				}
+				return null;
+			});
+		}
+		catch (IOException e)
+		{
+			throw new SQLException("Unable to read update flags from ["+this.databaseFile+"], error: ["+e.getMessage()+"].", e);
+		}
+		
+		LOGGER.info("Indexed update flags in ["+this.databaseFile+"] in ["+(System.currentTimeMillis() - startTimeMs)+"]ms, found ["+this.updateIndex.getParentUpdateCount()+"] parent and ["+this.updateIndex.getChildUpdateCount()+"] child updates.");
 	}
 	
 	
@@ -64,6 +136,90 @@ public class FullDataSourceV2Repo extends AbstractDhRepo<Long, FullDataSourceV2D
 	@Override 
 	public String getTableName() { return "FullData"; }
 	
+	@Override
+	public FullDataSourceV2DTO getByKey(Long pos)
+	{
+		// queued data is newer than anything in the database
+		FullDataSourceV2DTO queuedDto = this.writeQueue.runForQueuedDto(pos, false, (dto) -> (dto != null) ? dto.copy() : null);
+		if (queuedDto != null)
+		{
+			return queuedDto;
+		}
+		
+		FullDataSourceV2DTO dto = super.getByKey(pos);
+		if (dto != null)
+		{
+			this.writeQueue.applyPendingFlags(dto);
+		}
+		return dto;
+	}
+	
+	/** 
+	 * Queues a copy of the given DTO. <br>
+	 * {@link FullDataSourceV2Repo#queueSave(FullDataSourceV2DTO)} should be used
+	 * if the caller doesn't need the DTO afterward, since that skips the copy.
+	 */
+	@Override
+	public void save(FullDataSourceV2DTO dto) { this.queueSave(dto.copy()); }
+	/** 
+	 * Ownership of the DTO is passed to the {@link FullDataSourceV2WriteQueue},
+	 * the caller shouldn't use or close the DTO after calling this method.
+	 */
+	@Override
+	public void queueSave(FullDataSourceV2DTO dto)
+	{
+		// null flags keep their existing value
+		if (dto.applyToParent != null)
+		{
+			this.updateIndex.setApplyToParent(dto.pos, dto.applyToParent);
+		}
+		if (dto.applyToChildren != null)
+		{
+			this.updateIndex.setApplyToChildren(dto.pos, dto.applyToChildren);
+		}
+		
+		this.writeQueue.queue(dto);
+	}
+	
+	@Override
+	public boolean existsWithKey(Long pos)
+	{
+		boolean queued = this.writeQueue.runForQueuedDto(pos, false, (dto) -> dto != null);
+		return queued || super.existsWithKey(pos);
+	}
+	
+	@Override
+	public void deleteWithKey(Long pos)
+	{
+		// removing the queued DTO first prevents a later commit from re-inserting the deleted data
+		this.writeQueue.removePending(pos);
+		super.deleteWithKey(pos);
+		
+		this.updateIndex.remove(pos);
+	}
+	
+	@Override
+	protected void flushPendingWrites() { this.writeQueue.flush(); }
+	
+	@Override
+	public void flushQueuedSaves() { this.writeQueue.flush(); }
+	
+	@Override
+	public void runAfterQueuedSaves(Runnable task) { this.writeQueue.runAfterCommit(task); }
+	
+	@Override
+	public String getDebugString() { return this.writeQueue.getDebugString(); }
+	
+	@Override
+	public void close()
+	{
+		// everything queued needs to be written before the connection closes
+		this.writeQueue.close();
+		this.compressionDictionaries.close();
+		this.mappingDictionary.close();
+		super.close();
+	}
+	
 	@Override
 	protected String CreateParameterizedWhereString() { return "DetailLevel = ? AND PosX = ? AND PosZ = ?"; }
 	
@@ -108,6 +264,10 @@ public class FullDataSourceV2Repo extends AbstractDhRepo<Long, FullDataSourceV2D
 		long lastModifiedUnixDateTime = resultSet.getLong("LastModifiedUnixDateTime");
 		long createdUnixDateTime = resultSet.getLong("CreatedUnixDateTime");
 		
+		// null for data saved before this column was added
+		byte minGenerationStepValue = resultSet.getByte("MinGenerationStep");
+		Byte minGenerationStep = resultSet.wasNull() ? null : minGenerationStepValue;
+		
 		
 		
 		//===================//
@@ -128,11 +288,14 @@ public class FullDataSourceV2Repo extends AbstractDhRepo<Long, FullDataSourceV2D
 			dto.dataChecksum = dataChecksum;
 			dto.dataFormatVersion = dataFormatVersion;
 			dto.compressionModeValue = compressionModeValue;
+			dto.compressionDictionaries = this.compressionDictionaries;
+			dto.mappingDictionary = this.mappingDictionary;
 			dto.lastModifiedUnixDateTime = lastModifiedUnixDateTime;
 			dto.createdUnixDateTime = createdUnixDateTime;
 			dto.applyToParent = applyToParent;
 			dto.applyToChildren = applyToChildren;
 			dto.levelMinY = minY;
+			dto.minGenerationStep = minGenerationStep;
 		}
 		return dto;
 	}
@@ -143,12 +306,14 @@ public class FullDataSourceV2Repo extends AbstractDhRepo<Long, FullDataSourceV2D
 		"   MinY, DataChecksum, \n" +
 		"   Data, ColumnGenerationStep, ColumnWorldCompressionMode, Mapping, \n" +
 		"   DataFormatVersion, CompressionMode, ApplyToParent, ApplyToChildren, \n" +
+		"   MinGenerationStep, \n" +
 		"   LastModifiedUnixDateTime, CreatedUnixDateTime) \n" +
 		"VALUES( \n" +
 		"    ?, ?, ?, \n" +
 		"    ?, ?, \n" +
 		"    ?, ?, ?, ?, \n" +
 		"    ?, ?, ?, ?, \n" +
+		"    ?, \n" +
 		"    ?, ? \n" +
 		");";
 	@Override
@@ -180,6 +345,8 @@ public class FullDataSourceV2Repo extends AbstractDhRepo<Long, FullDataSourceV2D
 		statement.setBoolean(i++, BoolUtil.falseIfNull(dto.applyToParent));
 		statement.setBoolean(i++, BoolUtil.falseIfNull(dto.applyToChildren));
 		
+		setMinGenerationStep(statement, i++, dto);
+		
 		statement.setLong(i++, System.currentTimeMillis()); // last modified unix time
 		statement.setLong(i++, System.currentTimeMillis()); // created unix time
 		
@@ -210,6 +377,8 @@ public class FullDataSourceV2Repo extends AbstractDhRepo<Long, FullDataSourceV2D
 					(dto.applyToParent != null ? "   ,ApplyToParent = ? \n" : "" ) +
 					(dto.applyToChildren != null ? "   ,ApplyToChildren = ? \n" : "" ) +
 				
+				"   ,MinGenerationStep = ? \n" +
+				
 				"   ,LastModifiedUnixDateTime = ? \n" +
 				"   ,CreatedUnixDateTime = ? \n" +
 				
@@ -245,6 +414,8 @@ public class FullDataSourceV2Repo extends AbstractDhRepo<Long, FullDataSourceV2D
 			statement.setBoolean(i++, dto.applyToChildren);
 		}
 		
+		setMinGenerationStep(statement, i++, dto);
+		
 		statement.setLong(i++, System.currentTimeMillis()); // last modified unix time
 		statement.setLong(i++, dto.createdUnixDateTime);
 		
@@ -257,6 +428,130 @@ public class FullDataSourceV2Repo extends AbstractDhRepo<Long, FullDataSourceV2D
 	
 	
 	
+	/** null means the value is unknown, IE the data was received over the network */
+	private static void setMinGenerationStep(PreparedStatement statement, int index, FullDataSourceV2DTO dto) throws SQLException
+	{
+		if (dto.minGenerationStep != null)
+		{
+			statement.setByte(index, dto.minGenerationStep);
+		}
+		else
+		{
+			statement.setNull(index, Types.TINYINT);
+		}
+	}
+	
+	
+	
+	//===============//
+	// batch writing //
+	//===============//
+	
+	/** 
+	 * Null applyTo... values are handled via COALESCE so the existing 
+	 * DB value is kept, similar to {@link FullDataSourceV2Repo#createUpdateStatement}. 
+	 */
+	private final String upsertSqlTemplate =
+		"INSERT INTO "+this.getTableName() + " (\n" +
+		"   DetailLevel, PosX, PosZ, \n" +
+		"   MinY, DataChecksum, \n" +
+		"   Data, ColumnGenerationStep, ColumnWorldCompressionMode, Mapping, \n" +
+		"   DataFormatVersion, CompressionMode, ApplyToParent, ApplyToChildren, \n" +
+		"   MinGenerationStep, \n" +
+		"   LastModifiedUnixDateTime, CreatedUnixDateTime) \n" +
+		"VALUES( \n" +
+		"    ?, ?, ?, \n" +
+		"    ?, ?, \n" +
+		"    ?, ?, ?, ?, \n" +
+		"    ?, ?, ?, ?, \n" +
+		"    ?, \n" +
+		"    ?, ? \n" +
+		") \n" +
+		"ON CONFLICT (DetailLevel, PosX, PosZ) DO UPDATE SET \n" +
+		"    MinY = excluded.MinY \n" +
+		"   ,DataChecksum = excluded.DataChecksum \n" +
+		
+		"   ,Data = excluded.Data \n" +
+		"   ,ColumnGenerationStep = excluded.ColumnGenerationStep \n" +
+		"   ,ColumnWorldCompressionMode = excluded.ColumnWorldCompressionMode \n" +
+		"   ,Mapping = excluded.Mapping \n" +
+		
+		"   ,DataFormatVersion = excluded.DataFormatVersion \n" +
+		"   ,CompressionMode = excluded.CompressionMode \n" +
+		"   ,ApplyToParent = COALESCE(excluded.ApplyToParent, "+this.getTableName()+".ApplyToParent) \n" +
+		"   ,ApplyToChildren = COALESCE(excluded.ApplyToChildren, "+this.getTableName()+".ApplyToChildren) \n" +
+		
+		"   ,MinGenerationStep = excluded.MinGenerationStep \n" +
+		
+		"   ,LastModifiedUnixDateTime = excluded.LastModifiedUnixDateTime; ";
+	/** 
+	 * Writes every DTO in a single transaction. <br>
+	 * Should only be called by the {@link FullDataSourceV2WriteQueue}.
+	 * 
+	 * @throws SQLException if the transaction failed, in which case nothing was written
+	 */
+	void upsertBatch(List<FullDataSourceV2DTO> dtoList) throws SQLException
+	{
+		this.runInWriteTransaction((statementCache) ->
+		{
+			PreparedStatement statement = statementCache.get(this.upsertSqlTemplate);
+			if (statement == null)
+			{
+				return;
+			}
+			
+			for (int dtoIndex = 0; dtoIndex < dtoList.size(); dtoIndex++)
+			{
+				FullDataSourceV2DTO dto = dtoList.get(dtoIndex);
+				
+				int i = 1;
+				statement.setInt(i++, DhSectionPos.getDetailLevel(dto.pos) - DhSectionPos.SECTION_MINIMUM_DETAIL_LEVEL);
+				statement.setInt(i++, DhSectionPos.getX(dto.pos));
+				statement.setInt(i++, DhSectionPos.getZ(dto.pos));
+				
+				statement.setInt(i++, dto.levelMinY);
+				statement.setInt(i++, dto.dataChecksum);
+				
+				statement.setBinaryStream(i++, new ByteArrayInputStream(dto.compressedDataByteArray.elements()), dto.compressedDataByteArray.size());
+				statement.setBinaryStream(i++, new ByteArrayInputStream(dto.compressedColumnGenStepByteArray.elements()), dto.compressedColumnGenStepByteArray.size());
+				statement.setBinaryStream(i++, new ByteArrayInputStream(dto.compressedWorldCompressionModeByteArray.elements()), dto.compressedWorldCompressionModeByteArray.size());
+				statement.setBinaryStream(i++, new ByteArrayInputStream(dto.compressedMappingByteArray.elements()), dto.compressedMappingByteArray.size());
+				
+				statement.setByte(i++, dto.dataFormatVersion);
+				statement.setByte(i++, dto.compressionModeValue);
+				// null = keep the existing value, 
+				// new rows will treat null as false when read
+				if (dto.applyToParent != null)
+				{
+					statement.setBoolean(i++, dto.applyToParent);
+				}
+				else
+				{
+					statement.setNull(i++, Types.BOOLEAN);
+				}
+				if (dto.applyToChildren != null)
+				{
+					statement.setBoolean(i++, dto.applyToChildren);
+				}
+				else
+				{
+					statement.setNull(i++, Types.BOOLEAN);
+				}
+				
+				setMinGenerationStep(statement, i++, dto);
+				
+				statement.setLong(i++, dto.lastModifiedUnixDateTime);
+				statement.setLong(i++, System.currentTimeMillis()); // created unix time, ignored if the row already exists
+				
+				statement.addBatch();
+			}
+			
+			statement.executeBatch();
+		});
+	}
+	
+	
+	
 	//=========//
 	// updates //
 	//=========//
@@ -266,6 +561,7 @@ public class FullDataSourceV2Repo extends AbstractDhRepo<Long, FullDataSourceV2D
 			"UPDATE "+this.getTableName()+" \n" +
 			"SET ApplyToParent = ? \n" +
 			"WHERE DetailLevel = ? AND PosX = ? AND PosZ = ?";
+	@Override
 	public void setApplyToParent(long pos, boolean applyToParent)
 	{ this.setApplyToFlag(pos, applyToParent, true); }
 	
@@ -274,100 +570,159 @@ public class FullDataSourceV2Repo extends AbstractDhRepo<Long, FullDataSourceV2D
 			"UPDATE "+this.getTableName()+" \n" +
 					"SET ApplyToChildren = ? \n" +
 					"WHERE DetailLevel = ? AND PosX = ? AND PosZ = ?";
+	@Override
 	public void setApplyToChild(long pos, boolean applyToChild)
 	{ this.setApplyToFlag(pos, applyToChild, false); }
 	
 	private void setApplyToFlag(long pos, boolean applyFlag, boolean applyToParent)
 	{
-		String sql = applyToParent ? this.setApplyToParentSql : this.setApplyToChildrenSql;
-		PreparedStatement statement = this.createPreparedStatement(sql);
-		if (statement == null)
+		if (applyToParent)
 		{
-			return;
+			this.updateIndex.setApplyToParent(pos, applyFlag);
+		}
+		else
+		{
+			this.updateIndex.setApplyToChildren(pos, applyFlag);
 		}
 		
-		
-		try
+		// the database is updated by the write queue's commit thread
+		this.writeQueue.queueApplyToFlag(pos, applyToParent, applyFlag);
+	}
+	/** Should only be called by the {@link FullDataSourceV2WriteQueue}. */
+	void updateApplyToFlagBatch(Map<Long, Boolean> applyToParentByPos, Map<Long, Boolean> applyToChildrenByPos) throws SQLException
+	{
+		this.runInWriteTransaction((statementCache) ->
+		{
+			PreparedStatement parentStatement = statementCache.get(this.setApplyToParentSql);
+			PreparedStatement childStatement = statementCache.get(this.setApplyToChildrenSql);
+			if (parentStatement == null || childStatement == null)
+			{
+				return;
+			}
+			
+			addApplyToFlagBatch(parentStatement, applyToParentByPos);
+			addApplyToFlagBatch(childStatement, applyToChildrenByPos);
+			
+			parentStatement.executeBatch();
+			childStatement.executeBatch();
+		});
+	}
+	private static void addApplyToFlagBatch(PreparedStatement statement, Map<Long, Boolean> applyFlagByPos) throws SQLException
+	{
+		for (Map.Entry<Long, Boolean> entry : applyFlagByPos.entrySet())
 		{
+			long pos = entry.getKey();
+			
 			int i = 1;
-			statement.setBoolean(i++, applyFlag);
+			statement.setBoolean(i++, entry.getValue());
 			
 			int detailLevel = DhSectionPos.getDetailLevel(pos) - DhSectionPos.SECTION_MINIMUM_DETAIL_LEVEL;
 			statement.setInt(i++, detailLevel);
 			statement.setInt(i++, DhSectionPos.getX(pos));
 			statement.setInt(i++, DhSectionPos.getZ(pos));
 			
-			try (ResultSet result = this.query(statement))
-			{
-				
-			}
-		}
-		catch (SQLException e)
-		{
-			throw new RuntimeException(e);
+			statement.addBatch();
 		}
 	}
 	
 	
 	
-	/** should be be very similar to {@link FullDataSourceV2Repo#getChildPositionsToUpdateSql} */
-	private final String getParentPositionsToUpdateSql =
-			"SELECT DetailLevel, PosX, PosZ, " +
-					"   abs((PosX << (6 + DetailLevel)) - ?) + abs((PosZ << (6 + DetailLevel)) - ?) AS Distance " +
-					"FROM " + this.getTableName() + " " +
-					"WHERE ApplyToParent = 1 " +
-					"ORDER BY DetailLevel ASC, Distance ASC " +
-					"LIMIT ?; ";
+	@Override
 	public LongArrayList getPositionsToUpdate(int targetBlockPosX, int targetBlockPosZ, int returnCount)
-	{ return this.getPositionsToUpdate(targetBlockPosX, targetBlockPosZ, returnCount, true); }
-	
-	/** should be be very similar to {@link FullDataSourceV2Repo#getParentPositionsToUpdateSql} */
-	private final String getChildPositionsToUpdateSql =
-			"SELECT DetailLevel, PosX, PosZ, " +
-					"   abs((PosX << (6 + DetailLevel)) - ?) + abs((PosZ << (6 + DetailLevel)) - ?) AS Distance " +
-					"FROM " + this.getTableName() + " " +
-					"WHERE ApplyToChildren = 1 " +
-					"ORDER BY DetailLevel ASC, Distance ASC " +
-					"LIMIT ?; ";
+	{ return this.updateIndex.getClosestParentUpdates(targetBlockPosX, targetBlockPosZ, returnCount); }
+	
+	@Override
 	public LongArrayList getChildPositionsToUpdate(int targetBlockPosX, int targetBlockPosZ, int returnCount)
-	{ return this.getPositionsToUpdate(targetBlockPosX, targetBlockPosZ, returnCount, false); }
+	{ return this.updateIndex.getClosestChildUpdates(targetBlockPosX, targetBlockPosZ, returnCount); }
+	
+	@Override
+	public boolean isApplyToParent(long pos) { return this.updateIndex.isApplyToParent(pos); }
+	@Override
+	public int getParentUpdateCount() { return this.updateIndex.getParentUpdateCount(); }
+	@Override
+	public int getChildUpdateCount() { return this.updateIndex.getChildUpdateCount(); }
+	
+	
 	
-	private LongArrayList getPositionsToUpdate(int targetBlockPosX, int targetBlockPosZ, int returnCount, boolean getParentUpdates)
+	private final String getColumnGenerationStepSql =
+			"select ColumnGenerationStep, CompressionMode " +
+			"from "+this.getTableName()+" " +
+			"WHERE DetailLevel = ? AND PosX = ? AND PosZ = ?";
+	/** @return null if nothing exists for this position */
+	@Override
+	public void getColumnGenerationStepForPos(long pos, ByteArrayList outputByteArray)
 	{
-		LongArrayList list = new LongArrayList();
-		
-		String sql = getParentUpdates ? this.getParentPositionsToUpdateSql : this.getChildPositionsToUpdateSql;
-		PreparedStatement statement = this.createPreparedStatement(sql);
-		if (statement == null)
+		// check the write queue first
+		boolean foundInQueue = this.writeQueue.runForQueuedDto(pos, false, (dto) -> 
 		{
-			return list;
+			if (dto == null)
+			{
+				return false;
+			}
+			
+			try
+			{
+				EDhApiDataCompressionMode compressionModeEnum = dto.getCompressionMode();
+				DhDataInputStream compressedIn = new DhDataInputStream(new ByteArrayInputStream(dto.compressedColumnGenStepByteArray.elements(), 0, dto.compressedColumnGenStepByteArray.size()), compressionModeEnum, dto.getDictionary());
+				putAllBytes(compressedIn, outputByteArray);
+				return true;
+			}
+			catch (IOException | DataCorruptedException e)
+			{
+				// shouldn't happen since the data was just compressed,
+				// fall back to the database just in case
+				LOGGER.warn("Decompression issue when getting queued column gen steps for pos: [" + DhSectionPos.toString(pos) + "].", e);
+				return false;
+			}
+		});
+		if (foundInQueue)
+		{
+			return;
 		}
 		
+		
 		try
 		{
-			int i = 1;
-			statement.setInt(i++, targetBlockPosX);
-			statement.setInt(i++, targetBlockPosZ);
-			
-			statement.setInt(i++, returnCount);
-			
-			try (ResultSet result = this.query(statement))
+			this.runReadQuery(this.getColumnGenerationStepSql, (statement) ->
 			{
-				while (result != null && result.next())
+				int detailLevel = DhSectionPos.getDetailLevel(pos) - DhSectionPos.SECTION_MINIMUM_DETAIL_LEVEL;
+				
+				int i = 1;
+				statement.setInt(i++, detailLevel);
+				statement.setInt(i++, DhSectionPos.getX(pos));
+				statement.setInt(i++, DhSectionPos.getZ(pos));
+				
+				
+				try (ResultSet result = this.query(statement))
 				{
-					byte detailLevel = result.getByte("DetailLevel");
-					byte sectionDetailLevel = (byte) (detailLevel + DhSectionPos.SECTION_MINIMUM_DETAIL_LEVEL);
-					int posX = result.getInt("PosX");
-					int posZ = result.getInt("PosZ");
+					if (result == null || !result.next())
+					{
+						return null;
+					}
+					
 					
-					long pos = DhSectionPos.encode(sectionDetailLevel, posX, posZ);
-					list.add(pos);
+					byte compressionModeEnumValue = result.getByte("CompressionMode");
+					EDhApiDataCompressionMode compressionModeEnum = FullDataSourceV2DTO.getCompressionModeFromValue(compressionModeEnumValue);
+					
+					try
+					{
+						// decompress the data
+						ZstdDictionary dictionary = FullDataSourceV2DTO.getDictionaryFromValue(compressionModeEnumValue, this.compressionDictionaries);
+						DhDataInputStream compressedIn = new DhDataInputStream(result.getBinaryStream("ColumnGenerationStep"), compressionModeEnum, dictionary);
+						putAllBytes(compressedIn, outputByteArray);
+					}
+					catch (IOException | DataCorruptedException e)
+					{
+						LOGGER.warn("Decompression issue when getting column gen steps for pos: [" + DhSectionPos.toString(pos) + "], deleting corrupted data.", e);
+						
+						this.deleteWithKey(pos);
+						ListUtil.clearAndSetSize(outputByteArray, FullDataSourceV2.WIDTH * FullDataSourceV2.WIDTH);
+					}
 				}
-			}
-			
-			return list;
+				return null;
+			});
 		}
-		catch (SQLException e)
+		catch (SQLException | IOException e)
 		{
 			throw new RuntimeException(e);
 		}
@@ -375,61 +730,150 @@ public class FullDataSourceV2Repo extends AbstractDhRepo<Long, FullDataSourceV2D
 	
 	
 	
-	private final String getColumnGenerationStepSql =
-			"select ColumnGenerationStep, CompressionMode " +
-			"from "+this.getTableName()+" " +
-			"WHERE DetailLevel = ? AND PosX = ? AND PosZ = ?";
-	/** @return null if nothing exists for this position */
-	public void getColumnGenerationStepForPos(long pos, ByteArrayList outputByteArray)
+	//==============================//
+	// mapping dictionary migration //
+	//==============================//
+	
+	/** rows before this are already converted, only accessed by the migration thread */
+	private long mappingMigrationLastRowId = 0;
+	
+	private final String getRowsWithoutMappingDictionarySql =
+			"SELECT rowid, DetailLevel, PosX, PosZ, Mapping, CompressionMode, DataFormatVersion, LastModifiedUnixDateTime " +
+			"FROM " + this.getTableName() + " " +
+			"WHERE rowid > ? AND (DataFormatVersion & " + FullDataSourceV2DTO.MAPPING_DICTIONARY_FLAG + ") = 0 " +
+			"ORDER BY rowid LIMIT ?;";
+	/** the last modified time is checked so data that was saved since it was read won't be overwritten */
+	private final String updateMappingSql =
+			"UPDATE " + this.getTableName() + " " +
+			"SET Mapping = ?, DataFormatVersion = ? " +
+			"WHERE DetailLevel = ? AND PosX = ? AND PosZ = ? AND LastModifiedUnixDateTime = ?;";
+	
+	/**
+	 * Converts the next batch of rows saved before the {@link FullDataMappingDictionaryCache} existed
+	 * so their mapping only contains dictionary IDs. <br>
+	 * Only the mapping and data format are changed, so the last modified time stays the same
+	 * and multiplayer clients won't re-download the converted data. <br><br>
+	 * 
+	 * Should only be called from a single thread.
+	 * 
+	 * @return the number of converted rows, -1 if every row has been checked
+	 */
+	public int convertNextMappingBatchToDictionary(int batchSize)
 	{
-		PreparedStatement statement = this.createPreparedStatement(this.getColumnGenerationStepSql);
-		if (statement == null)
+		ArrayList<MappingConversion> conversionList = new ArrayList<>(batchSize);
+		int readCount;
+		try
 		{
-			return;
+			Integer nullableReadCount = this.runReadQuery(this.getRowsWithoutMappingDictionarySql, (statement) ->
+			{
+				int rowCount = 0;
+				
+				int i = 1;
+				statement.setLong(i++, this.mappingMigrationLastRowId);
+				statement.setInt(i++, batchSize);
+				
+				try (ResultSet result = this.query(statement))
+				{
+					while (result != null && result.next())
+					{
+						rowCount++;
+						this.mappingMigrationLastRowId = result.getLong("rowid");
+						
+						byte sectionDetailLevel = (byte) (result.getByte("DetailLevel") + DhSectionPos.SECTION_MINIMUM_DETAIL_LEVEL);
+						long pos = DhSectionPos.encode(sectionDetailLevel, result.getInt("PosX"), result.getInt("PosZ"));
+						
+						byte[] mappingBytes;
+						try
+						{
+							mappingBytes = FullDataSourceV2DTO.convertMappingBlobToDictionaryIds(result.getBinaryStream("Mapping"), result.getByte("CompressionMode"), this.compressionDictionaries, this.mappingDictionary);
+						}
+						catch (IOException | DataCorruptedException e)
+						{
+							// corrupt data will be handled when it's next loaded
+							LOGGER.warn("Unable to convert mapping for pos: [" + DhSectionPos.toString(pos) + "], error: ["+e.getMessage()+"].");
+							continue;
+						}
+						
+						if (mappingBytes != null)
+						{
+							byte dataFormatVersion = FullDataSourceV2DTO.createDataFormatVersionValue(result.getByte("DataFormatVersion"), true);
+							conversionList.add(new MappingConversion(pos, mappingBytes, dataFormatVersion, result.getLong("LastModifiedUnixDateTime")));
+						}
+					}
+				}
+				return rowCount;
+			});
+			
+			// null if the database was closed
+			readCount = (nullableReadCount != null) ? nullableReadCount : 0;
+		}
+		catch (SQLException | IOException e)
+		{
+			LOGGER.error("Unable to read mappings for conversion, error: ["+e.getMessage()+"].", e);
+			return -1;
+		}
+		
+		if (readCount == 0)
+		{
+			// every row has been checked
+			return -1;
+		}
+		else if (conversionList.isEmpty())
+		{
+			// none of the rows in this batch could be converted
+			return 0;
 		}
 		
 		
-		try
+		PreparedStatement statement = this.createPreparedStatement(this.updateMappingSql);
+		if (statement == null)
 		{
-			int detailLevel = DhSectionPos.getDetailLevel(pos) - DhSectionPos.SECTION_MINIMUM_DETAIL_LEVEL;
-			
-			
-			
-			int i = 1;
-			statement.setInt(i++, detailLevel);
-			statement.setInt(i++, DhSectionPos.getX(pos));
-			statement.setInt(i++, DhSectionPos.getZ(pos));
-			
-			
-			try (ResultSet result = this.query(statement))
+			// the database was closed
+			return -1;
+		}
+		
+		for (MappingConversion conversion : conversionList)
+		{
+			try
 			{
-				if (result == null || !result.next())
-				{
-					return;
-				}
+				int i = 1;
+				statement.setBytes(i++, conversion.mappingBytes);
+				statement.setByte(i++, conversion.dataFormatVersion);
 				
+				int detailLevel = DhSectionPos.getDetailLevel(conversion.pos) - DhSectionPos.SECTION_MINIMUM_DETAIL_LEVEL;
+				statement.setInt(i++, detailLevel);
+				statement.setInt(i++, DhSectionPos.getX(conversion.pos));
+				statement.setInt(i++, DhSectionPos.getZ(conversion.pos));
+				statement.setLong(i++, conversion.lastModifiedUnixDateTime);
 				
-				byte compressionModeEnumValue = result.getByte("CompressionMode");
-				EDhApiDataCompressionMode compressionModeEnum = EDhApiDataCompressionMode.getFromValue(compressionModeEnumValue);
-				
-				try
-				{
-					// decompress the data
-					DhDataInputStream compressedIn = new DhDataInputStream(result.getBinaryStream("ColumnGenerationStep"), compressionModeEnum);
-					putAllBytes(compressedIn, outputByteArray);
-				}
-				catch (IOException e)
+				statement.executeUpdate();
+			}
+			catch (SQLException e)
+			{
+				if (DbConnectionClosedException.isClosedException(e))
 				{
-					LOGGER.warn("Decompression issue when getting column gen steps for pos: [" + DhSectionPos.toString(pos) + "], deleting corrupted data.", e);
-					
-					this.deleteWithKey(pos);
-					ListUtil.clearAndSetSize(outputByteArray, FullDataSourceV2.WIDTH * FullDataSourceV2.WIDTH);
+					return -1;
 				}
+				
+				LOGGER.warn("Unable to save converted mapping for pos: [" + DhSectionPos.toString(conversion.pos) + "], error: ["+e.getMessage()+"].");
 			}
 		}
-		catch (SQLException e)
+		
+		return conversionList.size();
+	}
+	private static class MappingConversion
+	{
+		public final long pos;
+		public final byte[] mappingBytes;
+		public final byte dataFormatVersion;
+		public final long lastModifiedUnixDateTime;
+		
+		public MappingConversion(long pos, byte[] mappingBytes, byte dataFormatVersion, long lastModifiedUnixDateTime)
 		{
-			throw new RuntimeException(e);
+			this.pos = pos;
+			this.mappingBytes = mappingBytes;
+			this.dataFormatVersion = dataFormatVersion;
+			this.lastModifiedUnixDateTime = lastModifiedUnixDateTime;
 		}
 	}
 	
@@ -445,38 +889,42 @@ public class FullDataSourceV2Repo extends AbstractDhRepo<Long, FullDataSourceV2D
 			"WHERE DetailLevel = ? " +
 			"AND PosX = ? " +
 			"AND PosZ = ?;";
+	@Override
 	@Nullable
 	public Long getTimestampForPos(long pos)
 	{
+		Long queuedTimestamp = this.writeQueue.runForQueuedDto(pos, false, (dto) -> (dto != null) ? dto.lastModifiedUnixDateTime : null);
+		if (queuedTimestamp != null)
+		{
+			return queuedTimestamp;
+		}
+		
+		
 		try
 		{
-			PreparedStatement preparedStatement = this.createPreparedStatement(this.getTimestampForPosSql);
-			if (preparedStatement == null)
+			return this.runReadQuery(this.getTimestampForPosSql, (preparedStatement) ->
 			{
-				return null;
-			}
-			
-			
-			int i = 1;
-			preparedStatement.setInt(i++, DhSectionPos.getDetailLevel(pos) - DhSectionPos.SECTION_MINIMUM_DETAIL_LEVEL);
-			preparedStatement.setInt(i++, DhSectionPos.getX(pos));
-			preparedStatement.setInt(i++, DhSectionPos.getZ(pos));
-			
-			try (ResultSet result = this.query(preparedStatement))
-			{
-				if (result == null || !result.next())
+				int i = 1;
+				preparedStatement.setInt(i++, DhSectionPos.getDetailLevel(pos) - DhSectionPos.SECTION_MINIMUM_DETAIL_LEVEL);
+				preparedStatement.setInt(i++, DhSectionPos.getX(pos));
+				preparedStatement.setInt(i++, DhSectionPos.getZ(pos));
+				
+				try (ResultSet result = this.query(preparedStatement))
 				{
-					return null;
+					if (result == null || !result.next())
+					{
+						return null;
+					}
+					
+					return result.getLong("LastModifiedUnixDateTime");
 				}
-				
-				return result.getLong("LastModifiedUnixDateTime");
-			}
+			});
 		}
 		catch (DbConnectionClosedException e)
 		{
 			return null;
 		}
-		catch (SQLException e)
+		catch (SQLException | IOException e)
 		{
 			throw new RuntimeException(e);
 		}
@@ -488,43 +936,111 @@ public class FullDataSourceV2Repo extends AbstractDhRepo<Long, FullDataSourceV2D
 			"WHERE DetailLevel = ? " +
 			"AND PosX BETWEEN ? AND ? " +
 			"AND PosZ BETWEEN ? AND ?;";
+	@Override
 	public Map<Long, Long> getTimestampsForRange(byte detailLevel, int startPosX, int startPosZ, int endPosX, int endPosZ)
 	{
+		HashMap<Long, Long> returnMap = new HashMap<>();
 		try
 		{
-			PreparedStatement preparedStatement = this.createPreparedStatement(this.getTimestampForRangeSql);
-			if (preparedStatement == null)
+			this.runReadQuery(this.getTimestampForRangeSql, (preparedStatement) ->
 			{
-				return new HashMap<>();
+				int i = 1;
+				preparedStatement.setInt(i++, detailLevel - DhSectionPos.SECTION_MINIMUM_DETAIL_LEVEL);
+				preparedStatement.setInt(i++, startPosX);
+				preparedStatement.setInt(i++, endPosX - 1);
+				preparedStatement.setInt(i++, startPosZ);
+				preparedStatement.setInt(i++, endPosZ - 1);
+				
+				
+				try (ResultSet result = this.query(preparedStatement))
+				{
+					while (result != null && result.next())
+					{
+						long key = DhSectionPos.encode(detailLevel, result.getInt("PosX"), result.getInt("PosZ"));
+						long value = result.getLong("LastModifiedUnixDateTime");
+						
+						returnMap.put(key, value);
+					}
+				}
+				return null;
+			});
+		}
+		catch (SQLException | IOException e)
+		{
+			throw new RuntimeException(e);
+		}
+		
+		// queued data will be newer than the database
+		this.writeQueue.forEachQueuedDto((dto) ->
+		{
+			int posX = DhSectionPos.getX(dto.pos);
+			int posZ = DhSectionPos.getZ(dto.pos);
+			if (DhSectionPos.getDetailLevel(dto.pos) == detailLevel
+				&& posX >= startPosX && posX < endPosX
+				&& posZ >= startPosZ && posZ < endPosZ)
+			{
+				returnMap.put(dto.pos, dto.lastModifiedUnixDateTime);
 			}
-			
-			
-			int i = 1;
-			preparedStatement.setInt(i++, detailLevel - DhSectionPos.SECTION_MINIMUM_DETAIL_LEVEL);
-			preparedStatement.setInt(i++, startPosX);
-			preparedStatement.setInt(i++, endPosX - 1);
-			preparedStatement.setInt(i++, startPosZ);
-			preparedStatement.setInt(i++, endPosZ - 1);
-			
-			
-			try (ResultSet result = this.query(preparedStatement))
+		});
+		
+		return returnMap;
+	}
+	
+	private final String getMinGenerationStepForRangeSql =
+			"SELECT PosX, PosZ, MinGenerationStep " +
+			"FROM " + this.getTableName() + " " +
+			"WHERE DetailLevel = ? " +
+			"AND PosX BETWEEN ? AND ? " +
+			"AND PosZ BETWEEN ? AND ?;";
+	@Override
+	public Map<Long, Byte> getMinGenerationStepsForRange(byte detailLevel, int startPosX, int startPosZ, int endPosX, int endPosZ)
+	{
+		HashMap<Long, Byte> returnMap = new HashMap<>();
+		try
+		{
+			// only touches FullDataMinGenerationStepIndex, the data blobs are never read
+			this.runReadQuery(this.getMinGenerationStepForRangeSql, (preparedStatement) ->
 			{
-				HashMap<Long, Long> returnMap = new HashMap<>();
-				while (result != null && result.next())
+				int i = 1;
+				preparedStatement.setInt(i++, detailLevel - DhSectionPos.SECTION_MINIMUM_DETAIL_LEVEL);
+				preparedStatement.setInt(i++, startPosX);
+				preparedStatement.setInt(i++, endPosX - 1);
+				preparedStatement.setInt(i++, startPosZ);
+				preparedStatement.setInt(i++, endPosZ - 1);
+				
+				
+				try (ResultSet result = this.query(preparedStatement))
 				{
-					long key = DhSectionPos.encode(detailLevel, result.getInt("PosX"), result.getInt("PosZ"));
-					long value = result.getLong("LastModifiedUnixDateTime");
-					
-					returnMap.put(key, value);
+					while (result != null && result.next())
+					{
+						long key = DhSectionPos.encode(detailLevel, result.getInt("PosX"), result.getInt("PosZ"));
+						byte value = result.getByte("MinGenerationStep");
+						
+						returnMap.put(key, result.wasNull() ? null : value);
+					}
 				}
-				
-				return returnMap;
-			}
+				return null;
+			});
 		}
-		catch (SQLException e)
+		catch (SQLException | IOException e)
 		{
 			throw new RuntimeException(e);
 		}
+		
+		// queued data will be newer than the database
+		this.writeQueue.forEachQueuedDto((dto) ->
+		{
+			int posX = DhSectionPos.getX(dto.pos);
+			int posZ = DhSectionPos.getZ(dto.pos);
+			if (DhSectionPos.getDetailLevel(dto.pos) == detailLevel
+				&& posX >= startPosX && posX < endPosX
+				&& posZ >= startPosZ && posZ < endPosZ)
+			{
+				returnMap.put(dto.pos, dto.minGenerationStep);
+			}
+		});
+		
+		return returnMap;
 	}
 	
 	
@@ -537,8 +1053,11 @@ public class FullDataSourceV2Repo extends AbstractDhRepo<Long, FullDataSourceV2D
 			"select DetailLevel, PosX, PosZ " +
 			"from "+this.getTableName()+"; ";
 	/** @return every position in this database */
+	@Override
 	public LongArrayList getAllPositions()
 	{
+		this.writeQueue.flush();
+		
 		LongArrayList list = new LongArrayList();
 		
 		PreparedStatement statement = this.createPreparedStatement(this.getAllPositionsSql);
@@ -578,35 +1097,40 @@ public class FullDataSourceV2Repo extends AbstractDhRepo<Long, FullDataSourceV2D
 	 * @return the size of the full data at the given position 
 	 *          (doesn't include the size of the mapping or any other column)
 	 */
+	@Override
 	public long getDataSizeInBytes(long pos)
 	{
-		int detailLevel = DhSectionPos.getDetailLevel(pos) - DhSectionPos.SECTION_MINIMUM_DETAIL_LEVEL;
-		
-		PreparedStatement statement = this.createPreparedStatement(this.getDataSizeInBytesSql);
-		if (statement == null)
+		Long queuedSize = this.writeQueue.runForQueuedDto(pos, false, (dto) -> (dto != null) ? (long) dto.compressedDataByteArray.size() : null);
+		if (queuedSize != null)
 		{
-			return 0L;
+			return queuedSize;
 		}
 		
+		int detailLevel = DhSectionPos.getDetailLevel(pos) - DhSectionPos.SECTION_MINIMUM_DETAIL_LEVEL;
+		
 		try
 		{
-			int i = 1;
-			statement.setInt(i++, detailLevel);
-			statement.setInt(i++, DhSectionPos.getX(pos));
-			statement.setInt(i++, DhSectionPos.getZ(pos));
-			
-			
-			try (ResultSet result = this.query(statement)) // TODO check other query's
+			Long dataSize = this.runReadQuery(this.getDataSizeInBytesSql, (statement) ->
 			{
-				if (result == null || !result.next())
+				int i = 1;
+				statement.setInt(i++, detailLevel);
+				statement.setInt(i++, DhSectionPos.getX(pos));
+				statement.setInt(i++, DhSectionPos.getZ(pos));
+				
+				
+				try (ResultSet result = this.query(statement)) // TODO check other query's
 				{
-					return 0L;
+					if (result == null || !result.next())
+					{
+						return 0L;
+					}
+					
+					return result.getLong("dataSize");
 				}
-				
-				return result.getLong("dataSize");
-			}
+			});
+			return (dataSize != null) ? dataSize : 0L;
 		}
-		catch (SQLException e)
+		catch (SQLException | IOException e)
 		{
 			throw new RuntimeException(e);
 		}
@@ -618,6 +1142,8 @@ public class FullDataSourceV2Repo extends AbstractDhRepo<Long, FullDataSourceV2D
 	/** @return the total size in bytes of the full data for this entire database */
 	public long getTotalDataSizeInBytes()
 	{
+		this.writeQueue.flush();
+		
 		PreparedStatement statement = this.createPreparedStatement(this.getTotalDataSizeInBytesSql);
 		
 		try(ResultSet result = this.query(statement))
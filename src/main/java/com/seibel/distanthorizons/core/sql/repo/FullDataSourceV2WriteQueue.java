@@ -0,0 +1,786 @@
+/*
+ *    This file is part of the Distant Horizons mod
+ *    licensed under the GNU LGPL v3 License.
+ *
+ *    Copyright (C) 2020 James Seibel
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, version 3.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public License
+ *    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.seibel.distanthorizons.core.sql.repo;
+
+import com.seibel.distanthorizons.core.logging.DhLoggerBuilder;
+import com.seibel.distanthorizons.core.logging.f3.F3Screen;
+import com.seibel.distanthorizons.core.pos.DhSectionPos;
+import com.seibel.distanthorizons.core.sql.DbConnectionClosedException;
+import com.seibel.distanthorizons.core.sql.dto.FullDataSourceV2DTO;
+import com.seibel.distanthorizons.core.util.KeyedLockContainer;
+import com.seibel.distanthorizons.core.util.ThreadUtil;
+import com.seibel.distanthorizons.core.util.objects.RollingAverage;
+import org.apache.logging.log4j.Logger;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.ArrayDeque;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Write-behind stage for {@link FullDataSourceV2Repo}. <br><br>
+ *
+ * Instead of running an exists + insert/update and auto-commit for every save,
+ * saved {@link FullDataSourceV2DTO}'s are queued here and committed in batches
+ * using a single upsert transaction. <br>
+ * Repeated saves to the same position before a commit are coalesced so only
+ * the newest DTO is written. <br><br>
+ *
+ * Apply to parent/children flag changes for positions without a queued DTO
+ * are also queued here and committed before the next batch of DTOs. <br>
+ * Writes that depend on the queued data (IE chunk hashes) can be queued with
+ * {@link FullDataSourceV2WriteQueue#runAfterCommit(Runnable)}. <br><br>
+ *
+ * Queued DTOs are owned by this queue and will be closed once they've been committed
+ * (or replaced by a newer DTO). <br>
+ * If a batch fails each DTO is retried individually,
+ * and any that still fail are queued again for the next commit. <br>
+ * The repo checks this queue before hitting the database so readers
+ * will always see the newest data, committed or not.
+ *
+ * @see FullDataSourceV2Repo
+ */
+public class FullDataSourceV2WriteQueue implements AutoCloseable
+{
+	private static final Logger LOGGER = DhLoggerBuilder.getLogger();
+	
+	/** the max number of DTOs that will be written in a single transaction */
+	public static final int MAX_BATCH_SIZE = 128;
+	/**
+	 * If this many DTOs are waiting the queuing thread will commit them itself. <br>
+	 * This prevents memory from growing indefinitely if the database can't keep up.
+	 */
+	public static final int MAX_PENDING_COUNT = MAX_BATCH_SIZE * 4;
+	/** the longest a DTO should wait before being committed */
+	public static final int MAX_COMMIT_DELAY_IN_MS = 250;
+	/** 
+	 * how many commits a DTO can fail before it's dropped, 
+	 * prevents a DTO the database will never accept from being retried forever 
+	 */
+	public static final int MAX_COMMIT_ATTEMPT_COUNT = 5;
+	
+	
+	private final FullDataSourceV2Repo repo;
+	
+	/** DTOs that are waiting to be committed */
+	private final ConcurrentHashMap<Long, FullDataSourceV2DTO> pendingDtoByPos = new ConcurrentHashMap<>();
+	/**
+	 * DTOs that are currently being written to the database. <br>
+	 * These are kept so readers can still see them until the transaction has finished.
+	 */
+	private final ConcurrentHashMap<Long, FullDataSourceV2DTO> committingDtoByPos = new ConcurrentHashMap<>();
+	/**
+	 * Flag changes for positions that didn't have a queued DTO when the flag was set. <br>
+	 * Entries are only removed after they've been committed so readers can always find them.
+	 */
+	private final ConcurrentHashMap<Long, Boolean> pendingApplyToParentByPos = new ConcurrentHashMap<>();
+	/** @see FullDataSourceV2WriteQueue#pendingApplyToParentByPos */
+	private final ConcurrentHashMap<Long, Boolean> pendingApplyToChildrenByPos = new ConcurrentHashMap<>();
+	/** 
+	 * Tasks waiting for every DTO queued before them to be committed, oldest first. <br>
+	 * Must be synchronized on when used.
+	 */
+	private final ArrayDeque<Runnable> afterCommitTaskQueue = new ArrayDeque<>();
+	
+	/**
+	 * Must be held when moving or closing a DTO for a given position,
+	 * this prevents readers from using a DTO that has been returned to the pool.
+	 */
+	private final KeyedLockContainer<Long> posLockContainer = new KeyedLockContainer<>();
+	/** only one batch can be committed at a time */
+	private final ReentrantLock commitLock = new ReentrantLock();
+	/** only accessed while the {@link FullDataSourceV2WriteQueue#commitLock} is held */
+	private final HashMap<Long, Integer> failedCommitCountByPos = new HashMap<>();
+	/** used to wake up the commit thread early when a full batch is ready */
+	private final Object commitSignalObj = new Object();
+	
+	private final ThreadPoolExecutor commitThread;
+	private volatile boolean running = true;
+	
+	
+	// metrics //
+	
+	private final RollingAverage rollingAverageBatchSize = new RollingAverage(200);
+	private final RollingAverage rollingAverageCommitTimeInMs = new RollingAverage(200);
+	private final AtomicLong committedDtoCount = new AtomicLong(0);
+	private final AtomicLong coalescedDtoCount = new AtomicLong(0);
+	private final AtomicLong committedFlagCount = new AtomicLong(0);
+	private final AtomicLong retriedDtoCount = new AtomicLong(0);
+	private final AtomicLong droppedDtoCount = new AtomicLong(0);
+	
+	
+	
+	//=============//
+	// constructor //
+	//=============//
+	
+	public FullDataSourceV2WriteQueue(FullDataSourceV2Repo repo)
+	{
+		this.repo = repo;
+		
+		this.commitThread = ThreadUtil.makeSingleDaemonThreadPool("Full Data Write Queue [" + repo.databaseFile.getName() + "]");
+		this.commitThread.execute(this::runCommitLoop);
+	}
+	
+	
+	
+	//=========//
+	// queuing //
+	//=========//
+	
+	/**
+	 * Ownership of the DTO is passed to this queue,
+	 * the caller shouldn't use or close the DTO after calling this method.
+	 */
+	public void queue(FullDataSourceV2DTO dto)
+	{
+		if (!this.running)
+		{
+			// the queue has been closed, nothing can be written
+			dto.close();
+			return;
+		}
+		
+		// the DTO may wait a bit before being written,
+		// so the timestamp needs to be set when the save was requested
+		dto.lastModifiedUnixDateTime = System.currentTimeMillis();
+		
+		
+		FullDataSourceV2DTO replacedDto;
+		ReentrantLock posLock = this.posLockContainer.getLockForPos(dto.pos);
+		try
+		{
+			posLock.lock();
+			
+			replacedDto = this.pendingDtoByPos.put(dto.pos, dto);
+			if (!this.running)
+			{
+				// the queue was closed while this DTO was being queued,
+				// checking after the put means close() will either see this DTO in its final sweep
+				// or this method will see that the queue was closed and reject the DTO
+				if (replacedDto != null)
+				{
+					// the replaced DTO was queued before closing and is left for close() to handle
+					this.pendingDtoByPos.put(dto.pos, replacedDto);
+				}
+				else
+				{
+					this.pendingDtoByPos.remove(dto.pos);
+				}
+				
+				dto.close();
+				return;
+			}
+			
+			if (replacedDto != null)
+			{
+				// null flags mean "don't change the DB value",
+				// so any flag set by the replaced DTO still needs to be written
+				if (dto.applyToParent == null)
+				{
+					dto.applyToParent = replacedDto.applyToParent;
+				}
+				if (dto.applyToChildren == null)
+				{
+					dto.applyToChildren = replacedDto.applyToChildren;
+				}
+				
+				replacedDto.close();
+			}
+		}
+		finally
+		{
+			posLock.unlock();
+		}
+		
+		if (replacedDto != null)
+		{
+			this.coalescedDtoCount.incrementAndGet();
+		}
+		
+		
+		int pendingCount = this.pendingDtoByPos.size();
+		if (pendingCount >= MAX_PENDING_COUNT)
+		{
+			// back pressure, the commit thread isn't keeping up
+			this.flush();
+		}
+		else if (pendingCount >= MAX_BATCH_SIZE)
+		{
+			synchronized (this.commitSignalObj)
+			{
+				this.commitSignalObj.notifyAll();
+			}
+		}
+	}
+	
+	
+	
+	/**
+	 * If a DTO is queued for the given position the flag is set on it,
+	 * otherwise the flag change is queued by itself.
+	 */
+	public void queueApplyToFlag(long pos, boolean applyToParent, boolean value)
+	{
+		this.runForQueuedDto(pos, false, (queuedDto) ->
+		{
+			if (queuedDto != null && this.pendingDtoByPos.get(pos) == queuedDto)
+			{
+				if (applyToParent)
+				{
+					queuedDto.applyToParent = value;
+				}
+				else
+				{
+					queuedDto.applyToChildren = value;
+				}
+			}
+			else
+			{
+				// the DTO is either missing or already being written,
+				// either way the flag will be committed after it
+				ConcurrentHashMap<Long, Boolean> pendingFlagByPos = applyToParent ? this.pendingApplyToParentByPos : this.pendingApplyToChildrenByPos;
+				pendingFlagByPos.put(pos, value);
+				if (!this.running)
+				{
+					// the queue was closed while this flag was being queued,
+					// if close() already committed the flags this one would never be written
+					pendingFlagByPos.remove(pos, value);
+				}
+			}
+			return null;
+		});
+	}
+	
+	
+	
+	/**
+	 * Runs the given task on the commit thread once every DTO queued before this call has been committed. <br>
+	 * Used for writes that must not reach the database before the data they describe. <br><br>
+	 * 
+	 * If any of those DTOs are dropped the task is discarded instead,
+	 * so it should only contain writes that are safe to lose.
+	 */
+	public void runAfterCommit(Runnable task)
+	{
+		synchronized (this.afterCommitTaskQueue)
+		{
+			this.afterCommitTaskQueue.addLast(task);
+		}
+		
+		if (!this.running)
+		{
+			// the commit thread has stopped, so nothing else will run the task
+			this.flush();
+		}
+	}
+	
+	
+	
+	//=========//
+	// reading //
+	//=========//
+	
+	/**
+	 * Runs the given function while the position is locked,
+	 * which prevents the queued DTO from being committed or closed while it's in use. <br>
+	 * The DTO passed into the function must not be kept after the function returns. <br><br>
+	 *
+	 * The function will be passed null if nothing is queued for the given position.
+	 *
+	 * @param waitForCommit if true and the position is currently being committed
+	 *                      this will wait until that commit finishes before running the function,
+	 *                      this should be used when the function writes directly to the database.
+	 */
+	public <T> T runForQueuedDto(long pos, boolean waitForCommit, Function<FullDataSourceV2DTO, T> func)
+	{
+		ReentrantLock posLock = this.posLockContainer.getLockForPos(pos);
+		while (true)
+		{
+			try
+			{
+				posLock.lock();
+				
+				FullDataSourceV2DTO dto = this.pendingDtoByPos.get(pos);
+				if (dto != null)
+				{
+					return func.apply(dto);
+				}
+				
+				dto = this.committingDtoByPos.get(pos);
+				if (dto == null || !waitForCommit)
+				{
+					return func.apply(dto);
+				}
+			}
+			finally
+			{
+				posLock.unlock();
+			}
+			
+			
+			// wait for the in-progress commit to finish, then try again
+			try
+			{
+				this.commitLock.lock();
+			}
+			finally
+			{
+				this.commitLock.unlock();
+			}
+		}
+	}
+	
+	/** 
+	 * Overrides the DTO's flags with any queued flag changes,
+	 * should be used for DTOs read directly from the database.
+	 */
+	public void applyPendingFlags(FullDataSourceV2DTO dto)
+	{
+		Boolean applyToParent = this.pendingApplyToParentByPos.get(dto.pos);
+		if (applyToParent != null)
+		{
+			dto.applyToParent = applyToParent;
+		}
+		
+		Boolean applyToChildren = this.pendingApplyToChildrenByPos.get(dto.pos);
+		if (applyToChildren != null)
+		{
+			dto.applyToChildren = applyToChildren;
+		}
+	}
+	
+	/** @return true if a pending DTO was removed */
+	public boolean removePending(long pos)
+	{
+		return this.runForQueuedDto(pos, true, (dto) ->
+		{
+			// flag changes for deleted data are no longer needed
+			this.pendingApplyToParentByPos.remove(pos);
+			this.pendingApplyToChildrenByPos.remove(pos);
+			
+			if (dto == null)
+			{
+				return false;
+			}
+			
+			this.pendingDtoByPos.remove(pos);
+			dto.close();
+			return true;
+		});
+	}
+	
+	/**
+	 * Note: the DTOs may be closed while or after this runs,
+	 * so only the DTO's primitive fields (IE the position and timestamps) should be read.
+	 */
+	public void forEachQueuedDto(Consumer<FullDataSourceV2DTO> consumer)
+	{
+		this.committingDtoByPos.values().forEach(consumer);
+		this.pendingDtoByPos.values().forEach(consumer);
+	}
+	
+	
+	
+	//============//
+	// committing //
+	//============//
+	
+	private void runCommitLoop()
+	{
+		while (this.running)
+		{
+			try
+			{
+				synchronized (this.commitSignalObj)
+				{
+					if (this.pendingDtoByPos.size() < MAX_BATCH_SIZE)
+					{
+						this.commitSignalObj.wait(MAX_COMMIT_DELAY_IN_MS);
+					}
+				}
+				
+				this.flush();
+			}
+			catch (InterruptedException ignore)
+			{
+				return;
+			}
+			catch (Exception e)
+			{
+				LOGGER.error("Unexpected error in full data write queue, error: [" + e.getMessage() + "].", e);
+			}
+		}
+	}
+	
+	/**
+	 * Commits everything that's currently queued. <br>
+	 * When this method returns, every DTO queued before it was called will either be in the database
+	 * or, if it couldn't be written, queued again for the next commit.
+	 */
+	public void flush()
+	{
+		try
+		{
+			this.commitLock.lock();
+			
+			// any task queued after this point may depend on DTOs
+			// queued after this flush started
+			int readyTaskCount;
+			synchronized (this.afterCommitTaskQueue)
+			{
+				readyTaskCount = this.afterCommitTaskQueue.size();
+			}
+			
+			// flags are committed first so any DTO queued after a flag was set
+			// will overwrite that flag
+			this.commitPendingFlags();
+			
+			ArrayList<FullDataSourceV2DTO> batch = new ArrayList<>(Math.min(this.pendingDtoByPos.size(), MAX_BATCH_SIZE));
+			ArrayList<FullDataSourceV2DTO> failedDtoList = new ArrayList<>();
+			for (Long pos : this.pendingDtoByPos.keySet())
+			{
+				ReentrantLock posLock = this.posLockContainer.getLockForPos(pos);
+				try
+				{
+					posLock.lock();
+					
+					FullDataSourceV2DTO dto = this.pendingDtoByPos.get(pos);
+					if (dto != null)
+					{
+						// the DTO is added to the committing map first so readers can always find it
+						this.committingDtoByPos.put(pos, dto);
+						this.pendingDtoByPos.remove(pos);
+						batch.add(dto);
+					}
+				}
+				finally
+				{
+					posLock.unlock();
+				}
+				
+				if (batch.size() >= MAX_BATCH_SIZE)
+				{
+					this.commitBatch(batch, failedDtoList);
+					batch.clear();
+				}
+			}
+			
+			if (!batch.isEmpty())
+			{
+				this.commitBatch(batch, failedDtoList);
+			}
+			
+			// failed DTOs are re-queued after every batch has been committed
+			// so they aren't retried again during this flush
+			boolean dtoDropped = this.requeueFailedDtos(failedDtoList);
+			if (failedDtoList.isEmpty() || dtoDropped)
+			{
+				this.runAfterCommitTasks(readyTaskCount, !dtoDropped);
+			}
+			// otherwise the tasks will wait for the re-queued DTOs
+		}
+		finally
+		{
+			this.commitLock.unlock();
+		}
+	}
+	private void commitPendingFlags()
+	{
+		if (this.pendingApplyToParentByPos.isEmpty()
+			&& this.pendingApplyToChildrenByPos.isEmpty())
+		{
+			return;
+		}
+		
+		HashMap<Long, Boolean> applyToParentByPos = new HashMap<>(this.pendingApplyToParentByPos);
+		HashMap<Long, Boolean> applyToChildrenByPos = new HashMap<>(this.pendingApplyToChildrenByPos);
+		try
+		{
+			this.repo.updateApplyToFlagBatch(applyToParentByPos, applyToChildrenByPos);
+			this.committedFlagCount.addAndGet(applyToParentByPos.size() + applyToChildrenByPos.size());
+		}
+		catch (SQLException e)
+		{
+			if (!DbConnectionClosedException.isClosedException(e))
+			{
+				LOGGER.error("Unable to commit [" + (applyToParentByPos.size() + applyToChildrenByPos.size()) + "] update flags to [" + this.repo.databaseFile + "], error: [" + e.getMessage() + "].", e);
+			}
+		}
+		finally
+		{
+			// only remove the flags that weren't changed while committing
+			applyToParentByPos.forEach(this.pendingApplyToParentByPos::remove);
+			applyToChildrenByPos.forEach(this.pendingApplyToChildrenByPos::remove);
+		}
+	}
+	
+	/** @param failedDtoList DTOs that couldn't be written will be added to this list */
+	private void commitBatch(ArrayList<FullDataSourceV2DTO> batch, ArrayList<FullDataSourceV2DTO> failedDtoList)
+	{
+		long startTimeMs = System.currentTimeMillis();
+		try
+		{
+			this.repo.upsertBatch(batch);
+			
+			this.committedDtoCount.addAndGet(batch.size());
+			this.rollingAverageBatchSize.addValue(batch.size());
+			this.rollingAverageCommitTimeInMs.addValue(System.currentTimeMillis() - startTimeMs);
+			
+			for (int i = 0; i < batch.size(); i++)
+			{
+				this.releaseCommittedDto(batch.get(i));
+			}
+			return;
+		}
+		catch (SQLException e)
+		{
+			if (DbConnectionClosedException.isClosedException(e))
+			{
+				// the database is gone, nothing more can be done with these DTOs
+				for (int i = 0; i < batch.size(); i++)
+				{
+					this.releaseCommittedDto(batch.get(i));
+				}
+				return;
+			}
+			
+			LOGGER.warn("Unable to commit [" + batch.size() + "] full data sources to [" + this.repo.databaseFile + "], retrying them individually. Error: [" + e.getMessage() + "].", e);
+		}
+		
+		
+		// fall back to individual upserts
+		// so a single bad DTO doesn't prevent the rest of the batch from being written
+		for (int i = 0; i < batch.size(); i++)
+		{
+			FullDataSourceV2DTO dto = batch.get(i);
+			try
+			{
+				this.repo.upsertBatch(Collections.singletonList(dto));
+				this.committedDtoCount.incrementAndGet();
+				this.releaseCommittedDto(dto);
+			}
+			catch (SQLException e)
+			{
+				if (DbConnectionClosedException.isClosedException(e))
+				{
+					this.releaseCommittedDto(dto);
+				}
+				else
+				{
+					LOGGER.warn("Unable to commit full data source [" + DhSectionPos.toString(dto.pos) + "] to [" + this.repo.databaseFile + "], error: [" + e.getMessage() + "].");
+					failedDtoList.add(dto);
+				}
+			}
+		}
+	}
+	/** Removes the DTO from the queue and closes it, should be called once it's been written (or can't be). */
+	private void releaseCommittedDto(FullDataSourceV2DTO dto)
+	{
+		this.failedCommitCountByPos.remove(dto.pos);
+		
+		ReentrantLock posLock = this.posLockContainer.getLockForPos(dto.pos);
+		try
+		{
+			posLock.lock();
+			
+			this.committingDtoByPos.remove(dto.pos, dto);
+			dto.close();
+		}
+		finally
+		{
+			posLock.unlock();
+		}
+	}
+	/** 
+	 * Puts each failed DTO back in the pending queue, 
+	 * unless it has failed too many times or a newer DTO was queued in the meantime.
+	 * 
+	 * @return true if any DTO was dropped
+	 */
+	private boolean requeueFailedDtos(ArrayList<FullDataSourceV2DTO> failedDtoList)
+	{
+		boolean dtoDropped = false;
+		for (int i = 0; i < failedDtoList.size(); i++)
+		{
+			FullDataSourceV2DTO dto = failedDtoList.get(i);
+			int failedCount = this.failedCommitCountByPos.merge(dto.pos, 1, Integer::sum);
+			
+			ReentrantLock posLock = this.posLockContainer.getLockForPos(dto.pos);
+			try
+			{
+				posLock.lock();
+				
+				this.committingDtoByPos.remove(dto.pos, dto);
+				
+				FullDataSourceV2DTO newerDto = this.pendingDtoByPos.get(dto.pos);
+				if (newerDto != null)
+				{
+					// the newer DTO replaces the failed one,
+					// but any flag it doesn't set still needs to be written
+					if (newerDto.applyToParent == null)
+					{
+						newerDto.applyToParent = dto.applyToParent;
+					}
+					if (newerDto.applyToChildren == null)
+					{
+						newerDto.applyToChildren = dto.applyToChildren;
+					}
+					
+					dto.close();
+				}
+				else if (failedCount >= MAX_COMMIT_ATTEMPT_COUNT)
+				{
+					LOGGER.error("Full data source [" + DhSectionPos.toString(dto.pos) + "] failed to commit [" + failedCount + "] times and will be dropped.");
+					this.failedCommitCountByPos.remove(dto.pos);
+					this.droppedDtoCount.incrementAndGet();
+					dtoDropped = true;
+					dto.close();
+				}
+				else
+				{
+					this.pendingDtoByPos.put(dto.pos, dto);
+					this.retriedDtoCount.incrementAndGet();
+				}
+			}
+			finally
+			{
+				posLock.unlock();
+			}
+		}
+		
+		return dtoDropped;
+	}
+	
+	/** @param runTasks if false the tasks are discarded */
+	private void runAfterCommitTasks(int taskCount, boolean runTasks)
+	{
+		for (int i = 0; i < taskCount; i++)
+		{
+			Runnable task;
+			synchronized (this.afterCommitTaskQueue)
+			{
+				task = this.afterCommitTaskQueue.pollFirst();
+			}
+			
+			if (task != null && runTasks)
+			{
+				try
+				{
+					task.run();
+				}
+				catch (Exception e)
+				{
+					LOGGER.error("Unexpected error running after commit task for [" + this.repo.databaseFile + "], error: [" + e.getMessage() + "].", e);
+				}
+			}
+		}
+		
+		if (!runTasks && taskCount != 0)
+		{
+			LOGGER.warn("Discarded [" + taskCount + "] after commit tasks for [" + this.repo.databaseFile + "] since the data they depended on couldn't be written.");
+		}
+	}
+	
+	
+	
+	//=========//
+	// metrics //
+	//=========//
+	
+	public int getPendingCount() { return this.pendingDtoByPos.size() + this.committingDtoByPos.size(); }
+	public int getPendingFlagCount() { return this.pendingApplyToParentByPos.size() + this.pendingApplyToChildrenByPos.size(); }
+	
+	public String getDebugString()
+	{
+		return "Write Queue - pending: " + F3Screen.NUMBER_FORMAT.format(this.getPendingCount())
+				+ ", batch avg: " + F3Screen.NUMBER_FORMAT.format(this.rollingAverageBatchSize.getAverage())
+				+ ", commit avg: " + F3Screen.NUMBER_FORMAT.format(this.rollingAverageCommitTimeInMs.getAverage()) + "ms"
+				+ ", written: " + F3Screen.NUMBER_FORMAT.format(this.committedDtoCount.get())
+				+ ", coalesced: " + F3Screen.NUMBER_FORMAT.format(this.coalescedDtoCount.get())
+				+ ", retried: " + F3Screen.NUMBER_FORMAT.format(this.retriedDtoCount.get())
+				+ ", dropped: " + F3Screen.NUMBER_FORMAT.format(this.droppedDtoCount.get())
+				+ ", flags pending: " + F3Screen.NUMBER_FORMAT.format(this.getPendingFlagCount())
+				+ ", flags written: " + F3Screen.NUMBER_FORMAT.format(this.committedFlagCount.get());
+	}
+	
+	
+	
+	//==========//
+	// shutdown //
+	//==========//
+	
+	/** flushes any pending data and stops the commit thread */
+	@Override
+	public void close()
+	{
+		if (!this.running)
+		{
+			return;
+		}
+		this.running = false;
+		
+		synchronized (this.commitSignalObj)
+		{
+			this.commitSignalObj.notifyAll();
+		}
+		
+		this.commitThread.shutdown();
+		try
+		{
+			if (!this.commitThread.awaitTermination(10, TimeUnit.SECONDS))
+			{
+				LOGGER.warn("Full data write queue for [" + this.repo.databaseFile + "] didn't stop in time.");
+			}
+		}
+		catch (InterruptedException ignore) { }
+		
+		// anything queued after the commit thread stopped
+		this.flush();
+		
+		// DTOs that failed to commit won't get another chance
+		if (!this.pendingDtoByPos.isEmpty())
+		{
+			LOGGER.error("[" + this.pendingDtoByPos.size() + "] full data sources couldn't be written to [" + this.repo.databaseFile + "] before closing.");
+			for (Long pos : this.pendingDtoByPos.keySet())
+			{
+				this.runForQueuedDto(pos, false, (dto) ->
+				{
+					if (dto != null && this.pendingDtoByPos.remove(pos, dto))
+					{
+						dto.close();
+					}
+					return null;
+				});
+			}
+		}
+	}
+	
+	
+	
+}
@@ -0,0 +1,91 @@
+/*
+ *    This file is part of the Distant Horizons mod
+ *    licensed under the GNU LGPL v3 License.
+ *
+ *    Copyright (C) 2020 James Seibel
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, version 3.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public License
+ *    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.seibel.distanthorizons.core.util.objects.dataStreams;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Reads directly from a {@link ByteBuffer} without copying it
+ * into a separate array first. <br>
+ * Useful for passing memory mapped file slices to a {@link DhDataInputStream}. <br><br>
+ *
+ * <strong>Note:</strong>
+ * reading advances the given buffer's position.
+ */
+public class ByteBufferInputStream extends InputStream
+{
+	private final ByteBuffer buffer;
+	
+	
+	
+	//=============//
+	// constructor //
+	//=============//
+	
+	public ByteBufferInputStream(ByteBuffer buffer) { this.buffer = buffer; }
+	
+	
+	
+	//=========//
+	// reading //
+	//=========//
+	
+	@Override
+	public int read()
+	{
+		if (!this.buffer.hasRemaining())
+		{
+			return -1;
+		}
+		
+		return this.buffer.get() & 0xFF;
+	}
+	
+	@Override
+	public int read(byte[] bytes, int offset, int length)
+	{
+		if (length == 0)
+		{
+			return 0;
+		}
+		
+		if (!this.buffer.hasRemaining())
+		{
+			return -1;
+		}
+		
+		int readLength = Math.min(length, this.buffer.remaining());
+		this.buffer.get(bytes, offset, readLength);
+		return readLength;
+	}
+	
+	@Override
+	public long skip(long count)
+	{
+		int skipCount = (int) Math.max(0, Math.min(count, this.buffer.remaining()));
+		this.buffer.position(this.buffer.position() + skipCount);
+		return skipCount;
+	}
+	
+	@Override
+	public int available() { return this.buffer.remaining(); }
+	
+}
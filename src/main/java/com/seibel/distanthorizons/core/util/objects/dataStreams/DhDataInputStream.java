@@ -23,6 +23,7 @@ import com.seibel.distanthorizons.api.enums.config.EDhApiDataCompressionMode;
 import net.jpountz.lz4.LZ4FrameInputStream;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.jetbrains.annotations.Nullable;
 import org.tukaani.xz.ResettableArrayCache;
 import org.tukaani.xz.XZInputStream;
 
@@ -46,10 +47,13 @@ public class DhDataInputStream extends DataInputStream
 	
 	
 	public DhDataInputStream(InputStream stream, EDhApiDataCompressionMode compressionMode) throws IOException
+	{ this(stream, compressionMode, null); }
+	/** @param zstdDictionary must be the same dictionary the data was written with, or null if no dictionary was used */
+	public DhDataInputStream(InputStream stream, EDhApiDataCompressionMode compressionMode, @Nullable ZstdDictionary zstdDictionary) throws IOException
 	{ 
-		super(warpStream(new BufferedInputStream(stream), compressionMode)); 
+		super(warpStream(new BufferedInputStream(stream), compressionMode, zstdDictionary)); 
 	}
-	private static InputStream warpStream(InputStream stream, EDhApiDataCompressionMode compressionMode) throws IOException
+	private static InputStream warpStream(InputStream stream, EDhApiDataCompressionMode compressionMode, @Nullable ZstdDictionary zstdDictionary) throws IOException
 	{
 		try
 		{
@@ -66,6 +70,8 @@ public class DhDataInputStream extends DataInputStream
 					
 					// Note: all LZMA/XZ compressors can be decompressed using this same InputStream
 					return new XZInputStream(stream, arrayCache);
+				case ZSTD:
+					return new ZstdBlockInputStream(stream, zstdDictionary);
 				
 				default:
 					throw new IllegalArgumentException("No compressor defined for [" + compressionMode + "]");
@@ -109,6 +115,29 @@ public class DhDataInputStream extends DataInputStream
 		}
 	}
 	
+	/** @see DhDataOutputStream#writeVarInt(int) */
+	public int readVarInt() throws IOException
+	{
+		int value = 0;
+		for (int shift = 0; shift < 32; shift += 7)
+		{
+			int nextByte = this.readUnsignedByte();
+			value |= (nextByte & 0x7F) << shift;
+			if ((nextByte & 0x80) == 0)
+			{
+				return value;
+			}
+		}
+		
+		throw new IOException("Var int is longer than 5 bytes.");
+	}
+	/** @see DhDataOutputStream#writeZigZagVarInt(int) */
+	public int readZigZagVarInt() throws IOException
+	{
+		int value = this.readVarInt();
+		return (value >>> 1) ^ -(value & 1);
+	}
+	
 	@Override
 	public void close() throws IOException { /* Do nothing. */ }
 	
@@ -25,6 +25,7 @@ import net.jpountz.lz4.LZ4FrameOutputStream;
 import net.jpountz.xxhash.XXHashFactory;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.jetbrains.annotations.Nullable;
 import org.tukaani.xz.*;
 
 import java.io.BufferedOutputStream;
@@ -44,11 +45,23 @@ public class DhDataOutputStream extends DataOutputStream
 	
 	
 	
+	/** used if no ZSTD level is given */
+	public static final int DEFAULT_ZSTD_COMPRESSION_LEVEL = 6;
+	
+	
+	
 	public DhDataOutputStream(OutputStream stream, EDhApiDataCompressionMode compressionMode) throws IOException
+	{ this(stream, compressionMode, DEFAULT_ZSTD_COMPRESSION_LEVEL, null); }
+	/** 
+	 * @param zstdCompressionLevel only used by {@link EDhApiDataCompressionMode#ZSTD}
+	 * @param zstdDictionary only used by {@link EDhApiDataCompressionMode#ZSTD}, 
+	 *                       the same dictionary must be passed into the {@link DhDataInputStream} when reading
+	 */
+	public DhDataOutputStream(OutputStream stream, EDhApiDataCompressionMode compressionMode, int zstdCompressionLevel, @Nullable ZstdDictionary zstdDictionary) throws IOException
 	{ 
-		super(warpStream(new BufferedOutputStream(stream), compressionMode)); 
+		super(warpStream(new BufferedOutputStream(stream), compressionMode, zstdCompressionLevel, zstdDictionary)); 
 	}
-	private static OutputStream warpStream(OutputStream stream, EDhApiDataCompressionMode compressionMode) throws IOException
+	private static OutputStream warpStream(OutputStream stream, EDhApiDataCompressionMode compressionMode, int zstdCompressionLevel, @Nullable ZstdDictionary zstdDictionary) throws IOException
 	{
 		try
 		{
@@ -74,6 +87,9 @@ public class DhDataOutputStream extends DataOutputStream
 					// the array cache was specifically tested and tuned for LZMA preset 3/4
 					return new XZOutputStream(stream, new LZMA2Options(3), 
 							XZ.CHECK_CRC64, arrayCache);
+				case ZSTD:
+					// the whole blob is compressed when the stream is flushed
+					return new ZstdBlockOutputStream(stream, zstdCompressionLevel, zstdDictionary);
 				
 				default:
 					throw new IllegalArgumentException("No compressor defined for ["+compressionMode+"]");
@@ -87,6 +103,23 @@ public class DhDataOutputStream extends DataOutputStream
 			}
 	}
 	
+	/** 
+	 * Writes the value as an unsigned LEB128 variable length int, 
+	 * small values only take a single byte. <br>
+	 * Negative values always take 5 bytes, {@link DhDataOutputStream#writeZigZagVarInt(int)} should be used if they're expected.
+	 */
+	public void writeVarInt(int value) throws IOException
+	{
+		while ((value & ~0x7F) != 0)
+		{
+			this.write((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		this.write(value);
+	}
+	/** Maps small negative and positive values to small unsigned values before writing them as a var int. */
+	public void writeZigZagVarInt(int value) throws IOException { this.writeVarInt((value << 1) ^ (value >> 31)); }
+	
 	@Override
 	public void close() throws IOException { /* Do nothing. */ }
 	
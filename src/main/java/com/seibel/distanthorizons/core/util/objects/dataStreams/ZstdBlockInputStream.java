@@ -0,0 +1,211 @@
+/*
+ *    This file is part of the Distant Horizons mod
+ *    licensed under the GNU LGPL v3 License.
+ *
+ *    Copyright (C) 2020 James Seibel
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, version 3.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public License
+ *    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.seibel.distanthorizons.core.util.objects.dataStreams;
+
+import com.github.luben.zstd.ZstdDecompressCtx;
+import com.github.luben.zstd.ZstdException;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reads the blocks written by {@link ZstdBlockOutputStream},
+ * each block is decompressed in a single call using a thread local {@link ZstdDecompressCtx}.
+ *
+ * @see ZstdBlockOutputStream
+ */
+public class ZstdBlockInputStream extends InputStream
+{
+	private static final ThreadLocal<ZstdDecompressCtx> DECOMPRESS_CONTEXT_GETTER = ThreadLocal.withInitial(ZstdDecompressCtx::new);
+	/**
+	 * Full data sources are at most a few megabytes uncompressed,
+	 * anything significantly larger means the block header is corrupt.
+	 */
+	private static final int MAX_BLOCK_LENGTH = 256 * 1024 * 1024;
+	
+	private final InputStream inputStream;
+	@Nullable
+	private final ZstdDictionary dictionary;
+	
+	private byte[] compressedBuffer = new byte[0];
+	private byte[] buffer = new byte[0];
+	private int bufferLength = 0;
+	private int bufferIndex = 0;
+	
+	
+	
+	//=============//
+	// constructor //
+	//=============//
+	
+	public ZstdBlockInputStream(InputStream inputStream, @Nullable ZstdDictionary dictionary)
+	{
+		this.inputStream = inputStream;
+		this.dictionary = dictionary;
+	}
+	
+	
+	
+	//=========//
+	// reading //
+	//=========//
+	
+	@Override
+	public int read() throws IOException
+	{
+		if (!this.fillBufferIfEmpty())
+		{
+			return -1;
+		}
+		
+		return this.buffer[this.bufferIndex++] & 0xFF;
+	}
+	
+	@Override
+	public int read(byte[] bytes, int offset, int length) throws IOException
+	{
+		if (length == 0)
+		{
+			return 0;
+		}
+		
+		if (!this.fillBufferIfEmpty())
+		{
+			return -1;
+		}
+		
+		int readLength = Math.min(length, this.bufferLength - this.bufferIndex);
+		System.arraycopy(this.buffer, this.bufferIndex, bytes, offset, readLength);
+		this.bufferIndex += readLength;
+		return readLength;
+	}
+	
+	@Override
+	public int available() { return this.bufferLength - this.bufferIndex; }
+	
+	@Override
+	public void close() throws IOException { this.inputStream.close(); }
+	
+	
+	
+	//===============//
+	// decompression //
+	//===============//
+	
+	/** @return false if the end of the stream was reached */
+	private boolean fillBufferIfEmpty() throws IOException
+	{
+		while (this.bufferIndex >= this.bufferLength)
+		{
+			int firstByte = this.inputStream.read();
+			if (firstByte == -1)
+			{
+				return false;
+			}
+			
+			int uncompressedLength = (firstByte << 24) | this.readInt24();
+			int compressedLength = this.readInt();
+			if (uncompressedLength < 0 || uncompressedLength > MAX_BLOCK_LENGTH
+				|| compressedLength < 0 || compressedLength > MAX_BLOCK_LENGTH)
+			{
+				throw new IOException("Invalid ZSTD block header, uncompressed length: ["+uncompressedLength+"], compressed length: ["+compressedLength+"].");
+			}
+			
+			if (this.compressedBuffer.length < compressedLength)
+			{
+				this.compressedBuffer = new byte[compressedLength];
+			}
+			this.readFully(this.compressedBuffer, compressedLength);
+			
+			if (this.buffer.length < uncompressedLength)
+			{
+				this.buffer = new byte[uncompressedLength];
+			}
+			
+			ZstdDecompressCtx context = DECOMPRESS_CONTEXT_GETTER.get();
+			int decompressedLength;
+			try
+			{
+				// resetting clears any dictionary from the last use
+				context.reset();
+				if (this.dictionary != null)
+				{
+					context.loadDict(this.dictionary.getDecompressDictionary());
+				}
+				
+				decompressedLength = context.decompressByteArray(
+						this.buffer, 0, uncompressedLength,
+						this.compressedBuffer, 0, compressedLength);
+			}
+			catch (ZstdException e)
+			{
+				throw new IOException("Unable to decompress ZSTD block, error: ["+e.getMessage()+"].", e);
+			}
+			
+			if (decompressedLength != uncompressedLength)
+			{
+				throw new IOException("ZSTD block decompressed to ["+decompressedLength+"] bytes, expected ["+uncompressedLength+"].");
+			}
+			
+			this.bufferLength = uncompressedLength;
+			this.bufferIndex = 0;
+		}
+		
+		return true;
+	}
+	
+	private int readInt() throws IOException
+	{
+		int firstByte = this.inputStream.read();
+		if (firstByte == -1)
+		{
+			throw new EOFException("ZSTD block header ended prematurely");
+		}
+		return (firstByte << 24) | this.readInt24();
+	}
+	private int readInt24() throws IOException
+	{
+		int b1 = this.inputStream.read();
+		int b2 = this.inputStream.read();
+		int b3 = this.inputStream.read();
+		if ((b1 | b2 | b3) < 0)
+		{
+			throw new EOFException("ZSTD block header ended prematurely");
+		}
+		return (b1 << 16) | (b2 << 8) | b3;
+	}
+	
+	private void readFully(byte[] bytes, int length) throws IOException
+	{
+		int offset = 0;
+		while (offset < length)
+		{
+			int readCount = this.inputStream.read(bytes, offset, length - offset);
+			if (readCount == -1)
+			{
+				throw new EOFException("ZSTD block ended prematurely");
+			}
+			offset += readCount;
+		}
+	}
+	
+}
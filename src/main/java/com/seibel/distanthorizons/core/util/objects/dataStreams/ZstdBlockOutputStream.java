@@ -0,0 +1,159 @@
+/*
+ *    This file is part of the Distant Horizons mod
+ *    licensed under the GNU LGPL v3 License.
+ *
+ *    Copyright (C) 2020 James Seibel
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, version 3.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public License
+ *    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.seibel.distanthorizons.core.util.objects.dataStreams;
+
+import com.github.luben.zstd.Zstd;
+import com.github.luben.zstd.ZstdCompressCtx;
+import com.github.luben.zstd.ZstdException;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * Buffers everything written to it and compresses it as a single Zstandard
+ * frame each time the stream is flushed. <br><br>
+ *
+ * Streaming Zstandard contexts hold a large amount of native memory
+ * and {@link DhDataOutputStream}'s can't be closed,
+ * so instead each thread re-uses a single {@link ZstdCompressCtx}. <br><br>
+ *
+ * Block format (repeated once per flush): <br>
+ * {@code int uncompressedLength} <br>
+ * {@code int compressedLength} <br>
+ * {@code byte[compressedLength] zstdFrame}
+ *
+ * @see ZstdBlockInputStream
+ */
+public class ZstdBlockOutputStream extends OutputStream
+{
+	private static final ThreadLocal<ZstdCompressCtx> COMPRESS_CONTEXT_GETTER = ThreadLocal.withInitial(ZstdCompressCtx::new);
+	private static final int INITIAL_BUFFER_SIZE = 8 * 1024;
+	
+	private final OutputStream outputStream;
+	private final int compressionLevel;
+	@Nullable
+	private final ZstdDictionary dictionary;
+	
+	private byte[] buffer = new byte[INITIAL_BUFFER_SIZE];
+	private int bufferLength = 0;
+	
+	
+	
+	//=============//
+	// constructor //
+	//=============//
+	
+	public ZstdBlockOutputStream(OutputStream outputStream, int compressionLevel, @Nullable ZstdDictionary dictionary)
+	{
+		this.outputStream = outputStream;
+		this.compressionLevel = compressionLevel;
+		this.dictionary = dictionary;
+	}
+	
+	
+	
+	//=========//
+	// writing //
+	//=========//
+	
+	@Override
+	public void write(int b)
+	{
+		this.ensureCapacity(this.bufferLength + 1);
+		this.buffer[this.bufferLength++] = (byte) b;
+	}
+	
+	@Override
+	public void write(byte[] bytes, int offset, int length)
+	{
+		this.ensureCapacity(this.bufferLength + length);
+		System.arraycopy(bytes, offset, this.buffer, this.bufferLength, length);
+		this.bufferLength += length;
+	}
+	
+	private void ensureCapacity(int requiredLength)
+	{
+		if (requiredLength > this.buffer.length)
+		{
+			this.buffer = Arrays.copyOf(this.buffer, Math.max(requiredLength, this.buffer.length * 2));
+		}
+	}
+	
+	
+	
+	//=============//
+	// compression //
+	//=============//
+	
+	@Override
+	public void flush() throws IOException
+	{
+		if (this.bufferLength != 0)
+		{
+			byte[] compressedBytes = new byte[(int) Zstd.compressBound(this.bufferLength)];
+			int compressedLength;
+			
+			ZstdCompressCtx context = COMPRESS_CONTEXT_GETTER.get();
+			try
+			{
+				// resetting clears any dictionary from the last use
+				context.reset();
+				context.setLevel(this.compressionLevel);
+				if (this.dictionary != null)
+				{
+					context.loadDict(this.dictionary.getCompressDictionary(this.compressionLevel));
+				}
+				
+				compressedLength = context.compressByteArray(
+						compressedBytes, 0, compressedBytes.length,
+						this.buffer, 0, this.bufferLength);
+			}
+			catch (ZstdException e)
+			{
+				throw new IOException("Unable to compress ["+this.bufferLength+"] bytes, error: ["+e.getMessage()+"].", e);
+			}
+			
+			writeInt(this.outputStream, this.bufferLength);
+			writeInt(this.outputStream, compressedLength);
+			this.outputStream.write(compressedBytes, 0, compressedLength);
+			
+			this.bufferLength = 0;
+		}
+		
+		this.outputStream.flush();
+	}
+	private static void writeInt(OutputStream stream, int value) throws IOException
+	{
+		stream.write((value >>> 24) & 0xFF);
+		stream.write((value >>> 16) & 0xFF);
+		stream.write((value >>> 8) & 0xFF);
+		stream.write(value & 0xFF);
+	}
+	
+	@Override
+	public void close() throws IOException
+	{
+		this.flush();
+		this.outputStream.close();
+	}
+	
+}
@@ -0,0 +1,107 @@
+/*
+ *    This file is part of the Distant Horizons mod
+ *    licensed under the GNU LGPL v3 License.
+ *
+ *    Copyright (C) 2020 James Seibel
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, version 3.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public License
+ *    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.seibel.distanthorizons.core.util.objects.dataStreams;
+
+import com.github.luben.zstd.ZstdDictCompress;
+import com.github.luben.zstd.ZstdDictDecompress;
+import it.unimi.dsi.fastutil.ints.Int2ReferenceOpenHashMap;
+
+/**
+ * A trained Zstandard dictionary and its digested (native) forms. <br>
+ * Digesting a dictionary is relatively expensive so each form
+ * is only created once and then shared between threads. <br><br>
+ *
+ * The ID is only unique for the database the dictionary was loaded from.
+ *
+ * @see ZstdBlockOutputStream
+ * @see ZstdBlockInputStream
+ */
+public class ZstdDictionary
+{
+	/** 0 is reserved for "no dictionary" */
+	public final int id;
+	public final byte[] dictionaryBytes;
+	
+	private volatile ZstdDictDecompress decompressDictionary = null;
+	/** compression dictionaries are bound to a specific compression level */
+	private final Int2ReferenceOpenHashMap<ZstdDictCompress> compressDictionaryByLevel = new Int2ReferenceOpenHashMap<>();
+	
+	
+	
+	//=============//
+	// constructor //
+	//=============//
+	
+	public ZstdDictionary(int id, byte[] dictionaryBytes)
+	{
+		if (id <= 0)
+		{
+			throw new IllegalArgumentException("Dictionary ID must be greater than 0, ID given: ["+id+"].");
+		}
+		
+		this.id = id;
+		this.dictionaryBytes = dictionaryBytes;
+	}
+	
+	
+	
+	//=========//
+	// getters //
+	//=========//
+	
+	public ZstdDictDecompress getDecompressDictionary()
+	{
+		ZstdDictDecompress dictionary = this.decompressDictionary;
+		if (dictionary == null)
+		{
+			synchronized (this)
+			{
+				dictionary = this.decompressDictionary;
+				if (dictionary == null)
+				{
+					dictionary = new ZstdDictDecompress(this.dictionaryBytes);
+					this.decompressDictionary = dictionary;
+				}
+			}
+		}
+		return dictionary;
+	}
+	
+	public synchronized ZstdDictCompress getCompressDictionary(int compressionLevel)
+	{
+		ZstdDictCompress dictionary = this.compressDictionaryByLevel.get(compressionLevel);
+		if (dictionary == null)
+		{
+			dictionary = new ZstdDictCompress(this.dictionaryBytes, compressionLevel);
+			this.compressDictionaryByLevel.put(compressionLevel, dictionary);
+		}
+		return dictionary;
+	}
+	
+	
+	
+	//===========//
+	// overrides //
+	//===========//
+	
+	@Override
+	public String toString() { return "ZstdDictionary{id=" + this.id + ", size=" + this.dictionaryBytes.length + "}"; }
+	
+}
@@ -0,0 +1,199 @@
+/*
+ *    This file is part of the Distant Horizons mod
+ *    licensed under the GNU LGPL v3 License.
+ *
+ *    Copyright (C) 2020 James Seibel
+ *
+ *    This program is free software: you can redistribute it and/or modify
+ *    it under the terms of the GNU Lesser General Public License as published by
+ *    the Free Software Foundation, version 3.
+ *
+ *    This program is distributed in the hope that it will be useful,
+ *    but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *    GNU Lesser General Public License for more details.
+ *
+ *    You should have received a copy of the GNU Lesser General Public License
+ *    along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package com.seibel.distanthorizons.core.wrapperInterfaces.block;
+
+import com.seibel.distanthorizons.core.dependencyInjection.SingletonInjector;
+import com.seibel.distanthorizons.core.util.LodUtil;
+import com.seibel.distanthorizons.core.wrapperInterfaces.IWrapperFactory;
+import com.seibel.distanthorizons.core.wrapperInterfaces.world.ILevelWrapper;
+
+import java.util.Arrays;
+import java.util.HashSet;
+
+/**
+ * Flat, bit packed copy of the {@link IBlockStateWrapper} properties
+ * used by LOD building, lighting and render data creation, indexed by {@link IBlockStateWrapper#getDenseId()}. <br>
+ * Reading a property is an array read and a shift instead of a virtual call
+ * (which may need to go back to MC's block state or search a config set). <br><br>
+ *
+ * Entries are populated the first time each block state is requested
+ * and the whole table is cleared whenever one of the block config lists changes. <br><br>
+ *
+ * <strong>Bit layout: </strong><br>
+ * <code>
+ * 4-7: light emission <br>
+ * 8-15: material ID <br>
+ * 16-31: flags, see the {@code _FLAG} constants <br>
+ * 32-39: opacity (needs more than 4 bits since {@link LodUtil#BLOCK_FULLY_OPAQUE} is 16) <br>
+ * </code>
+ */
+public class BlockStatePropertyTable
+{
+	private static final IWrapperFactory WRAPPER_FACTORY = SingletonInjector.INSTANCE.get(IWrapperFactory.class);
+	
+	private static final int LIGHT_EMISSION_OFFSET = 4;
+	private static final int MATERIAL_ID_OFFSET = 8;
+	private static final int OPACITY_OFFSET = 32;
+	
+	private static final long NIBBLE_MASK = 0xF;
+	private static final long BYTE_MASK = 0xFF;
+	
+	public static final long AIR_FLAG = 1L << 16;
+	public static final long SOLID_FLAG = 1L << 17;
+	public static final long LIQUID_FLAG = 1L << 18;
+	public static final long BEACON_FLAG = 1L << 19;
+	public static final long BEACON_BASE_FLAG = 1L << 20;
+	public static final long BEACON_TINT_FLAG = 1L << 21;
+	public static final long COLOR_BELOW_FLAG = 1L << 22;
+	public static final long RENDERER_IGNORED_FLAG = 1L << 23;
+	public static final long RENDERER_CAVE_IGNORED_FLAG = 1L << 24;
+	
+	/** set once every property except the renderer ignored flags has been populated */
+	private static final long POPULATED_FLAG = 1L << 30;
+	/** set once the renderer ignored flags have been populated, requires a level to populate */
+	private static final long RENDER_FLAGS_POPULATED_FLAG = 1L << 31;
+	
+	/** only grows (except when cleared), so the array can be read without locking */
+	private static volatile long[] propertiesByDenseId = new long[0];
+	
+	
+	
+	//=========//
+	// getters //
+	//=========//
+	
+	/** 
+	 * Returns every property except {@link BlockStatePropertyTable#RENDERER_IGNORED_FLAG}
+	 * and {@link BlockStatePropertyTable#RENDERER_CAVE_IGNORED_FLAG}. 
+	 * 
+	 * @see BlockStatePropertyTable#getRenderProperties(IBlockStateWrapper, ILevelWrapper) 
+	 */
+	public static long getProperties(IBlockStateWrapper blockState)
+	{
+		long[] propertiesArray = propertiesByDenseId;
+		int id = blockState.getDenseId();
+		if (id < propertiesArray.length)
+		{
+			long properties = propertiesArray[id];
+			if ((properties & POPULATED_FLAG) != 0)
+			{
+				return properties;
+			}
+		}
+		
+		return populate(blockState, null);
+	}
+	
+	/** Returns every property, including the renderer ignored flags. */
+	public static long getRenderProperties(IBlockStateWrapper blockState, ILevelWrapper levelWrapper)
+	{
+		long[] propertiesArray = propertiesByDenseId;
+		int id = blockState.getDenseId();
+		if (id < propertiesArray.length)
+		{
+			long properties = propertiesArray[id];
+			if ((properties & RENDER_FLAGS_POPULATED_FLAG) != 0)
+			{
+				return properties;
+			}
+		}
+		
+		return populate(blockState, levelWrapper);
+	}
+	
+	public static int getOpacity(long properties) { return (int) ((properties >>> OPACITY_OFFSET) & BYTE_MASK); }
+	public static int getLightEmission(long properties) { return (int) ((properties >>> LIGHT_EMISSION_OFFSET) & NIBBLE_MASK); }
+	public static byte getMaterialId(long properties) { return (byte) ((properties >>> MATERIAL_ID_OFFSET) & BYTE_MASK); }
+	
+	public static boolean isAir(long properties) { return (properties & AIR_FLAG) != 0; }
+	public static boolean isSolid(long properties) { return (properties & SOLID_FLAG) != 0; }
+	public static boolean isLiquid(long properties) { return (properties & LIQUID_FLAG) != 0; }
+	public static boolean isColorBelow(long properties) { return (properties & COLOR_BELOW_FLAG) != 0; }
+	public static boolean isRendererIgnored(long properties) { return (properties & RENDERER_IGNORED_FLAG) != 0; }
+	public static boolean isRendererCaveIgnored(long properties) { return (properties & RENDERER_CAVE_IGNORED_FLAG) != 0; }
+	
+	
+	
+	//==============//
+	// table set up //
+	//==============//
+	
+	/** should be called whenever any of the config values used by the flags change */
+	public static synchronized void clear() { propertiesByDenseId = new long[0]; }
+	
+	/** @param levelWrapper if null the renderer ignored flags won't be populated */
+	private static synchronized long populate(IBlockStateWrapper blockState, ILevelWrapper levelWrapper)
+	{
+		long[] propertiesArray = propertiesByDenseId;
+		int id = blockState.getDenseId();
+		if (id >= propertiesArray.length)
+		{
+			propertiesArray = Arrays.copyOf(propertiesArray, Math.max(id + 1, propertiesArray.length * 2));
+		}
+		
+		long properties = propertiesArray[id];
+		if ((properties & POPULATED_FLAG) == 0)
+		{
+			properties = createProperties(blockState);
+		}
+		
+		if (levelWrapper != null 
+			&& (properties & RENDER_FLAGS_POPULATED_FLAG) == 0)
+		{
+			HashSet<IBlockStateWrapper> ignoredBlocks = WRAPPER_FACTORY.getRendererIgnoredBlocks(levelWrapper);
+			HashSet<IBlockStateWrapper> caveIgnoredBlocks = WRAPPER_FACTORY.getRendererIgnoredCaveBlocks(levelWrapper);
+			
+			properties |= RENDER_FLAGS_POPULATED_FLAG;
+			properties |= ignoredBlocks.contains(blockState) ? RENDERER_IGNORED_FLAG : 0;
+			properties |= caveIgnoredBlocks.contains(blockState) ? RENDERER_CAVE_IGNORED_FLAG : 0;
+		}
+		
+		propertiesArray[id] = properties;
+		propertiesByDenseId = propertiesArray;
+		return properties;
+	}
+	private static long createProperties(IBlockStateWrapper blockState)
+	{
+		long properties = POPULATED_FLAG;
+		properties |= ((long) blockState.getOpacity() & BYTE_MASK) << OPACITY_OFFSET;
+		properties |= ((long) blockState.getLightEmission() & NIBBLE_MASK) << LIGHT_EMISSION_OFFSET;
+		properties |= ((long) blockState.getMaterialId() & BYTE_MASK) << MATERIAL_ID_OFFSET;
+		
+		properties |= blockState.isAir() ? AIR_FLAG : 0;
+		properties |= blockState.isSolid() ? SOLID_FLAG : 0;
+		properties |= blockState.isLiquid() ? LIQUID_FLAG : 0;
+		properties |= blockState.isBeaconBlock() ? BEACON_FLAG : 0;
+		properties |= blockState.isBeaconBaseBlock() ? BEACON_BASE_FLAG : 0;
+		properties |= blockState.isBeaconTintBlock() ? BEACON_TINT_FLAG : 0;
+		
+		String serialString = blockState.getSerialString();
+		for (String resourceLocation : WRAPPER_FACTORY.getBlockResourceLocationsColorBelow())
+		{
+			if (serialString.startsWith(resourceLocation))
+			{
+				properties |= COLOR_BELOW_FLAG;
+				break;
+			}
+		}
+		
+		return properties;
+	}
+	
+}
@@ -33,6 +33,12 @@ public interface IBlockStateWrapper extends IDhApiBlockStateWrapper
 	
 	String getSerialString();
 	
+	/**
+	 * Small, unique ID assigned to each wrapper when it's created,
+	 * used to index {@link BlockStatePropertyTable}.
+	 */
+	int getDenseId();
+	
 	/**
 	 * Returning a value of 0 means the block is completely transparent. <br.
 	 * Returning a value of 15 means the block is completely opaque.
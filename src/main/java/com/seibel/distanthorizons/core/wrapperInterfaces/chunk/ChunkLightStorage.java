@@ -157,6 +157,34 @@ public class ChunkLightStorage
 		lightSection.set(x, y, z, lightLevel);
 	}
 	
+	/**
+	 * Replaces every light value in this storage. <br>
+	 * Much faster than calling {@link ChunkLightStorage#set} for each position
+	 * since each section is packed in a single pass.
+	 * 
+	 * @param lightArray one light value per byte
+	 * @param startIndex the index for relative position 0, {@link ChunkLightStorage#minY}, 0
+	 */
+	public void setAll(byte[] lightArray, int startIndex, int xStride, int yStride, int zStride)
+	{
+		if (this.lightSections == null)
+		{
+			int arrayLength = (this.maxY - this.minY) / 16;
+			this.lightSections = new LightSection[arrayLength];
+		}
+		
+		for (int i = 0; i < this.lightSections.length; i++)
+		{
+			LightSection lightSection = this.lightSections[i];
+			if (lightSection == null)
+			{
+				lightSection = new LightSection(LodUtil.MIN_MC_LIGHT);
+				this.lightSections[i] = lightSection;
+			}
+			lightSection.setAll(lightArray, startIndex + (i * 16 * yStride), xStride, yStride, zStride);
+		}
+	}
+	
 	public void clear() 
 	{
 		if (this.lightSections != null)
@@ -303,6 +331,56 @@ public class ChunkLightStorage
 			}
 		}
 		
+		/** @see ChunkLightStorage#setAll(byte[], int, int, int, int) */
+		public void setAll(byte[] lightArray, int startIndex, int xStride, int yStride, int zStride)
+		{
+			if (!this.concurrencyCheckLock.tryLock())
+			{
+				throw new ConcurrentModificationException("Thread ["+Thread.currentThread().getName()+"] attempted to set chunk light, lock: ["+this.concurrencyCheckLock+"].");
+			}
+			
+			try
+			{
+				long[] data = (this.data != null) ? this.data : DataRecycler.get();
+				Arrays.fill(this.counts, (short) 0);
+				
+				for (int z = 0; z < 16; z++)
+				{
+					for (int x = 0; x < 16; x++)
+					{
+						int index = startIndex + (x * xStride) + (z * zStride);
+						long bits = 0L;
+						for (int y = 0; y < 16; y++, index += yStride)
+						{
+							int lightLevel = lightArray[index];
+							bits |= ((long) lightLevel) << (y << 2);
+							this.counts[lightLevel]++;
+						}
+						data[(z << 4) | x] = bits;
+					}
+				}
+				
+				// if every position has the same light level we can use a constant value instead
+				for (int lightLevel = 0; lightLevel < this.counts.length; lightLevel++)
+				{
+					if (this.counts[lightLevel] == 4096)
+					{
+						this.constantValue = (byte) (lightLevel);
+						this.data = null;
+						DataRecycler.reclaim(data);
+						return;
+					}
+				}
+				
+				this.constantValue = -1;
+				this.data = data;
+			}
+			finally
+			{
+				this.concurrencyCheckLock.unlock();
+			}
+		}
+		
 	}
 	
 	static class DataRecycler
@@ -91,6 +91,43 @@ public interface IChunkWrapper extends IBindable
 	void setDhBlockLight(int relX, int relY, int relZ, int lightValue);
 	void clearDhBlockLighting();
 	
+	/**
+	 * Replaces every sky light value in this chunk. <br>
+	 * Implementations should override this if they can set the values in bulk.
+	 * 
+	 * @param lightArray one light value per byte
+	 * @param startIndex the index for relative position 0, {@link IChunkWrapper#getInclusiveMinBuildHeight()}, 0
+	 */
+	default void setAllDhSkyLights(byte[] lightArray, int startIndex, int xStride, int yStride, int zStride)
+	{
+		for (int y = this.getInclusiveMinBuildHeight(); y < this.getExclusiveMaxBuildHeight(); y++)
+		{
+			int yIndex = startIndex + ((y - this.getInclusiveMinBuildHeight()) * yStride);
+			for (int relZ = 0; relZ < LodUtil.CHUNK_WIDTH; relZ++)
+			{
+				for (int relX = 0; relX < LodUtil.CHUNK_WIDTH; relX++)
+				{
+					this.setDhSkyLight(relX, y, relZ, lightArray[yIndex + (relX * xStride) + (relZ * zStride)]);
+				}
+			}
+		}
+	}
+	/** @see IChunkWrapper#setAllDhSkyLights(byte[], int, int, int, int) */
+	default void setAllDhBlockLights(byte[] lightArray, int startIndex, int xStride, int yStride, int zStride)
+	{
+		for (int y = this.getInclusiveMinBuildHeight(); y < this.getExclusiveMaxBuildHeight(); y++)
+		{
+			int yIndex = startIndex + ((y - this.getInclusiveMinBuildHeight()) * yStride);
+			for (int relZ = 0; relZ < LodUtil.CHUNK_WIDTH; relZ++)
+			{
+				for (int relX = 0; relX < LodUtil.CHUNK_WIDTH; relX++)
+				{
+					this.setDhBlockLight(relX, y, relZ, lightArray[yIndex + (relX * xStride) + (relZ * zStride)]);
+				}
+			}
+		}
+	}
+	
 	
 	/** Note: don't modify this array, it will only be generated once and then shared between uses */
 	ArrayList<DhBlockPos> getWorldBlockLightPosList();
@@ -0,0 +1,9 @@
+CREATE TABLE CompressionDictionary(
+     Id INT NOT NULL PRIMARY KEY -- 1-15, stored in the upper bits of FullData.CompressionMode
+    
+    ,CompressionMode TINYINT NOT NULL -- which compressor this dictionary is for
+    ,Dictionary BLOB NOT NULL
+    
+    ,LastModifiedUnixDateTime BIGINT NOT NULL -- in GMT 0
+    ,CreatedUnixDateTime BIGINT NOT NULL -- in GMT 0
+);
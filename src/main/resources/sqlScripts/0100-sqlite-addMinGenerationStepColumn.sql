@@ -0,0 +1,8 @@
+-- Lets world generation check if a position is fully generated without decompressing the ColumnGenerationStep blob.
+-- Null for data saved before this column was added, in which case the blob still has to be checked.
+alter table FullData add column MinGenerationStep TINYINT NULL;
+
+--batch--
+
+-- covering index so range lookups never need to read the (much larger) data rows
+create index FullDataMinGenerationStepIndex on FullData (DetailLevel, PosX, PosZ, MinGenerationStep);
@@ -0,0 +1,10 @@
+-- Every biome/block state pair used by this level,
+-- FullData.Mapping only stores these IDs when the mapping dictionary bit is set in FullData.DataFormatVersion.
+-- IDs are never changed or deleted since existing data may still reference them.
+CREATE TABLE FullDataMappingDictionary(
+     Id INT NOT NULL PRIMARY KEY
+    
+    ,SerialString TEXT NOT NULL UNIQUE -- the biome and block state serial strings separated by "_DH-BSW_"
+    
+    ,CreatedUnixDateTime BIGINT NOT NULL -- in GMT 0
+);